@@ -0,0 +1,66 @@
+package com.paymetv.app.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.paymetv.app.domain.Artifact;
+import com.paymetv.app.domain.ImageFace;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * In-process read-through caches of the entities read far more often than written.
+ * <p></p>
+ * Each cache holds at most {@code app.cache.<name>.max-size} entries, evicting the
+ * least useful first, and drops an entry {@code app.cache.<name>.expire-after-write-ms}
+ * after it was loaded, which bounds how stale an entry can get if an invalidation is
+ * ever missed. Only entities that were found are cached.
+ * <p></p>
+ * Metrics, tagged with {@code cache} ({@code imageface} or {@code artifact-by-name}):
+ * - {@code cache_gets_total}: lookups, also tagged with {@code result} (hit or miss)
+ * - {@code cache_evictions_total}: entries evicted for size or age
+ * - {@code cache_size}: entries held
+ *
+ * @author PayMeTV Team
+ */
+@Configuration
+public class CacheConfig {
+
+    /** ImageFaces by id, in front of {@code ImageFaceService#findById}. */
+    @Bean
+    public Cache<Long, ImageFace> imageFaceCache(
+            MeterRegistry meterRegistry,
+            @Value("${app.cache.imageface.max-size:10000}") long maxSize,
+            @Value("${app.cache.imageface.expire-after-write-ms:600000}") long expireAfterWriteMs) {
+        return cache("imageface", maxSize, expireAfterWriteMs, meterRegistry);
+    }
+
+    /** Artifacts, with their users, by name, in front of {@code ArtifactService#findByName}. */
+    @Bean
+    public Cache<String, Artifact> artifactByNameCache(
+            MeterRegistry meterRegistry,
+            @Value("${app.cache.artifact-by-name.max-size:1000}") long maxSize,
+            @Value("${app.cache.artifact-by-name.expire-after-write-ms:600000}") long expireAfterWriteMs) {
+        return cache("artifact-by-name", maxSize, expireAfterWriteMs, meterRegistry);
+    }
+
+    /** A cache recording its statistics as the metrics above. */
+    public static <K, V> Cache<K, V> cache(String name, long maxSize, long expireAfterWriteMs,
+                                           MeterRegistry meterRegistry) {
+        if (maxSize <= 0 || expireAfterWriteMs <= 0) {
+            throw new IllegalStateException(String.format(
+                    "app.cache.%s max-size and expire-after-write-ms must be positive, got %d and %d",
+                    name, maxSize, expireAfterWriteMs));
+        }
+        Cache<K, V> cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(expireAfterWriteMs))
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+    }
+}
@@ -1,18 +1,39 @@
 package com.paymetv.app.config;
 
+import com.paymetv.app.service.kafka.AvroPayloadSerializer;
+import com.paymetv.app.service.kafka.AvroSchemas;
+import com.paymetv.app.service.kafka.ConsumptionMetrics;
+import com.paymetv.app.service.kafka.RetryTopicRecoverer;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.ProducerFactory;
-import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.listener.CommonErrorHandler;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultAfterRollbackProcessor;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.transaction.KafkaTransactionManager;
+import org.springframework.util.backoff.FixedBackOff;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -22,30 +43,255 @@ public class KafkaConfig {
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
+    @Value("${spring.kafka.consumer.auto-offset-reset:earliest}")
+    private String autoOffsetReset;
+
+    /** Also bounds the retry delays (see {@link com.paymetv.app.service.kafka.RetryTopics}). */
+    @Value("${app.kafka.consumer.max-poll-interval-ms:300000}")
+    private int maxPollIntervalMs;
+
+    @Value("${app.kafka.serialization.avro-topics:}")
+    private String[] avroTopics;
+
+    @Value("${app.kafka.transactions.id-prefix:${HOSTNAME:paymetv}-tx-}")
+    private String transactionIdPrefix;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private AvroSchemas avroSchemas;
+
+    @Autowired
+    private ConsumptionMetrics consumptionMetrics;
+
+    /**
+     * Producer for request-path sends, tuned by {@link ProducerProfile#LOW_LATENCY}.
+     * <p></p>
+     * Like every {@code Object} producer, it writes JSON except to the topics listed
+     * in {@code app.kafka.serialization.avro-topics}, which get the payload's
+     * {@link AvroSchemas} binary form.
+     */
     @Bean
+    @Primary
     public ProducerFactory<String, Object> producerFactory() {
+        return payloadProducerFactory(ProducerProfile.LOW_LATENCY);
+    }
+
+    @Bean
+    @Primary
+    public KafkaTemplate<String, Object> kafkaTemplate() {
+        return new KafkaTemplate<>(producerFactory());
+    }
+
+    /**
+     * Producer for bulk sends, tuned by {@link ProducerProfile#THROUGHPUT}.
+     */
+    @Bean
+    public ProducerFactory<String, Object> throughputProducerFactory() {
+        return payloadProducerFactory(ProducerProfile.THROUGHPUT);
+    }
+
+    @Bean
+    public KafkaTemplate<String, Object> throughputKafkaTemplate() {
+        return new KafkaTemplate<>(throughputProducerFactory());
+    }
+
+    /**
+     * Transactional producer for {@code app.kafka.consumer.mode=transactional}, tuned by
+     * {@link ProducerProfile#THROUGHPUT}.
+     * <p></p>
+     * Its transactional ids are {@code app.kafka.transactions.id-prefix} followed by a
+     * counter. The prefix defaults to the pod's host name: two live producers must never
+     * share an id, or each would fence the other out. Zombies are fenced by the consumer
+     * group instead: a pod that lost a partition in a rebalance (an HPA scale-in or
+     * scale-out) can no longer commit offsets for it, so its transaction aborts.
+     */
+    @Bean
+    public ProducerFactory<String, Object> transactionalProducerFactory() {
+        DefaultKafkaProducerFactory<String, Object> factory = payloadProducerFactory(ProducerProfile.THROUGHPUT);
+        factory.setTransactionIdPrefix(transactionIdPrefix);
+        return factory;
+    }
+
+    @Bean
+    public KafkaTemplate<String, Object> transactionalKafkaTemplate() {
+        return new KafkaTemplate<>(transactionalProducerFactory());
+    }
+
+    /**
+     * Template for moving consumed messages to retry and dead-letter topics.
+     * <p></p>
+     * Consumed values are plain strings, so they are written back with
+     * {@link StringSerializer}; the JSON serializer would quote them.
+     */
+    @Bean
+    public KafkaTemplate<String, String> retryKafkaTemplate() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(config));
+    }
+
+    /**
+     * Template of the outbox relay, tuned by {@link ProducerProfile#THROUGHPUT}.
+     * <p></p>
+     * Outbox events are stored as JSON text, so they are written as they are.
+     */
+    @Bean
+    public KafkaTemplate<String, String> outboxKafkaTemplate() {
+        Map<String, Object> config = new HashMap<>(ProducerProfile.THROUGHPUT.settings(environment));
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(config));
+    }
+
+    /**
+     * Container factory for the record listeners and retry tiers of
+     * {@code TopicHandlerListenerConfig}.
+     * <p></p>
+     * A failed message is not retried in place, which would hold up its partition;
+     * it is handed to {@link RetryTopicRecoverer} straight away and the partition
+     * moves on. Only the topic handler containers get this error handler: the retry
+     * topics exist only for their topics, and the recoverer writes values as strings.
+     * Other listeners keep their own: {@code FileUploadedListener} Spring Boot's default
+     * container factory, {@code ImageFaceCacheInvalidationListener} the broadcast one.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> topicHandlerKafkaListenerContainerFactory(
+            RetryTopicRecoverer retryTopicRecoverer) {
+        return containerFactory(false, ContainerProperties.AckMode.BATCH, retryErrorHandler(retryTopicRecoverer),
+                Map.of());
+    }
+
+    /**
+     * Container factory for batch listeners (see {@code GenericConsumer#consumeBatch}).
+     * <p></p>
+     * Each poll is handed to the listener as one list, and its offsets are committed
+     * once, after the listener returns. Poll size and concurrency are set per
+     * listener (see {@code TopicHandlerListenerConfig}). Batch and parallel listeners
+     * hand failed records to the {@link RetryTopicRecoverer} themselves. A batch listener
+     * whose results cannot be published throws a {@code BatchListenerFailedException}
+     * naming the first record without one: the error handler commits the records
+     * before it, moves it to its retry tier, and redelivers the rest.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> batchKafkaListenerContainerFactory(
+            RetryTopicRecoverer retryTopicRecoverer) {
+        return containerFactory(true, ContainerProperties.AckMode.BATCH, retryErrorHandler(retryTopicRecoverer),
+                Map.of());
+    }
+
+    /**
+     * Container factory for the parallel listener (see {@code GenericConsumer#consumeParallel}).
+     * <p></p>
+     * Like the batch factory, but the container never commits: the listener commits
+     * each partition up to its highest contiguously completed record itself.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> parallelKafkaListenerContainerFactory(
+            RetryTopicRecoverer retryTopicRecoverer) {
+        return containerFactory(true, ContainerProperties.AckMode.MANUAL, retryErrorHandler(retryTopicRecoverer),
+                Map.of());
+    }
+
+    /**
+     * Container factory for the transactional listener (see {@code GenericConsumer#consumeTransactional}).
+     * <p></p>
+     * Each poll is handled in a Kafka transaction started by the container; when the
+     * listener returns, the batch's offsets are added to the transaction and it is
+     * committed, so a result and the offset of its message are written together or
+     * not at all. Input is read with {@code isolation.level=read_committed}, and
+     * consumers of the results must do the same to see each result exactly once.
+     * <p></p>
+     * Messages a handler fails on are moved to their retry tier by the listener itself.
+     * Anything else the listener throws (a result that cannot be sent) is not given to
+     * the retry recoverer, which would commit the batch with its results missing: the
+     * transaction is aborted and the whole batch redelivered, every second until it
+     * goes through.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> transactionalKafkaListenerContainerFactory() {
+        CommonErrorHandler rollback = new CommonErrorHandler() {
+            @Override
+            public void handleBatch(Exception thrownException, ConsumerRecords<?, ?> data, Consumer<?, ?> consumer,
+                                    MessageListenerContainer container, Runnable invokeListener) {
+                throw new KafkaException("Rolling back a batch of " + data.count() + " records", thrownException);
+            }
+        };
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = containerFactory(
+                true, ContainerProperties.AckMode.BATCH, rollback,
+                Map.of(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed"));
+        factory.getContainerProperties().setKafkaAwareTransactionManager(
+                new KafkaTransactionManager<>(transactionalProducerFactory()));
+        factory.setAfterRollbackProcessor(
+                new DefaultAfterRollbackProcessor<>(new FixedBackOff(1000L, FixedBackOff.UNLIMITED_ATTEMPTS)));
+        return factory;
+    }
+
+    /**
+     * Container factory for listeners that every pod must see every message of
+     * (see {@code ImageFaceCacheInvalidationListener}).
+     * <p></p>
+     * Its consumers belong to no group: containers are created from it with every
+     * partition assigned explicitly, start at the end of each and never commit, so
+     * pods coming and going leave no consumer groups or offsets behind on the broker.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> broadcastKafkaListenerContainerFactory() {
         Map<String, Object> config = new HashMap<>();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(config));
+        return factory;
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private DefaultKafkaProducerFactory<String, Object> payloadProducerFactory(ProducerProfile profile) {
+        Map<String, Object> config = new HashMap<>(profile.settings(environment));
 
         config.put(
                 ProducerConfig.BOOTSTRAP_SERVERS_CONFIG,
                 bootstrapServers
         );
 
-        config.put(
-                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG,
-                StringSerializer.class
-        );
-
-        config.put(
-                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
-                JsonSerializer.class
-        );
+        return new DefaultKafkaProducerFactory<>(config, new StringSerializer(),
+                AvroPayloadSerializer.byTopic(Arrays.stream(avroTopics).filter(topic -> !topic.isBlank()).toList(),
+                        avroSchemas));
+    }
 
-        return new DefaultKafkaProducerFactory<>(config);
+    /** Hands a failed message to the recoverer without retrying it in place. */
+    private static CommonErrorHandler retryErrorHandler(RetryTopicRecoverer retryTopicRecoverer) {
+        return new DefaultErrorHandler(retryTopicRecoverer, new FixedBackOff(0L, 0L));
     }
 
-    @Bean
-    public KafkaTemplate<String, Object> kafkaTemplate() {
-        return new KafkaTemplate<>(producerFactory());
+    private ConcurrentKafkaListenerContainerFactory<String, String> containerFactory(
+            boolean batch, ContainerProperties.AckMode ackMode, CommonErrorHandler errorHandler, Map<String, Object> consumerConfig) {
+        Map<String, Object> config = new HashMap<>(consumerConfig);
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, autoOffsetReset);
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        config.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, maxPollIntervalMs);
+
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(config));
+        factory.setBatchListener(batch);
+        factory.getContainerProperties().setAckMode(ackMode);
+        factory.setCommonErrorHandler(errorHandler);
+        // The topic handler listeners publish lag per partition; stop when a partition moves away
+        factory.getContainerProperties().setConsumerRebalanceListener(consumptionMetrics.lagRebalanceListener());
+        return factory;
     }
 }
\ No newline at end of file
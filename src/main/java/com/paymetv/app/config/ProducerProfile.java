@@ -0,0 +1,63 @@
+package com.paymetv.app.config;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.core.env.PropertyResolver;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Producer tunings for the two kinds of Kafka sends in the application.
+ * <p></p>
+ * - {@link #LOW_LATENCY}: request-path sends (upload events, artifacts); a record
+ *   is sent as soon as the sender thread picks it up and is not compressed
+ * - {@link #THROUGHPUT}: bulk sends (consumer results); records wait up to
+ *   {@code linger.ms} to fill large, compressed batches, trading a few
+ *   milliseconds of latency for far fewer requests and bytes on the wire
+ * <p></p>
+ * Both are idempotent with {@code acks=all}, so the producer's own retries never
+ * duplicate or reorder a partition's records. Each setting can be overridden
+ * with {@code app.kafka.producer.<profile>.linger-ms}, {@code .batch-size} and
+ * {@code .compression-type}.
+ *
+ * @author PayMeTV Team
+ */
+public enum ProducerProfile {
+
+    LOW_LATENCY("low-latency", 0, 16_384, "none"),
+    THROUGHPUT("throughput", 20, 262_144, "lz4");
+
+    private final String key;
+    private final int lingerMs;
+    private final int batchSize;
+    private final String compressionType;
+
+    ProducerProfile(String key, int lingerMs, int batchSize, String compressionType) {
+        this.key = key;
+        this.lingerMs = lingerMs;
+        this.batchSize = batchSize;
+        this.compressionType = compressionType;
+    }
+
+    /** The profile's name in {@code app.kafka.producer.<profile>.*}. */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * The producer settings of this profile, with any overrides from {@code properties}.
+     */
+    public Map<String, Object> settings(PropertyResolver properties) {
+        String prefix = "app.kafka.producer." + key + ".";
+        Map<String, Object> settings = new HashMap<>();
+        settings.put(ProducerConfig.LINGER_MS_CONFIG,
+                properties.getProperty(prefix + "linger-ms", Integer.class, lingerMs));
+        settings.put(ProducerConfig.BATCH_SIZE_CONFIG,
+                properties.getProperty(prefix + "batch-size", Integer.class, batchSize));
+        settings.put(ProducerConfig.COMPRESSION_TYPE_CONFIG,
+                properties.getProperty(prefix + "compression-type", compressionType));
+        settings.put(ProducerConfig.ACKS_CONFIG, "all");
+        settings.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        return settings;
+    }
+}
@@ -78,6 +78,9 @@ public class SecurityConfiguration {
                 // CSRF protection remains enabled for web forms
                 .ignoringRequestMatchers(
                     "/api/files/upload",      // File upload API
+                    "/api/files/upload/stream", // Raw-body streaming upload API
+                    "/api/files/upload/batch", // Multi-file upload API
+                    "/api/files/upload/sessions/**", // Resumable chunked upload API
                     "/api/imageface/**"       // ImageFace CRUD API
                 )
             )
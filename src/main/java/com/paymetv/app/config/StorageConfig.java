@@ -0,0 +1,80 @@
+package com.paymetv.app.config;
+
+import com.paymetv.app.service.storage.LocalStorageBackend;
+import com.paymetv.app.service.storage.MeteredStorageBackend;
+import com.paymetv.app.service.storage.S3Client;
+import com.paymetv.app.service.storage.S3StorageBackend;
+import com.paymetv.app.service.storage.StorageBackend;
+import com.paymetv.app.service.storage.TieredStorageBackend;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URI;
+import java.nio.file.Paths;
+
+/**
+ * Selects the {@link StorageBackend} used for uploaded content.
+ * <p></p>
+ * {@code app.storage.backend}:
+ * - {@code local} (default): blobs stay in {@code app.storage.local.root}
+ * - {@code s3}: blobs go straight to the S3-compatible store configured under {@code app.storage.s3.*}
+ * - {@code tiered}: blobs are written locally and uploaded to S3 in the background
+ * <p></p>
+ * Every backend is wrapped in a {@link MeteredStorageBackend}, so each tier
+ * reports its own latency and throughput.
+ */
+@Configuration
+public class StorageConfig {
+
+    @Value("${app.storage.backend:local}")
+    private String backend;
+
+    @Value("${app.storage.local.root:uploads/blobs}")
+    private String localRoot;
+
+    @Value("${app.storage.s3.endpoint:http://localhost:9000}")
+    private String s3Endpoint;
+
+    @Value("${app.storage.s3.region:us-east-1}")
+    private String s3Region;
+
+    @Value("${app.storage.s3.bucket:paymetv-uploads}")
+    private String s3Bucket;
+
+    @Value("${app.storage.s3.access-key:}")
+    private String s3AccessKey;
+
+    @Value("${app.storage.s3.secret-key:}")
+    private String s3SecretKey;
+
+    @Value("${app.storage.s3.part-size:8388608}")
+    private long s3PartSize;
+
+    @Value("${app.storage.tiered.upload-threads:2}")
+    private int tieredUploadThreads;
+
+    @Bean
+    public StorageBackend storageBackend(MeterRegistry meterRegistry) {
+        return switch (backend) {
+            case "local" -> local(meterRegistry);
+            case "s3" -> s3(meterRegistry);
+            case "tiered" -> new MeteredStorageBackend(
+                    new TieredStorageBackend(local(meterRegistry), s3(meterRegistry),
+                            tieredUploadThreads, meterRegistry),
+                    meterRegistry);
+            default -> throw new IllegalArgumentException(
+                    "Unknown app.storage.backend '" + backend + "'. Expected local, s3 or tiered.");
+        };
+    }
+
+    private StorageBackend local(MeterRegistry meterRegistry) {
+        return new MeteredStorageBackend(new LocalStorageBackend(Paths.get(localRoot)), meterRegistry);
+    }
+
+    private StorageBackend s3(MeterRegistry meterRegistry) {
+        S3Client client = new S3Client(URI.create(s3Endpoint), s3Region, s3AccessKey, s3SecretKey);
+        return new MeteredStorageBackend(new S3StorageBackend(client, s3Bucket, s3PartSize), meterRegistry);
+    }
+}
@@ -0,0 +1,307 @@
+package com.paymetv.app.config;
+
+import com.paymetv.app.service.kafka.ConsumptionMetrics;
+import com.paymetv.app.service.kafka.GenericConsumer;
+import com.paymetv.app.service.kafka.RetryTopics;
+import com.paymetv.app.service.kafka.TopicHandler;
+import com.paymetv.app.service.kafka.TopicHandlerRegistry;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.annotation.KafkaListenerConfigurer;
+import org.springframework.kafka.config.KafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpoint;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistrar;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.BatchConsumerAwareMessageListener;
+import org.springframework.kafka.listener.ConsumerAwareMessageListener;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.TopicPartitionOffset;
+import org.springframework.kafka.support.converter.MessageConverter;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Gives every {@link TopicHandler} its own listener container for the ML topics.
+ * <p></p>
+ * Each container subscribes to the handler's topics that are also listed in
+ * {@code app.kafka.topics}, runs {@link TopicHandler#concurrency()} consumer
+ * threads (named {@code topic-handler-<name>-...}) and polls at most
+ * {@link TopicHandler#batchSize()} records at a time. All containers share the
+ * {@code ml-learning-group} consumer group.
+ * <p></p>
+ * {@code app.kafka.consumer.mode} picks the listener: {@code record},
+ * {@code batch}, {@code parallel} or {@code transactional} (see {@link GenericConsumer}).
+ * After every poll the listener updates the consumer lag gauges of
+ * {@link ConsumptionMetrics}; the gauges of partitions a container gives up in a
+ * rebalance are removed.
+ * <p></p>
+ * Every retry tier of the handler's topics gets a further single-threaded
+ * container ({@code topic-handler-<name>-retry-<tier>}) that handles one message
+ * at a time once it is due (see {@link RetryTopics}). The retry and dead-letter
+ * topics are created at startup with the broker's default settings. Record and
+ * retry containers come from {@code topicHandlerKafkaListenerContainerFactory},
+ * whose error handler moves a failed message on to its next tier.
+ * <p></p>
+ * Containers are only created when Kafka listeners are enabled (Spring Boot's
+ * Kafka auto-configuration), so tests without a broker do not start them.
+ */
+@Configuration
+public class TopicHandlerListenerConfig implements KafkaListenerConfigurer {
+
+    private static final Logger log = LoggerFactory.getLogger(TopicHandlerListenerConfig.class);
+
+    static final String GROUP_ID = "ml-learning-group";
+
+    private final TopicHandlerRegistry topicHandlers;
+    private final GenericConsumer genericConsumer;
+    private final ConsumptionMetrics consumptionMetrics;
+    private final RetryTopics retryTopics;
+    private final KafkaListenerContainerFactory<?> recordContainerFactory;
+    private final KafkaListenerContainerFactory<?> batchContainerFactory;
+    private final KafkaListenerContainerFactory<?> parallelContainerFactory;
+    private final KafkaListenerContainerFactory<?> transactionalContainerFactory;
+
+    @Value("${app.kafka.topics:}")
+    private String[] enabledTopics;
+
+    @Value("${app.kafka.consumer.mode:record}")
+    private String mode;
+
+    public TopicHandlerListenerConfig(TopicHandlerRegistry topicHandlers,
+                                      GenericConsumer genericConsumer,
+                                      ConsumptionMetrics consumptionMetrics,
+                                      RetryTopics retryTopics,
+                                      @Qualifier("topicHandlerKafkaListenerContainerFactory")
+                                      KafkaListenerContainerFactory<?> recordContainerFactory,
+                                      @Qualifier("batchKafkaListenerContainerFactory")
+                                      KafkaListenerContainerFactory<?> batchContainerFactory,
+                                      @Qualifier("parallelKafkaListenerContainerFactory")
+                                      KafkaListenerContainerFactory<?> parallelContainerFactory,
+                                      @Qualifier("transactionalKafkaListenerContainerFactory")
+                                      KafkaListenerContainerFactory<?> transactionalContainerFactory) {
+        this.topicHandlers = topicHandlers;
+        this.genericConsumer = genericConsumer;
+        this.consumptionMetrics = consumptionMetrics;
+        this.retryTopics = retryTopics;
+        this.recordContainerFactory = recordContainerFactory;
+        this.batchContainerFactory = batchContainerFactory;
+        this.parallelContainerFactory = parallelContainerFactory;
+        this.transactionalContainerFactory = transactionalContainerFactory;
+    }
+
+    @Override
+    public void configureKafkaListeners(KafkaListenerEndpointRegistrar registrar) {
+        if (!Set.of("record", "batch", "parallel", "transactional").contains(mode)) {
+            throw new IllegalStateException("Unknown app.kafka.consumer.mode '" + mode
+                    + "', expected record, batch, parallel or transactional");
+        }
+        Set<String> enabled = enabledTopics();
+
+        for (TopicHandler handler : topicHandlers.handlers()) {
+            List<String> topics = handler.topics().stream().filter(enabled::contains).sorted().toList();
+            if (topics.isEmpty()) {
+                log.info("Topic handler '{}' has no topic listed in app.kafka.topics; not started", handler.name());
+                continue;
+            }
+
+            HandlerEndpoint endpoint = new HandlerEndpoint(handler, "topic-handler-" + handler.name(), topics,
+                    mode, handler.concurrency());
+            switch (mode) {
+                case "batch" -> registrar.registerEndpoint(endpoint, batchContainerFactory);
+                case "parallel" -> registrar.registerEndpoint(endpoint, parallelContainerFactory);
+                case "transactional" -> registrar.registerEndpoint(endpoint, transactionalContainerFactory);
+                default -> registrar.registerEndpoint(endpoint, recordContainerFactory);
+            }
+            log.info("Topic handler '{}' consumes {} ({} threads, batches of up to {})",
+                    handler.name(), topics, handler.concurrency(), handler.batchSize());
+
+            for (int tier = 1; tier <= retryTopics.tiers(); tier++) {
+                int retryTier = tier;
+                List<String> retry = topics.stream().map(topic -> retryTopics.retryTopic(topic, retryTier)).toList();
+                registrar.registerEndpoint(new HandlerEndpoint(handler,
+                        "topic-handler-" + handler.name() + "-retry-" + tier, retry, "retry", 1),
+                        recordContainerFactory);
+            }
+        }
+
+        enabled.stream()
+                .filter(topic -> topicHandlers.handlerFor(topic).isEmpty())
+                .forEach(topic -> log.warn("No topic handler for '{}' listed in app.kafka.topics; it is not consumed", topic));
+    }
+
+    /**
+     * The retry and dead-letter topics of every consumed topic, created by Spring
+     * Boot's {@code KafkaAdmin} when Kafka is enabled.
+     */
+    @Bean
+    public KafkaAdmin.NewTopics retryAndDeadLetterTopics() {
+        Set<String> enabled = enabledTopics();
+        return new KafkaAdmin.NewTopics(topicHandlers.handlers().stream()
+                .flatMap(handler -> handler.topics().stream())
+                .filter(enabled::contains)
+                .flatMap(topic -> retryTopics.topicsFor(topic).stream())
+                .map(topic -> TopicBuilder.name(topic).build())
+                .toArray(NewTopic[]::new));
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private Set<String> enabledTopics() {
+        return Arrays.stream(enabledTopics).map(String::trim)
+                .filter(topic -> !topic.isEmpty()).collect(Collectors.toSet());
+    }
+
+    /** One of a handler's containers: its topics, threads and poll size, wired to {@link GenericConsumer}. */
+    private final class HandlerEndpoint implements KafkaListenerEndpoint {
+
+        private final TopicHandler handler;
+        private final String id;
+        private final List<String> topics;
+        private final String mode;
+        private final int concurrency;
+
+        private HandlerEndpoint(TopicHandler handler, String id, List<String> topics, String mode, int concurrency) {
+            this.handler = handler;
+            this.id = id;
+            this.topics = topics;
+            this.mode = mode;
+            this.concurrency = concurrency;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getGroupId() {
+            return GROUP_ID;
+        }
+
+        @Override
+        public String getGroup() {
+            return null;
+        }
+
+        @Override
+        public Collection<String> getTopics() {
+            return topics;
+        }
+
+        @Override
+        public TopicPartitionOffset[] getTopicPartitionsToAssign() {
+            return new TopicPartitionOffset[0];
+        }
+
+        @Override
+        public Pattern getTopicPattern() {
+            return null;
+        }
+
+        @Override
+        public String getClientIdPrefix() {
+            return null;
+        }
+
+        @Override
+        public Integer getConcurrency() {
+            return concurrency;
+        }
+
+        @Override
+        public Boolean getAutoStartup() {
+            return null;
+        }
+
+        @Override
+        public Properties getConsumerProperties() {
+            Properties properties = new Properties();
+            properties.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(handler.batchSize()));
+            return properties;
+        }
+
+        @Override
+        public Boolean getBatchListener() {
+            return Set.of("batch", "parallel", "transactional").contains(mode);
+        }
+
+        @Override
+        public boolean isSplitIterables() {
+            return true;
+        }
+
+        @Override
+        public void setupListenerContainer(MessageListenerContainer container, MessageConverter messageConverter) {
+            switch (mode) {
+                case "batch" -> container.setupMessageListener(
+                        (BatchConsumerAwareMessageListener<String, String>) this::onBatch);
+                case "parallel" -> container.setupMessageListener(
+                        (BatchConsumerAwareMessageListener<String, String>) this::onParallelBatch);
+                case "transactional" -> container.setupMessageListener(
+                        (BatchConsumerAwareMessageListener<String, String>) this::onTransactionalBatch);
+                case "retry" -> container.setupMessageListener((MessageListener<String, String>) this::onRetry);
+                default -> container.setupMessageListener(
+                        (ConsumerAwareMessageListener<String, String>) this::onRecord);
+            }
+        }
+
+        private void onRecord(ConsumerRecord<String, String> record, Consumer<?, ?> consumer) {
+            consumptionMetrics.recordLag(consumer);
+            genericConsumer.consume(record.value(), record.topic(), record.partition(), record.offset());
+        }
+
+        private void onBatch(List<ConsumerRecord<String, String>> records, Consumer<?, ?> consumer) {
+            consumptionMetrics.recordLag(consumer);
+            try {
+                genericConsumer.consumeBatch(records);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new KafkaException("Interrupted while publishing results of " + getId(), e);
+            }
+        }
+
+        private void onRetry(ConsumerRecord<String, String> record) {
+            try {
+                retryTopics.awaitDue(record);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new KafkaException("Interrupted while waiting to retry a message in " + getId(), e);
+            }
+            genericConsumer.consume(record.value(), retryTopics.mainTopic(record.topic()));
+        }
+
+        private void onTransactionalBatch(List<ConsumerRecord<String, String>> records, Consumer<?, ?> consumer) {
+            consumptionMetrics.recordLag(consumer);
+            genericConsumer.consumeTransactional(records);
+        }
+
+        private void onParallelBatch(List<ConsumerRecord<String, String>> records, Consumer<?, ?> consumer) {
+            consumptionMetrics.recordLag(consumer);
+            try {
+                genericConsumer.consumeParallel(records, consumer);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new KafkaException("Interrupted while handling a batch in " + getId(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.paymetv.app.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymetv.app.service.upload.UploadAdmissionInterceptor;
+import com.paymetv.app.service.upload.UploadAdmissionService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Puts the {@link UploadAdmissionInterceptor} in front of the upload endpoints
+ * of {@code FileUploadController} and {@code ChunkedUploadController}. A batch
+ * counts as one upload of its total size, each part of a chunked upload as one
+ * upload of its own; a part of unknown length is charged as the largest part
+ * allowed. Status, complete and abort requests of a chunked upload are not limited.
+ * <p></p>
+ * {@code app.upload.admission.enabled=false} switches admission control off.
+ */
+@Configuration
+public class UploadAdmissionConfig implements WebMvcConfigurer {
+
+    private final UploadAdmissionService admissionService;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final long maxPartSize;
+
+    public UploadAdmissionConfig(UploadAdmissionService admissionService,
+                                 ObjectMapper objectMapper,
+                                 @Value("${app.upload.admission.enabled:true}") boolean enabled,
+                                 @Value("${app.upload.chunked.max-part-size:16777216}") long maxPartSize) {
+        this.admissionService = admissionService;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxPartSize = maxPartSize;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (enabled) {
+            registry.addInterceptor(new UploadAdmissionInterceptor(admissionService, objectMapper))
+                    .addPathPatterns("/api/files/upload", "/api/files/upload/stream", "/api/files/upload/batch",
+                            "/api/files/upload/sessions");
+            registry.addInterceptor(new UploadAdmissionInterceptor(admissionService, objectMapper, maxPartSize))
+                    .addPathPatterns("/api/files/upload/sessions/*/parts/*");
+        }
+    }
+}
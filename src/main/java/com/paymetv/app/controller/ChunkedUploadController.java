@@ -0,0 +1,257 @@
+package com.paymetv.app.controller;
+
+import com.paymetv.app.service.upload.ChunkedUploadService;
+import com.paymetv.app.service.upload.UploadSession;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * REST controller for resumable, chunked file uploads.
+ *
+ * A client initiates a session, PUTs numbered parts (in any order, and again
+ * after a dropped connection), queries which parts have arrived, and finally
+ * completes the session. Large files therefore never need to fit into a single
+ * request, and a failed transfer only has to resend the parts that are missing.
+ *
+ * @author PayMeTV Team
+ */
+@RestController
+@RequestMapping("/api/files/upload/sessions")
+@Tag(name = "Chunked Upload", description = "Endpoints for resumable, chunked file uploads")
+public class ChunkedUploadController {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedUploadController.class);
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    /**
+     * Starts a new upload session.
+     *
+     * @param request JSON body with {@code filename}, {@code contentType} and {@code size}
+     * @return 201 with the upload id, 400 on validation error, 500 on I/O error
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(
+            summary = "Initiate a chunked upload",
+            description = "Declares the file name, MIME type and total size of the file and returns an upload id "
+                    + "together with the maximum accepted part size."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "201",
+                    description = "Upload session created",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Validation failed – size is out of range or the MIME type is not allowed",
+                    content = @Content(mediaType = "application/json")
+            )
+    })
+    public ResponseEntity<Map<String, Object>> initiate(@RequestBody Map<String, Object> request) {
+        try {
+            Object size = request.get("size");
+            if (!(size instanceof Number)) {
+                throw new IllegalArgumentException("Field 'size' is required and must be a number.");
+            }
+
+            UploadSession session = chunkedUploadService.initiate(
+                    (String) request.get("filename"),
+                    (String) request.get("contentType"),
+                    ((Number) size).longValue());
+
+            Map<String, Object> response = chunkedUploadService.status(session.getUploadId());
+            response.put("status", "created");
+            response.put("timestamp", System.currentTimeMillis());
+            return ResponseEntity.created(URI.create("/api/files/upload/sessions/" + session.getUploadId()))
+                    .body(response);
+
+        } catch (IllegalArgumentException | ClassCastException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+
+        } catch (IOException e) {
+            return ioFailed(e);
+        }
+    }
+
+    /**
+     * Stores one part of an upload. The request body is the raw part content.
+     *
+     * @return 200 with the stored part size, 400/404 on client error, 500 on I/O error
+     */
+    @PutMapping(value = "/{uploadId}/parts/{partNumber}", consumes = "!" + MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(
+            summary = "Upload one part",
+            description = "Stores a numbered (1-based) part. Parts may arrive in any order and re-sending a part "
+                    + "replaces the earlier copy, so interrupted parts can simply be retried."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Part stored",
+                    content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "400", description = "Invalid part number or part too large",
+                    content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "404", description = "Upload session not found",
+                    content = @Content(mediaType = "application/json"))
+    })
+    public ResponseEntity<Map<String, Object>> uploadPart(
+            @Parameter(description = "Upload id returned when the session was initiated", required = true)
+            @PathVariable String uploadId,
+            @Parameter(description = "1-based part number", required = true)
+            @PathVariable int partNumber,
+            HttpServletRequest request
+    ) {
+        try {
+            long size = chunkedUploadService.uploadPart(uploadId, partNumber, request.getInputStream());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("uploadId", uploadId);
+            response.put("partNumber", partNumber);
+            response.put("size", size);
+            response.put("status", "stored");
+            response.put("timestamp", System.currentTimeMillis());
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+
+        } catch (NoSuchElementException e) {
+            return error(HttpStatus.NOT_FOUND, e.getMessage());
+
+        } catch (IOException e) {
+            return ioFailed(e);
+        }
+    }
+
+    /**
+     * Reports which parts of an upload have been received.
+     */
+    @GetMapping("/{uploadId}")
+    @Operation(
+            summary = "Get upload status",
+            description = "Returns the declared file details and the part numbers received so far, "
+                    + "so a client can resume by sending only the missing parts."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Session found",
+                    content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "404", description = "Upload session not found",
+                    content = @Content(mediaType = "application/json"))
+    })
+    public ResponseEntity<Map<String, Object>> status(@PathVariable String uploadId) {
+        try {
+            return ResponseEntity.ok(chunkedUploadService.status(uploadId));
+
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+
+        } catch (NoSuchElementException e) {
+            return error(HttpStatus.NOT_FOUND, e.getMessage());
+
+        } catch (IOException e) {
+            return ioFailed(e);
+        }
+    }
+
+    /**
+     * Assembles the received parts into the final file.
+     *
+     * @return 200 with file metadata, 404 if unknown, 409 if parts are missing, 500 on I/O error
+     */
+    @PostMapping("/{uploadId}/complete")
+    @Operation(
+            summary = "Complete a chunked upload",
+            description = "Verifies that parts 1..n were received and add up to the declared size, "
+                    + "then assembles them into the stored file."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "File assembled and stored",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Map.class))),
+            @ApiResponse(responseCode = "404", description = "Upload session not found",
+                    content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "409", description = "Parts are missing, the size does not match, "
+                    + "or the session is already being completed",
+                    content = @Content(mediaType = "application/json"))
+    })
+    public ResponseEntity<Map<String, Object>> complete(@PathVariable String uploadId) {
+        try {
+            Map<String, Object> response = new HashMap<>(chunkedUploadService.complete(uploadId));
+            response.put("status", "uploaded");
+            response.put("timestamp", System.currentTimeMillis());
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+
+        } catch (NoSuchElementException e) {
+            return error(HttpStatus.NOT_FOUND, e.getMessage());
+
+        } catch (IllegalStateException e) {
+            return error(HttpStatus.CONFLICT, e.getMessage());
+
+        } catch (IOException e) {
+            return ioFailed(e);
+        }
+    }
+
+    /**
+     * Aborts an upload and discards its parts.
+     */
+    @DeleteMapping("/{uploadId}")
+    @Operation(summary = "Abort a chunked upload", description = "Discards the session and all received parts.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Session aborted"),
+            @ApiResponse(responseCode = "404", description = "Upload session not found",
+                    content = @Content(mediaType = "application/json"))
+    })
+    public ResponseEntity<Map<String, Object>> abort(@PathVariable String uploadId) {
+        try {
+            chunkedUploadService.abort(uploadId);
+            return ResponseEntity.noContent().build();
+
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+
+        } catch (NoSuchElementException e) {
+            return error(HttpStatus.NOT_FOUND, e.getMessage());
+
+        } catch (IOException e) {
+            return ioFailed(e);
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
+        log.warn("Chunked upload request failed ({}): {}", status.value(), message);
+        Map<String, Object> error = new HashMap<>();
+        error.put("status", "error");
+        error.put("message", message);
+        error.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.status(status).body(error);
+    }
+
+    private ResponseEntity<Map<String, Object>> ioFailed(IOException e) {
+        log.error("Chunked upload I/O failure", e);
+        return error(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to save file: " + e.getMessage());
+    }
+}
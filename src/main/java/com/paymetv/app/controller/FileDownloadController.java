@@ -0,0 +1,217 @@
+package com.paymetv.app.controller;
+
+import com.paymetv.app.service.FileDownloadService;
+import com.paymetv.app.service.pipeline.ImageDerivative;
+import com.paymetv.app.service.storage.StoredFile;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * REST controller serving stored uploads back to clients.
+ *
+ * {@code GET /api/files/content/{sha256}} supports single byte ranges (so video
+ * players can seek), conditional requests with the content hash as a strong
+ * ETag plus Last-Modified, and HEAD. On Tomcat, locally stored files of 48 KB or
+ * more are handed to the connector's sendfile support, so the kernel copies them
+ * to the socket without passing through the heap. Smaller files, remote files and
+ * other containers are copied to the response stream through a small buffer.
+ * <p></p>
+ * {@code GET /api/files/content/{sha256}/thumbnails/{size}} serves the thumbnails
+ * rendered after upload, so galleries need not download originals.
+ *
+ * @author PayMeTV Team
+ */
+@RestController
+@RequestMapping("/api/files")
+@Tag(name = "File Download", description = "Endpoints for serving stored files")
+public class FileDownloadController {
+
+    // Tomcat sendfile request attributes (see org.apache.catalina.Globals)
+    static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    /** Below this size a plain copy is cheaper than setting up sendfile (Tomcat's DefaultServlet default). */
+    private static final long SENDFILE_THRESHOLD = 48 * 1024;
+
+    @Autowired
+    private FileDownloadService fileDownloadService;
+
+    /**
+     * Streams a stored file, honouring Range, If-Range, If-None-Match and If-Modified-Since.
+     *
+     * @param sha256 content hash returned as {@code sha256} by the upload endpoints
+     */
+    @GetMapping("/content/{sha256}")
+    @Operation(
+            summary = "Download a stored file",
+            description = "Serves the file stored under the given SHA-256. Supports a single HTTP byte range "
+                    + "(206 Partial Content), conditional requests via ETag / Last-Modified (304) and HEAD."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Full file content"),
+            @ApiResponse(responseCode = "206", description = "Requested byte range"),
+            @ApiResponse(responseCode = "304", description = "Client copy is current"),
+            @ApiResponse(responseCode = "400", description = "Malformed content hash"),
+            @ApiResponse(responseCode = "404", description = "No file stored under this hash"),
+            @ApiResponse(responseCode = "416", description = "Requested range is outside the file")
+    })
+    public void download(
+            @Parameter(description = "SHA-256 of the file (64 lower-case hex characters)", required = true)
+            @PathVariable String sha256,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        StoredFile file;
+        try {
+            file = fileDownloadService.find(sha256).orElseThrow(() ->
+                    new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found with hash: " + sha256));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        String etag = "\"" + file.getHash() + "\"";
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        boolean notModified = file.getLastModified() >= 0
+                ? webRequest.checkNotModified(etag, file.getLastModified())
+                : webRequest.checkNotModified(etag);
+        if (notModified) {
+            return;
+        }
+
+        // Content-addressed: the bytes behind this URL can never change
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(file.getContentType());
+
+        long size = file.getSize();
+        long start = 0;
+        long length = size;
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && ifRangeMatches(request, etag, file.getLastModified())) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of(); // malformed Range headers are ignored (RFC 9110, 14.2)
+            }
+            // Multiple ranges are allowed to be answered with the full content
+            if (ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+                start = range.getRangeStart(size);
+                if (start >= size) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    return;
+                }
+                length = range.getRangeEnd(size) - start + 1;
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE,
+                        "bytes " + start + "-" + (start + length - 1) + "/" + size);
+            }
+        }
+        response.setContentLengthLong(length);
+
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (file.getLocalPath() != null && length >= SENDFILE_THRESHOLD
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            // Tomcat sends the region with sendfile(2) once this handler returns
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.getLocalPath().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, start + length);
+            return;
+        }
+
+        fileDownloadService.transfer(file, start, length, response.getOutputStream());
+    }
+
+    /**
+     * Streams a thumbnail of a stored image.
+     *
+     * @param sha256 content hash of the original image
+     * @param size   one of the configured thumbnail sizes ({@code app.upload.derivatives.sizes})
+     */
+    @GetMapping("/content/{sha256}/thumbnails/{size}")
+    @Operation(
+            summary = "Download an image thumbnail",
+            description = "Serves a thumbnail rendered after upload, at most {size} pixels on its longest side. "
+                    + "Thumbnails are rendered asynchronously, so a 404 right after upload means 'not yet'."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Thumbnail content"),
+            @ApiResponse(responseCode = "304", description = "Client copy is current"),
+            @ApiResponse(responseCode = "400", description = "Malformed content hash"),
+            @ApiResponse(responseCode = "404", description = "No thumbnail of this size (yet)")
+    })
+    public void thumbnail(
+            @Parameter(description = "SHA-256 of the original image", required = true)
+            @PathVariable String sha256,
+            @Parameter(description = "Thumbnail size in pixels", required = true)
+            @PathVariable int size,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        ImageDerivative thumbnail;
+        try {
+            thumbnail = fileDownloadService.findThumbnail(sha256, size).orElseThrow(() ->
+                    new ResponseStatusException(HttpStatus.NOT_FOUND,
+                            "No " + size + "px thumbnail for hash: " + sha256));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        String etag = "\"" + sha256 + "-" + thumbnail.getName() + "\"";
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable");
+        response.setContentType(thumbnail.getContentType());
+        response.setContentLengthLong(fileDownloadService.thumbnailSize(sha256, thumbnail));
+        if (!"HEAD".equals(request.getMethod())) {
+            fileDownloadService.transferThumbnail(sha256, thumbnail, response.getOutputStream());
+        }
+    }
+
+    /**
+     * A Range request is only honoured when its If-Range validator (if any) still matches.
+     */
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            long since = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return lastModified >= 0 && lastModified / 1000 == since / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.paymetv.app.controller;
 
 import com.paymetv.app.service.FileUploadService;
+import com.paymetv.app.service.upload.BatchUploadService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -8,9 +9,12 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -20,15 +24,23 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.net.URI;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * REST controller for file upload operations.
  *
- * Exposes a single POST endpoint at {@code /api/files/upload} that accepts a
+ * Exposes a POST endpoint at {@code /api/files/upload} that accepts a
  * multipart file, delegates validation and persistence to {@link FileUploadService},
  * and returns a JSON response describing the stored file.
  *
+ * {@code /api/files/upload/stream} accepts the same files as a raw request body.
+ * The container never buffers that body, so the service can validate and write
+ * it to disk in a single pass.
+ *
+ * {@code /api/files/upload/batch} accepts many files in one multipart request,
+ * stores them in parallel and reports a result per file.
+ *
  * @author PayMeTV Team
  */
 @RestController
@@ -41,6 +53,9 @@ public class FileUploadController {
     @Autowired
     private FileUploadService fileUploadService;
 
+    @Autowired
+    private BatchUploadService batchUploadService;
+
     /**
      * Redirects a browser GET on /api/files/upload to the React upload page (/upload).
      * This makes the URL directly accessible from the browser address bar.
@@ -97,29 +112,158 @@ public class FileUploadController {
             @RequestParam("file") MultipartFile file
     ) {
         try {
-            Map<String, Object> metadata = fileUploadService.saveFile(file);
+            return uploaded(fileUploadService.saveFile(file));
 
-            Map<String, Object> response = new HashMap<>(metadata);
-            response.put("status", "uploaded");
-            response.put("timestamp", System.currentTimeMillis());
+        } catch (IllegalArgumentException e) {
+            return validationFailed(e);
+
+        } catch (IOException e) {
+            return saveFailed(e);
+        }
+    }
+
+    /**
+     * Accepts a raw (non-multipart) upload body and streams it to disk.
+     *
+     * The body's Content-Type is the file's MIME type and the original file name is
+     * taken from an optional {@code Content-Disposition: attachment; filename="..."}
+     * header. Oversized bodies are rejected as soon as the limit is crossed.
+     *
+     * @param request            the HTTP request whose body is the file content
+     * @param contentDisposition optional Content-Disposition header carrying the file name
+     * @return 200 with file metadata on success, 400 on validation error, 500 on I/O error
+     */
+    @PostMapping(value = "/upload/stream", consumes = "!" + MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(
+            summary = "Upload a file as a raw request body",
+            description = "Streams the request body straight to storage without multipart buffering. "
+                    + "Validates size (max 2 MB, enforced while reading) and MIME type (from Content-Type)."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "File uploaded successfully",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Validation failed – body is empty, too large, or has a disallowed MIME type",
+                    content = @Content(mediaType = "application/json")
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "Internal server error while saving the file",
+                    content = @Content(mediaType = "application/json")
+            )
+    })
+    public ResponseEntity<Map<String, Object>> uploadStream(
+            HttpServletRequest request,
+            @Parameter(description = "Optional Content-Disposition header, e.g. attachment; filename=\"photo.jpg\"")
+            @RequestHeader(value = HttpHeaders.CONTENT_DISPOSITION, required = false) String contentDisposition
+    ) {
+        try {
+            // Drop parameters such as "; charset=..." so the type matches the allowed list
+            MediaType mediaType = request.getContentType() != null
+                    ? MediaType.parseMediaType(request.getContentType())
+                    : null;
+            String contentType = mediaType != null
+                    ? mediaType.getType() + "/" + mediaType.getSubtype()
+                    : null;
+            String filename = contentDisposition != null
+                    ? ContentDisposition.parse(contentDisposition).getFilename()
+                    : null;
 
-            return ResponseEntity.ok(response);
+            return uploaded(fileUploadService.saveStream(
+                    request.getInputStream(), filename, contentType, request.getContentLengthLong()));
 
         } catch (IllegalArgumentException e) {
-            log.warn("File upload validation failed: {}", e.getMessage());
-            Map<String, Object> error = new HashMap<>();
-            error.put("status", "error");
-            error.put("message", e.getMessage());
-            error.put("timestamp", System.currentTimeMillis());
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+            return validationFailed(e);
 
         } catch (IOException e) {
-            log.error("Failed to save uploaded file", e);
-            Map<String, Object> error = new HashMap<>();
-            error.put("status", "error");
-            error.put("message", "Failed to save file: " + e.getMessage());
-            error.put("timestamp", System.currentTimeMillis());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return saveFailed(e);
         }
     }
+
+    /**
+     * Accepts several files in one multipart request and stores them in parallel.
+     *
+     * @param files the multipart files, all sent as the {@code files} part
+     * @return 200 if every file was stored, 207 if only some were, 400 if none were
+     *         or the batch itself is invalid; the body lists a result per file
+     */
+    @PostMapping(value = "/upload/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(
+            summary = "Upload several files at once",
+            description = "Accepts up to 50 files (each max 2 MB, allowed MIME types only) as repeated "
+                    + "'files' parts. Files are validated and stored in parallel; each gets its own result."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "All files uploaded successfully",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "207",
+                    description = "Some files were uploaded; see the per-file results",
+                    content = @Content(mediaType = "application/json")
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "No file was uploaded, or the batch is empty or too large",
+                    content = @Content(mediaType = "application/json")
+            )
+    })
+    public ResponseEntity<Map<String, Object>> uploadBatch(
+            @Parameter(description = "Files to upload, repeated as the 'files' part", required = true)
+            @RequestParam("files") List<MultipartFile> files
+    ) {
+        try {
+            List<Map<String, Object>> results = batchUploadService.saveFiles(files);
+            long uploaded = results.stream().filter(result -> "uploaded".equals(result.get("status"))).count();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", uploaded == results.size() ? "uploaded" : uploaded > 0 ? "partial" : "error");
+            response.put("uploaded", uploaded);
+            response.put("failed", results.size() - uploaded);
+            response.put("files", results);
+            response.put("timestamp", System.currentTimeMillis());
+
+            HttpStatus status = uploaded == results.size() ? HttpStatus.OK
+                    : uploaded > 0 ? HttpStatus.MULTI_STATUS
+                    : HttpStatus.BAD_REQUEST;
+            return ResponseEntity.status(status).body(response);
+
+        } catch (IllegalArgumentException e) {
+            return validationFailed(e);
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> uploaded(Map<String, Object> metadata) {
+        Map<String, Object> response = new HashMap<>(metadata);
+        response.put("status", "uploaded");
+        response.put("timestamp", System.currentTimeMillis());
+
+        return ResponseEntity.ok(response);
+    }
+
+    private ResponseEntity<Map<String, Object>> validationFailed(IllegalArgumentException e) {
+        log.warn("File upload validation failed: {}", e.getMessage());
+        Map<String, Object> error = new HashMap<>();
+        error.put("status", "error");
+        error.put("message", e.getMessage());
+        error.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    }
+
+    private ResponseEntity<Map<String, Object>> saveFailed(IOException e) {
+        log.error("Failed to save uploaded file", e);
+        Map<String, Object> error = new HashMap<>();
+        error.put("status", "error");
+        error.put("message", "Failed to save file: " + e.getMessage());
+        error.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+    }
 }
@@ -2,6 +2,7 @@ package com.paymetv.app.controller;
 
 import com.paymetv.app.domain.Artifact;
 import com.paymetv.app.domain.ImageFace;
+import com.paymetv.app.service.ImageFaceImportService;
 import com.paymetv.app.service.ImageFaceService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -11,20 +12,26 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * REST controller for ImageFace operations.
  *
  * Provides full CRUD operations for ImageFace entities:
  * - CREATE: POST /api/imageface/create
+ * - CREATE (bulk): POST /api/imageface/import
  * - READ (single): GET /api/imageface/{id}
- * - READ (all): GET /api/imageface/all
+ * - READ (page): GET /api/imageface/all?limit=&cursor=
+ * - READ (all, streamed): GET /api/imageface/stream
  * - UPDATE: PUT /api/imageface/update/{id}
  * - DELETE: DELETE /api/imageface/delete/{id}
  */
@@ -33,9 +40,17 @@ import java.util.List;
 @Tag(name = "ImageFace", description = "Full CRUD endpoints for managing image faces for artifacts")
 public class ImageFaceController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     @Autowired
     private ImageFaceService imageFaceService;
 
+    @Autowired
+    private ImageFaceImportService imageFaceImportService;
+
+    @Value("${app.imageface.page.max-limit:1000}")
+    private int maxPageLimit = 1000;
+
     public ImageFaceController(ImageFaceService imageFaceService) {
         this.imageFaceService = imageFaceService;
     }
@@ -71,22 +86,67 @@ public class ImageFaceController {
     }
 
     /**
-     * Retrieves all ImageFace entities.
+     * Retrieves one page of ImageFace entities, in id order.
      *
-     * @return list of all ImageFace entities
+     * @param limit  the most ImageFaces to return, up to {@code app.imageface.page.max-limit}
+     * @param cursor the {@code next} token of the previous page; omitted for the first page
+     * @return the page, with the token of the next one unless it is the last
      */
     @GetMapping("/all")
     @Operation(
-            summary = "Get all ImageFaces",
-            description = "Retrieves all ImageFace entities from the database"
+            summary = "Get a page of ImageFaces",
+            description = "Retrieves ImageFace entities in id order, one page at a time; pass the returned "
+                    + "'next' token as 'cursor' to get the following page"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Page of ImageFaces retrieved successfully"
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid limit or cursor"
+            )
+    })
+    public ResponseEntity<ImageFaceService.ImageFacePage> getAllImageFaces(
+            @Parameter(description = "Maximum number of ImageFaces in the page")
+            @RequestParam(defaultValue = "100") int limit,
+            @Parameter(description = "The 'next' token of the previous page")
+            @RequestParam(required = false) String cursor
+    ) {
+        if (limit < 1 || limit > maxPageLimit) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit must be between 1 and " + maxPageLimit + ", got " + limit);
+        }
+        try {
+            return ResponseEntity.ok(imageFaceService.findPage(cursor, limit));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Streams every ImageFace as newline-delimited JSON, in id order.
+     * <p></p>
+     * Rows are written as they are read from the database, so the response starts at
+     * once and memory use does not depend on the size of the table.
+     *
+     * @return the NDJSON body, one ImageFace per line
+     */
+    @GetMapping(value = "/stream", produces = NDJSON)
+    @Operation(
+            summary = "Stream all ImageFaces",
+            description = "Streams every ImageFace entity as newline-delimited JSON, one object per line"
     )
     @ApiResponse(
             responseCode = "200",
-            description = "List of ImageFaces retrieved successfully"
+            description = "ImageFaces streamed successfully",
+            content = @Content(mediaType = NDJSON)
     )
-    public ResponseEntity<List<ImageFace>> getAllImageFaces() {
-        List<ImageFace> imageFaces = imageFaceService.findAll();
-        return ResponseEntity.ok(imageFaces);
+    public ResponseEntity<StreamingResponseBody> streamImageFaces() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(imageFaceService::streamAll);
     }
 
     /**
@@ -120,6 +180,41 @@ public class ImageFaceController {
         return ResponseEntity.status(HttpStatus.OK).body(createdImageFace);
     }
 
+    /**
+     * Creates ImageFaces, with their artifacts, in bulk.
+     * <p></p>
+     * The body is read as it arrives and written in chunked transactions; see
+     * {@link ImageFaceImportService}.
+     *
+     * @param body a JSON array or NDJSON of {@code {"artifact": ..., "imageFace": ...}} items
+     * @return how many ImageFaces were created, in how many chunks, and how fast
+     */
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON},
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(
+            summary = "Import ImageFaces in bulk",
+            description = "Accepts a JSON array or newline-delimited JSON of ImageFace and Artifact pairs and "
+                    + "creates them in chunked transactions with batched inserts"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "ImageFaces imported successfully"
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid JSON or incomplete item; the chunks before it stay imported"
+            )
+    })
+    public ResponseEntity<ImageFaceImportService.ImportProgress> importImageFaces(InputStream body)
+            throws IOException {
+        try {
+            return ResponseEntity.ok(imageFaceImportService.importAll(body));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     /**
      * Updates an existing ImageFace.
      *
@@ -1,10 +1,12 @@
 package com.paymetv.app.domain;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -30,13 +32,15 @@ import lombok.ToString;
 @Table(name = "artifact")
 public class Artifact {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "artifact_seq")
+    @SequenceGenerator(name = "artifact_seq", sequenceName = "artifact_seq", allocationSize = PooledIds.ALLOCATION_SIZE)
     private Long id;
     private String name;
     private String description;
     private String model; // ML Model once trained
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
+    @ToString.Exclude
     private Users user;
     private Boolean status;
 }
@@ -3,11 +3,16 @@ package com.paymetv.app.domain;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.NamedSubgraph;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -18,6 +23,10 @@ import lombok.ToString;
 
 /**
  * Entity representing the six faces of an image linked to an Artifact.
+ * <p></p>
+ * The artifact is loaded lazily: the JSON views of an ImageFace leave it out, so
+ * they are served from the image_face row alone. Callers that do need the owner
+ * load it with the {@value #WITH_ARTIFACT} graph, in the same query.
  *
  * @author Twine12b
  */
@@ -29,9 +38,19 @@ import lombok.ToString;
 @Builder
 @Entity
 @Table(name = "image_face")
+@NamedEntityGraph(
+        name = ImageFace.WITH_ARTIFACT,
+        attributeNodes = @NamedAttributeNode(value = "artifact", subgraph = "artifact.user"),
+        subgraphs = @NamedSubgraph(name = "artifact.user", attributeNodes = @NamedAttributeNode("user"))
+)
 public class ImageFace {
+
+    /** Fetch graph loading the artifact and its user along with the ImageFace. */
+    public static final String WITH_ARTIFACT = "ImageFace.withArtifact";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "image_face_seq")
+    @SequenceGenerator(name = "image_face_seq", sequenceName = "image_face_seq", allocationSize = PooledIds.ALLOCATION_SIZE)
     private Long id;
 
     /* The `front` face is mandatory,
@@ -69,8 +88,9 @@ public class ImageFace {
      * Each ImageFace is associated with one Artifact,
      * but an Artifact can have multiple ImageFaces (if needed in the future).
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "artifact_id", nullable = false)
     @JsonBackReference
+    @ToString.Exclude
     private Artifact artifact;
 }
@@ -0,0 +1,64 @@
+package com.paymetv.app.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * A domain event waiting in the outbox to be published to Kafka.
+ * <p></p>
+ * Written in the same transaction as the change it describes and deleted once
+ * the relay has published it. The id is an auto-increment column rather than a
+ * pooled sequence: the relay publishes in id order, and only the database's own
+ * counter hands out ids in the order the rows were written across pods.
+ *
+ * @author PayMeTV Team
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+@Builder
+@Entity
+@Table(name = "outbox_event")
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "topic", nullable = false)
+    private String topic;
+
+    /** Type of the changed entity, e.g. {@code ImageFace}. */
+    @Column(name = "aggregate_type", nullable = false)
+    private String aggregateType;
+
+    /** Id of the changed entity; the Kafka key, so its events stay in order. */
+    @Column(name = "aggregate_id", nullable = false)
+    private String aggregateId;
+
+    /** What happened, e.g. {@code ImageFaceUpdated}. */
+    @Column(name = "event_type", nullable = false)
+    private String eventType;
+
+    /** The event as JSON. */
+    @Lob
+    @Column(name = "payload", nullable = false)
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
@@ -0,0 +1,26 @@
+package com.paymetv.app.domain;
+
+/**
+ * Id allocation shared by the entities whose ids come from a sequence.
+ * <p></p>
+ * Each entity draws its ids from its own {@code <table>_seq} sequence (a one-row
+ * table on MySQL) in blocks of {@link #ALLOCATION_SIZE}: a pod takes a block with one
+ * round trip and row lock, then hands the ids out from memory. Pods never share a
+ * block, so concurrent inserts across pods only meet on the sequence once per block
+ * instead of once per row.
+ * <p></p>
+ * The {@code pooled-lo} optimizer ({@code hibernate.id.optimizer.pooled.preferred})
+ * reads the stored value as the first id of the block, so a sequence left at any
+ * value by the smaller blocks used before simply continues from there. Ids stay
+ * unique and grow within a pod, but are not in insert order across pods, and a
+ * restart leaves the rest of its block unused.
+ *
+ * @author PayMeTV Team
+ */
+final class PooledIds {
+
+    static final int ALLOCATION_SIZE = 1000;
+
+    private PooledIds() {
+    }
+}
@@ -1,6 +1,7 @@
 package com.paymetv.app.repository;
 
 import com.paymetv.app.domain.Artifact;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -15,6 +16,8 @@ import java.util.Optional;
  * naming convention or with explicit {@code @Query} annotations.</p>
  */
 public interface ArtifactRepository extends JpaRepository<Artifact, Long> {
+    /** The artifact with its user, in one query, as ArtifactService caches it. */
+    @EntityGraph(attributePaths = "user")
     Optional<Artifact> findByName(String testArtifact);
 
     Optional<Artifact> findByDescription(String testDescription);
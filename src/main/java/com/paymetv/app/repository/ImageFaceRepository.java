@@ -2,12 +2,22 @@ package com.paymetv.app.repository;
 
 import com.paymetv.app.domain.Artifact;
 import com.paymetv.app.domain.ImageFace;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface ImageFaceRepository extends JpaRepository<ImageFace, Long> {
     Optional<ImageFace> findByFront(String image);
 
     Optional<ImageFace> findByArtifact(Artifact artifact);
+
+    /** The ImageFace with its artifact and the artifact's user, in one query. */
+    @EntityGraph(ImageFace.WITH_ARTIFACT)
+    Optional<ImageFace> findWithArtifactById(Long id);
+
+    /** One keyset page: the rows after {@code id}, in id order. */
+    List<ImageFace> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
 }
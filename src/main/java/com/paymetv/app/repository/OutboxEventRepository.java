@@ -0,0 +1,19 @@
+package com.paymetv.app.repository;
+
+import com.paymetv.app.domain.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /** The oldest event, locked until the end of the transaction. */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<OutboxEvent> findFirstByOrderByIdAsc();
+
+    List<OutboxEvent> findAllByOrderByIdAsc(Limit limit);
+}
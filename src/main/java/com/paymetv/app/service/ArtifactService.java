@@ -0,0 +1,39 @@
+package com.paymetv.app.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.paymetv.app.domain.Artifact;
+import com.paymetv.app.repository.ArtifactRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * Artifact lookups, read through the {@code artifact-by-name} cache.
+ * <p></p>
+ * Artifacts are only ever created, through ImageFace creates and imports, never
+ * changed, so a cached artifact cannot go stale through this application; the
+ * cache's expiry covers changes made to the database directly. Names that are not
+ * found are not cached, so an artifact created afterwards is found at once.
+ * Returned artifacts are shared with other callers and must not be modified.
+ *
+ * @author PayMeTV Team
+ */
+@Service
+public class ArtifactService {
+
+    private final ArtifactRepository artifactRepository;
+    private final Cache<String, Artifact> artifactByNameCache;
+
+    public ArtifactService(ArtifactRepository artifactRepository,
+                           @Qualifier("artifactByNameCache") Cache<String, Artifact> artifactByNameCache) {
+        this.artifactRepository = artifactRepository;
+        this.artifactByNameCache = artifactByNameCache;
+    }
+
+    /** The artifact called {@code name}, with its user loaded. */
+    public Optional<Artifact> findByName(String name) {
+        return Optional.ofNullable(artifactByNameCache.get(name,
+                key -> artifactRepository.findByName(key).orElse(null)));
+    }
+}
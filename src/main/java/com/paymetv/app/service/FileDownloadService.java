@@ -0,0 +1,138 @@
+package com.paymetv.app.service;
+
+import com.paymetv.app.service.pipeline.ImageDerivative;
+import com.paymetv.app.service.pipeline.ImageDerivativeGenerator;
+import com.paymetv.app.service.storage.ContentAddressedStore;
+import com.paymetv.app.service.storage.StoredFile;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Service for reading stored uploads back out of the {@link ContentAddressedStore}.
+ * <p></p>
+ * {@link #transfer} is the fallback for responses the container does not send
+ * itself (see {@code FileDownloadController}'s sendfile path): the range is copied
+ * to the servlet stream through a small buffer, so memory use does not grow with
+ * the file or the range. A servlet stream is not a channel the kernel can write
+ * to, so this copy is never zero-copy.
+ * <p></p>
+ * Thumbnails rendered by the {@link ImageDerivativeGenerator} are served from
+ * here too. They are never rendered on demand: a request thread only ever reads.
+ *
+ * @author PayMeTV Team
+ */
+@Service
+public class FileDownloadService {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private final ContentAddressedStore contentStore;
+
+    public FileDownloadService(ContentAddressedStore contentStore) {
+        this.contentStore = contentStore;
+    }
+
+    /**
+     * Looks up a stored file by its SHA-256.
+     *
+     * @throws IllegalArgumentException if {@code sha256} is not a valid content hash
+     */
+    public Optional<StoredFile> find(String sha256) throws IOException {
+        long size;
+        try {
+            size = contentStore.size(sha256);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+
+        Path localPath = contentStore.localPath(sha256).orElse(null);
+        long lastModified = localPath != null ? Files.getLastModifiedTime(localPath).toMillis() : -1;
+
+        return Optional.of(StoredFile.builder()
+                .hash(sha256)
+                .size(size)
+                .contentType(contentStore.contentType(sha256).orElse(DEFAULT_CONTENT_TYPE))
+                .lastModified(lastModified)
+                .localPath(localPath)
+                .build());
+    }
+
+    /**
+     * Looks up the thumbnail of the given size for a stored image.
+     *
+     * @return empty if the size is not configured or the thumbnail has not been rendered (yet)
+     * @throws IllegalArgumentException if {@code sha256} is not a valid content hash
+     */
+    public Optional<ImageDerivative> findThumbnail(String sha256, int size) throws IOException {
+        for (String extension : new String[]{"jpg", "png"}) {
+            String name = ImageDerivativeGenerator.name(size, extension);
+            if (contentStore.derivativeExists(sha256, name)) {
+                return Optional.of(new ImageDerivative(size, name,
+                        extension.equals("jpg") ? "image/jpeg" : "image/png"));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Size in bytes of a stored thumbnail.
+     */
+    public long thumbnailSize(String sha256, ImageDerivative thumbnail) throws IOException {
+        return contentStore.derivativeSize(sha256, thumbnail.getName());
+    }
+
+    /**
+     * Writes a stored thumbnail to {@code out}.
+     */
+    public void transferThumbnail(String sha256, ImageDerivative thumbnail, OutputStream out) throws IOException {
+        try (InputStream in = contentStore.openDerivative(sha256, thumbnail.getName())) {
+            in.transferTo(out);
+        }
+    }
+
+    /**
+     * Writes {@code length} bytes of the file, starting at {@code start}, to {@code out}.
+     * Local files are read with {@link FileChannel#transferTo}, which copies through
+     * a small buffer of its own when the target is a stream.
+     */
+    public void transfer(StoredFile file, long start, long length, OutputStream out) throws IOException {
+        if (file.getLocalPath() != null) {
+            try (FileChannel in = FileChannel.open(file.getLocalPath(), StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(out);
+                long position = start;
+                long end = start + length;
+                while (position < end) {
+                    long sent = in.transferTo(position, end - position, target);
+                    if (sent <= 0) {
+                        break; // file shrank underneath us; nothing more to send
+                    }
+                    position += sent;
+                }
+            }
+            return;
+        }
+
+        try (InputStream in = contentStore.open(file.getHash())) {
+            in.skipNBytes(start);
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            long remaining = length;
+            int read;
+            while (remaining > 0 && (read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+}
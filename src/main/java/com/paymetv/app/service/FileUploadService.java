@@ -1,17 +1,25 @@
 package com.paymetv.app.service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import com.paymetv.app.service.pipeline.FileUploadedEvent;
+import com.paymetv.app.service.pipeline.FileUploadedPublisher;
+import com.paymetv.app.service.storage.BlobRef;
+import com.paymetv.app.service.storage.ContentAddressedStore;
+import com.paymetv.app.service.upload.FileSignatureDetector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 /**
@@ -20,8 +28,20 @@ import org.springframework.web.multipart.MultipartFile;
  * Responsibilities:
  * - Validate file size (max 2 MB)
  * - Validate MIME type against an allowed list
- * - Save the file to the configured upload directory
+ * - Check the leading bytes of the content really are of that type (see {@link FileSignatureDetector}),
+ *   so a renamed executable is rejected before anything is written
+ * - Save the file to the {@link ContentAddressedStore}, which keeps one copy per distinct content
  * - Return metadata about the saved file
+ * - Announce the file with a {@link FileUploadedEvent}; thumbnails and metadata are
+ *   produced afterwards by the upload pipeline, off the request thread
+ * <p></p>
+ * Two entry points share the same single-pass, hashing writer:
+ * - {@link #saveFile(MultipartFile)} for multipart requests (already buffered by the container)
+ * - {@link #saveStream(InputStream, String, String, long)} for raw request bodies, where the
+ *   size limit is enforced while the bytes arrive
+ * <p></p>
+ * Batch uploads store each file through {@link #saveFile(MultipartFile, Consumer)} and
+ * publish the events of the whole batch together.
  *
  * @author PayMeTV Team
  */
@@ -29,7 +49,10 @@ import org.springframework.web.multipart.MultipartFile;
 @Service
 public class FileUploadService {
   @Autowired
-  private KafkaTemplate<String, Object> kafkaTemplate;
+  private FileUploadedPublisher fileUploadedPublisher;
+
+  @Autowired
+  private ContentAddressedStore contentStore;
 
   private static final Logger log = LoggerFactory.getLogger(FileUploadService.class);
 
@@ -37,7 +60,7 @@ public class FileUploadService {
   public static final long MAX_FILE_SIZE_BYTES = 2L * 1024 * 1024;
 
   /** MIME types permitted for upload. */
-  private static final List<String> ALLOWED_CONTENT_TYPES = List.of(
+  private static final Set<String> ALLOWED_CONTENT_TYPES = Set.of(
         "image/jpeg",
         "image/png",
         "image/gif",
@@ -47,47 +70,110 @@ public class FileUploadService {
         "application/pdf"
   );
 
-  /** Directory where uploaded files are persisted. */
-  // TODO - set this to a PV or S3
-  private static final String UPLOAD_DIR = "uploads";
-
   /**
   * Validates and saves the supplied multipart file.
   *
   * @param file the file received from the HTTP request
-  * @return a map containing originalName, storedName, size, and contentType
+  * @return a map containing originalName, storedName, sha256, deduplicated, size, and contentType
   * @throws IllegalArgumentException if the file fails size or type validation
   * @throws IOException              if the file cannot be written to disk
   */
   public Map<String, Object> saveFile(MultipartFile file) throws IOException {
+    return saveFile(file, fileUploadedPublisher::publish);
+  }
+
+  /**
+  * Validates and saves the supplied multipart file, handing its
+  * {@link FileUploadedEvent} to {@code announce} instead of publishing it.
+  * Used by batch uploads, which publish the events of all files together.
+  *
+  * @param file     the file received from the HTTP request
+  * @param announce receives the event once the file is stored
+  * @return a map containing originalName, storedName, sha256, deduplicated, size, and contentType
+  * @throws IllegalArgumentException if the file fails size or type validation
+  * @throws IOException              if the file cannot be written to disk
+  */
+  public Map<String, Object> saveFile(MultipartFile file, Consumer<FileUploadedEvent> announce)
+          throws IOException {
     validateFile(file);
 
-    Path uploadPath = Paths.get(UPLOAD_DIR);
-    if (!Files.exists(uploadPath)) {
-      Files.createDirectories(uploadPath);
-      log.info("Created upload directory: {}", uploadPath.toAbsolutePath());
+    try (InputStream in = file.getInputStream()) {
+      return store(in, file.getOriginalFilename(), file.getContentType(), announce);
+    }
+  }
+
+  /**
+  * Validates and saves a raw (non-multipart) upload body.
+  * <p></p>
+  * The body is copied straight into its final location in a single pass. The
+  * size limit is checked as the bytes arrive, so an oversized upload is aborted
+  * as soon as it crosses {@link #MAX_FILE_SIZE_BYTES} instead of after it has
+  * been fully received.
+  *
+  * @param in               the request body
+  * @param originalFilename the client-supplied file name, may be {@code null}
+  * @param contentType      the declared MIME type of the body
+  * @param declaredLength   the Content-Length of the request, or {@code -1} if unknown
+  * @return a map containing originalName, storedName, sha256, deduplicated, size, and contentType
+  * @throws IllegalArgumentException if the body fails size or type validation
+  * @throws IOException              if the body cannot be read or written to disk
+  */
+  public Map<String, Object> saveStream(InputStream in, String originalFilename,
+                                        String contentType, long declaredLength) throws IOException {
+    if (declaredLength == 0) {
+      throw new IllegalArgumentException("No file was provided or the file is empty.");
     }
+    validateSize(declaredLength);
+    validateContentType(contentType);
 
-    String originalFilename = file.getOriginalFilename() != null
-            ? file.getOriginalFilename() : "unknown";
-    String extension = extractExtension(originalFilename);
-    String storedFilename = UUID.randomUUID() + extension;
+    return store(in, originalFilename, contentType, fileUploadedPublisher::publish);
+  }
 
-    Path destination = uploadPath.resolve(storedFilename);
-    Files.copy(file.getInputStream(), destination, StandardCopyOption.REPLACE_EXISTING);
-    log.info("Saved file '{}' as '{}' ({} bytes)",
-            originalFilename, storedFilename,
-            file.getSize());
+  /**
+  * Assembles previously received parts, in order, into a new stored file.
+  * <p></p>
+  * Parts are copied with {@link FileChannel#transferTo}, so the data moves
+  * between files inside the kernel instead of through heap buffers.
+  *
+  * @param parts            the part files, in assembly order
+  * @param originalFilename the client-supplied file name, may be {@code null}
+  * @param contentType      the declared MIME type of the file
+  * @return a map containing originalName, storedName, sha256, deduplicated, size, and contentType
+  * @throws IllegalArgumentException if the MIME type is not allowed
+  * @throws IOException              if a part cannot be read or the file cannot be written
+  */
+  public Map<String, Object> saveParts(List<Path> parts, String originalFilename,
+                                       String contentType) throws IOException {
+    validateContentType(contentType);
+    validateSignature(contentType, parts);
 
-    kafkaTemplate.send("file-uploaded", "Hello World");
+    String originalName = originalFilename != null ? originalFilename : "unknown";
+    Path assembled = contentStore.newTempFile();
 
-    return Map.of(
-            "originalName", originalFilename,
-            "storedName", storedFilename,
-            "size", file.getSize(),
-            "contentType", file.getContentType() != null ? file.getContentType() : "unknown",
-            "path", destination.toAbsolutePath().toString()
-    );
+    long size = 0;
+    boolean completed = false;
+    try (FileChannel out = FileChannel.open(assembled, StandardOpenOption.WRITE)) {
+      for (Path part : parts) {
+        try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+          long partSize = in.size();
+          long position = 0;
+          while (position < partSize) {
+            position += in.transferTo(position, partSize - position, out);
+          }
+          size += partSize;
+        }
+      }
+      completed = true;
+    } finally {
+      if (!completed) {
+        Files.deleteIfExists(assembled);
+      }
+    }
+
+    BlobRef blob = contentStore.storeFile(assembled);
+    log.info("Assembled {} parts of '{}' as blob {} ({} bytes, deduplicated={})",
+            parts.size(), originalName, blob.getHash(), size, blob.isDeduplicated());
+    return uploaded(originalName, blob, contentType, fileUploadedPublisher::publish);
   }
 
   /**
@@ -101,14 +187,107 @@ public class FileUploadService {
       throw new IllegalArgumentException("No file was provided or the file is empty.");
     }
 
-    if (file.getSize() > MAX_FILE_SIZE_BYTES) {
+    validateSize(file.getSize());
+    validateContentType(file.getContentType());
+  }
+
+  // -------------------------------------------------------------------------
+  // Helpers
+  // -------------------------------------------------------------------------
+
+  private Map<String, Object> store(InputStream in, String originalName, String contentType,
+                                    Consumer<FileUploadedEvent> announce) throws IOException {
+    String originalFilename = originalName != null ? originalName : "unknown";
+
+    // Sniff the header and push it back, so the store still sees the whole stream
+    PushbackInputStream body = new PushbackInputStream(in, FileSignatureDetector.HEADER_LENGTH);
+    byte[] header = new byte[FileSignatureDetector.HEADER_LENGTH];
+    int headerLength = body.readNBytes(header, 0, header.length);
+    validateSignature(contentType, header, headerLength);
+    body.unread(header, 0, headerLength);
+
+    BlobRef blob = contentStore.store(body, MAX_FILE_SIZE_BYTES);
+    log.info("Saved file '{}' as blob {} ({} bytes, deduplicated={})",
+            originalFilename, blob.getHash(), blob.getSize(), blob.isDeduplicated());
+
+    return uploaded(originalFilename, blob, contentType, announce);
+  }
+
+  private Map<String, Object> uploaded(String originalFilename, BlobRef blob, String contentType,
+                                       Consumer<FileUploadedEvent> announce) throws IOException {
+    contentStore.recordContentType(blob.getHash(), contentType);
+
+    // The blob is durable at this point; the event is sent in the background
+    announce.accept(FileUploadedEvent.builder()
+            .storedName(blob.getHash())
+            .originalName(originalFilename)
+            .sha256(blob.getHash())
+            .size(blob.getSize())
+            .contentType(contentType)
+            .deduplicated(blob.isDeduplicated())
+            .uploadedAt(System.currentTimeMillis())
+            .build());
+
+    return Map.of(
+            "originalName", originalFilename,
+            "storedName", blob.getHash(),
+            "sha256", blob.getHash(),
+            "deduplicated", blob.isDeduplicated(),
+            "size", blob.getSize(),
+            "contentType", contentType != null ? contentType : "unknown",
+            "path", blob.getLocation()
+    );
+  }
+
+  private void validateSize(long size) {
+    if (size > MAX_FILE_SIZE_BYTES) {
       throw new IllegalArgumentException(
                 String.format("File size %d bytes exceeds the maximum allowed size of %d bytes.",
-                        file.getSize(), MAX_FILE_SIZE_BYTES)
+                        size, MAX_FILE_SIZE_BYTES)
+        );
+    }
+  }
+
+  private void validateSignature(String contentType, List<Path> parts) throws IOException {
+    // The signature may straddle the first few (tiny) parts
+    byte[] header = new byte[FileSignatureDetector.HEADER_LENGTH];
+    int headerLength = 0;
+    for (Path part : parts) {
+      if (headerLength == header.length) {
+        break;
+      }
+      try (InputStream in = Files.newInputStream(part)) {
+        headerLength += in.readNBytes(header, headerLength, header.length - headerLength);
+      }
+    }
+    validateSignature(contentType, header, headerLength);
+  }
+
+  /**
+  * Checks that the file content starts with the signature of its declared MIME type.
+  *
+  * @param contentType  the declared MIME type, already known to be allowed
+  * @param header       the first bytes of the content
+  * @param headerLength how many bytes of {@code header} are valid
+  * @throws IllegalArgumentException when the content is not of the declared type
+  */
+  public void validateSignature(String contentType, byte[] header, int headerLength) {
+    if (!FileSignatureDetector.matches(contentType, header, headerLength)) {
+      String detected = FileSignatureDetector.detect(header, headerLength);
+      throw new IllegalArgumentException(
+                String.format("File content does not match content type '%s' (detected: %s).",
+                        contentType, detected != null ? detected : "unknown")
         );
     }
+  }
 
-    String contentType = file.getContentType();
+  /**
+  * Validates a MIME type against the allowed list.
+  *
+  * @param contentType the MIME type to check
+  * @throws IllegalArgumentException when the type is missing or not allowed
+  */
+  public void validateContentType(String contentType) {
     if (contentType == null || !ALLOWED_CONTENT_TYPES.contains(contentType)) {
       throw new IllegalArgumentException(
                 String.format("Content type '%s' is not allowed. Permitted types: %s",
@@ -117,15 +296,6 @@ public class FileUploadService {
     }
   }
 
-  // -------------------------------------------------------------------------
-  // Helpers
-  // -------------------------------------------------------------------------
-
-  private String extractExtension(String filename) {
-    int dot = filename.lastIndexOf('.');
-    return dot >= 0 ? filename.substring(dot) : "";
-  }
-
   public String sayHi() {
     return "Hello Kafka from file upload service.";
   }
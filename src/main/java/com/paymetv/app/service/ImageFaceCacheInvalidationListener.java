@@ -0,0 +1,173 @@
+package com.paymetv.app.service;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.PartitionInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.TopicPartitionOffset;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evicts ImageFaces from this pod's cache when any pod changes them.
+ * <p></p>
+ * Every change to an ImageFace is published on {@link ImageFaceService#EVENTS_TOPIC}
+ * by the outbox relay, keyed by the ImageFace's id. Each pod is assigned every
+ * partition of the topic, outside any consumer group, so every pod sees every event,
+ * starting from the latest: a pod that has just started has nothing cached yet.
+ * Nothing is committed, and no group is left behind when a pod goes. A cached ImageFace
+ * is therefore stale on other pods for at most the relay's delay, and the cache's
+ * expiry bounds it should an event ever be missed.
+ * <p></p>
+ * The topic's partitions are looked up in the background once the application has
+ * started, every {@code app.cache.imageface.assign-retry-ms} until the broker answers,
+ * so a pod starts even while Kafka is unreachable; until then only the cache's expiry
+ * bounds staleness. Partitions added to the topic later are picked up on restart.
+ * <p></p>
+ * Like the other listeners, it only runs when Kafka listeners are enabled.
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class ImageFaceCacheInvalidationListener implements SmartLifecycle {
+
+    static final String LISTENER_ID = "image-face-cache-invalidation";
+
+    private static final Logger log = LoggerFactory.getLogger(ImageFaceCacheInvalidationListener.class);
+
+    private static final Duration PARTITIONS_TIMEOUT = Duration.ofSeconds(10);
+
+    private final ImageFaceService imageFaceService;
+    private final ConcurrentKafkaListenerContainerFactory<String, String> containerFactory;
+    private final ObjectProvider<KafkaListenerEndpointRegistry> listenerRegistry;
+    private final long assignRetryMs;
+
+    private ScheduledThreadPoolExecutor assigner;
+    private volatile ConcurrentMessageListenerContainer<String, String> container;
+    private volatile boolean running;
+
+    public ImageFaceCacheInvalidationListener(
+            ImageFaceService imageFaceService,
+            @Qualifier("broadcastKafkaListenerContainerFactory")
+            ConcurrentKafkaListenerContainerFactory<String, String> containerFactory,
+            ObjectProvider<KafkaListenerEndpointRegistry> listenerRegistry,
+            @Value("${app.cache.imageface.assign-retry-ms:5000}") long assignRetryMs) {
+        this.imageFaceService = imageFaceService;
+        this.containerFactory = containerFactory;
+        this.listenerRegistry = listenerRegistry;
+        this.assignRetryMs = assignRetryMs;
+    }
+
+    @Override
+    public synchronized void start() {
+        // The registry only exists when Spring Boot enables Kafka listeners
+        if (running || listenerRegistry.getIfAvailable() == null) {
+            return;
+        }
+        running = true;
+        assigner = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, LISTENER_ID + "-assigner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        assigner.execute(this::assign);
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (assigner != null) {
+            assigner.shutdownNow();
+        }
+        if (container != null) {
+            container.stop();
+            container = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * The listener's container, once the topic's partitions are known.
+     */
+    public Optional<MessageListenerContainer> container() {
+        return Optional.ofNullable(container);
+    }
+
+    void onImageFaceEvent(ConsumerRecord<String, ?> record) {
+        try {
+            imageFaceService.evict(Long.valueOf(record.key()));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring {} event with key '{}', not an ImageFace id", ImageFaceService.EVENTS_TOPIC, record.key());
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    /** Assigns every partition of the topic to a new container, or tries again later. */
+    private void assign() {
+        List<PartitionInfo> partitions;
+        try (Consumer<?, ?> consumer = containerFactory.getConsumerFactory().createConsumer()) {
+            partitions = consumer.partitionsFor(ImageFaceService.EVENTS_TOPIC, PARTITIONS_TIMEOUT);
+        } catch (KafkaException e) {
+            if (!running) {
+                return; // interrupted by stop()
+            }
+            log.warn("Cannot list the partitions of {} yet, retrying in {} ms: {}",
+                    ImageFaceService.EVENTS_TOPIC, assignRetryMs, e.getMessage());
+            partitions = List.of();
+        }
+        if (partitions == null || partitions.isEmpty()) {
+            retryLater();
+            return;
+        }
+
+        ConcurrentMessageListenerContainer<String, String> created = containerFactory.createContainer(
+                partitions.stream()
+                        .map(partition -> new TopicPartitionOffset(partition.topic(), partition.partition()))
+                        .toArray(TopicPartitionOffset[]::new));
+        created.setBeanName(LISTENER_ID);
+        created.setupMessageListener((MessageListener<String, String>) this::onImageFaceEvent);
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            container = created;
+            created.start();
+        }
+        log.info("Evicting ImageFaces on events from all {} partitions of {}",
+                partitions.size(), ImageFaceService.EVENTS_TOPIC);
+    }
+
+    private void retryLater() {
+        try {
+            if (running) {
+                assigner.schedule(this::assign, assignRetryMs, TimeUnit.MILLISECONDS);
+            }
+        } catch (RejectedExecutionException e) {
+            // Stopped in between
+        }
+    }
+}
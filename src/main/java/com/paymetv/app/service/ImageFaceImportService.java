@@ -0,0 +1,195 @@
+package com.paymetv.app.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.paymetv.app.domain.Artifact;
+import com.paymetv.app.domain.ImageFace;
+import com.paymetv.app.domain.Users;
+import com.paymetv.app.service.outbox.Outbox;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports ImageFaces, with their artifacts, in bulk.
+ * <p></p>
+ * The input is read as it arrives, either as one JSON array or as NDJSON, and is
+ * written in chunks of {@code app.imageface.import.chunk-size} items, one transaction
+ * each. Within a chunk Hibernate sends the inserts as JDBC batches
+ * ({@code hibernate.jdbc.batch_size}, with {@code order_inserts} grouping them by
+ * table), which the pooled ids make possible; the ImageFaceCreated events go to the
+ * {@link Outbox} as one more batch. The persistence context is cleared after every
+ * chunk, so memory does not grow with the input.
+ * <p></p>
+ * Each item is {@code {"artifact": {...}, "imageFace": {...}}}, as for a single create.
+ * An artifact with an id refers to an existing one; one without is created, together
+ * with its user unless that has an id. A chunk that fails is rolled back, but the
+ * chunks before it stay committed. Progress is logged after every chunk.
+ * <p></p>
+ * Metrics:
+ * - {@code imageface_import_rows_total}: ImageFaces committed by imports
+ * - {@code imageface_import_chunk_seconds}: time to write and commit one chunk
+ *
+ * @author PayMeTV Team
+ */
+@Slf4j
+@Service
+public class ImageFaceImportService {
+
+    private static final String AGGREGATE_TYPE = "ImageFace";
+
+    /** One item of the input. */
+    public record ImportItem(Artifact artifact, ImageFace imageFace) {
+    }
+
+    /** Where an import stands, logged after each chunk and returned at the end. */
+    public record ImportProgress(long rows, long chunks, long elapsedMillis, long rowsPerSecond) {
+
+        ImportProgress(long rows, long chunks, long elapsedMillis) {
+            this(rows, chunks, elapsedMillis, elapsedMillis == 0 ? rows : rows * 1000 / elapsedMillis);
+        }
+    }
+
+    private final ObjectReader itemReader;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Outbox outbox;
+    private final MeterRegistry meterRegistry;
+    private final Counter rowsCounter;
+    private final int chunkSize;
+
+    public ImageFaceImportService(ObjectMapper objectMapper, EntityManager entityManager,
+                                  PlatformTransactionManager transactionManager, Outbox outbox,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.imageface.import.chunk-size:1000}") int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalStateException("app.imageface.import.chunk-size must be positive, got " + chunkSize);
+        }
+        this.itemReader = objectMapper.readerFor(ImportItem.class);
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.outbox = outbox;
+        this.meterRegistry = meterRegistry;
+        this.rowsCounter = meterRegistry.counter("imageface_import_rows_total");
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Imports every item of {@code in}.
+     *
+     * @param in a JSON array of items, or items one per line
+     * @return the rows committed and the time it took
+     * @throws IllegalArgumentException if the input is not valid JSON or an item is
+     *                                  incomplete; the chunks before it stay committed
+     */
+    public ImportProgress importAll(InputStream in) throws IOException {
+        long start = System.nanoTime();
+        long rows = 0;
+        long chunks = 0;
+        List<ImportItem> chunk = new ArrayList<>(chunkSize);
+        // readValues unwraps a top-level array, and otherwise reads one value after another
+        try (MappingIterator<ImportItem> items = itemReader.readValues(in)) {
+            ImportItem item;
+            while ((item = next(items, rows + chunk.size(), rows)) != null) {
+                validate(item, rows + chunk.size(), rows);
+                chunk.add(item);
+                if (chunk.size() == chunkSize) {
+                    rows += write(chunk);
+                    chunks++;
+                    chunk.clear();
+                    log.info("Import in progress: {}", progress(rows, chunks, start));
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            rows += write(chunk);
+            chunks++;
+        }
+        ImportProgress done = progress(rows, chunks, start);
+        log.info("Import done: {}", done);
+        return done;
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    /** The next item, or {@code null} at the end of the input. */
+    private static ImportItem next(MappingIterator<ImportItem> items, long index, long committed) throws IOException {
+        try {
+            return items.hasNextValue() ? items.nextValue() : null;
+        } catch (JsonProcessingException e) {
+            throw invalid(index, committed, e.getOriginalMessage());
+        }
+    }
+
+    private static void validate(ImportItem item, long index, long committed) {
+        ImageFace imageFace = item.imageFace();
+        if (item.artifact() == null || imageFace == null) {
+            throw invalid(index, committed, "artifact and imageFace are required");
+        }
+        if (imageFace.getFront() == null || imageFace.getBack() == null
+                || imageFace.getLeft() == null || imageFace.getRight() == null) {
+            throw invalid(index, committed, "front, back, left and right are required");
+        }
+    }
+
+    private static IllegalArgumentException invalid(long index, long committed, String reason) {
+        return new IllegalArgumentException(String.format(
+                "Item %d: %s (%d rows were committed before it)", index, reason, committed));
+    }
+
+    /** Writes and commits one chunk; returns its size. */
+    private int write(List<ImportItem> chunk) {
+        long start = System.nanoTime();
+        List<ImageFace> created = new ArrayList<>(chunk.size());
+        transactionTemplate.executeWithoutResult(status -> {
+            for (ImportItem item : chunk) {
+                ImageFace imageFace = item.imageFace();
+                imageFace.setId(null);
+                imageFace.setArtifact(artifactOf(item.artifact()));
+                entityManager.persist(imageFace);
+                created.add(imageFace);
+            }
+            // The batched inserts go out before the events that describe them
+            entityManager.flush();
+            outbox.recordAll(ImageFaceService.EVENTS_TOPIC, AGGREGATE_TYPE, "ImageFaceCreated", created,
+                    ImageFace::getId);
+            entityManager.clear();
+        });
+        meterRegistry.timer("imageface_import_chunk_seconds").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        rowsCounter.increment(chunk.size());
+        return chunk.size();
+    }
+
+    private Artifact artifactOf(Artifact artifact) {
+        if (artifact.getId() != null) {
+            return entityManager.getReference(Artifact.class, artifact.getId());
+        }
+        Users user = artifact.getUser();
+        if (user != null && user.getId() != null) {
+            artifact.setUser(entityManager.getReference(Users.class, user.getId()));
+        } else if (user != null) {
+            entityManager.persist(user);
+        }
+        entityManager.persist(artifact);
+        return artifact;
+    }
+
+    private static ImportProgress progress(long rows, long chunks, long startNanos) {
+        return new ImportProgress(rows, chunks, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+}
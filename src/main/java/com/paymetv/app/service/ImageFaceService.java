@@ -1,25 +1,85 @@
 package com.paymetv.app.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
 import com.paymetv.app.domain.Artifact;
 import com.paymetv.app.domain.ImageFace;
 import com.paymetv.app.repository.ArtifactRepository;
 import com.paymetv.app.repository.ImageFaceRepository;
+import com.paymetv.app.service.outbox.Outbox;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Service for ImageFace entities.
+ * <p></p>
+ * Every change is announced on {@link #EVENTS_TOPIC} through the {@link Outbox},
+ * in the same transaction as the change itself. Bulk creates go through
+ * {@link ImageFaceImportService} instead of {@link #createImageFace}.
+ * <p></p>
+ * {@link #findById} reads through the {@code imageface} cache. An update or delete
+ * evicts the entry at once and again when its transaction completes, so a read
+ * racing the change cannot cache the old row for longer than the change takes.
+ * Other pods evict it when the change's event reaches them on {@link #EVENTS_TOPIC}
+ * (see {@link ImageFaceCacheInvalidationListener}).
+ * <p></p>
+ * Listing never loads the whole table:
+ * - {@link #findPage}: keyset pages in id order, each ending with an opaque token
+ *   for the next; a page costs the same however deep it is
+ * - {@link #streamAll}: every row as NDJSON, scrolled from one JDBC result set
+ *   {@code app.imageface.stream.fetch-size} rows at a time, so the heap holds
+ *   one fetch whatever the table size
+ *
+ * @author PayMeTV Team
+ */
 @Service
 public class ImageFaceService {
 
+    public static final String EVENTS_TOPIC = "image-face-events";
+
+    private static final String AGGREGATE_TYPE = "ImageFace";
+    private static final String CURSOR_PREFIX = "id:";
+
+    /** One page of {@link #findPage}; {@code next} is {@code null} on the last page. */
+    public record ImageFacePage(List<ImageFace> items, String next) {
+    }
+
     private final ImageFaceRepository imageFaceRepository;
     private final ArtifactRepository artifactRepository;
     private final JsonPayloadCreatorService jsonPayloadCreatorService;
+    private final Outbox outbox;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final Cache<Long, ImageFace> imageFaceCache;
 
-    public ImageFaceService(ImageFaceRepository imageFaceRepository, ArtifactRepository artifactRepository, JsonPayloadCreatorService jsonPayloadCreatorService) {
+    public ImageFaceService(ImageFaceRepository imageFaceRepository, ArtifactRepository artifactRepository,
+                            JsonPayloadCreatorService jsonPayloadCreatorService, Outbox outbox,
+                            ObjectMapper objectMapper, DataSource dataSource,
+                            @Value("${app.imageface.stream.fetch-size:500}") int fetchSize,
+                            @Qualifier("imageFaceCache") Cache<Long, ImageFace> imageFaceCache) {
         this.imageFaceRepository = imageFaceRepository;
         this.artifactRepository = artifactRepository;
         this.jsonPayloadCreatorService = jsonPayloadCreatorService;
+        this.outbox = outbox;
+        this.objectMapper = objectMapper;
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+        this.imageFaceCache = imageFaceCache;
     }
 
     public static Object getImageFace() {
@@ -34,7 +94,8 @@ public class ImageFaceService {
     public ImageFace createImageFace(ImageFace imageFace, Artifact artifact) {
         imageFace.setArtifact(artifact);
         imageFaceRepository.save(imageFace);
-        return imageFaceRepository.getReferenceById(imageFace.getId());
+        outbox.record(EVENTS_TOPIC, AGGREGATE_TYPE, imageFace.getId(), "ImageFaceCreated", imageFace);
+        return imageFace;
     }
 
     @Transactional
@@ -54,28 +115,81 @@ public class ImageFaceService {
         }
 
         imageFaceRepository.save(existingImageFace);
+        outbox.record(EVENTS_TOPIC, AGGREGATE_TYPE, id, "ImageFaceUpdated", existingImageFace);
+        evictOnCompletion(id);
         return existingImageFace;
     }
 
     /**
-     * Finds an ImageFace by ID.
+     * Finds an ImageFace by ID, from the cache when it holds it.
+     * <p></p>
+     * The ImageFace may be shared with other callers and must not be modified; its
+     * artifact is not loaded.
      *
      * @param id the ID to search for
      * @return the ImageFace entity
      * @throws RuntimeException if not found
      */
     public ImageFace findById(Long id) {
-        return imageFaceRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("ImageFace not found with id: " + id));
+        ImageFace imageFace = imageFaceCache.get(id, key -> imageFaceRepository.findById(key).orElse(null));
+        if (imageFace == null) {
+            throw new RuntimeException("ImageFace not found with id: " + id);
+        }
+        return imageFace;
     }
 
-  /**
-   * Retrieves all ImageFace entities.
-   *
-   * @return list of all ImageFaces
-   */
-   public List<ImageFace> findAll() {
-    return imageFaceRepository.findAll();
+    /** Drops the cached ImageFace {@code id}, if any. */
+    public void evict(Long id) {
+        imageFaceCache.invalidate(id);
+    }
+
+    /**
+     * Retrieves one page of ImageFaces in id order.
+     *
+     * @param cursor the {@code next} token of the previous page, or {@code null} for the first
+     * @param limit  the most ImageFaces to return
+     * @throws IllegalArgumentException if the cursor is not one this service issued
+     */
+    @Transactional(readOnly = true)
+    public ImageFacePage findPage(String cursor, int limit) {
+        // One row more than asked tells whether there is a next page
+        List<ImageFace> rows = imageFaceRepository.findByIdGreaterThanOrderByIdAsc(
+                decodeCursor(cursor), Limit.of(limit + 1));
+        if (rows.size() <= limit) {
+            return new ImageFacePage(rows, null);
+        }
+        List<ImageFace> items = rows.subList(0, limit);
+        return new ImageFacePage(List.copyOf(items), encodeCursor(items.get(limit - 1).getId()));
+    }
+
+    /**
+     * Writes every ImageFace to {@code out} as NDJSON, one object per line in id order,
+     * as the rows are fetched.
+     */
+    public void streamAll(OutputStream out) throws IOException {
+        try {
+            streamingJdbcTemplate.query("SELECT * FROM image_face ORDER BY id", row -> {
+                ImageFace imageFace = ImageFace.builder()
+                        .id(row.getLong("id"))
+                        .front(row.getString("front"))
+                        .back(row.getString("back"))
+                        .left(row.getString("left"))
+                        .right(row.getString("right"))
+                        .top(row.getString("top"))
+                        .bottom(row.getString("bottom"))
+                        .build();
+                try {
+                    out.write(objectMapper.writeValueAsBytes(imageFace));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // The client went away; the result set is closed on the way out
+            throw e.getCause();
+        }
+        out.flush();
     }
 
   /**
@@ -90,9 +204,48 @@ public class ImageFaceService {
       throw new RuntimeException("ImageFace not found with id: " + id);
     }
     imageFaceRepository.deleteById(id);
+    outbox.record(EVENTS_TOPIC, AGGREGATE_TYPE, id, "ImageFaceDeleted", Map.of("id", id));
+    evictOnCompletion(id);
   }
 
     public String sayHi() {
       return "Hello from ImageFaceService!";
     }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    /** Evicts {@code id} now, and again once the current transaction commits or rolls back. */
+    private void evictOnCompletion(Long id) {
+        evict(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(id);
+                }
+            });
+        }
+    }
+
+    private static String encodeCursor(long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_PREFIX + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (decoded.startsWith(CURSOR_PREFIX)) {
+                return Long.parseLong(decoded.substring(CURSOR_PREFIX.length()));
+            }
+        } catch (IllegalArgumentException e) {
+            // Not Base64, or not a number after the prefix; reported below
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
 }
@@ -0,0 +1,58 @@
+package com.paymetv.app.service.kafka;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.serializer.DelegatingByTopicSerializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Kafka serializer writing payloads in the binary form of their {@link AvroSchemas} schema.
+ * <p></p>
+ * {@link #byTopic} combines it with the JSON serializer, so the format is chosen
+ * per topic ({@code app.kafka.serialization.avro-topics}). A payload sent to an
+ * Avro topic must have a schema; it is rejected rather than silently sent as JSON.
+ *
+ * @author PayMeTV Team
+ */
+public class AvroPayloadSerializer implements Serializer<Object> {
+
+    private final AvroSchemas schemas;
+
+    public AvroPayloadSerializer(AvroSchemas schemas) {
+        this.schemas = schemas;
+    }
+
+    /**
+     * Value serializer writing Avro to each of {@code avroTopics} and JSON to every other topic.
+     */
+    public static Serializer<Object> byTopic(Collection<String> avroTopics, AvroSchemas schemas) {
+        Serializer<Object> avro = new AvroPayloadSerializer(schemas);
+        Map<Pattern, Serializer<?>> delegates = new LinkedHashMap<>();
+        for (String topic : avroTopics) {
+            delegates.put(Pattern.compile(Pattern.quote(topic)), avro);
+        }
+        return new DelegatingByTopicSerializer(delegates, new JsonSerializer<>());
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        if (data == null) {
+            return null;
+        }
+        if (!schemas.supports(data.getClass())) {
+            throw new SerializationException(String.format(
+                    "%s is an Avro topic but %s has no schema", topic, data.getClass().getName()));
+        }
+        try {
+            return schemas.encode(data);
+        } catch (RuntimeException e) {
+            throw new SerializationException("Cannot serialize " + data.getClass().getSimpleName()
+                    + " for " + topic, e);
+        }
+    }
+}
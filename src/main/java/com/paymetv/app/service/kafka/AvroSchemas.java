@@ -0,0 +1,127 @@
+package com.paymetv.app.service.kafka;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.message.BinaryMessageDecoder;
+import org.apache.avro.message.BinaryMessageEncoder;
+import org.apache.avro.message.SchemaStore;
+import org.apache.avro.reflect.ReflectData;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Avro schemas of the Kafka payloads, embedded in the application instead of a
+ * schema registry.
+ * <p></p>
+ * The schemas are read from {@code classpath:avro/} and each describes the class
+ * named by its full name, e.g. {@code com.paymetv.app.service.pipeline.FileUploadedEvent}.
+ * Payloads are written and read by reflection on those classes' fields, so the
+ * schema, not the class, decides what goes on the wire.
+ * <p></p>
+ * Messages use Avro's single-object encoding: the marker {@code C3 01}, the 8-byte
+ * fingerprint of the writer's schema, then the binary record. A reader resolves the
+ * fingerprint against the schemas here, the way it would against a registry, so a
+ * schema can change compatibly as long as its old version stays in {@link #SCHEMA_FILES}.
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class AvroSchemas {
+
+    /** Schema files under {@code classpath:avro/}; a schema must follow the ones it refers to. */
+    public static final List<String> SCHEMA_FILES = List.of(
+            "users.avsc",
+            "artifact.avsc",
+            "image-face.avsc",
+            "image-metadata.avsc",
+            "file-uploaded-event.avsc"
+    );
+
+    private static final byte[] MARKER = {(byte) 0xC3, (byte) 0x01};
+
+    private final ReflectData model = ReflectData.get();
+    private final Map<String, Schema> schemasByClass = new HashMap<>();
+    private final SchemaStore.Cache store = new SchemaStore.Cache();
+    private final Map<Class<?>, BinaryMessageEncoder<Object>> encoders = new ConcurrentHashMap<>();
+    private final Map<Class<?>, BinaryMessageDecoder<Object>> decoders = new ConcurrentHashMap<>();
+
+    public AvroSchemas() {
+        Schema.Parser parser = new Schema.Parser();
+        for (String file : SCHEMA_FILES) {
+            try (InputStream in = AvroSchemas.class.getResourceAsStream("/avro/" + file)) {
+                if (in == null) {
+                    throw new IllegalStateException("Missing Avro schema avro/" + file);
+                }
+                Schema schema = parser.parse(in);
+                schemasByClass.put(schema.getFullName(), schema);
+                store.addSchema(schema);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read Avro schema avro/" + file, e);
+            }
+        }
+    }
+
+    /** Whether {@code data} starts like a message written by {@link #encode}. */
+    public static boolean isAvro(byte[] data) {
+        return data != null && data.length > MARKER.length && data[0] == MARKER[0] && data[1] == MARKER[1];
+    }
+
+    /** Whether payloads of {@code type} have a schema. */
+    public boolean supports(Class<?> type) {
+        return schemasByClass.containsKey(type.getName());
+    }
+
+    /**
+     * The single-object encoding of {@code payload}.
+     *
+     * @throws IllegalArgumentException if the payload's class has no schema
+     */
+    public byte[] encode(Object payload) {
+        BinaryMessageEncoder<Object> encoder = encoders.computeIfAbsent(payload.getClass(),
+                type -> new BinaryMessageEncoder<>(model, schemaFor(type)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        try {
+            encoder.encode(payload, out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write " + payload.getClass().getSimpleName() + " as Avro", e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads a message written by {@link #encode} with any registered version of
+     * {@code type}'s schema.
+     *
+     * @throws IllegalArgumentException if {@code type} has no schema
+     * @throws IOException if the message is truncated or its writer's schema is unknown
+     */
+    public <T> T decode(byte[] data, Class<T> type) throws IOException {
+        BinaryMessageDecoder<Object> decoder = decoders.computeIfAbsent(type,
+                key -> new BinaryMessageDecoder<>(model, schemaFor(key), store));
+        try {
+            return type.cast(decoder.decode(data));
+        } catch (AvroRuntimeException e) {
+            throw new IOException("Unreadable Avro " + type.getSimpleName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private Schema schemaFor(Class<?> type) {
+        Schema schema = schemasByClass.get(type.getName());
+        if (schema == null) {
+            throw new IllegalArgumentException("No Avro schema for " + type.getName()
+                    + "; add one to avro/ and AvroSchemas.SCHEMA_FILES");
+        }
+        return schema;
+    }
+}
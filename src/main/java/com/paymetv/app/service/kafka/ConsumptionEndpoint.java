@@ -0,0 +1,30 @@
+package com.paymetv.app.service.kafka;
+
+import com.paymetv.app.service.kafka.ConsumptionMetrics.ConsumedMessage;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint ({@code /actuator/consumption}) listing the messages
+ * {@link ConsumptionMetrics} sampled most recently, oldest first.
+ *
+ * @author PayMeTV Team
+ */
+@Component
+@Endpoint(id = "consumption")
+public class ConsumptionEndpoint {
+
+    private final ConsumptionMetrics consumptionMetrics;
+
+    public ConsumptionEndpoint(ConsumptionMetrics consumptionMetrics) {
+        this.consumptionMetrics = consumptionMetrics;
+    }
+
+    @ReadOperation
+    public List<ConsumedMessage> recent() {
+        return consumptionMetrics.recent();
+    }
+}
@@ -0,0 +1,243 @@
+package com.paymetv.app.service.kafka;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Observes every message {@link GenericConsumer} handles, without locking its threads.
+ * <p></p>
+ * Recording a message only adds to per-topic {@link LongAdder}s, records a timer and,
+ * for one message in {@code app.kafka.consumer.observe.sample-every}, writes a copy of
+ * it into a ring buffer of the last {@code app.kafka.consumer.observe.recent-capacity}
+ * samples. Sampled payloads are cut to {@code preview-chars}; nothing else keeps a
+ * reference to a payload once it is handled.
+ * <p></p>
+ * {@link #observe} and {@link #next} let callers (tests, diagnostics) watch messages
+ * as they are handled; with no observer registered they cost nothing.
+ * <p></p>
+ * Metrics, tagged with {@code topic}:
+ * - {@code kafka_consumer_messages_total}: messages handled, also tagged with
+ *   {@code outcome} (processed, or failed and moved to a retry tier)
+ * - {@code kafka_consumer_processing_seconds}: time to handle one message, as a histogram
+ * - {@code kafka_consumer_lag}: records behind the end of each assigned partition, also
+ *   tagged with {@code partition}, as of the consumer's last poll; removed when the
+ *   partition is revoked (see {@link #lagRebalanceListener})
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class ConsumptionMetrics {
+
+    /**
+     * A handled message. {@code partition} and {@code offset} are -1 for messages
+     * handed to {@link GenericConsumer#consume} without their record.
+     */
+    public record ConsumedMessage(String topic, int partition, long offset, String payload, boolean failed,
+                                  Instant consumedAt) {
+
+        private ConsumedMessage preview(int chars) {
+            return payload == null || payload.length() <= chars ? this
+                    : new ConsumedMessage(topic, partition, offset, payload.substring(0, chars) + "...", failed, consumedAt);
+        }
+    }
+
+    /** A registered observer; closing it stops the calls. */
+    public interface Observation extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final int sampleEvery;
+    private final int previewChars;
+    private final AtomicReferenceArray<ConsumedMessage> recent;
+    private final AtomicLong sampled = new AtomicLong();
+    private final Map<String, TopicMeters> topics = new ConcurrentHashMap<>();
+    private final Map<TopicPartition, PartitionLag> lags = new ConcurrentHashMap<>();
+    private final List<java.util.function.Consumer<ConsumedMessage>> observers = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public ConsumptionMetrics(MeterRegistry meterRegistry,
+                              @Value("${app.kafka.consumer.observe.recent-capacity:100}") int recentCapacity,
+                              @Value("${app.kafka.consumer.observe.sample-every:100}") int sampleEvery,
+                              @Value("${app.kafka.consumer.observe.preview-chars:256}") int previewChars) {
+        if (recentCapacity <= 0 || sampleEvery <= 0 || previewChars <= 0) {
+            throw new IllegalStateException(String.format(
+                    "recent-capacity, sample-every and preview-chars must be positive, got %d, %d and %d",
+                    recentCapacity, sampleEvery, previewChars));
+        }
+        this.meterRegistry = meterRegistry;
+        this.sampleEvery = sampleEvery;
+        this.previewChars = previewChars;
+        this.recent = new AtomicReferenceArray<>(recentCapacity);
+    }
+
+    /**
+     * Records a handled message.
+     *
+     * @param elapsedNanos time the handler took
+     * @param failed       whether the handler threw
+     */
+    public void record(String topic, int partition, long offset, String payload, long elapsedNanos, boolean failed) {
+        TopicMeters meters = topics.computeIfAbsent(topic, this::register);
+        (failed ? meters.failed : meters.processed).increment();
+        meters.processing.record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        boolean sample = sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0;
+        if (!sample && observers.isEmpty()) {
+            return;
+        }
+        ConsumedMessage message = new ConsumedMessage(topic, partition, offset, payload, failed, Instant.now());
+        if (sample) {
+            recent.set((int) (sampled.getAndIncrement() % recent.length()), message.preview(previewChars));
+        }
+        for (java.util.function.Consumer<ConsumedMessage> observer : observers) {
+            observer.accept(message);
+        }
+    }
+
+    /**
+     * Updates the lag gauges of every partition assigned to {@code consumer}.
+     * Only reads what the last poll fetched, so it is cheap enough to call per poll.
+     *
+     * @param consumer a listener container's consumer; only called from its own thread
+     */
+    public void recordLag(Consumer<?, ?> consumer) {
+        for (TopicPartition partition : consumer.assignment()) {
+            OptionalLong lag = consumer.currentLag(partition);
+            if (lag.isPresent()) {
+                lags.computeIfAbsent(partition, this::registerLag).value().set(lag.getAsLong());
+            }
+        }
+    }
+
+    /**
+     * Removes the lag gauges of partitions a consumer gave up, so that after a rebalance
+     * a pod stops reporting the lag of partitions another pod now consumes. Set on the
+     * containers whose listeners call {@link #recordLag}.
+     */
+    public ConsumerRebalanceListener lagRebalanceListener() {
+        return new ConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                removeLag(partitions);
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                // Registered by the next recordLag
+            }
+
+            @Override
+            public void onPartitionsLost(Collection<TopicPartition> partitions) {
+                removeLag(partitions);
+            }
+        };
+    }
+
+    /** The sampled messages, oldest first, with their payloads cut to {@code preview-chars}. */
+    public List<ConsumedMessage> recent() {
+        long end = sampled.get();
+        List<ConsumedMessage> messages = new ArrayList<>(recent.length());
+        for (long i = Math.max(0, end - recent.length()); i < end; i++) {
+            ConsumedMessage message = recent.get((int) (i % recent.length()));
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    /** Messages handled from {@code topic} so far, processed and failed. */
+    public long count(String topic) {
+        TopicMeters meters = topics.get(topic);
+        return meters == null ? 0 : meters.processed.sum() + meters.failed.sum();
+    }
+
+    /**
+     * Calls {@code observer} with every message handled from now on, on the consumer's
+     * thread, until the returned handle is closed.
+     */
+    public Observation observe(java.util.function.Consumer<ConsumedMessage> observer) {
+        observers.add(observer);
+        return () -> observers.remove(observer);
+    }
+
+    /** Completes with the next handled message that matches {@code filter}. */
+    public CompletableFuture<ConsumedMessage> next(Predicate<ConsumedMessage> filter) {
+        CompletableFuture<ConsumedMessage> next = new CompletableFuture<>();
+        Observation observation = observe(message -> {
+            if (filter.test(message)) {
+                next.complete(message);
+            }
+        });
+        next.whenComplete((message, error) -> observation.close());
+        return next;
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private record TopicMeters(LongAdder processed, LongAdder failed, Timer processing) {
+    }
+
+    private record PartitionLag(AtomicLong value, Gauge gauge) {
+    }
+
+    private TopicMeters register(String topic) {
+        LongAdder processed = new LongAdder();
+        LongAdder failed = new LongAdder();
+        FunctionCounter.builder("kafka_consumer_messages_total", processed, LongAdder::sum)
+                .tags("topic", topic, "outcome", "processed").register(meterRegistry);
+        FunctionCounter.builder("kafka_consumer_messages_total", failed, LongAdder::sum)
+                .tags("topic", topic, "outcome", "failed").register(meterRegistry);
+        Timer processing = Timer.builder("kafka_consumer_processing_seconds")
+                .tag("topic", topic)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        return new TopicMeters(processed, failed, processing);
+    }
+
+    private PartitionLag registerLag(TopicPartition partition) {
+        AtomicLong value = new AtomicLong();
+        Gauge gauge = Gauge.builder("kafka_consumer_lag", value, AtomicLong::get)
+                .tags(Tags.of("topic", partition.topic(), "partition", String.valueOf(partition.partition())))
+                .register(meterRegistry);
+        return new PartitionLag(value, gauge);
+    }
+
+    private void removeLag(Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            PartitionLag lag = lags.remove(partition);
+            if (lag != null) {
+                meterRegistry.remove(lag.gauge());
+            }
+        }
+    }
+}
@@ -1,20 +1,58 @@
 package com.paymetv.app.service.kafka;
 
-import com.paymetv.app.service.FileUploadService;
-import com.paymetv.app.service.ImageFaceService;
-import lombok.Getter;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
-import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.handler.annotation.Header;
-import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.CountDownLatch;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Consumes the ML topics listed in {@code app.kafka.topics} and publishes a
+ * result per message to {@code topic-processed-results}, through the
+ * {@link com.paymetv.app.config.ProducerProfile#THROUGHPUT throughput} producer.
+ * <p></p>
+ * Messages are handled by the {@link TopicHandler} registered for their topic
+ * (see {@link TopicHandlerRegistry}). Every handler has its own listener
+ * container ({@code TopicHandlerListenerConfig}), which calls one of:
+ * - {@link #consume}: once per message ({@code app.kafka.consumer.mode=record}, the default)
+ * - {@link #consumeBatch}: once per poll ({@code app.kafka.consumer.mode=batch}); the
+ *   records are handled topic by topic, all results are sent without waiting between
+ *   them, and the batch's offsets are committed once, after every result has been
+ *   acknowledged by the broker; a result that is not names its record to the
+ *   container's error handler
+ * - {@link #consumeParallel}: once per poll ({@code app.kafka.consumer.mode=parallel}); the
+ *   records are spread over the {@link KeyOrderedExecutor}'s worker pool, in order per
+ *   key, so even a single partition is handled on every core. Each partition's offset
+ *   is committed up to its highest contiguously completed record
+ * - {@link #consumeTransactional}: once per poll ({@code app.kafka.consumer.mode=transactional});
+ *   the results and the batch's offsets are committed in one Kafka transaction, so
+ *   after a crash every message has exactly one visible result
+ * <p></p>
+ * A message whose handler throws is moved to its topic's first retry tier (see
+ * {@link RetryTopics}) and the partition carries on: by the container's error
+ * handler in record mode, by {@link RetryTopicRecoverer} directly in the others.
+ * <p></p>
+ * Every handled message is recorded in {@link ConsumptionMetrics}.
+ */
 @ConfigurationProperties(prefix = "app.kafka")
 @Component
 public class GenericConsumer {
@@ -23,58 +61,204 @@ public class GenericConsumer {
 
     private static final String RESULTS_TOPIC = "topic-processed-results";
 
-    private final FileUploadService fileUploadService;
-    private final ImageFaceService imageFaceService;
+    private final TopicHandlerRegistry topicHandlers;
     private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final KafkaTemplate<String, Object> transactionalKafkaTemplate;
+    private final KeyOrderedExecutor keyOrderedExecutor;
+    private final ConsumerRecordRecoverer retryTopicRecoverer;
+    private final ConsumptionMetrics consumptionMetrics;
 
-    @Getter
-    private volatile CountDownLatch latch = new CountDownLatch(1);
-    @Getter
-    private volatile String lastMessage;
-    @Getter
-    private volatile String lastTopic;
-
-    public GenericConsumer(FileUploadService fileUploadService,
-                           ImageFaceService imageFaceService,
-                           KafkaTemplate<String, Object> kafkaTemplate) {
-        this.fileUploadService = fileUploadService;
-        this.imageFaceService = imageFaceService;
+    @Value("${app.kafka.consumer.batch.publish-timeout-ms:30000}")
+    private long publishTimeoutMs = 30_000;
+
+    public GenericConsumer(TopicHandlerRegistry topicHandlers,
+                           @Qualifier("throughputKafkaTemplate") KafkaTemplate<String, Object> kafkaTemplate,
+                           @Qualifier("transactionalKafkaTemplate") KafkaTemplate<String, Object> transactionalKafkaTemplate,
+                           KeyOrderedExecutor keyOrderedExecutor,
+                           ConsumerRecordRecoverer retryTopicRecoverer,
+                           ConsumptionMetrics consumptionMetrics) {
+        this.topicHandlers = topicHandlers;
         this.kafkaTemplate = kafkaTemplate;
+        this.transactionalKafkaTemplate = transactionalKafkaTemplate;
+        this.keyOrderedExecutor = keyOrderedExecutor;
+        this.retryTopicRecoverer = retryTopicRecoverer;
+        this.consumptionMetrics = consumptionMetrics;
+    }
+
+    public void consume(String message, String topic) {
+        consume(message, topic, -1, -1);
     }
 
-    @KafkaListener(
-            topics = "#{'${app.kafka.topics}'.split(',')}",
-            groupId = "ml-learning-group",
-            concurrency = "3"
-    )
-    public void consume(@Payload String message,
-                        @Header(KafkaHeaders.RECEIVED_TOPIC) String topic) {
-
-        lastMessage = message;
-        lastTopic = topic;
-
-        String result = switch (topic) {
-            case "topic-file-upload" -> fileUploadService.sayHi();
-            case "topic-image-face" -> imageFaceService.sayHi();
-            case "generic-producer-test" -> "Generic producer test selected";
-            case "test-topic1" -> "Local kafka test message received " + topic;
-            case "test-topic2" -> "Local kafka test message received " + topic;
-            case "test-topic3" -> "Local kafka test message received " + topic;
-            default -> "Received message from unknown topic: " + topic;
-        };
+    /**
+     * Handles one message of {@code partition} at {@code offset}. A handler failure is
+     * thrown on, for the container's error handler.
+     */
+    public void consume(String message, String topic, int partition, long offset) {
+        long start = System.nanoTime();
+        String result;
+        try {
+            result = topicHandlers.handle(topic, message);
+        } catch (RuntimeException e) {
+            consumptionMetrics.record(topic, partition, offset, message, System.nanoTime() - start, true);
+            throw e;
+        }
+        consumptionMetrics.record(topic, partition, offset, message, System.nanoTime() - start, false);
 
         log.info(result);
 //        log.info("enriched payload result: {}" ,result);
 
-        kafkaTemplate.send("topic-processed-results",
+        kafkaTemplate.send(RESULTS_TOPIC,
                 topic + ": " + message + " -> " + result);
+    }
+
+    /**
+     * Handles one poll's worth of records.
+     * <p></p>
+     * If a result is not acknowledged within {@code app.kafka.consumer.batch.publish-timeout-ms},
+     * a {@link BatchListenerFailedException} names the first record whose result is
+     * missing. The container's error handler then commits the records before it, moves
+     * that record to its retry tier, and redelivers the records after it; records
+     * before it are neither published nor moved to a retry tier again.
+     */
+    public void consumeBatch(List<ConsumerRecord<String, String>> records) throws InterruptedException {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<Integer>> byTopic = new LinkedHashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            byTopic.computeIfAbsent(records.get(i).topic(), topic -> new ArrayList<>()).add(i);
+        }
+
+        // Indexed like records; null where the record went to its retry tier instead
+        List<CompletableFuture<?>> sends = new ArrayList<>(Collections.nCopies(records.size(), null));
+        for (Map.Entry<String, List<Integer>> group : byTopic.entrySet()) {
+            String topic = group.getKey();
+            for (int i : group.getValue()) {
+                ConsumerRecord<String, String> record = records.get(i);
+                String result = handleOrRetryLater(record);
+                if (result != null) {
+                    sends.set(i, kafkaTemplate.send(RESULTS_TOPIC, topic + ": " + record.value() + " -> " + result));
+                }
+            }
+            topicHandlers.recordBatch(topic, group.getValue().size());
+            log.info("Processed {} messages from {}", group.getValue().size(), topic);
+        }
+
+        // The container commits the batch when this returns, so every result must be written first
+        try {
+            CompletableFuture.allOf(sends.stream().filter(Objects::nonNull).toArray(CompletableFuture[]::new))
+                    .get(publishTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            for (int i = 0; i < sends.size(); i++) {
+                CompletableFuture<?> send = sends.get(i);
+                if (send != null && (!send.isDone() || send.isCompletedExceptionally())) {
+                    throw new BatchListenerFailedException("Result of a batch's message not published", e, records.get(i));
+                }
+            }
+            throw new IllegalStateException("Results of a batch failed but none is missing", e);
+        }
+    }
+
+    /**
+     * Handles one poll's worth of records inside the container's Kafka transaction.
+     * <p></p>
+     * Results are sent through the transactional producer without waiting for them;
+     * when this returns, the container adds the batch's offsets to the transaction and
+     * commits it, which flushes the results. Until then consumers reading committed
+     * data see neither, and if anything fails the transaction is aborted and the batch
+     * redelivered. Moving a failed message to its retry tier is not part of the
+     * transaction, so that alone may happen twice.
+     */
+    public void consumeTransactional(List<ConsumerRecord<String, String>> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (ConsumerRecord<String, String> record : records) {
+            String result = handleOrRetryLater(record);
+            if (result != null) {
+                transactionalKafkaTemplate.send(RESULTS_TOPIC, record.topic() + ": " + record.value() + " -> " + result);
+            }
+            counts.merge(record.topic(), 1, Integer::sum);
+        }
+        counts.forEach((topic, count) -> {
+            topicHandlers.recordBatch(topic, count);
+            log.info("Processed {} messages from {} in a transaction", count, topic);
+        });
+    }
 
-        latch.countDown();
+    /**
+     * Handles one poll's worth of records in parallel and commits what is done.
+     * <p></p>
+     * A record is done once its result has been acknowledged by the broker, or once
+     * it failed and was moved to its retry tier.
+     * After waiting up to {@code app.kafka.consumer.batch.publish-timeout-ms}, every
+     * partition's offset is committed up to its first record that is not done, and
+     * the partition is rewound to that record so the next poll redelivers it and
+     * everything after it.
+     *
+     * @param consumer the container's consumer; only called from its own thread
+     */
+    public void consumeParallel(List<ConsumerRecord<String, String>> records, Consumer<?, ?> consumer)
+            throws InterruptedException {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        PartitionOffsetTracker offsets = new PartitionOffsetTracker(records);
+        List<CompletableFuture<?>> done = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, String> record : records) {
+            done.add(keyOrderedExecutor.submit(record.key(), () -> handleOrRetryLater(record))
+                    .thenCompose(result -> result != null
+                            ? kafkaTemplate.send(RESULTS_TOPIC, record.topic() + ": " + record.value() + " -> " + result)
+                                    .thenApply(sent -> result)
+                            : CompletableFuture.completedFuture(result))
+                    .thenRun(() -> offsets.markDone(record)));
+        }
+
+        try {
+            CompletableFuture.allOf(done.toArray(new CompletableFuture[0])).get(publishTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            log.warn("Some results of a batch of {} messages were not published: {}", records.size(), e.getMessage());
+        } catch (TimeoutException e) {
+            log.warn("A batch of {} messages did not finish within {} ms", records.size(), publishTimeoutMs);
+        }
+
+        Map<TopicPartition, OffsetAndMetadata> commits = offsets.committable();
+        if (!commits.isEmpty()) {
+            consumer.commitSync(commits);
+        }
+        Map<TopicPartition, Long> pending = offsets.pending();
+        pending.forEach((partition, offset) -> {
+            log.warn("Rewinding {} to offset {} to redeliver unfinished messages", partition, offset);
+            consumer.seek(partition, offset);
+        });
+        log.info("Processed {} messages in parallel, committed {}", records.size(), commits);
     }
 
-    public synchronized void resetLatch() {
-        this.lastMessage = null;
-        this.lastTopic = null;
-        this.latch = new CountDownLatch(1);
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * @return the handler's result, or {@code null} if it failed and the record was
+     *         moved to its retry tier
+     */
+    private String handleOrRetryLater(ConsumerRecord<String, String> record) {
+        long start = System.nanoTime();
+        try {
+            String result = topicHandlers.handle(record.topic(), record.value());
+            consumptionMetrics.record(record.topic(), record.partition(), record.offset(), record.value(),
+                    System.nanoTime() - start, false);
+            log.debug(result);
+            return result;
+        } catch (RuntimeException e) {
+            consumptionMetrics.record(record.topic(), record.partition(), record.offset(), record.value(),
+                    System.nanoTime() - start, true);
+            retryTopicRecoverer.accept(record, e);
+            return null;
+        }
     }
 }
@@ -1,39 +1,302 @@
 package com.paymetv.app.service.kafka;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
+/**
+ * Sends payloads to any topic with a bound on the sends in flight.
+ * <p></p>
+ * A send holds one of {@code app.kafka.generic-producer.max-in-flight} permits from
+ * the moment it is handed to the producer until the broker acknowledges it, so a
+ * slow broker cannot make callers pile up unbounded records in the producer's
+ * buffer. When every permit is taken the {@link OverflowPolicy} decides:
+ * - {@link OverflowPolicy#BLOCK}: the caller waits up to {@code block-timeout-ms}
+ *   for a permit, then the send fails
+ * - {@link OverflowPolicy#FAIL_FAST}: the send fails at once
+ * - {@link OverflowPolicy#DROP_OLDEST}: the send waits in a queue of
+ *   {@code queue-capacity}; when the queue is full its oldest send is dropped
+ * <p></p>
+ * Sends that fail for lack of room complete with a {@link RejectedExecutionException},
+ * as do sends still queued when the producer shuts down.
+ * Payloads are never logged; one send in {@code log-every} is, by topic and offset.
+ * <p></p>
+ * Metrics:
+ * - {@code kafka_producer_send_seconds{topic,outcome}}: time from the call to the
+ *   acknowledgement; outcome is sent, failed, rejected or dropped
+ * - {@code kafka_producer_in_flight}: sends awaiting acknowledgement
+ * - {@code kafka_producer_waiting}: sends queued under {@link OverflowPolicy#DROP_OLDEST}
+ *
+ * @author PayMeTV Team
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class GenericProducer {
 
+    public enum OverflowPolicy { BLOCK, FAIL_FAST, DROP_OLDEST }
+
     private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final OverflowPolicy policy;
+    private final long blockTimeoutMs;
+    private final int queueCapacity;
+    private final int logEvery;
+    private final Deque<PendingSend> waiting = new ArrayDeque<>();
+    private final ThreadPoolExecutor dispatcher;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
 
-    public <T> CompletableFuture<SendResult<String, Object>> send (
-            String topic,
-            String key,
-            T payload) {
+    @Autowired
+    public GenericProducer(KafkaTemplate<String, Object> kafkaTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.kafka.generic-producer.max-in-flight:1000}") int maxInFlight,
+                           @Value("${app.kafka.generic-producer.overflow-policy:block}") String policy,
+                           @Value("${app.kafka.generic-producer.block-timeout-ms:30000}") long blockTimeoutMs,
+                           @Value("${app.kafka.generic-producer.queue-capacity:1000}") int queueCapacity,
+                           @Value("${app.kafka.generic-producer.log-every:1000}") int logEvery) {
+        this(kafkaTemplate, meterRegistry, maxInFlight, parsePolicy(policy), blockTimeoutMs, queueCapacity, logEvery);
+    }
 
-                log.info("Sending data to topic {} with payload {}", topic, payload);
+    /**
+     * @param maxInFlight    sends that may await acknowledgement at once
+     * @param policy         what to do with a send when none more may be in flight
+     * @param blockTimeoutMs longest a caller waits under {@link OverflowPolicy#BLOCK}
+     * @param queueCapacity  sends that may wait under {@link OverflowPolicy#DROP_OLDEST}
+     * @param logEvery       one send in this many is logged
+     */
+    public GenericProducer(KafkaTemplate<String, Object> kafkaTemplate, MeterRegistry meterRegistry,
+                           int maxInFlight, OverflowPolicy policy, long blockTimeoutMs, int queueCapacity,
+                           int logEvery) {
+        if (maxInFlight <= 0 || queueCapacity <= 0 || logEvery <= 0) {
+            throw new IllegalStateException(String.format(
+                    "max-in-flight, queue-capacity and log-every must be positive, got %d, %d and %d",
+                    maxInFlight, queueCapacity, logEvery));
+        }
+        this.kafkaTemplate = kafkaTemplate;
+        this.meterRegistry = meterRegistry;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight, true);
+        this.policy = policy;
+        this.blockTimeoutMs = blockTimeoutMs;
+        this.queueCapacity = queueCapacity;
+        this.logEvery = logEvery;
+        // Queued sends are started from here, never from the producer's network thread that acknowledges
+        // the previous one; each task holds a permit, so at most maxInFlight can wait
+        this.dispatcher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxInFlight),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "generic-producer-dispatch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        meterRegistry.gauge("kafka_producer_in_flight", Tags.empty(), permits,
+                semaphore -> maxInFlight - semaphore.availablePermits());
+        meterRegistry.gauge("kafka_producer_waiting", Tags.empty(), this, producer -> producer.waitingCount());
+    }
 
-        return kafkaTemplate.send(topic, key, payload)
-                .whenComplete((result, ex) -> {
-                    if (ex != null) {
-                        log.error("Failed to send message to topic={}", topic, ex);
+    /**
+     * Sends {@code payload} to {@code topic} once the in-flight limit allows.
+     *
+     * @return completes with the broker's acknowledgement; exceptionally with a
+     *         {@link RejectedExecutionException} if the send was rejected or dropped
+     */
+    public <T> CompletableFuture<SendResult<String, Object>> send(String topic, String key, T payload) {
+        PendingSend pending = new PendingSend(topic, key, payload, System.nanoTime(), new CompletableFuture<>());
+        if (permits.tryAcquire()) {
+            dispatch(pending);
+            return pending.result();
+        }
+
+        switch (policy) {
+            case BLOCK -> {
+                try {
+                    if (permits.tryAcquire(blockTimeoutMs, TimeUnit.MILLISECONDS)) {
+                        dispatch(pending);
                     } else {
-                        log.info(
-                                "Message sent. topic={} partition={} offset={}",
-                                result.getRecordMetadata().topic(),
-                                result.getRecordMetadata().partition(),
-                                result.getRecordMetadata().offset()
-                        );
+                        reject(pending, "rejected", "no send completed within " + blockTimeoutMs + " ms");
                     }
-                });
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    reject(pending, "rejected", "interrupted while waiting");
+                }
+            }
+            case FAIL_FAST -> reject(pending, "rejected", maxInFlight + " sends already in flight");
+            case DROP_OLDEST -> enqueue(pending);
+        }
+        return pending.result();
+    }
+
+    /**
+     * Sends every payload to {@code topic}, each under the same in-flight limit as {@link #send}.
+     *
+     * @param keyOf the key of each payload
+     * @return completes with the results in the order of {@code payloads} once all are
+     *         acknowledged, or exceptionally if any send failed
+     */
+    public <T> CompletableFuture<List<SendResult<String, Object>>> sendAll(
+            String topic, Collection<? extends T> payloads, Function<? super T, String> keyOf) {
+        List<CompletableFuture<SendResult<String, Object>>> sends = payloads.stream()
+                .map(payload -> send(topic, keyOf.apply(payload), payload))
+                .toList();
+        return CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> sends.stream().map(CompletableFuture::join).toList());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        dispatcher.shutdown();
+        if (!dispatcher.awaitTermination(10, TimeUnit.SECONDS)) {
+            dispatcher.shutdownNow();
+        }
+        rejectWaiting();
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private record PendingSend(String topic, String key, Object payload, long startNanos,
+                               CompletableFuture<SendResult<String, Object>> result) {
+    }
+
+    private static OverflowPolicy parsePolicy(String policy) {
+        try {
+            return OverflowPolicy.valueOf(policy.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Unknown app.kafka.generic-producer.overflow-policy '" + policy
+                    + "'; expected block, fail-fast or drop-oldest", e);
+        }
+    }
+
+    /** Hands a send to the producer; the caller holds a permit, which the send keeps until acknowledged. */
+    private void dispatch(PendingSend pending) {
+        CompletableFuture<SendResult<String, Object>> send;
+        try {
+            send = kafkaTemplate.send(pending.topic(), pending.key(), pending.payload());
+        } catch (RuntimeException e) {
+            send = CompletableFuture.failedFuture(e);
+        }
+        send.whenComplete((result, error) -> {
+            onPermitFreed();
+            if (error != null) {
+                fail(pending, "failed", error);
+            } else {
+                complete(pending, result);
+            }
+        });
+    }
+
+    private void onPermitFreed() {
+        if (waitingCount() > 0) {
+            try {
+                dispatcher.execute(this::dispatchNextOrRelease);
+            } catch (RejectedExecutionException e) {
+                // Shut down: nothing will start the queued sends any more
+                permits.release();
+                rejectWaiting();
+            }
+        } else {
+            permits.release();
+        }
+    }
+
+    private void rejectWaiting() {
+        List<PendingSend> rejected;
+        synchronized (waiting) {
+            rejected = List.copyOf(waiting);
+            waiting.clear();
+        }
+        rejected.forEach(pending -> reject(pending, "rejected", "the producer is shut down"));
+    }
+
+    /** Passes the caller's permit to the oldest queued send, if any. */
+    private void dispatchNextOrRelease() {
+        PendingSend next;
+        synchronized (waiting) {
+            next = waiting.pollFirst();
+        }
+        if (next != null) {
+            dispatch(next);
+        } else {
+            permits.release();
+        }
+    }
+
+    private void enqueue(PendingSend pending) {
+        PendingSend dropped = null;
+        synchronized (waiting) {
+            if (waiting.size() >= queueCapacity) {
+                dropped = waiting.pollFirst();
+            }
+            waiting.addLast(pending);
+        }
+        if (dropped != null) {
+            reject(dropped, "dropped", "dropped for a newer send, " + queueCapacity + " already waiting");
+        }
+        // A send may have been acknowledged since tryAcquire, with nothing queued to pass its permit to
+        if (permits.tryAcquire()) {
+            dispatchNextOrRelease();
+        }
+    }
+
+    private int waitingCount() {
+        synchronized (waiting) {
+            return waiting.size();
+        }
+    }
+
+    private void complete(PendingSend pending, SendResult<String, Object> result) {
+        record(pending, "sent");
+        long count = sent.incrementAndGet();
+        if ((count - 1) % logEvery == 0) {
+            Object payload = pending.payload();
+            log.info("Sent {} messages (1 in {} logged); this one {} to topic={} partition={} offset={}",
+                    count, logEvery, payload == null ? "tombstone" : payload.getClass().getSimpleName(),
+                    result.getRecordMetadata().topic(), result.getRecordMetadata().partition(),
+                    result.getRecordMetadata().offset());
+        }
+        pending.result().complete(result);
+    }
+
+    private void reject(PendingSend pending, String outcome, String reason) {
+        fail(pending, outcome, new RejectedExecutionException("Send to " + pending.topic() + " " + outcome + ": " + reason));
+    }
+
+    private void fail(PendingSend pending, String outcome, Throwable error) {
+        record(pending, outcome);
+        long count = failed.incrementAndGet();
+        if ((count - 1) % logEvery == 0) {
+            log.warn("{} sends failed (1 in {} logged); this one to topic={} key={} was {}",
+                    count, logEvery, pending.topic(), pending.key(), outcome, error);
+        }
+        pending.result().completeExceptionally(error);
+    }
+
+    private void record(PendingSend pending, String outcome) {
+        meterRegistry.timer("kafka_producer_send_seconds", "topic", pending.topic(), "outcome", outcome)
+                .record(System.nanoTime() - pending.startNanos(), TimeUnit.NANOSECONDS);
     }
 }
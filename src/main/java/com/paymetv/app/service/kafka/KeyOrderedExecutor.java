@@ -0,0 +1,131 @@
+package com.paymetv.app.service.kafka;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs tasks on a shared worker pool, one at a time per key.
+ * <p></p>
+ * Tasks with the same key run in the order they were submitted, each starting
+ * after the previous one finished (successfully or not); tasks with different
+ * keys run in parallel. Tasks without a key are not ordered at all, matching
+ * Kafka, which spreads keyless records over partitions anyway.
+ * <p></p>
+ * Used by {@link GenericConsumer#consumeParallel} to spread the records of a
+ * single partition over the CPU cores. When the pool's queue is full the
+ * submitting thread runs the task itself, which slows the consumer down rather
+ * than buffering without limit. Once shut down, tasks are not run and their
+ * futures complete with a {@link RejectedExecutionException} at once.
+ * <p></p>
+ * Metrics:
+ * - {@code kafka_parallel_queue_depth}: tasks waiting for a worker
+ * - {@code kafka_parallel_keys_in_flight}: keys with a task queued or running
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class KeyOrderedExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final Map<Object, CompletableFuture<?>> tails = new ConcurrentHashMap<>();
+
+    @Autowired
+    public KeyOrderedExecutor(MeterRegistry meterRegistry,
+                              @Value("${app.kafka.consumer.parallel.threads:0}") int threads,
+                              @Value("${app.kafka.consumer.parallel.queue-capacity:1000}") int queueCapacity) {
+        this(threads, queueCapacity);
+        meterRegistry.gauge("kafka_parallel_queue_depth", Tags.empty(), executor.getQueue(), queue -> queue.size());
+        meterRegistry.gauge("kafka_parallel_keys_in_flight", Tags.empty(), tails, Map::size);
+    }
+
+    /**
+     * @param threads       worker threads; 0 sizes the pool to the CPU count
+     * @param queueCapacity tasks that may wait for a worker
+     */
+    public KeyOrderedExecutor(int threads, int queueCapacity) {
+        int workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "kafka-parallel-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                KeyOrderedExecutor::runInCallerUnlessShutdown);
+    }
+
+    /**
+     * Runs {@code task} once every task submitted earlier with the same key has finished.
+     *
+     * @param key the ordering key, or {@code null} for no ordering
+     * @return the task's result; completes exceptionally if the task throws
+     */
+    public <T> CompletableFuture<T> submit(Object key, Supplier<T> task) {
+        if (key == null) {
+            try {
+                return CompletableFuture.supplyAsync(task, executor);
+            } catch (RejectedExecutionException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<?> previous = tails.put(key, result);
+        CompletableFuture<?> start = previous != null
+                ? previous.handle((value, error) -> null)
+                : CompletableFuture.completedFuture(null);
+        start.thenRunAsync(() -> {
+            try {
+                result.complete(task.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }, executor).whenComplete((ignored, rejected) -> {
+            // The task never ran: the executor rejected it
+            if (rejected != null) {
+                result.completeExceptionally(rejected);
+            }
+        });
+
+        result.whenComplete((value, error) -> tails.remove(key, result));
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * Like {@link ThreadPoolExecutor.CallerRunsPolicy}, but throws once the pool is shut
+     * down instead of silently dropping the task, so its future still completes.
+     */
+    private static void runInCallerUnlessShutdown(Runnable task, ThreadPoolExecutor pool) {
+        if (pool.isShutdown()) {
+            throw new RejectedExecutionException("KeyOrderedExecutor is shut down");
+        }
+        task.run();
+    }
+}
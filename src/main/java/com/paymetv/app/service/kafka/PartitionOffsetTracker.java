@@ -0,0 +1,98 @@
+package com.paymetv.app.service.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks which records of one poll are done when they finish out of order.
+ * <p></p>
+ * A partition's offset may only be committed up to its first record that is
+ * not done yet, otherwise a crash would skip that record. The tracker reports
+ * that offset per partition ({@link #committable()}) and where each partition
+ * has to be re-read from ({@link #pending()}).
+ * <p></p>
+ * Offsets within a partition need not be contiguous (compaction, transaction
+ * markers); only the records handed to the tracker count.
+ *
+ * @author PayMeTV Team
+ */
+public class PartitionOffsetTracker {
+
+    private final Map<TopicPartition, Partition> partitions = new LinkedHashMap<>();
+
+    public PartitionOffsetTracker(List<? extends ConsumerRecord<?, ?>> records) {
+        Map<TopicPartition, List<Long>> offsets = new LinkedHashMap<>();
+        for (ConsumerRecord<?, ?> record : records) {
+            offsets.computeIfAbsent(new TopicPartition(record.topic(), record.partition()), tp -> new ArrayList<>())
+                    .add(record.offset());
+        }
+        offsets.forEach((tp, list) -> partitions.put(tp,
+                new Partition(list.stream().mapToLong(Long::longValue).sorted().toArray())));
+    }
+
+    public synchronized void markDone(ConsumerRecord<?, ?> record) {
+        Partition partition = partitions.get(new TopicPartition(record.topic(), record.partition()));
+        int index = partition != null ? Arrays.binarySearch(partition.offsets, record.offset()) : -1;
+        if (index < 0) {
+            throw new IllegalArgumentException("Record " + record.topic() + "-" + record.partition()
+                    + "@" + record.offset() + " is not tracked");
+        }
+        partition.done.set(index);
+    }
+
+    /**
+     * The offsets to commit: per partition, the offset after its highest record
+     * that is done along with every record before it. Partitions whose first
+     * record is not done are left out.
+     */
+    public synchronized Map<TopicPartition, OffsetAndMetadata> committable() {
+        Map<TopicPartition, OffsetAndMetadata> commits = new LinkedHashMap<>();
+        partitions.forEach((tp, partition) -> {
+            int contiguous = partition.done.nextClearBit(0);
+            if (contiguous > 0) {
+                long next = contiguous < partition.offsets.length
+                        ? partition.offsets[contiguous]
+                        : partition.offsets[partition.offsets.length - 1] + 1;
+                commits.put(tp, new OffsetAndMetadata(next));
+            }
+        });
+        return commits;
+    }
+
+    /**
+     * The offset of the first record not done yet, per partition that has one.
+     */
+    public synchronized Map<TopicPartition, Long> pending() {
+        Map<TopicPartition, Long> pending = new LinkedHashMap<>();
+        partitions.forEach((tp, partition) -> {
+            int contiguous = partition.done.nextClearBit(0);
+            if (contiguous < partition.offsets.length) {
+                pending.put(tp, partition.offsets[contiguous]);
+            }
+        });
+        return pending;
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private static final class Partition {
+
+        private final long[] offsets;
+        private final BitSet done;
+
+        private Partition(long[] offsets) {
+            this.offsets = offsets;
+            this.done = new BitSet(offsets.length);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.paymetv.app.service.kafka;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Moves a message that failed to the next retry tier, or to the dead-letter
+ * topic after the last one (see {@link RetryTopics}).
+ * <p></p>
+ * The message keeps its key and value. {@link DeadLetterPublishingRecoverer}
+ * adds the {@code kafka_dlt-*} headers: original topic, partition and offset
+ * (those of the main topic, kept from the first failure on) and the class,
+ * message and stack trace of the latest exception. Retry tiers also get
+ * {@link RetryTopics#DUE_AT_HEADER}.
+ * <p></p>
+ * Publishing is synchronous; if it fails, the exception propagates and the
+ * message is not committed.
+ * <p></p>
+ * Metrics, tagged with the main {@code topic}:
+ * - {@code kafka_retry_published_total}: messages sent to a retry tier, also tagged with {@code tier}
+ * - {@code kafka_dlt_published_total}: messages sent to the dead-letter topic
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class RetryTopicRecoverer implements ConsumerRecordRecoverer {
+
+    private static final Logger log = LoggerFactory.getLogger(RetryTopicRecoverer.class);
+
+    private final RetryTopics retryTopics;
+    private final MeterRegistry meterRegistry;
+    private final DeadLetterPublishingRecoverer publisher;
+
+    public RetryTopicRecoverer(RetryTopics retryTopics,
+                               @Qualifier("retryKafkaTemplate") KafkaOperations<String, String> retryKafkaTemplate,
+                               MeterRegistry meterRegistry) {
+        this.retryTopics = retryTopics;
+        this.meterRegistry = meterRegistry;
+
+        // A negative partition lets the producer pick one, so tiers need not match the main topic's partitions
+        this.publisher = new DeadLetterPublishingRecoverer(retryKafkaTemplate,
+                (record, exception) -> new TopicPartition(retryTopics.nextTopic(record.topic()), -1));
+        this.publisher.setAppendOriginalHeaders(false);
+        this.publisher.setStripPreviousExceptionHeaders(true);
+        this.publisher.setHeadersFunction((record, exception) -> {
+            RecordHeaders headers = new RecordHeaders();
+            int next = retryTopics.tier(record.topic()) + 1;
+            if (next <= retryTopics.tiers()) {
+                long dueAt = System.currentTimeMillis() + retryTopics.delayMs(next);
+                headers.add(RetryTopics.DUE_AT_HEADER, String.valueOf(dueAt).getBytes(StandardCharsets.UTF_8));
+            }
+            return headers;
+        });
+    }
+
+    @Override
+    public void accept(ConsumerRecord<?, ?> record, Exception exception) {
+        String destination = retryTopics.nextTopic(record.topic());
+        publisher.accept(record, null, exception);
+
+        String main = retryTopics.mainTopic(record.topic());
+        int tier = retryTopics.tier(destination);
+        if (tier > retryTopics.tiers()) {
+            meterRegistry.counter("kafka_dlt_published_total", "topic", main).increment();
+            log.error("Sent {}-{}@{} to {} after {} retries", record.topic(), record.partition(), record.offset(),
+                    destination, retryTopics.tiers(), exception);
+        } else {
+            meterRegistry.counter("kafka_retry_published_total", "topic", main, "tier", String.valueOf(tier)).increment();
+            log.warn("Sent {}-{}@{} to {}: {}", record.topic(), record.partition(), record.offset(),
+                    destination, exception.getMessage());
+        }
+    }
+}
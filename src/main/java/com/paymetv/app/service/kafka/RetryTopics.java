@@ -0,0 +1,126 @@
+package com.paymetv.app.service.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Names and delays of the retry tiers behind every consumed topic.
+ * <p></p>
+ * A message that fails on {@code <topic>} is moved to {@code <topic>-retry-1},
+ * then {@code <topic>-retry-2} and so on, one tier per entry of
+ * {@code app.kafka.retry.delays-ms}, and finally to {@code <topic>-dlt}, which
+ * nothing consumes. Each tier is consumed by its own container that waits until
+ * a message is due ({@link #DUE_AT_HEADER}), so the main topic's partitions
+ * never wait for a failing message.
+ * <p></p>
+ * A tier's consumer sleeps until the next message is due, so every delay must be
+ * shorter than {@code app.kafka.consumer.max-poll-interval-ms}, the
+ * {@code max.poll.interval.ms} that {@code KafkaConfig} gives those consumers.
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class RetryTopics {
+
+    /** Epoch millis before which a retry message must not be handled. */
+    public static final String DUE_AT_HEADER = "retry-due-at";
+
+    private static final String RETRY_SUFFIX = "-retry-";
+    private static final String DLT_SUFFIX = "-dlt";
+
+    private final long[] delaysMs;
+
+    public RetryTopics(@Value("${app.kafka.retry.delays-ms:1000,10000,60000}") long[] delaysMs,
+                       @Value("${app.kafka.consumer.max-poll-interval-ms:300000}") long maxPollIntervalMs) {
+        for (long delay : delaysMs) {
+            if (delay <= 0 || delay >= maxPollIntervalMs) {
+                throw new IllegalStateException(String.format(
+                        "Retry delays must be between 0 and max.poll.interval.ms (%d ms), got %d ms",
+                        maxPollIntervalMs, delay));
+            }
+        }
+        this.delaysMs = delaysMs.clone();
+    }
+
+    /** Number of retry tiers before the dead-letter topic. */
+    public int tiers() {
+        return delaysMs.length;
+    }
+
+    /** Delay of a retry tier, counted from 1. */
+    public long delayMs(int tier) {
+        return delaysMs[tier - 1];
+    }
+
+    public String retryTopic(String topic, int tier) {
+        return topic + RETRY_SUFFIX + tier;
+    }
+
+    public String dltTopic(String topic) {
+        return topic + DLT_SUFFIX;
+    }
+
+    /** Every retry tier of {@code topic} followed by its dead-letter topic. */
+    public List<String> topicsFor(String topic) {
+        List<String> topics = new ArrayList<>(delaysMs.length + 1);
+        for (int tier = 1; tier <= delaysMs.length; tier++) {
+            topics.add(retryTopic(topic, tier));
+        }
+        topics.add(dltTopic(topic));
+        return topics;
+    }
+
+    /**
+     * The retry tier of {@code topic}: 0 for a main topic, {@code tiers() + 1} for a dead-letter topic.
+     */
+    public int tier(String topic) {
+        if (topic.endsWith(DLT_SUFFIX)) {
+            return delaysMs.length + 1;
+        }
+        int suffix = topic.lastIndexOf(RETRY_SUFFIX);
+        if (suffix < 0) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(topic.substring(suffix + RETRY_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /** The main topic of a retry or dead-letter topic; a main topic is returned as is. */
+    public String mainTopic(String topic) {
+        if (topic.endsWith(DLT_SUFFIX)) {
+            return topic.substring(0, topic.length() - DLT_SUFFIX.length());
+        }
+        return tier(topic) > 0 ? topic.substring(0, topic.lastIndexOf(RETRY_SUFFIX)) : topic;
+    }
+
+    /** Where a message goes after failing on {@code topic}. */
+    public String nextTopic(String topic) {
+        int next = tier(topic) + 1;
+        String main = mainTopic(topic);
+        return next <= delaysMs.length ? retryTopic(main, next) : dltTopic(main);
+    }
+
+    /**
+     * Sleeps until {@code record} is due, per its {@link #DUE_AT_HEADER}; returns at
+     * once for records without one.
+     */
+    public void awaitDue(ConsumerRecord<?, ?> record) throws InterruptedException {
+        Header dueAt = record.headers().lastHeader(DUE_AT_HEADER);
+        if (dueAt == null) {
+            return;
+        }
+        long wait = Long.parseLong(new String(dueAt.value(), StandardCharsets.UTF_8)) - System.currentTimeMillis();
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.paymetv.app.service.kafka;
+
+import java.util.Set;
+
+/**
+ * Handles the messages of one or more ML topics consumed by {@link GenericConsumer}.
+ * <p></p>
+ * Handlers are discovered as Spring beans by the {@link TopicHandlerRegistry};
+ * adding a topic means adding a handler bean, not editing the consumer. Each
+ * handler gets its own listener container, so a slow handler only ever holds
+ * up its own topics:
+ * - {@link #concurrency()}: consumer threads of the handler's container (its
+ *   thread pool; no other handler runs on them)
+ * - {@link #batchSize()}: the most records one poll hands to the handler
+ *
+ * @author PayMeTV Team
+ */
+public interface TopicHandler {
+
+    /** Short, unique name used for the container id, thread names and metric tags. */
+    String name();
+
+    /** Topics this handler consumes; a topic may belong to one handler only. */
+    Set<String> topics();
+
+    /**
+     * Handles one message.
+     *
+     * @return the result published to {@code topic-processed-results}
+     */
+    String handle(String topic, String message);
+
+    default int concurrency() {
+        return 1;
+    }
+
+    default int batchSize() {
+        return 500;
+    }
+}
@@ -0,0 +1,105 @@
+package com.paymetv.app.service.kafka;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes messages to the {@link TopicHandler} beans by topic.
+ * <p></p>
+ * Messages from a topic no handler claims get a "unknown topic" result rather
+ * than an error, as before handlers existed.
+ * <p></p>
+ * Metrics, tagged with {@code handler} ({@code unknown} for unclaimed topics):
+ * - {@code kafka_handler_duration_seconds}: time to handle one message, also tagged
+ *   with {@code outcome}; its count is the handler's throughput
+ * - {@code kafka_handler_batch_records}: records per batch handed to the handler
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class TopicHandlerRegistry {
+
+    private static final String UNKNOWN = "unknown";
+
+    private final List<TopicHandler> handlers;
+    private final Map<String, TopicHandler> byTopic = new HashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> successTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> failureTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> batchSizes = new ConcurrentHashMap<>();
+
+    public TopicHandlerRegistry(List<TopicHandler> handlers, MeterRegistry meterRegistry) {
+        this.handlers = List.copyOf(handlers);
+        this.meterRegistry = meterRegistry;
+
+        Map<String, TopicHandler> names = new HashMap<>();
+        for (TopicHandler handler : handlers) {
+            if (names.putIfAbsent(handler.name(), handler) != null) {
+                throw new IllegalStateException("Two topic handlers are named '" + handler.name() + "'");
+            }
+            for (String topic : handler.topics()) {
+                TopicHandler previous = byTopic.putIfAbsent(topic, handler);
+                if (previous != null) {
+                    throw new IllegalStateException(String.format("Topic '%s' is claimed by both '%s' and '%s'",
+                            topic, previous.name(), handler.name()));
+                }
+            }
+        }
+    }
+
+    /** Every registered handler. */
+    public List<TopicHandler> handlers() {
+        return handlers;
+    }
+
+    public Optional<TopicHandler> handlerFor(String topic) {
+        return Optional.ofNullable(byTopic.get(topic));
+    }
+
+    /**
+     * Handles one message with the topic's handler, recording its latency.
+     */
+    public String handle(String topic, String message) {
+        TopicHandler handler = byTopic.get(topic);
+        String name = handler != null ? handler.name() : UNKNOWN;
+
+        long start = System.nanoTime();
+        try {
+            String result = handler != null
+                    ? handler.handle(topic, message)
+                    : "Received message from unknown topic: " + topic;
+            timer(successTimers, name, "success").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (RuntimeException e) {
+            timer(failureTimers, name, "failure").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    /**
+     * Records the size of a batch of {@code topic} records.
+     */
+    public void recordBatch(String topic, int records) {
+        String name = handlerFor(topic).map(TopicHandler::name).orElse(UNKNOWN);
+        batchSizes.computeIfAbsent(name, handler ->
+                meterRegistry.summary("kafka_handler_batch_records", "handler", handler)).record(records);
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private Timer timer(Map<String, Timer> timers, String handler, String outcome) {
+        return timers.computeIfAbsent(handler, name ->
+                meterRegistry.timer("kafka_handler_duration_seconds", "handler", name, "outcome", outcome));
+    }
+}
@@ -0,0 +1,54 @@
+package com.paymetv.app.service.kafka.handler;
+
+import com.paymetv.app.service.FileUploadService;
+import com.paymetv.app.service.kafka.TopicHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Handles {@code topic-file-upload}.
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class FileUploadTopicHandler implements TopicHandler {
+
+    private final FileUploadService fileUploadService;
+    private final int concurrency;
+    private final int batchSize;
+
+    public FileUploadTopicHandler(FileUploadService fileUploadService,
+                                  @Value("${app.kafka.handlers.file-upload.concurrency:1}") int concurrency,
+                                  @Value("${app.kafka.handlers.file-upload.batch-size:100}") int batchSize) {
+        this.fileUploadService = fileUploadService;
+        this.concurrency = concurrency;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public String name() {
+        return "file-upload";
+    }
+
+    @Override
+    public Set<String> topics() {
+        return Set.of("topic-file-upload");
+    }
+
+    @Override
+    public String handle(String topic, String message) {
+        return fileUploadService.sayHi();
+    }
+
+    @Override
+    public int concurrency() {
+        return concurrency;
+    }
+
+    @Override
+    public int batchSize() {
+        return batchSize;
+    }
+}
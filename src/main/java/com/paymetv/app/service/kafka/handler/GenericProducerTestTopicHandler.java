@@ -0,0 +1,51 @@
+package com.paymetv.app.service.kafka.handler;
+
+import com.paymetv.app.service.kafka.TopicHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Handles {@code generic-producer-test}, the topic {@code GenericProducer} is exercised against.
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class GenericProducerTestTopicHandler implements TopicHandler {
+
+    private final int concurrency;
+    private final int batchSize;
+
+    public GenericProducerTestTopicHandler(
+            @Value("${app.kafka.handlers.generic-producer-test.concurrency:1}") int concurrency,
+            @Value("${app.kafka.handlers.generic-producer-test.batch-size:500}") int batchSize) {
+        this.concurrency = concurrency;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public String name() {
+        return "generic-producer-test";
+    }
+
+    @Override
+    public Set<String> topics() {
+        return Set.of("generic-producer-test");
+    }
+
+    @Override
+    public String handle(String topic, String message) {
+        return "Generic producer test selected";
+    }
+
+    @Override
+    public int concurrency() {
+        return concurrency;
+    }
+
+    @Override
+    public int batchSize() {
+        return batchSize;
+    }
+}
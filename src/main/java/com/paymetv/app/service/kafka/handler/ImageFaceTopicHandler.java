@@ -0,0 +1,57 @@
+package com.paymetv.app.service.kafka.handler;
+
+import com.paymetv.app.service.ImageFaceService;
+import com.paymetv.app.service.kafka.TopicHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Handles {@code topic-image-face}.
+ * <p></p>
+ * Face processing is the slowest of the ML topics, so it runs with small
+ * batches on its own consumer threads.
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class ImageFaceTopicHandler implements TopicHandler {
+
+    private final ImageFaceService imageFaceService;
+    private final int concurrency;
+    private final int batchSize;
+
+    public ImageFaceTopicHandler(ImageFaceService imageFaceService,
+                                 @Value("${app.kafka.handlers.image-face.concurrency:1}") int concurrency,
+                                 @Value("${app.kafka.handlers.image-face.batch-size:50}") int batchSize) {
+        this.imageFaceService = imageFaceService;
+        this.concurrency = concurrency;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public String name() {
+        return "image-face";
+    }
+
+    @Override
+    public Set<String> topics() {
+        return Set.of("topic-image-face");
+    }
+
+    @Override
+    public String handle(String topic, String message) {
+        return imageFaceService.sayHi();
+    }
+
+    @Override
+    public int concurrency() {
+        return concurrency;
+    }
+
+    @Override
+    public int batchSize() {
+        return batchSize;
+    }
+}
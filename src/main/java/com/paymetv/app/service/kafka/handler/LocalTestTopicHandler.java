@@ -0,0 +1,50 @@
+package com.paymetv.app.service.kafka.handler;
+
+import com.paymetv.app.service.kafka.TopicHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Handles the local smoke-test topics {@code test-topic1} to {@code test-topic3}.
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class LocalTestTopicHandler implements TopicHandler {
+
+    private final int concurrency;
+    private final int batchSize;
+
+    public LocalTestTopicHandler(@Value("${app.kafka.handlers.test-topics.concurrency:3}") int concurrency,
+                                 @Value("${app.kafka.handlers.test-topics.batch-size:500}") int batchSize) {
+        this.concurrency = concurrency;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public String name() {
+        return "test-topics";
+    }
+
+    @Override
+    public Set<String> topics() {
+        return Set.of("test-topic1", "test-topic2", "test-topic3");
+    }
+
+    @Override
+    public String handle(String topic, String message) {
+        return "Local kafka test message received " + topic;
+    }
+
+    @Override
+    public int concurrency() {
+        return concurrency;
+    }
+
+    @Override
+    public int batchSize() {
+        return batchSize;
+    }
+}
@@ -0,0 +1,101 @@
+package com.paymetv.app.service.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymetv.app.domain.OutboxEvent;
+import com.paymetv.app.repository.OutboxEventRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Records domain events for publishing to Kafka.
+ * <p></p>
+ * An event is only a row in {@code outbox_event}, written in the caller's
+ * transaction: it exists if and only if the change it describes was committed.
+ * {@link OutboxRelay} publishes it afterwards, so the request never waits for Kafka.
+ * <p></p>
+ * {@link #recordAll} writes many events as one JDBC batch. The outbox id is an
+ * auto-increment column, which Hibernate cannot batch: each saved event would also
+ * flush whatever inserts the caller has queued, breaking up their batches.
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class Outbox {
+
+    private static final String INSERT_SQL = "INSERT INTO outbox_event "
+            + "(topic, aggregate_type, aggregate_id, event_type, payload, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final OutboxEventRepository repository;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+
+    public Outbox(OutboxEventRepository repository, ObjectMapper objectMapper, JdbcTemplate jdbcTemplate) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Adds an event to the current transaction.
+     *
+     * @param topic         topic to publish to
+     * @param aggregateType type of the changed entity
+     * @param aggregateId   id of the changed entity; events of one entity are published in order
+     * @param eventType     what happened to it
+     * @param payload       the event, written as JSON
+     * @throws org.springframework.transaction.IllegalTransactionStateException if there is no transaction
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(String topic, String aggregateType, Object aggregateId, String eventType, Object payload) {
+        repository.save(OutboxEvent.builder()
+                .topic(topic)
+                .aggregateType(aggregateType)
+                .aggregateId(String.valueOf(aggregateId))
+                .eventType(eventType)
+                .payload(toJson(eventType, payload))
+                .createdAt(Instant.now())
+                .build());
+    }
+
+    /**
+     * Adds one event per payload to the current transaction, in order, with a single
+     * JDBC batch. Flush the persistence context first if the payloads are entities
+     * still waiting to be inserted.
+     *
+     * @param aggregateIdOf id of the entity each payload describes
+     * @throws org.springframework.transaction.IllegalTransactionStateException if there is no transaction
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public <T> void recordAll(String topic, String aggregateType, String eventType, Collection<T> payloads,
+                              Function<? super T, ?> aggregateIdOf) {
+        Timestamp createdAt = Timestamp.from(Instant.now());
+        List<Object[]> rows = new ArrayList<>(payloads.size());
+        for (T payload : payloads) {
+            rows.add(new Object[]{topic, aggregateType, String.valueOf(aggregateIdOf.apply(payload)), eventType,
+                    toJson(eventType, payload), createdAt});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private String toJson(String eventType, Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot write " + eventType + " as JSON", e);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.paymetv.app.service.outbox;
+
+import com.paymetv.app.domain.OutboxEvent;
+import com.paymetv.app.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the events of the {@link Outbox} to Kafka in the background.
+ * <p></p>
+ * Every {@code app.outbox.relay.poll-interval-ms} it takes the oldest events, up to
+ * {@code app.outbox.relay.batch-size} at a time, sends them all before waiting for
+ * any acknowledgement, and deletes the ones that were acknowledged. A backlog is
+ * drained batch after batch without waiting for the next poll.
+ * <p></p>
+ * Ordering: events are sent in id order, keyed by their aggregate id, so each
+ * entity's events land on one partition in the order they were committed. A batch
+ * is only deleted up to its first failed send; that event and everything after it
+ * is sent again by the next drain, so delivery is at-least-once and consumers
+ * should ignore an {@link #EVENT_ID_HEADER} they have already seen.
+ * <p></p>
+ * Each drain runs in a transaction that starts by locking the oldest event, so the
+ * relays of several pods take turns instead of publishing the same rows out of order.
+ * The lock is on that row alone, so requests adding new events are never held up.
+ *
+ * @author PayMeTV Team
+ */
+@Component
+@ConditionalOnProperty(name = "app.outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay {
+
+    public static final String EVENT_ID_HEADER = "outbox-event-id";
+    public static final String EVENT_TYPE_HEADER = "event-type";
+    public static final String AGGREGATE_TYPE_HEADER = "aggregate-type";
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxEventRepository repository;
+    private final KafkaOperations<String, String> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final long sendTimeoutMs;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final AtomicLong lagMs = new AtomicLong();
+    private final Counter published;
+    private final Counter retried;
+
+    public OutboxRelay(OutboxEventRepository repository,
+                       @Qualifier("outboxKafkaTemplate") KafkaOperations<String, String> kafkaTemplate,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry,
+                       @Value("${app.outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${app.outbox.relay.poll-interval-ms:500}") long pollIntervalMs,
+                       @Value("${app.outbox.relay.send-timeout-ms:30000}") long sendTimeoutMs) {
+        this.repository = repository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.pollIntervalMs = pollIntervalMs;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        meterRegistry.gauge("outbox_relay_lag_seconds", Tags.empty(), lagMs, lag -> lag.get() / 1000.0);
+        this.published = meterRegistry.counter("outbox_events_total", "outcome", "published");
+        this.retried = meterRegistry.counter("outbox_events_total", "outcome", "retried");
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::drainAll, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdown();
+        if (!scheduler.awaitTermination(sendTimeoutMs, TimeUnit.MILLISECONDS)) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Publishes one batch of the oldest events.
+     *
+     * @return the number of events published and removed from the outbox
+     */
+    public int drain() {
+        Integer count = transactionTemplate.execute(status -> {
+            // Waits here while another pod's relay holds the oldest event
+            if (repository.findFirstByOrderByIdAsc().isEmpty()) {
+                lagMs.set(0);
+                return 0;
+            }
+            List<OutboxEvent> batch = repository.findAllByOrderByIdAsc(Limit.of(batchSize));
+            lagMs.set(Duration.between(batch.get(0).getCreatedAt(), Instant.now()).toMillis());
+
+            List<CompletableFuture<?>> sends = new ArrayList<>(batch.size());
+            for (OutboxEvent event : batch) {
+                sends.add(send(event));
+            }
+            List<Long> done = awaitInOrder(batch, sends);
+            repository.deleteAllByIdInBatch(done);
+            return done.size();
+        });
+        return count != null ? count : 0;
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private void drainAll() {
+        try {
+            while (drain() == batchSize) {
+                // A full batch means there may be more; keep going until the outbox is drained
+            }
+        } catch (RuntimeException e) {
+            log.error("Outbox relay failed, retrying in {} ms", pollIntervalMs, e);
+        }
+    }
+
+    private CompletableFuture<?> send(OutboxEvent event) {
+        ProducerRecord<String, String> record =
+                new ProducerRecord<>(event.getTopic(), event.getAggregateId(), event.getPayload());
+        record.headers()
+                .add(EVENT_ID_HEADER, String.valueOf(event.getId()).getBytes(StandardCharsets.UTF_8))
+                .add(EVENT_TYPE_HEADER, event.getEventType().getBytes(StandardCharsets.UTF_8))
+                .add(AGGREGATE_TYPE_HEADER, event.getAggregateType().getBytes(StandardCharsets.UTF_8));
+        try {
+            return kafkaTemplate.send(record);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Ids of the events acknowledged before the first one that failed.
+     */
+    private List<Long> awaitInOrder(List<OutboxEvent> batch, List<CompletableFuture<?>> sends) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        List<Long> done = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                done.add(batch.get(i).getId());
+            } catch (ExecutionException | TimeoutException e) {
+                OutboxEvent event = batch.get(i);
+                log.warn("Failed to publish outbox event {} ({} {}) to {}; {} events left for the next drain",
+                        event.getId(), event.getEventType(), event.getAggregateId(), event.getTopic(),
+                        batch.size() - i, e);
+                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        published.increment(done.size());
+        retried.increment(batch.size() - done.size());
+        return done;
+    }
+}
@@ -0,0 +1,35 @@
+package com.paymetv.app.service.pipeline;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Makes the submitting thread wait for queue space instead of dropping the task
+ * or running it itself, turning a bounded queue into back-pressure.
+ * <p></p>
+ * Only for pools that are fed from background threads; request threads must
+ * never be handed to one of these.
+ *
+ * @author PayMeTV Team
+ */
+final class BlockWhenFullPolicy implements RejectedExecutionHandler {
+
+    static final BlockWhenFullPolicy INSTANCE = new BlockWhenFullPolicy();
+
+    private BlockWhenFullPolicy() {
+    }
+
+    @Override
+    public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Executor is shut down");
+        }
+        try {
+            executor.getQueue().put(runnable);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for queue space", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.paymetv.app.service.pipeline;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Event published to the {@code file-uploaded} topic once an upload is durable in storage.
+ * <p></p>
+ * Keyed by {@link #sha256}, so every event for the same content lands on the same partition.
+ *
+ * @author PayMeTV Team
+ */
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class FileUploadedEvent {
+    private String storedName;
+    private String originalName;
+    private String sha256;
+    private long size;
+    private String contentType;
+    private boolean deduplicated;
+
+    /** Upload time in epoch millis. */
+    private long uploadedAt;
+}
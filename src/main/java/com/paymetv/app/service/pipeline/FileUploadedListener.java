@@ -0,0 +1,111 @@
+package com.paymetv.app.service.pipeline;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymetv.app.service.kafka.AvroSchemas;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Feeds {@code file-uploaded} events into the {@link UploadPipeline}.
+ * <p></p>
+ * Events arrive a poll at a time and all go into the pipeline, so its stages work
+ * on several uploads at once. {@link UploadPipeline#submit} blocks while the
+ * pipeline is full, which holds this listener thread and so pauses polling: the
+ * broker keeps the backlog, not the heap.
+ * <p></p>
+ * The listener returns, and the container commits the poll's offsets, only once
+ * every job of the poll has left the pipeline. A job a stage failed on counts as
+ * done; it has been logged and would fail again. A job the pipeline could not take
+ * or finish (it is shutting down, or {@code app.upload.pipeline.completion-timeout-ms}
+ * passed) fails the poll instead, so its events are delivered again rather than
+ * lost with a pod that dies while they are queued. The timeout must stay below the
+ * consumer's {@code max.poll.interval.ms}.
+ * <p></p>
+ * Reads events in either format the topic may carry, JSON or Avro
+ * ({@code app.kafka.serialization.avro-topics}), so the topic can be switched
+ * while older events are still waiting.
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class FileUploadedListener {
+
+    private static final Logger log = LoggerFactory.getLogger(FileUploadedListener.class);
+
+    private final UploadPipeline pipeline;
+    private final ObjectMapper objectMapper;
+    private final AvroSchemas avroSchemas;
+    private final long completionTimeoutMs;
+
+    public FileUploadedListener(UploadPipeline pipeline, ObjectMapper objectMapper, AvroSchemas avroSchemas,
+                                @Value("${app.upload.pipeline.completion-timeout-ms:120000}") long completionTimeoutMs) {
+        this.pipeline = pipeline;
+        this.objectMapper = objectMapper;
+        this.avroSchemas = avroSchemas;
+        this.completionTimeoutMs = completionTimeoutMs;
+    }
+
+    @KafkaListener(
+            topics = FileUploadedPublisher.TOPIC,
+            groupId = "upload-pipeline-group",
+            concurrency = "${app.upload.pipeline.listener-concurrency:1}",
+            batch = "true",
+            properties = "value.deserializer=org.apache.kafka.common.serialization.ByteArrayDeserializer"
+    )
+    public void consume(List<ConsumerRecord<String, byte[]>> records) throws InterruptedException {
+        List<CompletableFuture<UploadJob>> jobs = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            FileUploadedEvent event;
+            try {
+                event = AvroSchemas.isAvro(record.value())
+                        ? avroSchemas.decode(record.value(), FileUploadedEvent.class)
+                        : objectMapper.readValue(record.value(), FileUploadedEvent.class);
+            } catch (IOException e) {
+                log.warn("Skipping malformed {} message: {}", FileUploadedPublisher.TOPIC, e.getMessage());
+                continue;
+            }
+            jobs.add(pipeline.submit(event));
+        }
+        awaitPipeline(jobs);
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    /** Waits until every job has left the pipeline; throws if one of them was never processed. */
+    private void awaitPipeline(List<CompletableFuture<UploadJob>> jobs) throws InterruptedException {
+        // A stage failure is an outcome too; only the pipeline refusing a job leaves it undone
+        CompletableFuture<?>[] outcomes = jobs.stream()
+                .map(job -> job.handle((result, failure) -> failure))
+                .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(outcomes).get(completionTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Unexpected pipeline failure", e.getCause());
+        } catch (TimeoutException e) {
+            throw new KafkaException("Upload pipeline did not finish " + jobs.size() + " events within "
+                    + completionTimeoutMs + " ms; they will be delivered again", e);
+        }
+        for (CompletableFuture<?> outcome : outcomes) {
+            if (outcome.join() instanceof RejectedExecutionException e) {
+                throw new KafkaException("Upload pipeline is shut down; " + jobs.size()
+                        + " events will be delivered again", e);
+            }
+        }
+    }
+}
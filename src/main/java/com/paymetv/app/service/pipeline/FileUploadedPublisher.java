@@ -0,0 +1,119 @@
+package com.paymetv.app.service.pipeline;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes {@link FileUploadedEvent}s without holding up the upload request.
+ * <p></p>
+ * {@code KafkaTemplate.send} can block the caller for up to {@code max.block.ms}
+ * while it fetches topic metadata or waits for buffer space, so events are handed
+ * to a single background sender thread instead. The hand-off queue is bounded;
+ * when it is full the request thread sends the event itself, which slows uploads
+ * down rather than losing events.
+ * <p></p>
+ * The events of a batch upload are handed over as one task and sent through the
+ * {@link com.paymetv.app.config.ProducerProfile#THROUGHPUT throughput} producer,
+ * whose {@code linger.ms} holds them back until the whole batch is appended; the
+ * task then flushes once. Events keyed to the same partition share a record batch,
+ * so a batch upload costs about one produce request per partition leader rather
+ * than one per file. Single events go through the default, low-latency producer,
+ * which sends each at once.
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class FileUploadedPublisher {
+
+    public static final String TOPIC = "file-uploaded";
+
+    private static final Logger log = LoggerFactory.getLogger(FileUploadedPublisher.class);
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final KafkaTemplate<String, Object> batchKafkaTemplate;
+    private final ThreadPoolExecutor sender;
+    private final Counter sent;
+    private final Counter failed;
+
+    public FileUploadedPublisher(KafkaTemplate<String, Object> kafkaTemplate,
+                                 @Qualifier("throughputKafkaTemplate") KafkaTemplate<String, Object> batchKafkaTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.upload.events.queue-capacity:1000}") int queueCapacity) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.batchKafkaTemplate = batchKafkaTemplate;
+        this.sender = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "file-uploaded-publisher");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        meterRegistry.gauge("upload_events_pending", Tags.empty(), sender.getQueue(), queue -> queue.size());
+        this.sent = meterRegistry.counter("upload_events_total", "outcome", "sent");
+        this.failed = meterRegistry.counter("upload_events_total", "outcome", "failed");
+    }
+
+    /**
+     * Queues the event for sending and returns immediately.
+     */
+    public void publish(FileUploadedEvent event) {
+        sender.execute(() -> send(kafkaTemplate, event));
+    }
+
+    /**
+     * Queues all events to be sent together and returns immediately.
+     */
+    public void publishAll(List<FileUploadedEvent> events) {
+        if (!events.isEmpty()) {
+            sender.execute(() -> {
+                events.forEach(event -> send(batchKafkaTemplate, event));
+                batchKafkaTemplate.flush();
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Flush what is already queued; the producer itself is closed by its factory
+        sender.shutdown();
+        if (!sender.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("{} upload events were not published before shutdown", sender.getQueue().size());
+            sender.shutdownNow();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private void send(KafkaTemplate<String, Object> template, FileUploadedEvent event) {
+        try {
+            template.send(TOPIC, event.getSha256(), event).whenComplete((result, ex) -> {
+                if (ex != null) {
+                    failed.increment();
+                    log.error("Failed to publish {} for blob {}", TOPIC, event.getSha256(), ex);
+                } else {
+                    sent.increment();
+                }
+            });
+        } catch (RuntimeException e) {
+            failed.increment();
+            log.error("Failed to publish {} for blob {}", TOPIC, event.getSha256(), e);
+        }
+    }
+}
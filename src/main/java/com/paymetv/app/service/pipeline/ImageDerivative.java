@@ -0,0 +1,24 @@
+package com.paymetv.app.service.pipeline;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A scaled copy of an uploaded image, stored next to the original blob.
+ *
+ * @author PayMeTV Team
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class ImageDerivative {
+
+    /** Configured bounding box: the longest side of the derivative is at most this many pixels. */
+    private final int size;
+
+    /** Derivative name in the content store, e.g. {@code thumb-320.jpg}. */
+    private final String name;
+
+    private final String contentType;
+}
@@ -0,0 +1,264 @@
+package com.paymetv.app.service.pipeline;
+
+import com.paymetv.app.service.storage.ContentAddressedStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders the configured thumbnail sizes of an uploaded image and caches them
+ * next to the original in the {@link ContentAddressedStore}.
+ * <p></p>
+ * Rendering is CPU bound, so it runs on a dedicated pool sized to the CPU count
+ * (by default) with a bounded queue. Jobs are only ever submitted from the upload
+ * pipeline: when the queue is full the submitting pipeline thread waits, and
+ * request threads are never involved. The image is decoded once and the sizes
+ * are rendered largest first, each one scaled down from the previous.
+ * <p></p>
+ * Derivatives are keyed by content hash, so an image is rendered once no matter
+ * how often it is uploaded, and concurrent requests for the same hash share one
+ * render. Images with transparency are written as PNG, everything else as JPEG.
+ * Formats the JDK cannot decode (WebP) are skipped.
+ * <p></p>
+ * Metrics:
+ * - {@code image_derivatives_queue_depth}: images waiting for a worker
+ * - {@code image_derivatives_active}: images being rendered
+ * - {@code image_derivatives_duration_seconds}: time to render all sizes of one image, tagged with {@code outcome}
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class ImageDerivativeGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageDerivativeGenerator.class);
+
+    /** Refuse to decode images larger than this (a 2 MB PNG can expand to gigabytes of pixels). */
+    private static final long MAX_PIXELS = 50_000_000L;
+
+    private final ContentAddressedStore contentStore;
+    private final int[] sizes;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, CompletableFuture<List<ImageDerivative>>> inFlight = new ConcurrentHashMap<>();
+    private final Timer successTimer;
+    private final Timer failureTimer;
+    private final Timer skippedTimer;
+
+    @Autowired
+    public ImageDerivativeGenerator(ContentAddressedStore contentStore,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.upload.derivatives.sizes:160,320,640}") int[] sizes,
+                                    @Value("${app.upload.derivatives.threads:0}") int threads,
+                                    @Value("${app.upload.derivatives.queue-capacity:64}") int queueCapacity) {
+        this.contentStore = contentStore;
+        this.sizes = Arrays.stream(sizes).filter(size -> size > 0).distinct().sorted().toArray();
+
+        int workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-derivatives-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                BlockWhenFullPolicy.INSTANCE);
+
+        meterRegistry.gauge("image_derivatives_queue_depth", Tags.empty(), executor.getQueue(), queue -> queue.size());
+        meterRegistry.gauge("image_derivatives_active", Tags.empty(), executor, ThreadPoolExecutor::getActiveCount);
+        this.successTimer = meterRegistry.timer("image_derivatives_duration_seconds", "outcome", "success");
+        this.failureTimer = meterRegistry.timer("image_derivatives_duration_seconds", "outcome", "failure");
+        this.skippedTimer = meterRegistry.timer("image_derivatives_duration_seconds", "outcome", "skipped");
+    }
+
+    /**
+     * Renders (or finds) every configured size of the image stored under {@code sha256}.
+     * Blocks while the work queue is full.
+     *
+     * @return completes with the derivatives, ascending by size; empty if the
+     *         format cannot be decoded
+     */
+    public CompletableFuture<List<ImageDerivative>> generate(String sha256) {
+        CompletableFuture<List<ImageDerivative>> render = new CompletableFuture<>();
+        CompletableFuture<List<ImageDerivative>> running = inFlight.putIfAbsent(sha256, render);
+        if (running != null) {
+            return running;
+        }
+
+        try {
+            executor.execute(() -> {
+                List<ImageDerivative> derivatives = null;
+                Throwable failure = null;
+                try {
+                    derivatives = render(sha256);
+                } catch (Throwable e) {
+                    failure = e;
+                }
+                // Unregister before completing, so nobody woken by the result can pick up this future again
+                inFlight.remove(sha256, render);
+                if (failure != null) {
+                    render.completeExceptionally(failure);
+                } else {
+                    render.complete(derivatives);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(sha256, render);
+            render.completeExceptionally(e);
+        }
+        return render;
+    }
+
+    /**
+     * Name under which a derivative is stored, e.g. {@code thumb-320.jpg}.
+     */
+    public static String name(int size, String extension) {
+        return "thumb-" + size + "." + extension;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private List<ImageDerivative> render(String sha256) throws IOException {
+        long start = System.nanoTime();
+
+        List<ImageDerivative> existing = existing(sha256);
+        if (existing != null) {
+            skippedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return existing;
+        }
+
+        try {
+            BufferedImage source = decode(sha256);
+            if (source == null) {
+                skippedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return List.of();
+            }
+
+            boolean alpha = source.getColorModel().hasAlpha();
+            String extension = alpha ? "png" : "jpg";
+            String contentType = alpha ? "image/png" : "image/jpeg";
+
+            List<ImageDerivative> derivatives = new ArrayList<>(sizes.length);
+            BufferedImage current = source;
+            for (int i = sizes.length - 1; i >= 0; i--) {
+                current = scale(current, sizes[i], alpha);
+                String name = name(sizes[i], extension);
+
+                Path temp = contentStore.newTempFile();
+                try {
+                    if (!ImageIO.write(current, extension.equals("jpg") ? "jpeg" : "png", temp.toFile())) {
+                        throw new IOException("No ImageIO writer for " + extension);
+                    }
+                    contentStore.storeDerivative(sha256, name, temp);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+                derivatives.add(0, new ImageDerivative(sizes[i], name, contentType));
+            }
+
+            successTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.debug("Rendered {} derivatives of {} in {} ms", derivatives.size(), sha256,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return derivatives;
+        } catch (IOException | RuntimeException e) {
+            failureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    /** Derivatives rendered by an earlier upload of the same content, or {@code null}. */
+    private List<ImageDerivative> existing(String sha256) throws IOException {
+        for (String extension : new String[]{"jpg", "png"}) {
+            String contentType = extension.equals("jpg") ? "image/jpeg" : "image/png";
+            List<ImageDerivative> found = new ArrayList<>(sizes.length);
+            for (int size : sizes) {
+                if (!contentStore.derivativeExists(sha256, name(size, extension))) {
+                    break;
+                }
+                found.add(new ImageDerivative(size, name(size, extension), contentType));
+            }
+            if (found.size() == sizes.length) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    private BufferedImage decode(String sha256) throws IOException {
+        try (InputStream in = contentStore.open(sha256);
+             ImageInputStream image = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = image != null ? ImageIO.getImageReaders(image) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(image, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > MAX_PIXELS) {
+                    throw new IllegalArgumentException(String.format(
+                            "Image %s has %d pixels, more than the %d allowed", sha256, pixels, MAX_PIXELS));
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage source, int size, boolean alpha) {
+        double factor = Math.min(1.0, (double) size / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * factor));
+
+        BufferedImage scaled = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+}
@@ -0,0 +1,104 @@
+package com.paymetv.app.service.pipeline;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymetv.app.service.storage.ContentAddressedStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Extracts basic file metadata and writes it to {@code <output-dir>/<sha256>/metadata.json}.
+ * <p></p>
+ * Image dimensions are read from the header only; the pixels are never decoded.
+ *
+ * @author PayMeTV Team
+ */
+@Component
+@Order(30)
+public class MetadataStage implements PipelineStage {
+
+    /** Job attribute holding the extracted metadata as a {@code Map<String, Object>}. */
+    public static final String METADATA = "metadata";
+
+    private final ContentAddressedStore contentStore;
+    private final ObjectMapper objectMapper;
+    private final Path outputDir;
+
+    public MetadataStage(ContentAddressedStore contentStore,
+                         ObjectMapper objectMapper,
+                         @Value("${app.upload.pipeline.output-dir:uploads/derived}") String outputDir) {
+        this.contentStore = contentStore;
+        this.objectMapper = objectMapper;
+        this.outputDir = Paths.get(outputDir);
+    }
+
+    @Override
+    public String name() {
+        return "metadata";
+    }
+
+    @Override
+    public void process(UploadJob job) throws IOException {
+        FileUploadedEvent event = job.getEvent();
+
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("sha256", event.getSha256());
+        metadata.put("size", event.getSize());
+        metadata.put("contentType", event.getContentType());
+        metadata.put("originalName", event.getOriginalName());
+        metadata.put("uploadedAt", event.getUploadedAt());
+        if (event.getContentType() != null && event.getContentType().startsWith("image/")) {
+            readDimensions(event.getSha256(), metadata);
+        }
+        job.<List<ImageDerivative>>get(ThumbnailStage.THUMBNAILS).ifPresent(thumbnails -> metadata.put("thumbnails",
+                thumbnails.stream().map(ImageDerivative::getName).toList()));
+
+        Path target = outputDir.resolve(event.getSha256()).resolve("metadata.json");
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), "metadata", ".tmp");
+        try {
+            objectMapper.writeValue(temp.toFile(), metadata);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        job.put(METADATA, metadata);
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private void readDimensions(String sha256, Map<String, Object> metadata) throws IOException {
+        try (InputStream in = contentStore.open(sha256);
+             ImageInputStream image = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = image != null ? ImageIO.getImageReaders(image) : null;
+            if (readers == null || !readers.hasNext()) {
+                return;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(image, true, true);
+                metadata.put("format", reader.getFormatName().toLowerCase());
+                metadata.put("width", reader.getWidth(0));
+                metadata.put("height", reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
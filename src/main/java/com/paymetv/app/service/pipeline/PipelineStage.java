@@ -0,0 +1,18 @@
+package com.paymetv.app.service.pipeline;
+
+/**
+ * One step of the post-upload {@link UploadPipeline}.
+ * <p></p>
+ * Stages run in {@link org.springframework.core.annotation.Order} order, each on its
+ * own bounded pool. A stage that does not apply to a file (for example thumbnailing
+ * a PDF) simply returns; throwing stops the job and is reported as a failure.
+ *
+ * @author PayMeTV Team
+ */
+public interface PipelineStage {
+
+    /** Short name used in thread names and as the {@code stage} metric tag. */
+    String name();
+
+    void process(UploadJob job) throws Exception;
+}
@@ -0,0 +1,47 @@
+package com.paymetv.app.service.pipeline;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Renders the thumbnails of uploaded images through the {@link ImageDerivativeGenerator}.
+ * <p></p>
+ * The stage thread waits for the render, so a backlog of images holds the
+ * pipeline (and, through it, the Kafka listener) rather than piling up in the
+ * generator. Non-images are skipped.
+ *
+ * @author PayMeTV Team
+ */
+@Component
+@Order(20)
+public class ThumbnailStage implements PipelineStage {
+
+    /** Job attribute holding the rendered {@code List<ImageDerivative>}. */
+    public static final String THUMBNAILS = "thumbnails";
+
+    private final ImageDerivativeGenerator generator;
+
+    public ThumbnailStage(ImageDerivativeGenerator generator) {
+        this.generator = generator;
+    }
+
+    @Override
+    public String name() {
+        return "thumbnail";
+    }
+
+    @Override
+    public void process(UploadJob job) throws Exception {
+        FileUploadedEvent event = job.getEvent();
+        if (event.getContentType() == null || !event.getContentType().startsWith("image/")) {
+            return;
+        }
+
+        List<ImageDerivative> thumbnails = generator.generate(event.getSha256()).get();
+        if (!thumbnails.isEmpty()) {
+            job.put(THUMBNAILS, thumbnails);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.paymetv.app.service.pipeline;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A single upload travelling through the {@link UploadPipeline}.
+ * <p></p>
+ * Stages read the {@link FileUploadedEvent} and leave their results as
+ * attributes for the stages after them.
+ *
+ * @author PayMeTV Team
+ */
+@Getter
+@ToString
+public class UploadJob {
+
+    private final FileUploadedEvent event;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+
+    public UploadJob(FileUploadedEvent event) {
+        this.event = event;
+    }
+
+    public void put(String name, Object value) {
+        attributes.put(name, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Optional<T> get(String name) {
+        return Optional.ofNullable((T) attributes.get(name));
+    }
+}
@@ -0,0 +1,150 @@
+package com.paymetv.app.service.pipeline;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded, staged processing of uploads after they have been stored.
+ * <p></p>
+ * Every {@link PipelineStage} owns a fixed pool and a bounded queue, so different
+ * uploads are in different stages at the same time (one image is being
+ * thumbnailed while the next is being validated). When a stage's queue is full,
+ * the thread handing work to it blocks. That back-pressure propagates from the
+ * slowest stage all the way to the Kafka listener, which simply stops polling
+ * until there is room, instead of buffering an unbounded backlog in memory.
+ * <p></p>
+ * Metrics, all tagged with {@code stage}:
+ * - {@code upload_pipeline_queue_depth}: jobs waiting for the stage
+ * - {@code upload_pipeline_queue_wait_seconds}: time a job waited for the stage
+ * - {@code upload_pipeline_stage_duration_seconds}: processing time, also tagged with {@code outcome}
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class UploadPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadPipeline.class);
+
+    private final List<Stage> stages = new ArrayList<>();
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public UploadPipeline(List<PipelineStage> stages,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.upload.pipeline.threads-per-stage:2}") int threadsPerStage,
+                          @Value("${app.upload.pipeline.queue-capacity:100}") int queueCapacity) {
+        this.meterRegistry = meterRegistry;
+        for (PipelineStage stage : stages) {
+            this.stages.add(new Stage(stage, threadsPerStage, queueCapacity));
+        }
+    }
+
+    /**
+     * Queues an upload for processing, blocking while the first stage is full.
+     *
+     * @return completes with the job once every stage has run, or exceptionally
+     *         with the first stage failure
+     */
+    public CompletableFuture<UploadJob> submit(FileUploadedEvent event) {
+        CompletableFuture<UploadJob> done = new CompletableFuture<>();
+        UploadJob job = new UploadJob(event);
+        if (stages.isEmpty()) {
+            done.complete(job);
+        } else {
+            stages.get(0).enqueue(job, 0, done);
+        }
+        return done;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Drain front to back so jobs already inside the pipeline can still move forward
+        for (Stage stage : stages) {
+            stage.executor.shutdown();
+            if (!stage.executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Pipeline stage '{}' did not drain before shutdown", stage.stage.name());
+                stage.executor.shutdownNow();
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private final class Stage {
+        private final PipelineStage stage;
+        private final ThreadPoolExecutor executor;
+        private final Timer waitTimer;
+        private final Timer successTimer;
+        private final Timer failureTimer;
+
+        Stage(PipelineStage stage, int threads, int queueCapacity) {
+            this.stage = stage;
+
+            AtomicInteger count = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "upload-pipeline-" + stage.name() + "-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    BlockWhenFullPolicy.INSTANCE);
+            this.executor.prestartAllCoreThreads();
+
+            Tags tags = Tags.of("stage", stage.name());
+            meterRegistry.gauge("upload_pipeline_queue_depth", tags, executor.getQueue(), queue -> queue.size());
+            this.waitTimer = meterRegistry.timer("upload_pipeline_queue_wait_seconds", tags);
+            this.successTimer = meterRegistry.timer("upload_pipeline_stage_duration_seconds", tags.and("outcome", "success"));
+            this.failureTimer = meterRegistry.timer("upload_pipeline_stage_duration_seconds", tags.and("outcome", "failure"));
+        }
+
+        void enqueue(UploadJob job, int index, CompletableFuture<UploadJob> done) {
+            long queuedAt = System.nanoTime();
+            try {
+                executor.execute(() -> run(job, index, done, queuedAt));
+            } catch (RejectedExecutionException e) {
+                done.completeExceptionally(e);
+            }
+        }
+
+        private void run(UploadJob job, int index, CompletableFuture<UploadJob> done, long queuedAt) {
+            long start = System.nanoTime();
+            waitTimer.record(start - queuedAt, TimeUnit.NANOSECONDS);
+            try {
+                stage.process(job);
+            } catch (Exception e) {
+                failureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                log.warn("Pipeline stage '{}' failed for blob {}: {}",
+                        stage.name(), job.getEvent().getSha256(), e.getMessage());
+                done.completeExceptionally(e);
+                return;
+            }
+            successTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+            if (index + 1 < stages.size()) {
+                stages.get(index + 1).enqueue(job, index + 1, done);
+            } else {
+                log.info("Processed upload {}: {}", job.getEvent().getSha256(), job.getAttributes());
+                done.complete(job);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.paymetv.app.service.pipeline;
+
+import com.paymetv.app.service.FileUploadService;
+import com.paymetv.app.service.storage.ContentAddressedStore;
+import com.paymetv.app.service.upload.FileSignatureDetector;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+
+/**
+ * First pipeline stage: checks that the event still describes a stored, allowed file
+ * before any work is spent on it, including that the stored bytes carry the
+ * signature of the declared type (events may come from other producers than the
+ * upload endpoints, which already check this).
+ *
+ * @author PayMeTV Team
+ */
+@Component
+@Order(10)
+public class ValidationStage implements PipelineStage {
+
+    private final ContentAddressedStore contentStore;
+    private final FileUploadService fileUploadService;
+
+    public ValidationStage(ContentAddressedStore contentStore, FileUploadService fileUploadService) {
+        this.contentStore = contentStore;
+        this.fileUploadService = fileUploadService;
+    }
+
+    @Override
+    public String name() {
+        return "validation";
+    }
+
+    @Override
+    public void process(UploadJob job) throws Exception {
+        FileUploadedEvent event = job.getEvent();
+        fileUploadService.validateContentType(event.getContentType());
+
+        long size;
+        try {
+            size = contentStore.size(event.getSha256());
+        } catch (NoSuchFileException e) {
+            throw new IllegalStateException("Blob " + event.getSha256() + " is no longer stored");
+        }
+        if (size != event.getSize()) {
+            throw new IllegalStateException(String.format(
+                    "Blob %s is %d bytes, event says %d", event.getSha256(), size, event.getSize()));
+        }
+
+        byte[] header = new byte[FileSignatureDetector.HEADER_LENGTH];
+        int headerLength;
+        try (InputStream in = contentStore.open(event.getSha256())) {
+            headerLength = in.readNBytes(header, 0, header.length);
+        }
+        fileUploadService.validateSignature(event.getContentType(), header, headerLength);
+    }
+}
@@ -0,0 +1,33 @@
+package com.paymetv.app.service.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Result of storing content in the {@link ContentAddressedStore}.
+ *
+ * @author PayMeTV Team
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+@Builder
+public class BlobRef {
+    /** Lower-case hex SHA-256 of the content; also the blob's name in the store. */
+    private final String hash;
+    private final long size;
+
+    /** Key of the blob in the {@link StorageBackend}. */
+    private final String key;
+
+    /** Where the backend keeps the blob, e.g. an absolute path or {@code s3://bucket/key}. */
+    private final String location;
+
+    /** {@code true} when identical content was already stored and no new blob was written. */
+    private final boolean deduplicated;
+
+    /** Number of references to the blob after this store operation. */
+    private final long refCount;
+}
@@ -0,0 +1,351 @@
+package com.paymetv.app.service.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed, deduplicating blob store for uploaded files.
+ * <p></p>
+ * Every blob is named after the SHA-256 of its content, so identical uploads
+ * share one copy. Blob keys are sharded by the first two hash bytes to keep
+ * directories small (at most 65,536 leaf directories, each holding a tiny
+ * fraction of the blobs). The content itself is persisted by the configured
+ * {@link StorageBackend}; this class keeps the bookkeeping under its own root:
+ * <pre>
+ *   backend: ab/cd/abcdef0123...              blob content
+ *   backend: ab/cd/abcdef0123....thumb-320.jpg derivatives (thumbnails), stored next to the blob
+ *   {root}/ab/cd/abcdef0123....refs           reference count (decimal text)
+ *   {root}/ab/cd/abcdef0123....type           MIME type recorded by the first upload
+ *   {root}/.tmp/                              uploads in progress
+ * </pre>
+ * The hash is computed while the content streams into a local temp file, so
+ * the data is read only once before it is handed to the backend.
+ * <p></p>
+ * Reference counts are updated under an in-process lock stripe plus an OS file
+ * lock on the {@code .refs} file, which keeps them consistent between threads
+ * and between pods sharing the volume.
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class ContentAddressedStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ContentAddressedStore.class);
+
+    private static final String TEMP_DIR = ".tmp";
+    private static final String REFS_SUFFIX = ".refs";
+    private static final String TYPE_SUFFIX = ".type";
+    private static final int COPY_BUFFER_SIZE = 16 * 1024;
+    private static final int LOCK_STRIPES = 64;
+    private static final HexFormat HEX = HexFormat.of();
+    private static final Pattern DERIVATIVE_NAME = Pattern.compile("[a-z0-9][a-z0-9.-]*");
+
+    private final Path root;
+    private final StorageBackend backend;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    public ContentAddressedStore(@Value("${app.storage.blobs-dir:uploads/blobs}") String blobsDir,
+                                 StorageBackend backend) {
+        this.root = Paths.get(blobsDir);
+        this.backend = backend;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Streams {@code in} into the store, hashing it on the way.
+     *
+     * @param maxBytes upper bound on the content size; exceeding it aborts the copy
+     * @return the stored blob, new or deduplicated
+     * @throws IllegalArgumentException if the content is empty or larger than {@code maxBytes}
+     */
+    public BlobRef store(InputStream in, long maxBytes) throws IOException {
+        MessageDigest digest = sha256();
+        Path temp = newTempFile();
+
+        long total = 0;
+        boolean completed = false;
+        try {
+            try (OutputStream out = Files.newOutputStream(temp, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    total += read;
+                    if (total > maxBytes) {
+                        throw new IllegalArgumentException(
+                                String.format("File size exceeds the maximum allowed size of %d bytes.", maxBytes));
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+            if (total == 0) {
+                throw new IllegalArgumentException("No file was provided or the file is empty.");
+            }
+            BlobRef ref = publish(temp, HEX.formatHex(digest.digest()), total);
+            completed = true;
+            return ref;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Moves a file created with {@link #newTempFile()} into the store.
+     * <p></p>
+     * Used when content is assembled directly into a temp file (for example with
+     * {@code FileChannel.transferTo}); the file is hashed with one sequential read.
+     *
+     * @throws IllegalArgumentException if the file is empty
+     */
+    public BlobRef storeFile(Path temp) throws IOException {
+        boolean completed = false;
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ)) {
+                size = channel.size();
+                ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE * 4);
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            }
+            if (size == 0) {
+                throw new IllegalArgumentException("No file was provided or the file is empty.");
+            }
+            BlobRef ref = publish(temp, HEX.formatHex(digest.digest()), size);
+            completed = true;
+            return ref;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Creates an empty temp file on the store's file system.
+     */
+    public Path newTempFile() throws IOException {
+        Path tempDir = Files.createDirectories(root.resolve(TEMP_DIR));
+        return Files.createFile(tempDir.resolve(UUID.randomUUID() + ".tmp"));
+    }
+
+    public boolean exists(String hash) throws IOException {
+        return backend.exists(key(hash));
+    }
+
+    /**
+     * Opens the content of a stored blob.
+     *
+     * @throws java.nio.file.NoSuchFileException if the blob is not stored
+     */
+    public InputStream open(String hash) throws IOException {
+        return backend.open(key(hash));
+    }
+
+    /**
+     * Size in bytes of a stored blob.
+     *
+     * @throws java.nio.file.NoSuchFileException if the blob is not stored
+     */
+    public long size(String hash) throws IOException {
+        return backend.size(key(hash));
+    }
+
+    /**
+     * Local file holding the blob, when the backend keeps one (see {@link StorageBackend#localPath}).
+     */
+    public Optional<Path> localPath(String hash) throws IOException {
+        return backend.localPath(key(hash));
+    }
+
+    /**
+     * Records the MIME type of a blob. The first recorded type is kept: the
+     * content is identical, so later uploads cannot meaningfully change it.
+     */
+    public void recordContentType(String hash, String contentType) throws IOException {
+        if (contentType == null) {
+            return;
+        }
+        Path type = root.resolve(key(hash) + TYPE_SUFFIX);
+        Files.createDirectories(type.getParent());
+        try {
+            Files.writeString(type, contentType, StandardCharsets.US_ASCII, StandardOpenOption.CREATE_NEW);
+        } catch (FileAlreadyExistsException e) {
+            // Already recorded by an earlier upload of the same content
+        }
+    }
+
+    /**
+     * MIME type recorded for a blob, if any.
+     */
+    public Optional<String> contentType(String hash) throws IOException {
+        Path type = root.resolve(key(hash) + TYPE_SUFFIX);
+        if (!Files.exists(type)) {
+            return Optional.empty();
+        }
+        return Optional.of(Files.readString(type, StandardCharsets.US_ASCII).trim());
+    }
+
+    /**
+     * Stores a file derived from a blob (for example a thumbnail) next to it in the backend.
+     * Takes ownership of {@code source}, as {@link StorageBackend#put} does.
+     */
+    public void storeDerivative(String hash, String name, Path source) throws IOException {
+        backend.put(derivativeKey(hash, name), source);
+    }
+
+    public boolean derivativeExists(String hash, String name) throws IOException {
+        return backend.exists(derivativeKey(hash, name));
+    }
+
+    /**
+     * Opens a derivative stored with {@link #storeDerivative}.
+     *
+     * @throws java.nio.file.NoSuchFileException if it has not been generated
+     */
+    public InputStream openDerivative(String hash, String name) throws IOException {
+        return backend.open(derivativeKey(hash, name));
+    }
+
+    /**
+     * Size in bytes of a derivative.
+     *
+     * @throws java.nio.file.NoSuchFileException if it has not been generated
+     */
+    public long derivativeSize(String hash, String name) throws IOException {
+        return backend.size(derivativeKey(hash, name));
+    }
+
+    /**
+     * Current number of references to a blob, {@code 0} if it is not stored.
+     */
+    public long refCount(String hash) throws IOException {
+        Path refs = refsPath(key(hash));
+        if (!Files.exists(refs)) {
+            return 0;
+        }
+        String text = Files.readString(refs, StandardCharsets.US_ASCII).trim();
+        return text.isEmpty() ? 0 : Long.parseLong(text);
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private BlobRef publish(Path temp, String hash, long size) throws IOException {
+        String key = key(hash);
+
+        ReentrantLock lock = lockFor(hash);
+        lock.lock();
+        try (FileChannel refs = openRefs(key);
+             FileLock ignored = refs.lock()) {
+            long count = readCount(refs);
+            boolean deduplicated = count > 0 && backend.exists(key);
+            if (deduplicated) {
+                Files.delete(temp);
+            } else {
+                backend.put(key, temp);
+                count = 0;
+            }
+            writeCount(refs, ++count);
+
+            log.debug("Stored blob {} ({} bytes, {} references, deduplicated={})", hash, size, count, deduplicated);
+            return BlobRef.builder()
+                    .hash(hash)
+                    .size(size)
+                    .key(key)
+                    .location(backend.location(key))
+                    .deduplicated(deduplicated)
+                    .refCount(count)
+                    .build();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Backend key of a blob: {@code ab/cd/abcd...}.
+     */
+    public static String key(String hash) {
+        // Hashes come from the store or from stored metadata; reject anything else so
+        // a crafted value can never resolve outside the blobs directory.
+        if (hash == null || hash.length() != 64
+                || !hash.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+            throw new IllegalArgumentException("Invalid content hash: " + hash);
+        }
+        return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash;
+    }
+
+    /**
+     * Backend key of a derivative: {@code ab/cd/abcd....<name>}.
+     */
+    public static String derivativeKey(String hash, String name) {
+        if (name == null || !DERIVATIVE_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid derivative name: " + name);
+        }
+        return key(hash) + "." + name;
+    }
+
+    private Path refsPath(String key) {
+        return root.resolve(key + REFS_SUFFIX);
+    }
+
+    private FileChannel openRefs(String key) throws IOException {
+        Path refs = refsPath(key);
+        Files.createDirectories(refs.getParent());
+        return FileChannel.open(refs, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static long readCount(FileChannel refs) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(20);
+        refs.read(buffer, 0);
+        String text = new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII).trim();
+        return text.isEmpty() ? 0 : Long.parseLong(text);
+    }
+
+    private static void writeCount(FileChannel refs, long count) throws IOException {
+        refs.truncate(0);
+        refs.write(ByteBuffer.wrap(Long.toString(count).getBytes(StandardCharsets.US_ASCII)), 0);
+    }
+
+    private ReentrantLock lockFor(String hash) {
+        return locks[Integer.parseInt(hash.substring(0, 2), 16) % LOCK_STRIPES];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
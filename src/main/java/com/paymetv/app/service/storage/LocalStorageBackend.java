@@ -0,0 +1,122 @@
+package com.paymetv.app.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * {@link StorageBackend} on a local or mounted directory, implemented with NIO.
+ * <p></p>
+ * When the source file is on the same file system (the usual case, since the
+ * content store stages uploads next to the blobs) a put is a single atomic
+ * rename and no bytes are copied. Otherwise the content is copied through a
+ * reused direct buffer into a temp file with {@link FileChannel}, forced to disk
+ * and then renamed into place, so readers never observe a partial object.
+ *
+ * @author PayMeTV Team
+ */
+public class LocalStorageBackend implements StorageBackend {
+
+    private static final int DIRECT_BUFFER_SIZE = 256 * 1024;
+
+    private final Path root;
+
+    /* Direct buffers are expensive to allocate; keep one per copying thread. */
+    private final ThreadLocal<ByteBuffer> buffers =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE));
+
+    public LocalStorageBackend(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public String name() {
+        return "local";
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            copyIntoPlace(source, target);
+            Files.delete(source);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Channels.newInputStream(FileChannel.open(resolve(key), StandardOpenOption.READ));
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return Files.size(resolve(key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(resolve(key));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public String location(String key) {
+        return resolve(key).toAbsolutePath().toString();
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        Path path = resolve(key);
+        return Files.exists(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private void copyIntoPlace(Path source, Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        boolean completed = false;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = buffers.get();
+            buffer.clear();
+            while (in.read(buffer) != -1 || buffer.position() > 0) {
+                buffer.flip();
+                out.write(buffer);
+                buffer.compact();
+            }
+            out.force(false);
+            completed = true;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root.normalize())) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return path;
+    }
+}
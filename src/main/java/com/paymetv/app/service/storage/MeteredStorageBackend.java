@@ -0,0 +1,147 @@
+package com.paymetv.app.service.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decorator recording per-backend latency and throughput in the shared {@link MeterRegistry}.
+ * <p></p>
+ * Meters (all tagged with {@code backend}):
+ * - {@code storage_backend_duration_seconds} timer, tagged {@code operation} and {@code outcome}
+ * - {@code storage_backend_bytes_total} counter, tagged {@code operation} ({@code put} or {@code get});
+ *   its rate is the backend's throughput
+ * <p></p>
+ * Bytes read through {@link #open(String)} are counted as the stream is consumed.
+ *
+ * @author PayMeTV Team
+ */
+public class MeteredStorageBackend implements StorageBackend {
+
+    private final StorageBackend delegate;
+    private final MeterRegistry meterRegistry;
+    private final Counter bytesWritten;
+    private final Counter bytesRead;
+
+    public MeteredStorageBackend(StorageBackend delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.bytesWritten = meterRegistry.counter("storage_backend_bytes_total",
+                Tags.of("backend", delegate.name(), "operation", "put"));
+        this.bytesRead = meterRegistry.counter("storage_backend_bytes_total",
+                Tags.of("backend", delegate.name(), "operation", "get"));
+    }
+
+    /**
+     * The wrapped backend.
+     */
+    public StorageBackend getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public String name() {
+        return delegate.name();
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        long size = Files.size(source);
+        time("put", () -> {
+            delegate.put(key, source);
+            return null;
+        });
+        bytesWritten.increment(size);
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        InputStream in = time("get", () -> delegate.open(key));
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1) {
+                    bytesRead.increment();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    bytesRead.increment(read);
+                }
+                return read;
+            }
+        };
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return time("size", () -> delegate.size(key));
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        return time("exists", () -> delegate.exists(key));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        time("delete", () -> {
+            delegate.delete(key);
+            return null;
+        });
+    }
+
+    @Override
+    public String location(String key) {
+        return delegate.location(key);
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) throws IOException {
+        return delegate.localPath(key);
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    @FunctionalInterface
+    private interface IoCall<T> {
+        T call() throws IOException;
+    }
+
+    private <T> T time(String operation, IoCall<T> call) throws IOException {
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            return call.call();
+        } catch (IOException | RuntimeException e) {
+            outcome = "error";
+            throw e;
+        } finally {
+            Timer.builder("storage_backend_duration_seconds")
+                    .tags("backend", delegate.name(), "operation", operation, "outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
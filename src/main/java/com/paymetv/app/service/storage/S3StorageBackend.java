@@ -0,0 +1,251 @@
+package com.paymetv.app.service.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link StorageBackend} on an S3-compatible object store.
+ * <p></p>
+ * Objects up to {@code partSize} are sent with a single PutObject. Larger
+ * objects use a multipart upload: each part is streamed from its slice of the
+ * source file with positional reads, so memory use stays flat regardless of the
+ * object size. A failed multipart upload is aborted so the store does not keep
+ * the orphaned parts.
+ *
+ * @author PayMeTV Team
+ */
+public class S3StorageBackend implements StorageBackend {
+
+    private static final Logger log = LoggerFactory.getLogger(S3StorageBackend.class);
+
+    /** S3 rejects multipart parts smaller than 5 MiB (except the last one). */
+    public static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    private static final Pattern UPLOAD_ID = Pattern.compile("<UploadId>(.+?)</UploadId>");
+    private static final Pattern ERROR_CODE = Pattern.compile("<Error>.*?<Code>(.+?)</Code>", Pattern.DOTALL);
+
+    private final S3Client client;
+    private final String bucket;
+    private final long partSize;
+
+    public S3StorageBackend(S3Client client, String bucket, long partSize) {
+        if (partSize < MIN_PART_SIZE) {
+            throw new IllegalArgumentException(
+                    String.format("S3 part size must be at least %d bytes, was %d.", MIN_PART_SIZE, partSize));
+        }
+        this.client = client;
+        this.bucket = bucket;
+        this.partSize = partSize;
+    }
+
+    @Override
+    public String name() {
+        return "s3";
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        long size = Files.size(source);
+        if (size <= partSize) {
+            HttpResponse<String> response = client.send("PUT", objectPath(key), null,
+                    HttpRequest.BodyPublishers.ofFile(source), HttpResponse.BodyHandlers.ofString());
+            check(response, "PUT", key);
+        } else {
+            putMultipart(key, source, size);
+        }
+        Files.delete(source);
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        HttpResponse<InputStream> response = client.send("GET", objectPath(key), null,
+                HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() != 200) {
+            try (InputStream body = response.body()) {
+                body.readAllBytes();
+            }
+            if (response.statusCode() == 404) {
+                throw new NoSuchFileException(location(key));
+            }
+            throw new IOException(String.format("S3 GET %s failed with status %d", key, response.statusCode()));
+        }
+        return response.body();
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        HttpResponse<Void> response = head(key);
+        if (response.statusCode() == 404) {
+            throw new NoSuchFileException(location(key));
+        }
+        check(response, "HEAD", key);
+        return response.headers().firstValueAsLong("Content-Length")
+                .orElseThrow(() -> new IOException("S3 HEAD " + key + " returned no Content-Length"));
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        HttpResponse<Void> response = head(key);
+        if (response.statusCode() == 404) {
+            return false;
+        }
+        check(response, "HEAD", key);
+        return true;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        HttpResponse<String> response = client.send("DELETE", objectPath(key), null,
+                HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 404) {
+            check(response, "DELETE", key);
+        }
+    }
+
+    @Override
+    public String location(String key) {
+        return "s3://" + bucket + "/" + key;
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private void putMultipart(String key, Path source, long size) throws IOException {
+        String path = objectPath(key);
+        HttpResponse<String> created = client.send("POST", path, queryOf("uploads", null),
+                HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.ofString());
+        check(created, "CreateMultipartUpload", key);
+        Matcher matcher = UPLOAD_ID.matcher(created.body());
+        if (!matcher.find()) {
+            throw new IOException("S3 CreateMultipartUpload for " + key + " returned no UploadId");
+        }
+        String uploadId = matcher.group(1);
+
+        boolean completed = false;
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            List<String> etags = new ArrayList<>();
+            for (long offset = 0; offset < size; offset += partSize) {
+                int partNumber = etags.size() + 1;
+                long length = Math.min(partSize, size - offset);
+                long start = offset;
+
+                HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.fromPublisher(
+                        HttpRequest.BodyPublishers.ofInputStream(() -> new SliceInputStream(channel, start, length)),
+                        length);
+                Map<String, String> query = queryOf("partNumber", Integer.toString(partNumber));
+                query.put("uploadId", uploadId);
+                HttpResponse<String> part = client.send("PUT", path, query, body, HttpResponse.BodyHandlers.ofString());
+                check(part, "UploadPart " + partNumber, key);
+                etags.add(part.headers().firstValue("ETag")
+                        .orElseThrow(() -> new IOException("S3 UploadPart for " + key + " returned no ETag")));
+            }
+
+            StringBuilder xml = new StringBuilder("<CompleteMultipartUpload>");
+            for (int i = 0; i < etags.size(); i++) {
+                xml.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                        .append(etags.get(i)).append("</ETag></Part>");
+            }
+            xml.append("</CompleteMultipartUpload>");
+
+            HttpResponse<String> done = client.send("POST", path, queryOf("uploadId", uploadId),
+                    HttpRequest.BodyPublishers.ofString(xml.toString()), HttpResponse.BodyHandlers.ofString());
+            check(done, "CompleteMultipartUpload", key);
+            completed = true;
+            log.debug("Uploaded {} to {} in {} parts", key, bucket, etags.size());
+        } finally {
+            if (!completed) {
+                abortQuietly(path, uploadId, key);
+            }
+        }
+    }
+
+    private void abortQuietly(String path, String uploadId, String key) {
+        try {
+            client.send("DELETE", path, queryOf("uploadId", uploadId),
+                    HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.discarding());
+        } catch (IOException e) {
+            log.warn("Failed to abort multipart upload {} of {}: {}", uploadId, key, e.getMessage());
+        }
+    }
+
+    private HttpResponse<Void> head(String key) throws IOException {
+        return client.send("HEAD", objectPath(key), null,
+                HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    private String objectPath(String key) {
+        return "/" + bucket + "/" + key;
+    }
+
+    private static Map<String, String> queryOf(String name, String value) {
+        Map<String, String> query = new HashMap<>();
+        query.put(name, value);
+        return query;
+    }
+
+    private static void check(HttpResponse<?> response, String operation, String key) throws IOException {
+        int status = response.statusCode();
+        // CompleteMultipartUpload can report an error inside a 200 response
+        if (status / 100 == 2 && !(response.body() instanceof String body && ERROR_CODE.matcher(body).find())) {
+            return;
+        }
+        String detail = "";
+        if (response.body() instanceof String body) {
+            Matcher matcher = ERROR_CODE.matcher(body);
+            detail = matcher.find() ? ": " + matcher.group(1) : "";
+        }
+        throw new IOException(String.format("S3 %s %s failed with status %d%s", operation, key, status, detail));
+    }
+
+    /**
+     * Reads one slice of a file with positional reads, so several slices of the
+     * same channel can be streamed without sharing a file position.
+     */
+    private static final class SliceInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        SliceInputStream(FileChannel channel, long start, long length) {
+            this.channel = channel;
+            this.position = start;
+            this.end = start + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.paymetv.app.service.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Where blob content is persisted.
+ * <p></p>
+ * Keys are relative, slash-separated names such as {@code ab/cd/abcdef...}.
+ * Implementations:
+ * - {@link LocalStorageBackend}: a directory on the local (or mounted) file system
+ * - {@link S3StorageBackend}: an S3-compatible object store, uploaded with multipart streaming
+ * - {@link TieredStorageBackend}: writes locally and replicates to a remote backend in the background
+ * <p></p>
+ * The active backend is chosen with {@code app.storage.backend}; see {@code StorageConfig}.
+ *
+ * @author PayMeTV Team
+ */
+public interface StorageBackend extends Closeable {
+
+    /**
+     * Short name used in logs and as the {@code backend} metric tag.
+     */
+    String name();
+
+    /**
+     * Stores the content of {@code source} under {@code key}, replacing any existing object.
+     * <p></p>
+     * The backend takes ownership of {@code source}: it is moved or deleted once
+     * the content has been stored.
+     */
+    void put(String key, Path source) throws IOException;
+
+    /**
+     * Opens the content stored under {@code key}.
+     *
+     * @throws NoSuchFileException if nothing is stored under the key
+     */
+    InputStream open(String key) throws IOException;
+
+    /**
+     * Size in bytes of the content stored under {@code key}.
+     *
+     * @throws NoSuchFileException if nothing is stored under the key
+     */
+    long size(String key) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    /**
+     * Removes the content stored under {@code key}; does nothing if it is absent.
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Human-readable location of the key, e.g. an absolute path or {@code s3://bucket/key}.
+     */
+    String location(String key);
+
+    /**
+     * Local file holding the content, when the backend has one. Callers can use it
+     * to hand the file to sendfile instead of reading {@link #open(String)}.
+     */
+    default Optional<Path> localPath(String key) throws IOException {
+        return Optional.empty();
+    }
+
+    @Override
+    default void close() throws IOException {
+        // Nothing to release by default
+    }
+}
@@ -0,0 +1,30 @@
+package com.paymetv.app.service.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.nio.file.Path;
+
+/**
+ * A stored upload as seen by the download path.
+ *
+ * @author PayMeTV Team
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+@Builder
+public class StoredFile {
+    /** SHA-256 of the content; stable, so it doubles as a strong ETag. */
+    private final String hash;
+    private final long size;
+    private final String contentType;
+
+    /** Last modification time in epoch millis, or {@code -1} when the backend does not expose it. */
+    private final long lastModified;
+
+    /** Local file with the content, or {@code null} when it must be streamed from the backend. */
+    private final Path localPath;
+}
@@ -0,0 +1,178 @@
+package com.paymetv.app.service.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link StorageBackend} that writes to a fast local tier and replicates every
+ * object to a remote tier in the background.
+ * <p></p>
+ * A put returns as soon as the local write is done; the upload to the remote
+ * tier runs on a small dedicated pool. Reads are served locally when the object
+ * is present and fall back to the remote tier otherwise (for example on a pod
+ * that did not receive the original upload). A failed replication is logged and
+ * counted, and the local copy keeps serving reads.
+ *
+ * @author PayMeTV Team
+ */
+public class TieredStorageBackend implements StorageBackend {
+
+    private static final Logger log = LoggerFactory.getLogger(TieredStorageBackend.class);
+
+    private final StorageBackend local;
+    private final StorageBackend remote;
+    private final ExecutorService uploader;
+    private final Map<String, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public TieredStorageBackend(StorageBackend local, StorageBackend remote, int uploadThreads,
+                                MeterRegistry meterRegistry) {
+        this.local = local;
+        this.remote = remote;
+        this.meterRegistry = meterRegistry;
+
+        AtomicInteger threads = new AtomicInteger();
+        this.uploader = Executors.newFixedThreadPool(uploadThreads, runnable -> {
+            Thread thread = new Thread(runnable, "storage-tiered-upload-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        meterRegistry.gaugeMapSize("storage_tiered_pending_uploads", Tags.empty(), pending);
+    }
+
+    @Override
+    public String name() {
+        return "tiered";
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        local.put(key, source);
+        replicate(key);
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        try {
+            return local.open(key);
+        } catch (NoSuchFileException e) {
+            return remote.open(key);
+        }
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        try {
+            return local.size(key);
+        } catch (NoSuchFileException e) {
+            return remote.size(key);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        return local.exists(key) || remote.exists(key);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        CompletableFuture<Void> upload = pending.get(key);
+        if (upload != null) {
+            // Let the in-flight replication finish so it cannot recreate the remote copy
+            upload.exceptionally(e -> null).join();
+        }
+        local.delete(key);
+        remote.delete(key);
+    }
+
+    @Override
+    public String location(String key) {
+        return local.location(key);
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) throws IOException {
+        return local.localPath(key);
+    }
+
+    /**
+     * Future of the background upload of {@code key}, or a completed future when none is running.
+     */
+    public CompletableFuture<Void> replication(String key) {
+        return pending.getOrDefault(key, CompletableFuture.completedFuture(null));
+    }
+
+    @Override
+    public void close() throws IOException {
+        uploader.shutdown();
+        try {
+            if (!uploader.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Tiered storage shut down with {} uploads still pending", pending.size());
+                uploader.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            uploader.shutdownNow();
+        }
+        local.close();
+        remote.close();
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private void replicate(String key) {
+        CompletableFuture<Void> upload = pending.compute(key, (k, previous) -> {
+            // Chain behind an earlier upload of the same key so the latest content wins
+            CompletableFuture<Void> before = previous != null
+                    ? previous.exceptionally(e -> null)
+                    : CompletableFuture.completedFuture(null);
+            return before.thenRunAsync(() -> upload(k), uploader);
+        });
+        upload.whenComplete((ignored, error) -> pending.remove(key, upload));
+    }
+
+    private void upload(String key) {
+        try {
+            Optional<Path> source = local.localPath(key);
+            if (source.isEmpty()) {
+                return; // deleted before it could be replicated
+            }
+            // The remote backend takes ownership of what it uploads, so hand it a hard
+            // link to the local copy (no data is copied), or a real copy if links are unsupported
+            Path replica = source.get().resolveSibling(".replica-" + UUID.randomUUID());
+            try {
+                Files.createLink(replica, source.get());
+            } catch (UnsupportedOperationException | IOException e) {
+                Files.copy(source.get(), replica);
+            }
+            try {
+                remote.put(key, replica);
+            } finally {
+                Files.deleteIfExists(replica);
+            }
+        } catch (IOException | RuntimeException e) {
+            meterRegistry.counter("storage_tiered_upload_failures_total").increment();
+            log.error("Background upload of {} to {} failed", key, remote.name(), e);
+            throw new IllegalStateException(e);
+        }
+    }
+}
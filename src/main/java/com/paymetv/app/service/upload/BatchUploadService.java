@@ -0,0 +1,153 @@
+package com.paymetv.app.service.upload;
+
+import com.paymetv.app.service.FileUploadService;
+import com.paymetv.app.service.pipeline.FileUploadedEvent;
+import com.paymetv.app.service.pipeline.FileUploadedPublisher;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stores the files of a multi-file upload in parallel.
+ * <p></p>
+ * Each file is validated and written by {@link FileUploadService} on a shared,
+ * bounded pool. When the pool's queue is full the request thread stores the
+ * file itself, so a large batch slows its own request down instead of queueing
+ * without limit. One file failing does not affect the others: every file gets
+ * its own result, in the order the files were sent.
+ * <p></p>
+ * The {@link FileUploadedEvent}s of the stored files are collected and handed to
+ * {@link FileUploadedPublisher#publishAll} once the whole batch is done.
+ * <p></p>
+ * Metrics:
+ * - {@code upload_batch_files}: files per batch
+ * - {@code upload_batch_duration_seconds}: time to store a whole batch
+ * - {@code upload_batch_queue_depth}: files waiting for a worker
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class BatchUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchUploadService.class);
+
+    private final FileUploadService fileUploadService;
+    private final FileUploadedPublisher fileUploadedPublisher;
+    private final int maxFiles;
+    private final ThreadPoolExecutor executor;
+    private final DistributionSummary batchFiles;
+    private final Timer batchDuration;
+
+    @Autowired
+    public BatchUploadService(FileUploadService fileUploadService,
+                              FileUploadedPublisher fileUploadedPublisher,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.upload.batch.max-files:50}") int maxFiles,
+                              @Value("${app.upload.batch.threads:4}") int threads,
+                              @Value("${app.upload.batch.queue-capacity:64}") int queueCapacity) {
+        this.fileUploadService = fileUploadService;
+        this.fileUploadedPublisher = fileUploadedPublisher;
+        this.maxFiles = maxFiles;
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "batch-upload-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        meterRegistry.gauge("upload_batch_queue_depth", Tags.empty(), executor.getQueue(), queue -> queue.size());
+        this.batchFiles = meterRegistry.summary("upload_batch_files");
+        this.batchDuration = meterRegistry.timer("upload_batch_duration_seconds");
+    }
+
+    /**
+     * Validates and stores every file.
+     *
+     * @param files the uploaded files
+     * @return one result per file, in order: the same metadata as a single upload with
+     *         {@code status=uploaded}, or {@code status=error} and a {@code message}
+     * @throws IllegalArgumentException if there are no files or more than {@code app.upload.batch.max-files}
+     */
+    public List<Map<String, Object>> saveFiles(List<MultipartFile> files) {
+        if (files == null || files.isEmpty()) {
+            throw new IllegalArgumentException("No files were provided.");
+        }
+        if (files.size() > maxFiles) {
+            throw new IllegalArgumentException(String.format(
+                    "A batch may contain at most %d files, got %d.", maxFiles, files.size()));
+        }
+
+        long start = System.nanoTime();
+        ConcurrentLinkedQueue<FileUploadedEvent> events = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<Map<String, Object>>> results = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            results.add(CompletableFuture.supplyAsync(() -> save(file, events), executor));
+        }
+
+        List<Map<String, Object>> saved = new ArrayList<>(files.size());
+        for (CompletableFuture<Map<String, Object>> result : results) {
+            saved.add(result.join());
+        }
+        fileUploadedPublisher.publishAll(new ArrayList<>(events));
+
+        batchFiles.record(files.size());
+        batchDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.info("Stored batch of {} files ({} failed) in {} ms", files.size(), files.size() - events.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return saved;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private Map<String, Object> save(MultipartFile file, ConcurrentLinkedQueue<FileUploadedEvent> events) {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            result.putAll(fileUploadService.saveFile(file, events::add));
+            result.put("status", "uploaded");
+        } catch (IllegalArgumentException e) {
+            result.put("originalName", file.getOriginalFilename() != null ? file.getOriginalFilename() : "unknown");
+            result.put("status", "error");
+            result.put("message", e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to save '{}' of a batch upload", file.getOriginalFilename(), e);
+            result.put("originalName", file.getOriginalFilename() != null ? file.getOriginalFilename() : "unknown");
+            result.put("status", "error");
+            result.put("message", "Failed to save file: " + e.getMessage());
+        }
+        return result;
+    }
+}
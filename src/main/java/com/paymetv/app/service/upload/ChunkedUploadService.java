@@ -0,0 +1,237 @@
+package com.paymetv.app.service.upload;
+
+import com.paymetv.app.service.FileUploadService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service implementing the resumable, chunked upload protocol.
+ * <p></p>
+ * Protocol:
+ * - initiate: declare file name, MIME type and total size; receive an upload id
+ * - upload parts: PUT numbered parts (1-based) in any order, in parallel, and retry freely
+ * - status: list the parts already received so a client can resume after a dropped connection
+ * - complete: verify the parts are contiguous and add up to the declared size, then
+ *   assemble them into the final file with {@code FileChannel.transferTo}
+ * <p></p>
+ * Session state is kept by {@link UploadSessionStore} on the shared upload volume,
+ * so parts of one upload may be sent to different pods.
+ * <p></p>
+ * A completion claimed by a pod that died is taken over by the next complete
+ * once {@code app.upload.chunked.assembly-timeout-ms} has passed, which must be
+ * longer than assembling the largest file takes. Every
+ * {@code app.upload.chunked.sweep-interval-ms} each pod removes the sessions that
+ * were neither completed nor aborted and received nothing for
+ * {@code app.upload.chunked.session-ttl-ms}, with their parts.
+ *
+ * @author PayMeTV Team
+ */
+@Service
+public class ChunkedUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedUploadService.class);
+
+    /** Highest accepted part number (same limit as S3 multipart uploads). */
+    public static final int MAX_PARTS = 10_000;
+
+    private final UploadSessionStore sessionStore;
+    private final FileUploadService fileUploadService;
+    private final long maxFileSize;
+    private final long maxPartSize;
+    private final long assemblyTimeoutMs;
+    private final long sessionTtlMs;
+    private final long sweepIntervalMs;
+    private final ScheduledThreadPoolExecutor sweeper;
+
+    public ChunkedUploadService(UploadSessionStore sessionStore,
+                                FileUploadService fileUploadService,
+                                @Value("${app.upload.chunked.max-file-size:2147483648}") long maxFileSize,
+                                @Value("${app.upload.chunked.max-part-size:16777216}") long maxPartSize,
+                                @Value("${app.upload.chunked.assembly-timeout-ms:900000}") long assemblyTimeoutMs,
+                                @Value("${app.upload.chunked.session-ttl-ms:86400000}") long sessionTtlMs,
+                                @Value("${app.upload.chunked.sweep-interval-ms:3600000}") long sweepIntervalMs) {
+        if (assemblyTimeoutMs <= 0 || sweepIntervalMs <= 0 || sessionTtlMs <= assemblyTimeoutMs) {
+            throw new IllegalStateException(String.format(
+                    "assembly-timeout-ms and sweep-interval-ms must be positive and session-ttl-ms longer than "
+                            + "assembly-timeout-ms, got %d, %d and %d", assemblyTimeoutMs, sweepIntervalMs, sessionTtlMs));
+        }
+        this.sessionStore = sessionStore;
+        this.fileUploadService = fileUploadService;
+        this.maxFileSize = maxFileSize;
+        this.maxPartSize = maxPartSize;
+        this.assemblyTimeoutMs = assemblyTimeoutMs;
+        this.sessionTtlMs = sessionTtlMs;
+        this.sweepIntervalMs = sweepIntervalMs;
+        this.sweeper = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "upload-session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Starts a new upload session.
+     *
+     * @throws IllegalArgumentException if the declared size or MIME type is not acceptable
+     */
+    public UploadSession initiate(String originalName, String contentType, long size) throws IOException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Declared file size must be greater than zero.");
+        }
+        if (size > maxFileSize) {
+            throw new IllegalArgumentException(
+                    String.format("File size %d bytes exceeds the maximum allowed size of %d bytes.",
+                            size, maxFileSize));
+        }
+        fileUploadService.validateContentType(contentType);
+
+        return sessionStore.create(originalName, contentType, size);
+    }
+
+    /**
+     * Stores one part. Re-sending a part replaces the earlier copy.
+     *
+     * @return the number of bytes stored for the part
+     * @throws NoSuchElementException   if the session does not exist
+     * @throws IllegalArgumentException if the part number or size is not acceptable
+     */
+    public long uploadPart(String uploadId, int partNumber, InputStream in) throws IOException {
+        UploadSession session = getSession(uploadId);
+        if (partNumber < 1 || partNumber > MAX_PARTS) {
+            throw new IllegalArgumentException(
+                    String.format("Part number %d is out of range for upload %s.", partNumber, uploadId));
+        }
+
+        long size = sessionStore.writePart(uploadId, partNumber, in, Math.min(maxPartSize, session.getSize()));
+        log.debug("Stored part {} of upload {} ({} bytes)", partNumber, uploadId, size);
+        return size;
+    }
+
+    /**
+     * Describes the session and the parts received so far.
+     *
+     * @throws NoSuchElementException if the session does not exist
+     */
+    public Map<String, Object> status(String uploadId) throws IOException {
+        UploadSession session = getSession(uploadId);
+        SortedMap<Integer, Long> parts = sessionStore.listParts(uploadId);
+
+        Map<String, Object> status = new HashMap<>();
+        status.put("uploadId", session.getUploadId());
+        status.put("originalName", session.getOriginalName());
+        status.put("contentType", session.getContentType());
+        status.put("size", session.getSize());
+        status.put("maxPartSize", maxPartSize);
+        status.put("receivedParts", new ArrayList<>(parts.keySet()));
+        status.put("receivedBytes", parts.values().stream().mapToLong(Long::longValue).sum());
+        return status;
+    }
+
+    /**
+     * Assembles the received parts into the final file and removes the session.
+     *
+     * @return the metadata of the stored file, as returned by {@link FileUploadService}
+     * @throws NoSuchElementException if the session does not exist
+     * @throws IllegalStateException  if parts are missing, the size does not match,
+     *                                or another request is already completing the session
+     */
+    public Map<String, Object> complete(String uploadId) throws IOException {
+        UploadSession session = getSession(uploadId);
+        if (!sessionStore.tryLockForCompletion(uploadId, assemblyTimeoutMs)) {
+            throw new IllegalStateException("Upload " + uploadId + " is already being completed.");
+        }
+
+        try {
+            SortedMap<Integer, Long> parts = sessionStore.listParts(uploadId);
+            long received = parts.values().stream().mapToLong(Long::longValue).sum();
+            if (parts.isEmpty() || parts.lastKey() != parts.size()) {
+                throw new IllegalStateException(
+                        String.format("Upload %s is missing parts: received %s.", uploadId, parts.keySet()));
+            }
+            if (received != session.getSize()) {
+                throw new IllegalStateException(
+                        String.format("Upload %s received %d bytes but %d were declared.",
+                                uploadId, received, session.getSize()));
+            }
+
+            List<Path> partPaths = new ArrayList<>(parts.size());
+            for (Integer partNumber : parts.keySet()) {
+                partPaths.add(sessionStore.partPath(uploadId, partNumber));
+            }
+
+            Map<String, Object> metadata = fileUploadService.saveParts(
+                    partPaths, session.getOriginalName(), session.getContentType());
+            sessionStore.delete(uploadId);
+            return metadata;
+
+        } catch (RuntimeException | IOException e) {
+            sessionStore.releaseCompletionLock(uploadId);
+            throw e;
+        }
+    }
+
+    /**
+     * Aborts the session and discards its parts.
+     */
+    public void abort(String uploadId) throws IOException {
+        getSession(uploadId);
+        sessionStore.delete(uploadId);
+        log.info("Aborted upload session {}", uploadId);
+    }
+
+    /**
+     * Removes the sessions that received nothing for {@code app.upload.chunked.session-ttl-ms}.
+     *
+     * @return the number of sessions removed
+     */
+    public int expireIdleSessions() throws IOException {
+        return sessionStore.expireIdle(sessionTtlMs);
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private void sweep() {
+        try {
+            int expired = expireIdleSessions();
+            if (expired > 0) {
+                log.info("Removed {} idle upload sessions", expired);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Keep the schedule alive; the next sweep tries again
+            log.warn("Failed to sweep idle upload sessions", e);
+        }
+    }
+
+    private UploadSession getSession(String uploadId) throws IOException {
+        return sessionStore.find(uploadId)
+                .orElseThrow(() -> new NoSuchElementException("Upload session not found with id: " + uploadId));
+    }
+}
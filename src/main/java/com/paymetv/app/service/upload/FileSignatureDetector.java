@@ -0,0 +1,141 @@
+package com.paymetv.app.service.upload;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Identifies the allowed upload formats from their leading "magic" bytes.
+ * <p></p>
+ * The signatures are precomputed into a table indexed by the first byte of the
+ * file, so a lookup only compares against the one or two signatures that can
+ * possibly match, and {@link #detect(byte[], int)} allocates nothing. ISO base
+ * media files (MP4) carry a variable box size first, so their {@code ftyp} box
+ * type is checked at offset 4 separately.
+ * <p></p>
+ * Recognised formats: JPEG, PNG, GIF (87a/89a), WebP, MP4, MPEG (program and
+ * elementary streams) and PDF.
+ *
+ * @author PayMeTV Team
+ */
+public final class FileSignatureDetector {
+
+    /** Bytes of the file needed to recognise every supported format. */
+    public static final int HEADER_LENGTH = 12;
+
+    private static final Signature[][] BY_FIRST_BYTE = new Signature[256][];
+    private static final byte[] FTYP = ascii("ftyp");
+    private static final String MP4 = "video/mp4";
+
+    static {
+        register(new Signature("image/jpeg", 0, bytes(0xFF, 0xD8, 0xFF)));
+        register(new Signature("image/png", 0, bytes(0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)));
+        register(new Signature("image/gif", 0, ascii("GIF87a")));
+        register(new Signature("image/gif", 0, ascii("GIF89a")));
+        register(new Signature("image/webp", 0, ascii("RIFF"), 8, ascii("WEBP")));
+        register(new Signature("video/mpeg", 0, bytes(0x00, 0x00, 0x01, 0xBA)));
+        register(new Signature("video/mpeg", 0, bytes(0x00, 0x00, 0x01, 0xB3)));
+        register(new Signature("application/pdf", 0, ascii("%PDF-")));
+    }
+
+    private FileSignatureDetector() {
+    }
+
+    /**
+     * Returns the MIME type whose signature starts {@code header}.
+     *
+     * @param header the first bytes of the file
+     * @param length how many bytes of {@code header} are valid
+     * @return the detected MIME type, or {@code null} if no supported signature matches
+     */
+    public static String detect(byte[] header, int length) {
+        if (length <= 0) {
+            return null;
+        }
+        Signature[] candidates = BY_FIRST_BYTE[header[0] & 0xFF];
+        if (candidates != null) {
+            for (Signature signature : candidates) {
+                if (signature.matches(header, length)) {
+                    return signature.mimeType;
+                }
+            }
+        }
+        if (startsWith(header, length, 4, FTYP)) {
+            return MP4;
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the file content really is of the declared MIME type.
+     */
+    public static boolean matches(String declaredType, byte[] header, int length) {
+        String detected = detect(header, length);
+        return detected != null && detected.equals(declaredType);
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private static final class Signature {
+        private final String mimeType;
+        private final int offset;
+        private final byte[] magic;
+        private final int secondOffset;
+        private final byte[] secondMagic;
+
+        Signature(String mimeType, int offset, byte[] magic) {
+            this(mimeType, offset, magic, 0, null);
+        }
+
+        Signature(String mimeType, int offset, byte[] magic, int secondOffset, byte[] secondMagic) {
+            this.mimeType = mimeType;
+            this.offset = offset;
+            this.magic = magic;
+            this.secondOffset = secondOffset;
+            this.secondMagic = secondMagic;
+        }
+
+        boolean matches(byte[] header, int length) {
+            return startsWith(header, length, offset, magic)
+                    && (secondMagic == null || startsWith(header, length, secondOffset, secondMagic));
+        }
+    }
+
+    private static void register(Signature signature) {
+        int first = signature.magic[0] & 0xFF;
+        Signature[] existing = BY_FIRST_BYTE[first];
+        Signature[] updated;
+        if (existing == null) {
+            updated = new Signature[]{signature};
+        } else {
+            updated = new Signature[existing.length + 1];
+            System.arraycopy(existing, 0, updated, 0, existing.length);
+            updated[existing.length] = signature;
+        }
+        BY_FIRST_BYTE[first] = updated;
+    }
+
+    private static boolean startsWith(byte[] header, int length, int offset, byte[] magic) {
+        if (length < offset + magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header[offset + i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,67 @@
+package com.paymetv.app.service.upload;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token bucket.
+ * <p></p>
+ * The whole bucket is one {@link AtomicLong}: the time at which it would be
+ * full again if nothing else were taken (the "theoretical arrival time" of the
+ * generic cell rate algorithm). Taking a token pushes that time forward by one
+ * emission interval; a take is refused when it would land more than
+ * {@code capacity} intervals in the future. Callers never block and never
+ * contend on a lock, only retry a compare-and-set.
+ *
+ * @author PayMeTV Team
+ */
+public final class TokenBucket {
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final LongSupplier clock;
+    private final AtomicLong fullAt;
+
+    /**
+     * @param tokensPerSecond refill rate
+     * @param capacity        tokens available to a burst after the bucket has been idle
+     */
+    public TokenBucket(double tokensPerSecond, long capacity) {
+        this(tokensPerSecond, capacity, System::nanoTime);
+    }
+
+    /**
+     * @param clock source of monotonic nanoseconds, {@link System#nanoTime()} outside of tests
+     */
+    public TokenBucket(double tokensPerSecond, long capacity, LongSupplier clock) {
+        if (tokensPerSecond <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Token bucket rate and capacity must be positive");
+        }
+        this.nanosPerToken = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond));
+        this.burstNanos = capacity * nanosPerToken;
+        this.clock = clock;
+        this.fullAt = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * Takes {@code tokens} if they are available.
+     *
+     * @return 0 if the tokens were taken, otherwise the nanoseconds until they would be
+     */
+    public long tryAcquire(int tokens) {
+        long cost = tokens * nanosPerToken;
+        while (true) {
+            long now = clock.getAsLong();
+            long current = fullAt.get();
+            long next = (current - now > 0 ? current : now) + cost;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
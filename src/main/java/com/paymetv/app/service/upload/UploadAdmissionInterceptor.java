@@ -0,0 +1,116 @@
+package com.paymetv.app.service.upload;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Applies {@link UploadAdmissionService} to upload requests: every POST or PUT
+ * it is registered for, charged its {@code Content-Length}.
+ * <p></p>
+ * Runs after Spring Security (so the user is known) and before the handler
+ * reads the body. Multipart bodies are resolved lazily for the same reason;
+ * a rejected upload is answered straight away with 429 or 503, a
+ * {@code Retry-After} header and the usual JSON error body.
+ *
+ * @author PayMeTV Team
+ */
+public class UploadAdmissionInterceptor implements HandlerInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadAdmissionInterceptor.class);
+
+    private static final String ADMISSION_ATTRIBUTE = UploadAdmissionInterceptor.class.getName() + ".admission";
+
+    private final UploadAdmissionService admissionService;
+    private final ObjectMapper objectMapper;
+    private final long unknownLengthBytes;
+
+    public UploadAdmissionInterceptor(UploadAdmissionService admissionService, ObjectMapper objectMapper) {
+        this(admissionService, objectMapper, -1);
+    }
+
+    /**
+     * @param unknownLengthBytes bytes charged for a body of unknown length; negative
+     *                           for the default of {@link UploadAdmissionService#tryAdmit}
+     */
+    public UploadAdmissionInterceptor(UploadAdmissionService admissionService, ObjectMapper objectMapper,
+                                      long unknownLengthBytes) {
+        this.admissionService = admissionService;
+        this.objectMapper = objectMapper;
+        this.unknownLengthBytes = unknownLengthBytes;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        if (!"POST".equals(request.getMethod()) && !"PUT".equals(request.getMethod())) {
+            return true;
+        }
+
+        String user = authenticatedUser();
+        long contentLength = request.getContentLengthLong();
+        UploadAdmissionService.Admission admission = admissionService.tryAdmit(user,
+                contentLength >= 0 ? contentLength : unknownLengthBytes);
+        if (admission.isAdmitted()) {
+            request.setAttribute(ADMISSION_ATTRIBUTE, admission);
+            return true;
+        }
+
+        UploadAdmissionService.Reason reason = admission.getReason();
+        log.debug("Upload by {} rejected: {}", user, reason.getTag());
+
+        Map<String, Object> error = new HashMap<>();
+        error.put("status", "error");
+        error.put("message", message(reason));
+        error.put("reason", reason.getTag());
+        error.put("timestamp", System.currentTimeMillis());
+
+        response.setStatus(reason.getStatus().value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(admission.getRetryAfterSeconds()));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), error);
+        return false;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        Object admission = request.getAttribute(ADMISSION_ATTRIBUTE);
+        if (admission instanceof UploadAdmissionService.Admission) {
+            ((UploadAdmissionService.Admission) admission).release();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private static String authenticatedUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    private static String message(UploadAdmissionService.Reason reason) {
+        return switch (reason) {
+            case USER_IN_FLIGHT -> "Too many uploads in progress for this user. Retry later.";
+            case USER_BYTES -> "Too much upload data in progress for this user. Retry later.";
+            case IN_FLIGHT, BYTES, RATE -> "The server is busy with other uploads. Retry later.";
+        };
+    }
+}
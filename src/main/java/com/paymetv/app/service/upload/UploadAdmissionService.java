@@ -0,0 +1,277 @@
+package com.paymetv.app.service.upload;
+
+import com.paymetv.app.service.FileUploadService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether an upload may start, before any of its body is read.
+ * <p></p>
+ * Limits, checked in this order:
+ * - per authenticated user: uploads in flight and bytes in flight, answered with 429
+ * - for the pod: uploads in flight, bytes in flight and a {@link TokenBucket} on
+ *   the rate at which uploads start, answered with 503 so load balancers and the
+ *   autoscaler see the pod as saturated
+ * <p></p>
+ * An upload is charged its Content-Length, or {@link FileUploadService#MAX_FILE_SIZE_BYTES}
+ * when the length is unknown. A single upload larger than a bytes limit is still
+ * admitted when nothing else is in flight, and left to the upload's own size checks.
+ * <p></p>
+ * Every counter is an atomic updated with compare-and-set, so admission never
+ * takes a lock and a rejection costs a few atomic reads.
+ * <p></p>
+ * Metrics:
+ * - {@code upload_admission_admitted_total}: uploads let through
+ * - {@code upload_admission_rejected_total}: uploads turned away, tagged with {@code reason}
+ * - {@code upload_admission_in_flight}, {@code upload_admission_in_flight_bytes}: current pod load
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class UploadAdmissionService {
+
+    /** Why an upload was turned away, with the status it is answered with. */
+    public enum Reason {
+        USER_IN_FLIGHT("user_in_flight", HttpStatus.TOO_MANY_REQUESTS),
+        USER_BYTES("user_bytes", HttpStatus.TOO_MANY_REQUESTS),
+        IN_FLIGHT("in_flight", HttpStatus.SERVICE_UNAVAILABLE),
+        BYTES("bytes", HttpStatus.SERVICE_UNAVAILABLE),
+        RATE("rate", HttpStatus.SERVICE_UNAVAILABLE);
+
+        private final String tag;
+        private final HttpStatus status;
+
+        Reason(String tag, HttpStatus status) {
+            this.tag = tag;
+            this.status = status;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+
+        public HttpStatus getStatus() {
+            return status;
+        }
+    }
+
+    private final int maxInFlight;
+    private final long maxInFlightBytes;
+    private final int userMaxInFlight;
+    private final long userMaxInFlightBytes;
+    private final long retryAfterSeconds;
+    private final TokenBucket rate;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong inFlightBytes = new AtomicLong();
+    private final Map<String, UserLoad> users = new ConcurrentHashMap<>();
+
+    private final Counter admitted;
+    private final Map<Reason, Counter> rejected = new EnumMap<>(Reason.class);
+
+    @Autowired
+    public UploadAdmissionService(MeterRegistry meterRegistry,
+                                  @Value("${app.upload.admission.max-in-flight:64}") int maxInFlight,
+                                  @Value("${app.upload.admission.max-in-flight-bytes:268435456}") long maxInFlightBytes,
+                                  @Value("${app.upload.admission.rate:100}") double ratePerSecond,
+                                  @Value("${app.upload.admission.burst:200}") int burst,
+                                  @Value("${app.upload.admission.per-user.max-in-flight:4}") int userMaxInFlight,
+                                  @Value("${app.upload.admission.per-user.max-in-flight-bytes:33554432}") long userMaxInFlightBytes,
+                                  @Value("${app.upload.admission.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.maxInFlight = maxInFlight;
+        this.maxInFlightBytes = maxInFlightBytes;
+        this.userMaxInFlight = userMaxInFlight;
+        this.userMaxInFlightBytes = userMaxInFlightBytes;
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+        this.rate = new TokenBucket(ratePerSecond, burst);
+
+        this.admitted = meterRegistry.counter("upload_admission_admitted_total");
+        for (Reason reason : Reason.values()) {
+            rejected.put(reason, meterRegistry.counter("upload_admission_rejected_total", "reason", reason.getTag()));
+        }
+        meterRegistry.gauge("upload_admission_in_flight", Tags.empty(), inFlight);
+        meterRegistry.gauge("upload_admission_in_flight_bytes", Tags.empty(), inFlightBytes);
+    }
+
+    /**
+     * Admits or rejects an upload. An admitted upload holds its share of every
+     * limit until {@link Admission#release()} is called.
+     *
+     * @param user          authenticated user name, or {@code null} to apply the pod limits only
+     * @param contentLength declared body length, negative if unknown
+     */
+    public Admission tryAdmit(String user, long contentLength) {
+        long bytes = contentLength >= 0 ? contentLength : FileUploadService.MAX_FILE_SIZE_BYTES;
+
+        UserLoad load = null;
+        if (user != null) {
+            load = enter(user);
+            if (load == null) {
+                return reject(Reason.USER_IN_FLIGHT, retryAfterSeconds);
+            }
+            if (!tryAdd(load.bytes, bytes, userMaxInFlightBytes)) {
+                leave(user, load);
+                return reject(Reason.USER_BYTES, retryAfterSeconds);
+            }
+        }
+
+        Reason reason = null;
+        long retryAfter = retryAfterSeconds;
+        if (!tryIncrement(inFlight, maxInFlight)) {
+            reason = Reason.IN_FLIGHT;
+        } else if (!tryAdd(inFlightBytes, bytes, maxInFlightBytes)) {
+            inFlight.decrementAndGet();
+            reason = Reason.BYTES;
+        } else {
+            long wait = rate.tryAcquire(1);
+            if (wait > 0) {
+                inFlightBytes.addAndGet(-bytes);
+                inFlight.decrementAndGet();
+                reason = Reason.RATE;
+                retryAfter = Math.max(1, (wait + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+
+        if (reason != null) {
+            if (load != null) {
+                load.bytes.addAndGet(-bytes);
+                leave(user, load);
+            }
+            return reject(reason, retryAfter);
+        }
+
+        admitted.increment();
+        return new Admission(user, load, bytes);
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private Admission reject(Reason reason, long retryAfter) {
+        rejected.get(reason).increment();
+        return new Admission(reason, retryAfter);
+    }
+
+    /** Takes an in-flight slot for the user, or returns {@code null} at the limit. */
+    private UserLoad enter(String user) {
+        while (true) {
+            UserLoad load = users.computeIfAbsent(user, name -> new UserLoad());
+            int count = load.inFlight.get();
+            if (count < 0) {
+                // Retired by a concurrent release; help remove it and start over
+                users.remove(user, load);
+            } else if (count >= userMaxInFlight) {
+                return null;
+            } else if (load.inFlight.compareAndSet(count, count + 1)) {
+                return load;
+            }
+        }
+    }
+
+    /** Gives the slot back; the last one out retires the entry so idle users cost nothing. */
+    private void leave(String user, UserLoad load) {
+        if (load.inFlight.decrementAndGet() == 0 && load.inFlight.compareAndSet(0, -1)) {
+            users.remove(user, load);
+        }
+    }
+
+    private static boolean tryIncrement(AtomicInteger counter, int limit) {
+        while (true) {
+            int current = counter.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private static boolean tryAdd(AtomicLong counter, long amount, long limit) {
+        while (true) {
+            long current = counter.get();
+            if (current > 0 && current + amount > limit) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current + amount)) {
+                return true;
+            }
+        }
+    }
+
+    /** In-flight uploads of one user. {@code inFlight} is -1 once the entry has been retired. */
+    private static final class UserLoad {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+    }
+
+    /**
+     * Outcome of {@link #tryAdmit}. Admitted uploads must be released exactly
+     * once when they finish; further calls are ignored.
+     */
+    public final class Admission {
+
+        private final Reason reason;
+        private final long retryAfterSeconds;
+        private final String user;
+        private final UserLoad load;
+        private final long bytes;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Admission(String user, UserLoad load, long bytes) {
+            this.reason = null;
+            this.retryAfterSeconds = 0;
+            this.user = user;
+            this.load = load;
+            this.bytes = bytes;
+        }
+
+        private Admission(Reason reason, long retryAfterSeconds) {
+            this.reason = reason;
+            this.retryAfterSeconds = retryAfterSeconds;
+            this.user = null;
+            this.load = null;
+            this.bytes = 0;
+        }
+
+        public boolean isAdmitted() {
+            return reason == null;
+        }
+
+        /** Why the upload was rejected, {@code null} if it was admitted. */
+        public Reason getReason() {
+            return reason;
+        }
+
+        /** Seconds the client should wait before retrying a rejected upload. */
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+
+        public void release() {
+            if (!isAdmitted() || !released.compareAndSet(false, true)) {
+                return;
+            }
+            inFlightBytes.addAndGet(-bytes);
+            inFlight.decrementAndGet();
+            if (load != null) {
+                load.bytes.addAndGet(-bytes);
+                leave(user, load);
+            }
+        }
+    }
+}
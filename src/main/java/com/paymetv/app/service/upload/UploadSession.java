@@ -0,0 +1,32 @@
+package com.paymetv.app.service.upload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Manifest of a resumable chunked upload.
+ *
+ * Persisted as JSON next to the received parts so that any pod sharing the
+ * upload volume can accept parts for, or complete, the same session.
+ *
+ * @author PayMeTV Team
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+@Builder
+public class UploadSession {
+    private String uploadId;
+    private String originalName;
+    private String contentType;
+
+    /** Total size declared by the client at initiation, in bytes. */
+    private long size;
+    private long createdAt;
+}
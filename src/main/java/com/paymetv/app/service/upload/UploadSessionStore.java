@@ -0,0 +1,333 @@
+package com.paymetv.app.service.upload;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * File-system store for resumable upload sessions and their parts.
+ *
+ * Layout under the sessions directory:
+ * <pre>
+ *   {uploadId}/session.json     manifest ({@link UploadSession})
+ *   {uploadId}/part-00001       received parts, one file per part number
+ *   {uploadId}/complete.lock    created by the pod that assembles the parts,
+ *                               naming that pod and when it started
+ *   {uploadId}/complete.lock.*.takeover
+ *                               created by the one pod replacing a stale lock
+ * </pre>
+ *
+ * All state lives on disk, so pods that mount the same volume see the same
+ * sessions. Parts are written to a unique temp file and then atomically moved
+ * into place, which makes concurrent and retried PUTs of the same part safe.
+ *
+ * A completion lock left behind by a pod that died while assembling is taken
+ * over once it is older than the assembly timeout, and sessions nobody has
+ * touched for longer than their time to live are removed by {@link #expireIdle}.
+ *
+ * @author PayMeTV Team
+ */
+@Component
+public class UploadSessionStore {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadSessionStore.class);
+
+    private static final String MANIFEST = "session.json";
+    private static final String COMPLETE_LOCK = "complete.lock";
+    private static final String PART_PREFIX = "part-";
+    private static final int COPY_BUFFER_SIZE = 16 * 1024;
+
+    /** Contents of {@code complete.lock}. */
+    private record CompletionLock(String owner, long lockedAt) {
+    }
+
+    private final Path root;
+    private final ObjectMapper objectMapper;
+    private final String owner;
+
+    public UploadSessionStore(@Value("${app.upload.sessions-dir:uploads/.sessions}") String sessionsDir,
+                              @Value("${HOSTNAME:localhost}") String hostname,
+                              ObjectMapper objectMapper) {
+        this.root = Paths.get(sessionsDir);
+        this.objectMapper = objectMapper;
+        this.owner = hostname;
+    }
+
+    /**
+     * Creates a new session directory and writes its manifest.
+     */
+    public UploadSession create(String originalName, String contentType, long size) throws IOException {
+        UploadSession session = UploadSession.builder()
+                .uploadId(UUID.randomUUID().toString())
+                .originalName(originalName)
+                .contentType(contentType)
+                .size(size)
+                .createdAt(System.currentTimeMillis())
+                .build();
+
+        Path dir = Files.createDirectories(sessionDir(session.getUploadId()));
+        objectMapper.writeValue(dir.resolve(MANIFEST).toFile(), session);
+        log.info("Created upload session {} for '{}' ({} bytes)",
+                session.getUploadId(), originalName, size);
+        return session;
+    }
+
+    public Optional<UploadSession> find(String uploadId) throws IOException {
+        Path manifest = sessionDir(uploadId).resolve(MANIFEST);
+        if (!Files.exists(manifest)) {
+            return Optional.empty();
+        }
+        return Optional.of(objectMapper.readValue(manifest.toFile(), UploadSession.class));
+    }
+
+    /**
+     * Streams one part to disk, failing once it grows past {@code maxBytes}.
+     *
+     * @return the number of bytes stored for the part
+     */
+    public long writePart(String uploadId, int partNumber, InputStream in, long maxBytes) throws IOException {
+        Path dir = sessionDir(uploadId);
+        Path temp = dir.resolve(partName(partNumber) + "." + UUID.randomUUID() + ".tmp");
+
+        long total = 0;
+        boolean completed = false;
+        try (OutputStream out = Files.newOutputStream(temp,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+                if (total > maxBytes) {
+                    throw new IllegalArgumentException(
+                            String.format("Part size exceeds the maximum allowed size of %d bytes.", maxBytes));
+                }
+                out.write(buffer, 0, read);
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        Files.move(temp, dir.resolve(partName(partNumber)),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return total;
+    }
+
+    /**
+     * Lists received parts ordered by part number.
+     *
+     * @return part number to part size in bytes
+     */
+    public SortedMap<Integer, Long> listParts(String uploadId) throws IOException {
+        SortedMap<Integer, Long> parts = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(sessionDir(uploadId), PART_PREFIX + "[0-9]*")) {
+            for (Path part : stream) {
+                String name = part.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    continue;
+                }
+                parts.put(Integer.parseInt(name.substring(PART_PREFIX.length())), Files.size(part));
+            }
+        } catch (NoSuchFileException e) {
+            // Session was completed or aborted concurrently - no parts left
+        }
+        return parts;
+    }
+
+    public Path partPath(String uploadId, int partNumber) {
+        return sessionDir(uploadId).resolve(partName(partNumber));
+    }
+
+    /**
+     * Claims the session for assembly. Only one caller, on any pod, wins.
+     * <p></p>
+     * A lock older than {@code staleAfterMs} was left by a pod that died while
+     * assembling, and is taken over. The lock file never disappears during a
+     * takeover, so no pod can claim the session afresh in the meantime.
+     *
+     * @return {@code true} if this caller now owns completion of the session
+     */
+    public boolean tryLockForCompletion(String uploadId, long staleAfterMs) throws IOException {
+        Path lock = sessionDir(uploadId).resolve(COMPLETE_LOCK);
+        return createLock(lock) || takeOverIfStale(uploadId, lock, staleAfterMs);
+    }
+
+    public void releaseCompletionLock(String uploadId) throws IOException {
+        Files.deleteIfExists(sessionDir(uploadId).resolve(COMPLETE_LOCK));
+    }
+
+    /**
+     * Removes the session directory together with all of its parts.
+     */
+    public void delete(String uploadId) throws IOException {
+        Path dir = sessionDir(uploadId);
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        } catch (NoSuchFileException e) {
+            // Removed concurrently by another request or pod
+        }
+    }
+
+    /**
+     * Removes every session in which nothing was written for {@code ttlMs}: no part,
+     * no manifest, no completion lock. Safe to run on several pods at once.
+     *
+     * @return the number of sessions removed
+     */
+    public int expireIdle(long ttlMs) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        long cutoff = System.currentTimeMillis() - ttlMs;
+        int expired = 0;
+        try (DirectoryStream<Path> sessions = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : sessions) {
+                String uploadId = dir.getFileName().toString();
+                if (!isUploadId(uploadId)) {
+                    continue;
+                }
+                try {
+                    if (lastModified(dir) < cutoff) {
+                        delete(uploadId);
+                        expired++;
+                        log.info("Expired upload session {}, idle for more than {} ms", uploadId, ttlMs);
+                    }
+                } catch (NoSuchFileException e) {
+                    // Completed, aborted or expired concurrently
+                }
+            }
+        }
+        return expired;
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private Path sessionDir(String uploadId) {
+        // Upload ids are server-generated UUIDs; reject anything else so a crafted
+        // id can never resolve outside the sessions directory.
+        if (!isUploadId(uploadId)) {
+            throw new IllegalArgumentException("Invalid upload id: " + uploadId);
+        }
+        return root.resolve(uploadId);
+    }
+
+    private static boolean isUploadId(String uploadId) {
+        try {
+            UUID.fromString(uploadId);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /** Writes a new lock for this pod, unless there is one already. */
+    private boolean createLock(Path lock) throws IOException {
+        try {
+            Files.write(lock, lockContents(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        }
+    }
+
+    private byte[] lockContents() throws IOException {
+        return objectMapper.writeValueAsBytes(new CompletionLock(owner, System.currentTimeMillis()));
+    }
+
+    /**
+     * Replaces {@code lock} with one of this pod's if it is older than {@code staleAfterMs}.
+     * <p></p>
+     * Of the pods taking over one stale lock, only the one that creates its takeover
+     * marker (named after the lock's contents) replaces it; the others back off. The
+     * new lock is renamed over the old one, so the lock file exists throughout and
+     * no pod can claim the session with a fresh lock in between. A taker that dies
+     * before replacing the lock leaves the session to the idle sweep.
+     *
+     * @return {@code true} if this caller now owns completion of the session
+     */
+    private boolean takeOverIfStale(String uploadId, Path lock, long staleAfterMs) throws IOException {
+        byte[] held;
+        try {
+            held = Files.readAllBytes(lock);
+        } catch (NoSuchFileException e) {
+            // Released in between
+            return createLock(lock);
+        }
+        CompletionLock stale = readLock(lock, held);
+        if (System.currentTimeMillis() - stale.lockedAt() < staleAfterMs) {
+            return false;
+        }
+
+        Path marker = lock.resolveSibling(String.format("%s.%d.%08x.takeover",
+                COMPLETE_LOCK, stale.lockedAt(), Arrays.hashCode(held)));
+        try {
+            Files.createFile(marker);
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        }
+        Path replacement = lock.resolveSibling(COMPLETE_LOCK + "." + UUID.randomUUID() + ".tmp");
+        Files.write(replacement, lockContents(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        Files.move(replacement, lock, StandardCopyOption.ATOMIC_MOVE);
+        log.warn("Took over the completion lock of upload {} from {}, held since {}",
+                uploadId, stale.owner(), Instant.ofEpochMilli(stale.lockedAt()));
+        return true;
+    }
+
+    /**
+     * Reads a completion lock. A lock whose contents are not written yet is dated by
+     * its file: it is being claimed right now, unless its owner died in between.
+     */
+    private CompletionLock readLock(Path lock, byte[] contents) throws IOException {
+        try {
+            return objectMapper.readValue(contents, CompletionLock.class);
+        } catch (IOException e) {
+            return new CompletionLock("unknown", Files.getLastModifiedTime(lock).toMillis());
+        }
+    }
+
+    /** When anything in {@code dir} was last written. */
+    private static long lastModified(Path dir) throws IOException {
+        long last = Files.getLastModifiedTime(dir).toMillis();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                last = Math.max(last, Files.getLastModifiedTime(entry).toMillis());
+            }
+        }
+        return last;
+    }
+
+    private String partName(int partNumber) {
+        return String.format("%s%05d", PART_PREFIX, partNumber);
+    }
+}
@@ -0,0 +1,96 @@
+package com.paymetv.benchmark;
+
+import com.paymetv.app.AppApplication;
+import com.paymetv.app.domain.Users;
+import com.paymetv.app.repository.UserRepository;
+import com.paymetv.util.integration.SqlStatementCounter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JMH benchmark of entity inserts from many threads at once, with and without
+ * pooled id allocation.
+ * ---
+ * Boots the application against an in-memory H2 database and saves a new
+ * {@link Users} per operation, each in its own transaction, from 8 threads:
+ * - {@code pooled-lo}: ids are taken from users_seq a block of 1000 at a time, as in production
+ * - {@code none}: every insert first takes its id from users_seq, the round trip
+ *   per row the entities made before pooling
+ * <pre>
+ * mvn -B test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     "-Dexec.args=-cp %classpath com.paymetv.benchmark.ConcurrentInsertBenchmark"
+ * </pre>
+ * Besides inserts/sec, the {@code sequenceTrips} counter reports the statements
+ * that went to users_seq. H2 runs in the benchmark's JVM, where such a trip is
+ * cheap; on MySQL each is a network round trip and a row lock every pod contends
+ * for, so the gap in throughput there is wider than here.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Threads(8)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentInsertBenchmark {
+
+    @Param({"none", "pooled-lo"})
+    public String optimizer;
+
+    private final AtomicLong counter = new AtomicLong();
+    private ConfigurableApplicationContext context;
+    private UserRepository userRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // As arguments, so they win over the test application.properties
+        context = new SpringApplicationBuilder(AppApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:insert-benchmark-" + optimizer + ";DB_CLOSE_DELAY=-1",
+                "--spring.jpa.properties.hibernate.id.optimizer.pooled.preferred=" + optimizer,
+                "--logging.level.root=WARN");
+        userRepository = context.getBean(UserRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /** Statements sent to the id sequence, summed over the iteration. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SequenceTrips {
+        public long sequenceTrips;
+    }
+
+    @Benchmark
+    public Users insert(SequenceTrips trips) {
+        long n = counter.incrementAndGet();
+        SqlStatementCounter.reset();
+        Users user = userRepository.save(Users.builder()
+                .username("user-" + n)
+                .password("password")
+                .email("user-" + n + "@example.com")
+                .build());
+        trips.sequenceTrips += SqlStatementCounter.statements().stream()
+                .filter(sql -> sql.contains("users_seq"))
+                .count();
+        return user;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ConcurrentInsertBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,108 @@
+package com.paymetv.benchmark;
+
+import com.paymetv.app.AppApplication;
+import com.paymetv.app.domain.Artifact;
+import com.paymetv.app.domain.ImageFace;
+import com.paymetv.app.domain.Users;
+import com.paymetv.app.repository.ArtifactRepository;
+import com.paymetv.app.repository.UserRepository;
+import com.paymetv.app.service.ImageFaceImportService;
+import com.paymetv.app.service.ImageFaceService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of creating ImageFaces one by one against importing them in bulk.
+ * ---
+ * Boots the application against an in-memory H2 database and creates {@value #ROWS}
+ * ImageFaces on one artifact per operation, reported as rows/sec:
+ * - {@code perEntity}: {@link ImageFaceService#createImageFace} per row, one
+ *   transaction and one unbatched insert each, as the create endpoint does
+ * - {@code bulk}: the same rows as NDJSON through {@link ImageFaceImportService},
+ *   in chunked transactions with batched inserts
+ * <pre>
+ * mvn -B test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     "-Dexec.args=-cp %classpath com.paymetv.benchmark.ImageFaceImportBenchmark"
+ * </pre>
+ * Both skip HTTP, which would add a request per row to the per-entity path only;
+ * and H2 runs in the benchmark's JVM, where a statement costs no network round trip.
+ * Against MySQL the gap is wider on both counts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageFaceImportBenchmark {
+
+    private static final int ROWS = 1000;
+
+    private ConfigurableApplicationContext context;
+    private ImageFaceService imageFaceService;
+    private ImageFaceImportService importService;
+    private Artifact artifact;
+    private byte[] ndjson;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // As arguments, so they win over the test application.properties
+        context = new SpringApplicationBuilder(AppApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:import-benchmark;DB_CLOSE_DELAY=-1",
+                "--logging.level.root=WARN");
+        imageFaceService = context.getBean(ImageFaceService.class);
+        importService = context.getBean(ImageFaceImportService.class);
+
+        Users user = context.getBean(UserRepository.class).save(Users.builder()
+                .username("benchmark").password("password").email("benchmark@example.com").build());
+        artifact = context.getBean(ArtifactRepository.class).save(Artifact.builder()
+                .name("benchmark artifact").model("model").status(true).user(user).build());
+
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < ROWS; i++) {
+            body.append("{\"artifact\":{\"id\":").append(artifact.getId()).append("},\"imageFace\":{")
+                    .append("\"front\":\"front-").append(i).append(".png\",\"back\":\"back.png\",")
+                    .append("\"left\":\"left.png\",\"right\":\"right.png\"}}\n");
+        }
+        ndjson = body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void perEntity() {
+        for (int i = 0; i < ROWS; i++) {
+            imageFaceService.createImageFace(ImageFace.builder()
+                    .front("front-" + i + ".png").back("back.png").left("left.png").right("right.png")
+                    .build(), artifact);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public ImageFaceImportService.ImportProgress bulk() throws IOException {
+        return importService.importAll(new ByteArrayInputStream(ndjson));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ImageFaceImportBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,102 @@
+package com.paymetv.benchmark;
+
+import com.paymetv.app.config.ProducerProfile;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.kafka.test.EmbeddedKafkaZKBroker;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the {@link ProducerProfile}s against an embedded broker.
+ * ---
+ * Each profile is measured twice:
+ * - {@code burst}: messages/sec when 1000 event-sized JSON messages are sent
+ *   back to back and flushed (the consumer-results pattern)
+ * - {@code sendAndWait}: latency of one send waiting for its acknowledgement (the
+ *   request-path pattern); JMH's sample mode reports its p99 as {@code p0.99}
+ * <pre>
+ * mvn -B test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     "-Dexec.args=-cp %classpath com.paymetv.benchmark.KafkaProducerProfileBenchmark"
+ * </pre>
+ * The broker runs in the benchmark's JVM, so the numbers compare the profiles
+ * with each other rather than predict a real cluster.
+ */
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KafkaProducerProfileBenchmark {
+
+    private static final String TOPIC = "producer-profile-benchmark";
+    private static final int BURST = 1000;
+
+    @Param({"LOW_LATENCY", "THROUGHPUT"})
+    public ProducerProfile profile;
+
+    private EmbeddedKafkaZKBroker broker;
+    private KafkaProducer<String, String> producer;
+    private String payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        broker = new EmbeddedKafkaZKBroker(1, false, 3, TOPIC);
+        broker.afterPropertiesSet();
+
+        Map<String, Object> config = new HashMap<>(profile.settings(new StandardEnvironment()));
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        producer = new KafkaProducer<>(config);
+
+        // Shaped like a FileUploadedEvent, the most common message
+        payload = String.format("{\"storedName\":\"%s.jpg\",\"originalName\":\"holiday-photo.jpg\","
+                        + "\"sha256\":\"%s\",\"size\":2048576,\"contentType\":\"image/jpeg\","
+                        + "\"deduplicated\":false,\"uploadedAt\":%d}",
+                UUID.randomUUID(), "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08",
+                System.currentTimeMillis());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        producer.close();
+        broker.destroy();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BURST)
+    public void burst() {
+        for (int i = 0; i < BURST; i++) {
+            producer.send(new ProducerRecord<>(TOPIC, "key-" + (i % 16), payload));
+        }
+        producer.flush();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object sendAndWait() throws ExecutionException, InterruptedException {
+        return producer.send(new ProducerRecord<>(TOPIC, "key", payload)).get();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(KafkaProducerProfileBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,134 @@
+package com.paymetv.benchmark;
+
+import com.paymetv.app.domain.Artifact;
+import com.paymetv.app.domain.ImageFace;
+import com.paymetv.app.domain.Users;
+import com.paymetv.app.service.kafka.AvroSchemas;
+import com.paymetv.app.service.pipeline.FileUploadedEvent;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the two Kafka payload formats: JSON, as written by Spring's
+ * {@link JsonSerializer}, and the Avro binary form of {@link AvroSchemas}.
+ * ---
+ * For each payload type, measures the CPU time of serializing and of
+ * deserializing one payload; {@link #main} first prints the serialized size
+ * of each, since JMH only reports times.
+ * <pre>
+ * mvn -B test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     "-Dexec.args=-cp %classpath com.paymetv.benchmark.PayloadSerializationBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PayloadSerializationBenchmark {
+
+    private static final String TOPIC = "payload-serialization-benchmark";
+
+    public enum Format { JSON, AVRO }
+
+    public enum Payload { FILE_UPLOADED_EVENT, ARTIFACT, IMAGE_FACE }
+
+    @Param({"JSON", "AVRO"})
+    public Format format;
+
+    @Param({"FILE_UPLOADED_EVENT", "ARTIFACT", "IMAGE_FACE"})
+    public Payload payload;
+
+    private final AvroSchemas schemas = new AvroSchemas();
+    private JsonSerializer<Object> jsonSerializer;
+    private JsonDeserializer<?> jsonDeserializer;
+    private Object value;
+    private byte[] serialized;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        value = sample(payload);
+        jsonSerializer = new JsonSerializer<>();
+        jsonDeserializer = new JsonDeserializer<>(value.getClass(), false);
+        serialized = serialize();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jsonSerializer.close();
+        jsonDeserializer.close();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return format == Format.AVRO ? schemas.encode(value) : jsonSerializer.serialize(TOPIC, value);
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException {
+        return format == Format.AVRO
+                ? schemas.decode(serialized, value.getClass())
+                : jsonDeserializer.deserialize(TOPIC, serialized);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        AvroSchemas schemas = new AvroSchemas();
+        try (JsonSerializer<Object> json = new JsonSerializer<>()) {
+            System.out.printf("%-20s %10s %10s%n", "payload", "json (B)", "avro (B)");
+            for (Payload payload : Payload.values()) {
+                Object value = sample(payload);
+                System.out.printf("%-20s %10d %10d%n", payload,
+                        json.serialize(TOPIC, value).length, schemas.encode(value).length);
+            }
+        }
+
+        Options options = new OptionsBuilder()
+                .include(PayloadSerializationBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private static Object sample(Payload payload) {
+        return switch (payload) {
+            case FILE_UPLOADED_EVENT -> FileUploadedEvent.builder()
+                    .storedName("0b5e4c1e-6b4f-4bd4-9f1e-2f3c8a9d7e10.jpg")
+                    .originalName("holiday-photo.jpg")
+                    .sha256("9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08")
+                    .size(2_048_576)
+                    .contentType("image/jpeg")
+                    .uploadedAt(System.currentTimeMillis())
+                    .build();
+            case ARTIFACT -> Artifact.builder()
+                    .id(1_024L)
+                    .name("living-room-sofa")
+                    .description("Three-seater sofa scanned from six sides")
+                    .model("models/living-room-sofa/v3.onnx")
+                    // No password, which the Avro schema leaves out, so both formats carry the same data
+                    .user(Users.builder().id(42L).username("alice").email("alice@paymetv.com").build())
+                    .status(true)
+                    .build();
+            case IMAGE_FACE -> ImageFace.builder()
+                    .id(4_096L)
+                    .front("faces/1024/front.jpg")
+                    .back("faces/1024/back.jpg")
+                    .left("faces/1024/left.jpg")
+                    .right("faces/1024/right.jpg")
+                    .top("faces/1024/top.jpg")
+                    .bottom("faces/1024/bottom.jpg")
+                    .build();
+        };
+    }
+}
@@ -0,0 +1,346 @@
+package com.paymetv.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymetv.app.AppApplication;
+import com.paymetv.app.service.upload.ChunkedUploadService;
+import com.paymetv.app.service.upload.UploadAdmissionService;
+import com.paymetv.app.service.upload.UploadSessionStore;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for ChunkedUploadController.
+ * ---
+ * Covers the resumable upload protocol end to end:
+ * - POST   /api/files/upload/sessions                       - initiate
+ * - PUT    /api/files/upload/sessions/{id}/parts/{n}        - upload parts (out of order, retried)
+ * - GET    /api/files/upload/sessions/{id}                  - status
+ * - POST   /api/files/upload/sessions/{id}/complete         - assemble
+ * - DELETE /api/files/upload/sessions/{id}                  - abort
+ * Also covers taking over the completion lock of a dead pod, by one pod only,
+ * the expiry of idle sessions, and upload admission control in front of
+ * initiate and parts.
+ */
+@SpringBootTest(classes = AppApplication.class)
+@AutoConfigureMockMvc
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@Tag("ChunkedUploadControllerTest")
+@WithMockUser
+public class ChunkedUploadControllerTest {
+
+    private static final String SESSIONS = "/api/files/upload/sessions";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    @Autowired
+    private UploadAdmissionService uploadAdmissionService;
+
+    @Autowired
+    private UploadSessionStore sessionStore;
+
+    @Value("${app.upload.sessions-dir:uploads/.sessions}")
+    private String sessionsDir;
+
+    @MockitoBean
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @BeforeEach
+    void setUp() {
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("parts uploaded out of order and retried are assembled in order")
+    void testUploadPartsOutOfOrderAndComplete() throws Exception {
+        byte[] content = jpeg(10_000);
+        byte[] part1 = Arrays.copyOfRange(content, 0, 4_000);
+        byte[] part2 = Arrays.copyOfRange(content, 4_000, 8_000);
+        byte[] part3 = Arrays.copyOfRange(content, 8_000, content.length);
+
+        String uploadId = initiate("photo.jpg", "image/jpeg", content.length);
+
+        putPart(uploadId, 3, part3);
+        putPart(uploadId, 1, new byte[]{1, 2, 3}); // interrupted attempt, re-sent below
+        putPart(uploadId, 1, part1);
+
+        mockMvc.perform(get(SESSIONS + "/" + uploadId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.receivedParts", contains(1, 3)))
+                .andExpect(jsonPath("$.receivedBytes").value(part1.length + part3.length));
+
+        putPart(uploadId, 2, part2);
+
+        String body = mockMvc.perform(post(SESSIONS + "/" + uploadId + "/complete"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("uploaded"))
+                .andExpect(jsonPath("$.originalName").value("photo.jpg"))
+                .andExpect(jsonPath("$.size").value(content.length))
+                .andReturn().getResponse().getContentAsString();
+
+        Path stored = Paths.get(objectMapper.readTree(body).get("path").asText());
+        assertArrayEquals(content, Files.readAllBytes(stored));
+
+        // The session is gone once the file has been assembled
+        mockMvc.perform(get(SESSIONS + "/" + uploadId))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("complete with a missing part returns 409 and keeps the session")
+    void testCompleteWithMissingPartReturns409() throws Exception {
+        String uploadId = initiate("clip.mp4", "video/mp4", 8);
+        putPart(uploadId, 2, "ftyp".getBytes(StandardCharsets.US_ASCII));
+
+        mockMvc.perform(post(SESSIONS + "/" + uploadId + "/complete"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value(containsString("missing parts")));
+
+        // Resume: send the missing part and complete again
+        putPart(uploadId, 1, new byte[4]);
+        mockMvc.perform(post(SESSIONS + "/" + uploadId + "/complete"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("initiate with disallowed MIME type returns 400")
+    void testInitiateWithDisallowedTypeReturns400() throws Exception {
+        mockMvc.perform(post(SESSIONS)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"filename\":\"notes.txt\",\"contentType\":\"text/plain\",\"size\":10}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(containsString("not allowed")));
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("part larger than the declared file size returns 400")
+    void testOversizedPartReturns400() throws Exception {
+        String uploadId = initiate("photo.jpg", "image/jpeg", 100);
+
+        mockMvc.perform(put(SESSIONS + "/" + uploadId + "/parts/1")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(new byte[101]))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(containsString("exceeds")));
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("unknown upload id returns 404, malformed id returns 400")
+    void testUnknownSession() throws Exception {
+        mockMvc.perform(get(SESSIONS + "/00000000-0000-0000-0000-000000000000"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get(SESSIONS + "/..%2F..%2Fetc"))
+                .andExpect(status().is4xxClientError());
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("DELETE aborts the session")
+    void testAbort() throws Exception {
+        String uploadId = initiate("doc.pdf", "application/pdf", 10);
+        putPart(uploadId, 1, new byte[5]);
+
+        mockMvc.perform(delete(SESSIONS + "/" + uploadId))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get(SESSIONS + "/" + uploadId))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Order(7)
+    @DisplayName("complete takes over the lock of a pod that died, not a live one")
+    void testCompleteTakesOverStaleLock() throws Exception {
+        String uploadId = initiate("clip.mp4", "video/mp4", 8);
+        putPart(uploadId, 1, "\0\0\0\0ftyp".getBytes(StandardCharsets.US_ASCII));
+        Path lock = Paths.get(sessionsDir, uploadId, "complete.lock");
+
+        Files.writeString(lock, "{\"owner\":\"live-pod\",\"lockedAt\":" + System.currentTimeMillis() + "}");
+        mockMvc.perform(post(SESSIONS + "/" + uploadId + "/complete"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value(containsString("already being completed")));
+
+        Files.writeString(lock, "{\"owner\":\"dead-pod\",\"lockedAt\":"
+                + (System.currentTimeMillis() - Duration.ofHours(1).toMillis()) + "}");
+        mockMvc.perform(post(SESSIONS + "/" + uploadId + "/complete"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get(SESSIONS + "/" + uploadId))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Order(8)
+    @DisplayName("sessions idle for longer than their time to live are removed")
+    void testIdleSessionsExpire() throws Exception {
+        String idle = initiate("photo.jpg", "image/jpeg", 100);
+        putPart(idle, 1, new byte[10]);
+        String active = initiate("photo.jpg", "image/jpeg", 100);
+
+        FileTime twoDaysAgo = FileTime.from(Instant.now().minus(Duration.ofDays(2)));
+        try (Stream<Path> paths = Files.walk(Paths.get(sessionsDir, idle))) {
+            for (Path path : paths.toList()) {
+                Files.setLastModifiedTime(path, twoDaysAgo);
+            }
+        }
+
+        assertTrue(chunkedUploadService.expireIdleSessions() >= 1);
+        mockMvc.perform(get(SESSIONS + "/" + idle))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get(SESSIONS + "/" + active))
+                .andExpect(status().isOk());
+        assertFalse(Files.exists(Paths.get(sessionsDir, idle)));
+    }
+
+    @Test
+    @Order(9)
+    @DisplayName("initiate and parts are subject to upload admission control, status is not")
+    void testAdmissionControlOnSessions() throws Exception {
+        String uploadId = initiate("photo.jpg", "image/jpeg", 100);
+
+        // Occupy every slot of the @WithMockUser user ("user")
+        List<UploadAdmissionService.Admission> held = new ArrayList<>();
+        UploadAdmissionService.Admission admission;
+        while ((admission = uploadAdmissionService.tryAdmit("user", 1)).isAdmitted()) {
+            held.add(admission);
+        }
+        try {
+            mockMvc.perform(put(SESSIONS + "/" + uploadId + "/parts/1")
+                            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                            .content(new byte[10]))
+                    .andExpect(status().isTooManyRequests())
+                    .andExpect(header().exists("Retry-After"))
+                    .andExpect(jsonPath("$.reason").value("user_in_flight"));
+            mockMvc.perform(post(SESSIONS)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"filename\":\"a.jpg\",\"contentType\":\"image/jpeg\",\"size\":10}"))
+                    .andExpect(status().isTooManyRequests());
+            mockMvc.perform(get(SESSIONS + "/" + uploadId))
+                    .andExpect(status().isOk());
+        } finally {
+            held.forEach(UploadAdmissionService.Admission::release);
+        }
+
+        putPart(uploadId, 1, new byte[10]);
+    }
+
+    @Test
+    @Order(10)
+    @DisplayName("of several pods taking over one stale lock, exactly one wins and the lock never goes away")
+    void testConcurrentTakeoverHasOneWinner() throws Exception {
+        String uploadId = initiate("clip.mp4", "video/mp4", 8);
+        Path lock = Paths.get(sessionsDir, uploadId, "complete.lock");
+        Files.writeString(lock, "{\"owner\":\"dead-pod\",\"lockedAt\":"
+                + (System.currentTimeMillis() - Duration.ofHours(1).toMillis()) + "}");
+
+        ExecutorService pods = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> claims = new ArrayList<>();
+        try {
+            for (int i = 0; i < 8; i++) {
+                claims.add(pods.submit(() -> {
+                    start.await();
+                    boolean claimed = sessionStore.tryLockForCompletion(uploadId, 60_000);
+                    assertTrue(Files.exists(lock), "the lock must exist throughout a takeover");
+                    return claimed;
+                }));
+            }
+            start.countDown();
+            int winners = 0;
+            for (Future<Boolean> claim : claims) {
+                winners += claim.get(10, TimeUnit.SECONDS) ? 1 : 0;
+            }
+            assertEquals(1, winners);
+        } finally {
+            pods.shutdownNow();
+        }
+        assertFalse(Files.readString(lock).contains("dead-pod"));
+        assertFalse(sessionStore.tryLockForCompletion(uploadId, 60_000), "the new lock is live");
+        sessionStore.delete(uploadId);
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private String initiate(String filename, String contentType, long size) throws Exception {
+        String body = mockMvc.perform(post(SESSIONS)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(String.format("{\"filename\":\"%s\",\"contentType\":\"%s\",\"size\":%d}",
+                                filename, contentType, size)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.uploadId").exists())
+                .andReturn().getResponse().getContentAsString();
+
+        JsonNode json = objectMapper.readTree(body);
+        return json.get("uploadId").asText();
+    }
+
+    private void putPart(String uploadId, int partNumber, byte[] content) throws Exception {
+        mockMvc.perform(put(SESSIONS + "/" + uploadId + "/parts/" + partNumber)
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(content))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size").value(content.length));
+    }
+
+    private static byte[] jpeg(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        bytes[0] = (byte) 0xFF;
+        bytes[1] = (byte) 0xD8;
+        bytes[2] = (byte) 0xFF;
+        bytes[3] = (byte) 0xE0;
+        return bytes;
+    }
+}
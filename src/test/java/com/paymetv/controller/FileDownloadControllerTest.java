@@ -0,0 +1,207 @@
+package com.paymetv.controller;
+
+import com.paymetv.app.AppApplication;
+import com.paymetv.app.service.FileUploadService;
+import com.paymetv.app.service.pipeline.ImageDerivativeGenerator;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for FileDownloadController.
+ * ---
+ * Covers GET /api/files/content/{sha256}:
+ * - full content, single byte ranges and suffix ranges
+ * - conditional requests (If-None-Match, If-Range)
+ * - the Tomcat sendfile hand-off
+ * - thumbnails rendered after upload
+ */
+@SpringBootTest(classes = AppApplication.class)
+@AutoConfigureMockMvc
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@Tag("FileDownloadControllerTest")
+@WithMockUser
+public class FileDownloadControllerTest {
+
+    private static final int SIZE = 100 * 1024;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FileUploadService fileUploadService;
+
+    @Autowired
+    private ImageDerivativeGenerator imageDerivativeGenerator;
+
+    @MockitoBean
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    private byte[] content;
+    private String url;
+    private String etag;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        // Fresh random content per test, so each test owns its blob
+        content = new byte[SIZE];
+        new Random().nextBytes(content);
+        System.arraycopy(new byte[]{0, 0, 0, 0x20, 'f', 't', 'y', 'p'}, 0, content, 0, 8); // MP4 signature
+        Map<String, Object> stored = fileUploadService.saveStream(
+                new ByteArrayInputStream(content), "clip.mp4", "video/mp4", content.length);
+        url = "/api/files/content/" + stored.get("sha256");
+        etag = "\"" + stored.get("sha256") + "\"";
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("GET returns the whole file with validators")
+    void testFullDownload() throws Exception {
+        mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "video/mp4"))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(header().string("ETag", etag))
+                .andExpect(header().exists("Last-Modified"))
+                .andExpect(header().longValue("Content-Length", SIZE))
+                .andExpect(content().bytes(content));
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Range request returns 206 with only the requested bytes")
+    void testRangeRequest() throws Exception {
+        mockMvc.perform(get(url).header("Range", "bytes=1000-1999"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 1000-1999/" + SIZE))
+                .andExpect(header().longValue("Content-Length", 1000))
+                .andExpect(content().bytes(Arrays.copyOfRange(content, 1000, 2000)));
+
+        mockMvc.perform(get(url).header("Range", "bytes=-10"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes " + (SIZE - 10) + "-" + (SIZE - 1) + "/" + SIZE))
+                .andExpect(content().bytes(Arrays.copyOfRange(content, SIZE - 10, SIZE)));
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Range beyond the end of the file returns 416")
+    void testUnsatisfiableRange() throws Exception {
+        mockMvc.perform(get(url).header("Range", "bytes=" + SIZE + "-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */" + SIZE));
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("If-None-Match with the current ETag returns 304 without a body")
+    void testConditionalGet() throws Exception {
+        mockMvc.perform(get(url).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("If-Range with a stale ETag ignores the Range and returns the whole file")
+    void testIfRangeMismatch() throws Exception {
+        mockMvc.perform(get(url).header("Range", "bytes=0-9").header("If-Range", "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue("Content-Length", SIZE));
+
+        mockMvc.perform(get(url).header("Range", "bytes=0-9").header("If-Range", etag))
+                .andExpect(status().isPartialContent());
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("HEAD returns headers only")
+    void testHead() throws Exception {
+        mockMvc.perform(head(url))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue("Content-Length", SIZE))
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    @Order(7)
+    @DisplayName("on a sendfile-capable container the range is handed to the connector")
+    void testSendfileHandOff() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get(url)
+                        .header("Range", "bytes=100-" + (SIZE - 1))
+                        .requestAttr("org.apache.tomcat.sendfile.support", Boolean.TRUE))
+                .andExpect(status().isPartialContent())
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.start", 100L))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.end", (long) SIZE))
+                .andReturn().getResponse();
+
+        assertEquals(0, response.getContentAsByteArray().length, "body is written by the connector");
+        assertEquals(SIZE - 100, response.getContentLengthLong());
+    }
+
+    @Test
+    @Order(8)
+    @DisplayName("unknown hash returns 404, malformed hash returns 400")
+    void testUnknownAndMalformedHash() throws Exception {
+        mockMvc.perform(get("/api/files/content/" + "0".repeat(64)))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/files/content/not-a-hash"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Order(9)
+    @DisplayName("thumbnails are served once rendered, 404 before")
+    void testThumbnail() throws Exception {
+        BufferedImage image = new BufferedImage(1200, 900, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, new Random().nextInt());
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        Map<String, Object> stored = fileUploadService.saveStream(
+                new ByteArrayInputStream(png.toByteArray()), "photo.png", "image/png", png.size());
+        String hash = (String) stored.get("sha256");
+
+        mockMvc.perform(get("/api/files/content/" + hash + "/thumbnails/320"))
+                .andExpect(status().isNotFound());
+
+        imageDerivativeGenerator.generate(hash).get(10, TimeUnit.SECONDS);
+
+        MockHttpServletResponse response = mockMvc.perform(get("/api/files/content/" + hash + "/thumbnails/320"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "image/jpeg"))
+                .andExpect(header().string("ETag", "\"" + hash + "-thumb-320.jpg\""))
+                .andReturn().getResponse();
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(response.getContentAsByteArray()));
+        assertEquals(320, thumbnail.getWidth());
+        assertEquals(240, thumbnail.getHeight());
+
+        mockMvc.perform(get("/api/files/content/" + hash + "/thumbnails/321"))
+                .andExpect(status().isNotFound());
+    }
+}
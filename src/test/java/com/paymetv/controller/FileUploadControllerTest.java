@@ -2,7 +2,11 @@ package com.paymetv.controller;
 
 import com.paymetv.app.AppApplication;
 import com.paymetv.app.service.FileUploadService;
+import com.paymetv.app.service.pipeline.FileUploadedEvent;
+import com.paymetv.app.service.upload.UploadAdmissionService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.*;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -13,13 +17,24 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import com.jayway.jsonpath.JsonPath;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 /**
@@ -28,6 +43,9 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  * Tests all endpoints exposed by the controller:
  * - GET /api/files/upload - Redirect to upload UI
  * - POST /api/files/upload - File upload with validation
+ * - POST /api/files/upload/stream - Raw-body streaming upload with validation
+ * - POST /api/files/upload/batch - Multi-file upload with per-file results
+ * - Upload admission control in front of both upload endpoints
  * ---
  * Uses MockMvc for testing REST endpoints and mocks KafkaTemplate
  * to avoid requiring a real Kafka broker during tests.
@@ -45,9 +63,18 @@ public class FileUploadControllerTest {
     @Autowired
     private FileUploadService fileUploadService;
 
+    @Autowired
+    private UploadAdmissionService uploadAdmissionService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @MockitoBean
     private KafkaTemplate<String, Object> kafkaTemplate;
 
+    @MockitoBean(name = "throughputKafkaTemplate")
+    private KafkaTemplate<String, Object> throughputKafkaTemplate;
+
     @Test
     @Order(1)
     @DisplayName("context loads successfully")
@@ -77,7 +104,7 @@ public class FileUploadControllerTest {
         );
 
         // Mock Kafka to avoid actual message sending
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
 
         mockMvc.perform(multipart("/api/files/upload").file(file))
                 .andExpect(status().isOk())
@@ -90,8 +117,14 @@ public class FileUploadControllerTest {
                 .andExpect(jsonPath("$.path").exists())
                 .andExpect(jsonPath("$.timestamp").exists());
 
-        // Verify Kafka message was sent
-        verify(kafkaTemplate, times(1)).send(eq("file-uploaded"), anyString());
+        // Verify the FileUploaded event was published (asynchronously), keyed by hash
+        ArgumentCaptor<Object> event = ArgumentCaptor.forClass(Object.class);
+        verify(kafkaTemplate, timeout(5000)).send(eq("file-uploaded"), anyString(), event.capture());
+        FileUploadedEvent published = (FileUploadedEvent) event.getValue();
+        assertEquals(4, published.getSize());
+        assertEquals("image/jpeg", published.getContentType());
+        assertEquals("photo.jpg", published.getOriginalName());
+        assertEquals(published.getSha256(), published.getStoredName());
     }
 
     @Test
@@ -102,10 +135,10 @@ public class FileUploadControllerTest {
                 "file",
                 "image.png",
                 "image/png",
-                new byte[]{(byte) 0x89, 0x50, 0x4E, 0x47} // PNG header
+                new byte[]{(byte) 0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A} // PNG signature
         );
 
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
 
         mockMvc.perform(multipart("/api/files/upload").file(file))
                 .andExpect(status().isOk())
@@ -114,7 +147,7 @@ public class FileUploadControllerTest {
                 .andExpect(jsonPath("$.originalName").value("image.png"))
                 .andExpect(jsonPath("$.contentType").value("image/png"));
 
-        verify(kafkaTemplate, times(1)).send(eq("file-uploaded"), anyString());
+        verify(kafkaTemplate, timeout(5000)).send(eq("file-uploaded"), anyString(), any(FileUploadedEvent.class));
     }
 
     @Test
@@ -128,7 +161,7 @@ public class FileUploadControllerTest {
                 "%PDF-1.4".getBytes()
         );
 
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
 
         mockMvc.perform(multipart("/api/files/upload").file(file))
                 .andExpect(status().isOk())
@@ -137,7 +170,7 @@ public class FileUploadControllerTest {
                 .andExpect(jsonPath("$.originalName").value("document.pdf"))
                 .andExpect(jsonPath("$.contentType").value("application/pdf"));
 
-        verify(kafkaTemplate, times(1)).send(eq("file-uploaded"), anyString());
+        verify(kafkaTemplate, timeout(5000)).send(eq("file-uploaded"), anyString(), any(FileUploadedEvent.class));
     }
 
     @Test
@@ -151,7 +184,7 @@ public class FileUploadControllerTest {
                 new byte[]{0x00, 0x00, 0x00, 0x18, 0x66, 0x74, 0x79, 0x70} // MP4 header
         );
 
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
 
         mockMvc.perform(multipart("/api/files/upload").file(file))
                 .andExpect(status().isOk())
@@ -160,7 +193,7 @@ public class FileUploadControllerTest {
                 .andExpect(jsonPath("$.originalName").value("video.mp4"))
                 .andExpect(jsonPath("$.contentType").value("video/mp4"));
 
-        verify(kafkaTemplate, times(1)).send(eq("file-uploaded"), anyString());
+        verify(kafkaTemplate, timeout(5000)).send(eq("file-uploaded"), anyString(), any(FileUploadedEvent.class));
     }
 
 
@@ -183,7 +216,7 @@ public class FileUploadControllerTest {
                 .andExpect(jsonPath("$.timestamp").exists());
 
         // Verify Kafka was NOT called for failed upload
-        verify(kafkaTemplate, never()).send(anyString(), any());
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
     }
 
     @Test
@@ -204,7 +237,7 @@ public class FileUploadControllerTest {
                 .andExpect(jsonPath("$.message").value(containsString("not allowed")))
                 .andExpect(jsonPath("$.timestamp").exists());
 
-        verify(kafkaTemplate, never()).send(anyString(), any());
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
     }
 
     @Test
@@ -227,7 +260,7 @@ public class FileUploadControllerTest {
                 .andExpect(jsonPath("$.message").value(containsString("exceeds")))
                 .andExpect(jsonPath("$.timestamp").exists());
 
-        verify(kafkaTemplate, never()).send(anyString(), any());
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
     }
 
     @Test
@@ -248,7 +281,7 @@ public class FileUploadControllerTest {
                 .andExpect(jsonPath("$.message").value(containsString("not allowed")))
                 .andExpect(jsonPath("$.timestamp").exists());
 
-        verify(kafkaTemplate, never()).send(anyString(), any());
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
     }
 
     @Test
@@ -268,7 +301,7 @@ public class FileUploadControllerTest {
                 .andExpect(jsonPath("$.status").value("error"))
                 .andExpect(jsonPath("$.message").value(containsString("not allowed")));
 
-        verify(kafkaTemplate, never()).send(anyString(), any());
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
     }
 
     @Test
@@ -282,7 +315,7 @@ public class FileUploadControllerTest {
                 new byte[]{0x47, 0x49, 0x46, 0x38, 0x39, 0x61} // GIF89a header
         );
 
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
 
         mockMvc.perform(multipart("/api/files/upload").file(gifFile))
                 .andExpect(status().isOk())
@@ -291,7 +324,7 @@ public class FileUploadControllerTest {
                 .andExpect(jsonPath("$.originalName").value("animation.gif"))
                 .andExpect(jsonPath("$.contentType").value("image/gif"));
 
-        verify(kafkaTemplate, times(1)).send(eq("file-uploaded"), anyString());
+        verify(kafkaTemplate, timeout(5000)).send(eq("file-uploaded"), anyString(), any(FileUploadedEvent.class));
     }
 
     @Test
@@ -302,10 +335,10 @@ public class FileUploadControllerTest {
                 "file",
                 "modern-image.webp",
                 "image/webp",
-                new byte[]{0x52, 0x49, 0x46, 0x46} // RIFF header (WebP)
+                new byte[]{0x52, 0x49, 0x46, 0x46, 0x04, 0x00, 0x00, 0x00, 0x57, 0x45, 0x42, 0x50} // RIFF....WEBP header
         );
 
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
 
         mockMvc.perform(multipart("/api/files/upload").file(webpFile))
                 .andExpect(status().isOk())
@@ -314,7 +347,7 @@ public class FileUploadControllerTest {
                 .andExpect(jsonPath("$.originalName").value("modern-image.webp"))
                 .andExpect(jsonPath("$.contentType").value("image/webp"));
 
-        verify(kafkaTemplate, times(1)).send(eq("file-uploaded"), anyString());
+        verify(kafkaTemplate, timeout(5000)).send(eq("file-uploaded"), anyString(), any(FileUploadedEvent.class));
     }
 
     @Test
@@ -328,7 +361,7 @@ public class FileUploadControllerTest {
                 new byte[]{0x00, 0x00, 0x01, (byte) 0xBA} // MPEG header
         );
 
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
 
         mockMvc.perform(multipart("/api/files/upload").file(mpegFile))
                 .andExpect(status().isOk())
@@ -337,6 +370,230 @@ public class FileUploadControllerTest {
                 .andExpect(jsonPath("$.originalName").value("video.mpeg"))
                 .andExpect(jsonPath("$.contentType").value("video/mpeg"));
 
-        verify(kafkaTemplate, times(1)).send(eq("file-uploaded"), anyString());
+        verify(kafkaTemplate, timeout(5000)).send(eq("file-uploaded"), anyString(), any(FileUploadedEvent.class));
+    }
+
+    @Test
+    @Order(15)
+    @DisplayName("stream valid JPEG body returns 200 with metadata")
+    void testStreamValidJpegFile() throws Exception {
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        mockMvc.perform(post("/api/files/upload/stream")
+                        .contentType("image/jpeg")
+                        .header("Content-Disposition", "attachment; filename=\"photo.jpg\"")
+                        .content(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0}))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.status").value("uploaded"))
+                .andExpect(jsonPath("$.originalName").value("photo.jpg"))
+                .andExpect(jsonPath("$.storedName").exists())
+                .andExpect(jsonPath("$.size").value(4))
+                .andExpect(jsonPath("$.contentType").value("image/jpeg"));
+
+        verify(kafkaTemplate, timeout(5000)).send(eq("file-uploaded"), anyString(), any(FileUploadedEvent.class));
+    }
+
+    @Test
+    @Order(16)
+    @DisplayName("stream body with disallowed MIME type returns 400 Bad Request")
+    void testStreamInvalidMimeType() throws Exception {
+        mockMvc.perform(post("/api/files/upload/stream")
+                        .contentType("text/plain")
+                        .content("echo hello".getBytes()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status").value("error"))
+                .andExpect(jsonPath("$.message").value(containsString("not allowed")));
+
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
+    }
+
+    @Test
+    @Order(17)
+    @DisplayName("stream body exceeding declared size limit returns 400 Bad Request")
+    void testStreamFileTooLarge() throws Exception {
+        mockMvc.perform(post("/api/files/upload/stream")
+                        .contentType("image/jpeg")
+                        .content(new byte[3 * 1024 * 1024]))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status").value("error"))
+                .andExpect(jsonPath("$.message").value(containsString("exceeds")));
+
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
+    }
+
+    @Test
+    @Order(18)
+    @DisplayName("stream body without Content-Length is aborted once it crosses the size limit")
+    void testStreamAbortsOversizedBodyWithoutContentLength() {
+        byte[] oversized = new byte[3 * 1024 * 1024];
+        oversized[0] = (byte) 0xFF; // JPEG signature, so only the size limit can stop it
+        oversized[1] = (byte) 0xD8;
+        oversized[2] = (byte) 0xFF;
+        ByteArrayInputStream body = new ByteArrayInputStream(oversized);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> fileUploadService.saveStream(body, "large-image.jpg", "image/jpeg", -1));
+
+        assertTrue(e.getMessage().contains("exceeds"));
+        assertTrue(body.available() > 0,
+                "Upload should be aborted before the whole body is consumed");
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
+    }
+
+    @Test
+    @Order(19)
+    @DisplayName("uploading identical content twice stores a single deduplicated blob")
+    void testIdenticalUploadsAreDeduplicated() throws Exception {
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        // Unique content so blobs left behind by earlier runs cannot interfere
+        byte[] content = ("\u00FF\u00D8\u00FF" + UUID.randomUUID()).getBytes(StandardCharsets.ISO_8859_1);
+        MockMultipartFile first = new MockMultipartFile("file", "a.jpg", "image/jpeg", content);
+        MockMultipartFile second = new MockMultipartFile("file", "b.jpg", "image/jpeg", content);
+
+        String firstName = JsonPath.read(mockMvc.perform(multipart("/api/files/upload").file(first))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deduplicated").value(false))
+                .andReturn().getResponse().getContentAsString(), "$.storedName");
+
+        mockMvc.perform(multipart("/api/files/upload").file(second))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.originalName").value("b.jpg"))
+                .andExpect(jsonPath("$.storedName").value(firstName))
+                .andExpect(jsonPath("$.sha256").value(firstName))
+                .andExpect(jsonPath("$.deduplicated").value(true));
+
+        // Both uploads are announced; waiting also keeps these sends out of the next test
+        verify(kafkaTemplate, timeout(5000).times(2)).send(eq("file-uploaded"), eq(firstName), any());
+    }
+
+    @Test
+    @Order(20)
+    @DisplayName("content that does not match its declared MIME type is rejected with 400")
+    void testSpoofedContentTypeIsRejected() throws Exception {
+        MockMultipartFile spoofed = new MockMultipartFile(
+                "file",
+                "holiday.png",
+                "image/png",
+                new byte[]{0x4D, 0x5A, (byte) 0x90, 0x00} // EXE header renamed to .png
+        );
+
+        mockMvc.perform(multipart("/api/files/upload").file(spoofed))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status").value("error"))
+                .andExpect(jsonPath("$.message").value(containsString("does not match")));
+
+        mockMvc.perform(post("/api/files/upload/stream")
+                        .contentType("application/pdf")
+                        .content(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0}))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(containsString("detected: image/jpeg")));
+
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
+    }
+
+    @Test
+    @Order(21)
+    @DisplayName("a user over the in-flight upload limit gets 429 with Retry-After before the body is read")
+    void testAdmissionControlRejectsBusyUser() throws Exception {
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        MockMultipartFile file = new MockMultipartFile("file", "photo.jpg", "image/jpeg",
+                new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE1});
+        double admitted = meterRegistry.get("upload_admission_admitted_total").counter().count();
+
+        mockMvc.perform(multipart("/api/files/upload").file(file))
+                .andExpect(status().isOk());
+        assertEquals(admitted + 1, meterRegistry.get("upload_admission_admitted_total").counter().count());
+        assertEquals(0.0, meterRegistry.get("upload_admission_in_flight").gauge().value());
+
+        // Occupy every slot of the @WithMockUser user ("user")
+        List<UploadAdmissionService.Admission> held = new ArrayList<>();
+        UploadAdmissionService.Admission admission;
+        while ((admission = uploadAdmissionService.tryAdmit("user", 1)).isAdmitted()) {
+            held.add(admission);
+        }
+        try {
+            mockMvc.perform(multipart("/api/files/upload").file(file))
+                    .andExpect(status().isTooManyRequests())
+                    .andExpect(header().exists("Retry-After"))
+                    .andExpect(jsonPath("$.status").value("error"))
+                    .andExpect(jsonPath("$.reason").value("user_in_flight"));
+        } finally {
+            held.forEach(UploadAdmissionService.Admission::release);
+        }
+
+        mockMvc.perform(multipart("/api/files/upload").file(file))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @Order(22)
+    @DisplayName("a batch upload stores every file and publishes all their events")
+    void testBatchUpload() throws Exception {
+        when(throughputKafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        var request = multipart("/api/files/upload/batch");
+        for (int i = 0; i < 5; i++) {
+            request.file(new MockMultipartFile("files", "photo-" + i + ".jpg", "image/jpeg",
+                    ("\u00FF\u00D8\u00FF" + UUID.randomUUID()).getBytes(StandardCharsets.ISO_8859_1)));
+        }
+
+        mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("uploaded"))
+                .andExpect(jsonPath("$.uploaded").value(5))
+                .andExpect(jsonPath("$.failed").value(0))
+                .andExpect(jsonPath("$.files.length()").value(5))
+                .andExpect(jsonPath("$.files[0].originalName").value("photo-0.jpg"))
+                .andExpect(jsonPath("$.files[4].originalName").value("photo-4.jpg"))
+                .andExpect(jsonPath("$.files[4].status").value("uploaded"))
+                .andExpect(jsonPath("$.files[4].sha256").exists());
+
+        // Only this batch's events: uploads of earlier tests may still be publishing
+        // A batch's events go out together on the throughput producer, flushed once
+        verify(throughputKafkaTemplate, timeout(5000).times(5)).send(eq("file-uploaded"), anyString(),
+                argThat((FileUploadedEvent event) -> event != null && event.getOriginalName().startsWith("photo-")));
+        verify(throughputKafkaTemplate, timeout(5000)).flush();
+    }
+
+    @Test
+    @Order(23)
+    @DisplayName("a batch with a bad file returns 207 with a result per file")
+    void testBatchUploadWithInvalidFile() throws Exception {
+        when(throughputKafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        mockMvc.perform(multipart("/api/files/upload/batch")
+                        .file(new MockMultipartFile("files", "ok.pdf", "application/pdf",
+                                ("%PDF-1.7 " + UUID.randomUUID()).getBytes()))
+                        .file(new MockMultipartFile("files", "script.sh", "text/x-shellscript",
+                                "#!/bin/sh".getBytes())))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.status").value("partial"))
+                .andExpect(jsonPath("$.uploaded").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.files[0].status").value("uploaded"))
+                .andExpect(jsonPath("$.files[1].status").value("error"))
+                .andExpect(jsonPath("$.files[1].originalName").value("script.sh"))
+                .andExpect(jsonPath("$.files[1].message").value(containsString("not allowed")));
+
+        verify(throughputKafkaTemplate, timeout(5000).times(1))
+                .send(eq("file-uploaded"), anyString(), any(FileUploadedEvent.class));
+    }
+
+    @Test
+    @Order(24)
+    @DisplayName("a batch over the file limit is rejected with 400 before anything is stored")
+    void testBatchUploadTooManyFiles() throws Exception {
+        var request = multipart("/api/files/upload/batch");
+        for (int i = 0; i < 51; i++) {
+            request.file(new MockMultipartFile("files", "doc-" + i + ".pdf", "application/pdf", "%PDF-".getBytes()));
+        }
+
+        mockMvc.perform(request)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(containsString("at most 50 files")));
+
+        verify(throughputKafkaTemplate, never()).send(anyString(), anyString(), any());
     }
 }
@@ -1,5 +1,6 @@
 package com.paymetv.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.paymetv.app.AppApplication;
 import com.paymetv.app.controller.ImageFaceController;
@@ -17,8 +18,14 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
 import static org.hamcrest.Matchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -37,6 +44,9 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  * 6. Controller now uses @RequestBody and ImageFaceService
  * 7. Test saves User and Artifact first to satisfy FK constraints
  * 8. Removed assertion for $.artifact field (excluded by @JsonBackReference)
+ * ---
+ * Listing is covered page by page (following the cursors to the end) and as an
+ * NDJSON stream; bulk import with a JSON array and with NDJSON.
  */
 @SpringBootTest(classes = AppApplication.class)
 @AutoConfigureMockMvc
@@ -290,9 +300,136 @@ public class ImageFaceControllerTest {
         mockMvc.perform(get("/api/imageface/all"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$", hasSize(greaterThanOrEqualTo(2))))
-                .andExpect(jsonPath("$[0].front").exists())
-                .andExpect(jsonPath("$[1].front").exists());
+                .andExpect(jsonPath("$.items", hasSize(greaterThanOrEqualTo(2))))
+                .andExpect(jsonPath("$.items[0].front").exists())
+                .andExpect(jsonPath("$.items[1].front").exists());
+    }
+
+    @Test
+    @Order(7)
+    @Transactional
+    @DisplayName("page through image faces via GET /api/imageface/all?limit=&cursor=")
+    void testPageThroughImageFaces() throws Exception {
+        Artifact artifact = saveArtifact();
+        List<Long> saved = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            saved.add(imageFaceRepository.save(imageFace("page" + i + ".png", artifact)).getId());
+        }
+
+        // Follow the cursors to the end; every row must come exactly once, in id order
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            MockHttpServletRequestBuilder request = get("/api/imageface/all").param("limit", "2");
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+            JsonNode page = objectMapper.readTree(mockMvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items", hasSize(lessThanOrEqualTo(2))))
+                    .andReturn().getResponse().getContentAsString());
+            page.get("items").forEach(item -> seen.add(item.get("id").asLong()));
+            cursor = page.get("next").isNull() ? null : page.get("next").asText();
+        } while (cursor != null);
+
+        Assertions.assertEquals(seen.stream().sorted().distinct().toList(), seen);
+        Assertions.assertTrue(seen.containsAll(saved));
+    }
+
+    @Test
+    @Order(8)
+    @DisplayName("reject a bad limit or cursor on GET /api/imageface/all")
+    void testRejectInvalidPageRequest() throws Exception {
+        mockMvc.perform(get("/api/imageface/all").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/imageface/all").param("limit", "1001"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/imageface/all").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Order(9)
+    @DisplayName("stream all image faces as NDJSON via GET /api/imageface/stream")
+    void testStreamImageFaces() throws Exception {
+        // The stream reads on another thread and connection, so these rows are committed and removed afterwards
+        String run = UUID.randomUUID().toString();
+        Artifact artifact = saveArtifact();
+        List<Long> saved = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            saved.add(imageFaceRepository.save(imageFace(run + "-" + i + ".png", artifact)).getId());
+        }
+        try {
+            MvcResult started = mockMvc.perform(get("/api/imageface/stream"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            String body = mockMvc.perform(asyncDispatch(started))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType("application/x-ndjson"))
+                    .andReturn().getResponse().getContentAsString();
+
+            List<JsonNode> lines = new ArrayList<>();
+            for (String line : body.split("\n")) {
+                lines.add(objectMapper.readTree(line));
+            }
+            List<Long> ids = lines.stream().map(line -> line.get("id").asLong()).toList();
+            Assertions.assertEquals(ids.stream().sorted().toList(), ids);
+            Assertions.assertEquals(List.of(run + "-0.png", run + "-1.png", run + "-2.png"), lines.stream()
+                    .filter(line -> saved.contains(line.get("id").asLong()))
+                    .map(line -> line.get("front").asText()).toList());
+        } finally {
+            imageFaceRepository.deleteAllById(saved);
+        }
+    }
+
+    @Test
+    @Order(10)
+    @Transactional
+    @DisplayName("import image faces in bulk via POST /api/imageface/import")
+    void testImportImageFaces() throws Exception {
+        Artifact artifact = saveArtifact();
+        String item = objectMapper.writeValueAsString(new ImageFaceController.CreateImageFaceRequest(
+                imageFace("import.png", null), Artifact.builder().id(artifact.getId()).build()));
+
+        mockMvc.perform(post("/api/imageface/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + item + "," + item + "]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rows").value(2))
+                .andExpect(jsonPath("$.chunks").value(1));
+
+        mockMvc.perform(post("/api/imageface/import")
+                        .contentType("application/x-ndjson")
+                        .content(item + "\n" + item + "\n" + item + "\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rows").value(3));
+
+        mockMvc.perform(post("/api/imageface/import")
+                        .contentType("application/x-ndjson")
+                        .content(item + "\n{\"artifact\": null}\n"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private Artifact saveArtifact() {
+        String run = UUID.randomUUID().toString();
+        Users user = userRepository.save(Users.builder()
+                .username("page user " + run).password("password").email(run + "@test.com").build());
+        return artifactRepository.save(Artifact.builder()
+                .name("page artifact " + run).model("test model").status(true).user(user).build());
+    }
+
+    private static ImageFace imageFace(String front, Artifact artifact) {
+        return ImageFace.builder()
+                .front(front)
+                .back("back.png")
+                .left("left.png")
+                .right("right.png")
+                .artifact(artifact)
+                .build();
     }
 
     @Test
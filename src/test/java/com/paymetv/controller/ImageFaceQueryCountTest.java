@@ -0,0 +1,145 @@
+package com.paymetv.controller;
+
+import com.paymetv.app.AppApplication;
+import com.paymetv.app.domain.Artifact;
+import com.paymetv.app.domain.ImageFace;
+import com.paymetv.app.domain.Users;
+import com.paymetv.app.repository.ArtifactRepository;
+import com.paymetv.app.repository.ImageFaceRepository;
+import com.paymetv.app.repository.UserRepository;
+import com.paymetv.util.integration.SqlStatementCounter;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for the SQL each ImageFace read issues.
+ * ---
+ * Every ImageFace is saved on its own artifact and user, then the persistence
+ * context is cleared so nothing is served from it. SqlStatementCounter records the
+ * statements of each request; a budget that is exceeded fails with the statements.
+ * ---
+ * Tests verify:
+ * - GET /api/imageface/{id} issues one select, without joins
+ * - GET /api/imageface/all issues one select however many rows the page holds
+ * - The WITH_ARTIFACT graph loads the artifact and its user in the same select
+ */
+@SpringBootTest(classes = AppApplication.class)
+@AutoConfigureMockMvc
+@Transactional
+@Tag("ImageFaceQueryCountTest")
+@WithMockUser
+public class ImageFaceQueryCountTest {
+
+    private static final int PAGE_SIZE = 5;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ArtifactRepository artifactRepository;
+
+    @Autowired
+    private ImageFaceRepository imageFaceRepository;
+
+    @Test
+    @DisplayName("GET /api/imageface/{id} issues one select without joins")
+    void shouldGetOneImageFaceInOneSelect() throws Exception {
+        Long id = saveImageFaces(1).get(0);
+
+        List<String> statements = perform(get("/api/imageface/{id}", id));
+
+        assertBudget(1, statements);
+        assertFalse(statements.get(0).toLowerCase(Locale.ROOT).contains(" join "),
+                "the artifact must not be joined in: " + statements.get(0));
+    }
+
+    @Test
+    @DisplayName("GET /api/imageface/all issues one select per page")
+    void shouldGetOnePageInOneSelect() throws Exception {
+        Long first = saveImageFaces(PAGE_SIZE).get(0);
+        // Start the page right before the faces saved here, so it holds all of them
+        String cursor = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("id:" + (first - 1)).getBytes(StandardCharsets.UTF_8));
+
+        List<String> statements = perform(get("/api/imageface/all")
+                .param("limit", String.valueOf(PAGE_SIZE))
+                .param("cursor", cursor));
+
+        assertBudget(1, statements);
+    }
+
+    @Test
+    @DisplayName("The WITH_ARTIFACT graph loads the artifact and user in one select")
+    void shouldLoadArtifactGraphInOneSelect() {
+        Long id = saveImageFaces(1).get(0);
+
+        SqlStatementCounter.reset();
+        ImageFace imageFace = imageFaceRepository.findWithArtifactById(id).orElseThrow();
+        List<String> statements = SqlStatementCounter.statements();
+
+        assertBudget(1, statements);
+        assertTrue(Hibernate.isInitialized(imageFace.getArtifact()));
+        assertTrue(Hibernate.isInitialized(imageFace.getArtifact().getUser()));
+        assertTrue(imageFace.getArtifact().getUser().getUsername().startsWith("count user"));
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    /** Saves {@code count} ImageFaces, each with its own artifact and user, and clears the persistence context. */
+    private List<Long> saveImageFaces(int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String run = UUID.randomUUID().toString();
+            Users user = userRepository.save(Users.builder()
+                    .username("count user " + run).password("password").email(run + "@test.com").build());
+            Artifact artifact = artifactRepository.save(Artifact.builder()
+                    .name("count artifact " + run).model("test model").status(true).user(user).build());
+            ids.add(imageFaceRepository.save(ImageFace.builder()
+                    .front("front.png").back("back.png").left("left.png").right("right.png")
+                    .artifact(artifact).build()).getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return ids;
+    }
+
+    private List<String> perform(RequestBuilder request) throws Exception {
+        SqlStatementCounter.reset();
+        mockMvc.perform(request).andExpect(status().isOk());
+        return SqlStatementCounter.statements();
+    }
+
+    private static void assertBudget(int budget, List<String> statements) {
+        assertEquals(budget, statements.size(),
+                "expected " + budget + " SQL statement(s), got:\n" + String.join("\n", statements));
+    }
+}
@@ -2,10 +2,14 @@ package com.paymetv.repository;
 
 import com.paymetv.app.domain.Users;
 import com.paymetv.app.repository.UserRepository;
+import com.paymetv.util.integration.SqlStatementCounter;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
@@ -83,4 +87,25 @@ public class UserRepositoryTest {
         userRepository.deleteById(savedUser.getId());
         assertThat(userRepository.findById(savedUser.getId())).isEmpty();
     }
+
+    @Test
+    @Order(7)
+    @DisplayName("ids come from the sequence a block at a time")
+    void testIdsArePooled() {
+        SqlStatementCounter.reset();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(userRepository.save(Users.builder()
+                    .username("Pooled " + i)
+                    .password("password")
+                    .email("pooled" + i + "@example.com")
+                    .build()).getId());
+        }
+
+        // At most one trip to the sequence, in case the block of setUp ran out
+        assertThat(SqlStatementCounter.statements())
+                .filteredOn(sql -> sql.toLowerCase().contains("users_seq"))
+                .hasSizeLessThanOrEqualTo(1);
+        assertThat(ids).doesNotHaveDuplicates().isSorted();
+    }
 }
@@ -0,0 +1,142 @@
+package com.paymetv.service;
+
+import com.paymetv.app.service.storage.BlobRef;
+import com.paymetv.app.service.storage.ContentAddressedStore;
+import com.paymetv.app.service.storage.LocalStorageBackend;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ContentAddressedStore.
+ * ---
+ * Each test works in its own temporary blobs directory.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@Tag("ContentAddressedStoreTest")
+public class ContentAddressedStoreTest {
+
+    // SHA-256 of "hello world"
+    private static final String HELLO_HASH = "b94d27b9934d3e08a52e52d7da7dabfac484efe37a5380ee9088f7ace2efcde9";
+
+    @TempDir
+    Path root;
+
+    private ContentAddressedStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new ContentAddressedStore(root.toString(), new LocalStorageBackend(root));
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("content is stored under a sharded SHA-256 path")
+    void testStoreUsesShardedHashPath() throws Exception {
+        BlobRef ref = store.store(stream("hello world"), 1024);
+
+        assertEquals(HELLO_HASH, ref.getHash());
+        assertEquals(11, ref.getSize());
+        assertFalse(ref.isDeduplicated());
+        assertEquals("b9/4d/" + HELLO_HASH, ref.getKey());
+        Path blob = root.resolve("b9").resolve("4d").resolve(HELLO_HASH);
+        assertEquals(blob.toAbsolutePath().toString(), ref.getLocation());
+        assertEquals("hello world", Files.readString(blob));
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("identical content is written once and reference counted")
+    void testIdenticalContentIsDeduplicated() throws Exception {
+        BlobRef first = store.store(stream("hello world"), 1024);
+        BlobRef second = store.store(stream("hello world"), 1024);
+
+        assertTrue(second.isDeduplicated());
+        assertEquals(first.getLocation(), second.getLocation());
+        assertEquals(2, second.getRefCount());
+        assertEquals(2, store.refCount(HELLO_HASH));
+        assertEquals(0, countTempFiles());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("oversized and empty content are rejected without leaving temp files")
+    void testRejectedContentLeavesNoTempFiles() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> store.store(stream("hello world"), 5));
+        assertThrows(IllegalArgumentException.class, () -> store.store(stream(""), 5));
+
+        assertEquals(0, countTempFiles());
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("storeFile hashes and publishes an assembled temp file")
+    void testStoreFile() throws Exception {
+        store.store(stream("hello world"), 1024);
+        Path temp = store.newTempFile();
+        Files.writeString(temp, "hello world");
+
+        BlobRef ref = store.storeFile(temp);
+
+        assertEquals(HELLO_HASH, ref.getHash());
+        assertTrue(ref.isDeduplicated());
+        assertFalse(Files.exists(temp));
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("concurrent uploads of the same content keep an exact reference count")
+    void testConcurrentStoresOfSameContent() throws Exception {
+        int uploads = 32;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<BlobRef>> results = new ArrayList<>();
+            for (int i = 0; i < uploads; i++) {
+                results.add(executor.submit(() -> store.store(stream("hello world"), 1024)));
+            }
+            long written = 0;
+            for (Future<BlobRef> result : results) {
+                written += result.get().isDeduplicated() ? 0 : 1;
+            }
+
+            assertEquals(1, written);
+            assertEquals(uploads, store.refCount(HELLO_HASH));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("malformed hashes are rejected")
+    void testMalformedHashIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> store.exists("../../etc/passwd"));
+        assertThrows(IllegalArgumentException.class, () -> store.exists(HELLO_HASH.toUpperCase()));
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long countTempFiles() throws Exception {
+        Path tempDir = root.resolve(".tmp");
+        if (!Files.exists(tempDir)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.count();
+        }
+    }
+}
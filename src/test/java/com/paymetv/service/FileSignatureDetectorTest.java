@@ -0,0 +1,71 @@
+package com.paymetv.service;
+
+import com.paymetv.app.service.upload.FileSignatureDetector;
+import org.junit.jupiter.api.*;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for FileSignatureDetector.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@Tag("FileSignatureDetectorTest")
+public class FileSignatureDetectorTest {
+
+    @Test
+    @Order(1)
+    @DisplayName("every allowed format is recognised from its leading bytes")
+    void testDetectsAllowedFormats() {
+        assertEquals("image/jpeg", detect(0xFF, 0xD8, 0xFF, 0xDB));
+        assertEquals("image/png", detect(0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A));
+        assertEquals("image/gif", detect("GIF87a"));
+        assertEquals("image/gif", detect("GIF89a"));
+        assertEquals("image/webp", detect("RIFF\u0010\u0000\u0000\u0000WEBPVP8 "));
+        assertEquals("video/mp4", detect(0x00, 0x00, 0x00, 0x18, 'f', 't', 'y', 'p', 'i', 's', 'o', 'm'));
+        assertEquals("video/mpeg", detect(0x00, 0x00, 0x01, 0xBA));
+        assertEquals("video/mpeg", detect(0x00, 0x00, 0x01, 0xB3));
+        assertEquals("application/pdf", detect("%PDF-1.7"));
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("look-alikes and truncated headers are not recognised")
+    void testRejectsLookAlikes() {
+        assertNull(detect("RIFF\u0010\u0000\u0000\u0000WAVE"), "RIFF alone is not WebP");
+        assertNull(detect(0x89, 0x50, 0x4E, 0x47), "truncated PNG signature");
+        assertNull(detect("GIF88a"));
+        assertNull(detect(0x4D, 0x5A, 0x90, 0x00), "Windows executable");
+        assertNull(FileSignatureDetector.detect(new byte[FileSignatureDetector.HEADER_LENGTH], 0));
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("only the valid part of the buffer is inspected")
+    void testHonoursLength() {
+        byte[] buffer = "%PDF-1.4".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals("application/pdf", FileSignatureDetector.detect(buffer, 5));
+        assertNull(FileSignatureDetector.detect(buffer, 4));
+        assertTrue(FileSignatureDetector.matches("application/pdf", buffer, buffer.length));
+        assertFalse(FileSignatureDetector.matches("image/png", buffer, buffer.length));
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private static String detect(int... values) {
+        byte[] header = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            header[i] = (byte) values[i];
+        }
+        return FileSignatureDetector.detect(header, header.length);
+    }
+
+    private static String detect(String value) {
+        byte[] header = value.getBytes(StandardCharsets.ISO_8859_1);
+        return FileSignatureDetector.detect(header, header.length);
+    }
+}
@@ -0,0 +1,129 @@
+package com.paymetv.service;
+
+import com.paymetv.app.service.pipeline.ImageDerivative;
+import com.paymetv.app.service.pipeline.ImageDerivativeGenerator;
+import com.paymetv.app.service.storage.BlobRef;
+import com.paymetv.app.service.storage.ContentAddressedStore;
+import com.paymetv.app.service.storage.LocalStorageBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ImageDerivativeGenerator.
+ * ---
+ * Each test renders into its own temporary content store.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@Tag("ImageDerivativeGeneratorTest")
+public class ImageDerivativeGeneratorTest {
+
+    @TempDir
+    Path root;
+
+    private SimpleMeterRegistry registry;
+    private ContentAddressedStore store;
+    private ImageDerivativeGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        store = new ContentAddressedStore(root.toString(), new LocalStorageBackend(root));
+        generator = new ImageDerivativeGenerator(store, registry, new int[]{64, 256, 128}, 2, 8);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        generator.shutdown();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("every configured size is rendered next to the original, without upscaling")
+    void testRendersConfiguredSizes() throws Exception {
+        BlobRef blob = storeImage(1000, 200, BufferedImage.TYPE_INT_RGB);
+
+        List<ImageDerivative> derivatives = generator.generate(blob.getHash()).get(10, TimeUnit.SECONDS);
+
+        assertEquals(List.of(64, 128, 256), derivatives.stream().map(ImageDerivative::getSize).toList());
+        assertTrue(derivatives.stream().allMatch(d -> d.getContentType().equals("image/jpeg")));
+        assertDimensions(blob, "thumb-256.jpg", 256, 51);
+        assertDimensions(blob, "thumb-64.jpg", 64, 13);
+
+        BlobRef tiny = storeImage(40, 30, BufferedImage.TYPE_INT_RGB);
+        generator.generate(tiny.getHash()).get(10, TimeUnit.SECONDS);
+        assertDimensions(tiny, "thumb-256.jpg", 40, 30);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("transparent images keep their alpha channel as PNG")
+    void testTransparentImagesBecomePng() throws Exception {
+        BlobRef blob = storeImage(300, 300, BufferedImage.TYPE_INT_ARGB);
+
+        List<ImageDerivative> derivatives = generator.generate(blob.getHash()).get(10, TimeUnit.SECONDS);
+
+        assertEquals("thumb-128.png", derivatives.get(1).getName());
+        assertEquals("image/png", derivatives.get(1).getContentType());
+        assertTrue(store.derivativeExists(blob.getHash(), "thumb-256.png"));
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("an image is rendered once, however often it is requested")
+    void testRendersOncePerContent() throws Exception {
+        BlobRef blob = storeImage(640, 480, BufferedImage.TYPE_INT_RGB);
+
+        CompletableFuture<List<ImageDerivative>> first = generator.generate(blob.getHash());
+        CompletableFuture<List<ImageDerivative>> second = generator.generate(blob.getHash());
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        List<ImageDerivative> later = generator.generate(blob.getHash()).get(10, TimeUnit.SECONDS);
+
+        assertEquals(3, later.size());
+        long rendered = registry.get("image_derivatives_duration_seconds").tags("outcome", "success").timer().count();
+        long skipped = registry.get("image_derivatives_duration_seconds").tags("outcome", "skipped").timer().count();
+        assertEquals(1, rendered);
+        // The second request either shared the in-flight render or found its output
+        assertTrue(skipped >= 1, "later requests reuse the stored derivatives");
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("content that cannot be decoded yields no derivatives")
+    void testUndecodableContentIsSkipped() throws Exception {
+        BlobRef blob = store.store(new ByteArrayInputStream("RIFF\u0000\u0000\u0000\u0000WEBPVP8 ".getBytes()), 1024);
+
+        assertEquals(List.of(), generator.generate(blob.getHash()).get(10, TimeUnit.SECONDS));
+        assertEquals(1, registry.get("image_derivatives_duration_seconds").tags("outcome", "skipped").timer().count());
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private BlobRef storeImage(int width, int height, int type) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, type);
+        image.setRGB(0, 0, (int) System.nanoTime()); // distinct content per call
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        return store.store(new ByteArrayInputStream(png.toByteArray()), Long.MAX_VALUE);
+    }
+
+    private void assertDimensions(BlobRef blob, String name, int width, int height) throws Exception {
+        BufferedImage derivative = ImageIO.read(store.openDerivative(blob.getHash(), name));
+        assertEquals(width, derivative.getWidth(), name + " width");
+        assertEquals(height, derivative.getHeight(), name + " height");
+    }
+}
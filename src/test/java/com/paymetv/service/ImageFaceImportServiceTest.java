@@ -0,0 +1,179 @@
+package com.paymetv.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymetv.app.AppApplication;
+import com.paymetv.app.domain.Artifact;
+import com.paymetv.app.domain.ImageFace;
+import com.paymetv.app.domain.Users;
+import com.paymetv.app.repository.ArtifactRepository;
+import com.paymetv.app.repository.UserRepository;
+import com.paymetv.app.service.ImageFaceImportService;
+import com.paymetv.app.service.ImageFaceImportService.ImportItem;
+import com.paymetv.app.service.ImageFaceImportService.ImportProgress;
+import com.paymetv.util.integration.SqlStatementCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ImageFaceImportService.
+ * ---
+ * Imports in chunks of 40 into a database of this class's own, without a test
+ * transaction, so every chunk really commits. Rows are told apart by a front
+ * image name unique to each test.
+ * ---
+ * Tests verify:
+ * - NDJSON items are imported in chunks, with one ImageFaceCreated event each
+ * - Inserts are sent as JDBC batches, not one statement per row
+ * - A JSON array is read too, and new artifacts and users are created
+ * - A bad item fails the import, keeping the chunks committed before it
+ */
+@SpringBootTest(
+        classes = AppApplication.class,
+        properties = {
+                "app.imageface.import.chunk-size=40",
+                "spring.datasource.url=jdbc:h2:mem:imageface-import;DB_CLOSE_DELAY=-1"
+        }
+)
+@Tag("ImageFaceImportServiceTest")
+public class ImageFaceImportServiceTest {
+
+    @Autowired
+    private ImageFaceImportService importService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ArtifactRepository artifactRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private String run;
+    private Artifact artifact;
+
+    @BeforeEach
+    void setup() {
+        run = UUID.randomUUID().toString();
+        Users user = userRepository.save(Users.builder()
+                .username("import user " + run).password("password").email(run + "@test.com").build());
+        artifact = artifactRepository.save(Artifact.builder()
+                .name("import artifact " + run).model("test model").status(true).user(user).build());
+    }
+
+    @Test
+    @DisplayName("NDJSON items are imported in chunks, with an event each")
+    void shouldImportNdjsonInChunks() throws Exception {
+        long events = count("SELECT COUNT(*) FROM outbox_event WHERE event_type = 'ImageFaceCreated'");
+
+        ImportProgress progress = importService.importAll(ndjson(items(100, Artifact.builder().id(artifact.getId()).build())));
+
+        assertEquals(100, progress.rows());
+        assertEquals(3, progress.chunks());
+        assertEquals(100, importedRows());
+        assertEquals(100, count("SELECT COUNT(*) FROM image_face WHERE front LIKE ? AND artifact_id = ?",
+                run + "%", artifact.getId()));
+        assertEquals(events + 100, count("SELECT COUNT(*) FROM outbox_event WHERE event_type = 'ImageFaceCreated'"));
+    }
+
+    @Test
+    @DisplayName("Inserts go out as JDBC batches")
+    void shouldBatchInserts() throws Exception {
+        InputStream in = ndjson(items(100, Artifact.builder().id(artifact.getId()).build()));
+
+        SqlStatementCounter.reset();
+        importService.importAll(in);
+        List<String> statements = SqlStatementCounter.statements();
+
+        // One prepared insert per chunk of 40, each executed as a batch
+        assertEquals(3, statements.stream().filter(sql -> sql.startsWith("insert into image_face")).count(),
+                String.join("\n", statements));
+        assertEquals(100, importedRows());
+    }
+
+    @Test
+    @DisplayName("A JSON array is read, creating new artifacts and users")
+    void shouldImportJsonArrayWithNewArtifacts() throws Exception {
+        long artifacts = artifactRepository.count();
+        long users = userRepository.count();
+        List<ImportItem> items = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Users user = Users.builder()
+                    .username("new user " + run + i).password("password").email(run + i + "@test.com").build();
+            items.addAll(items(1, Artifact.builder().name("new artifact " + run + i).user(user).build()));
+        }
+
+        ImportProgress progress = importService.importAll(
+                new ByteArrayInputStream(objectMapper.writeValueAsBytes(items)));
+
+        assertEquals(2, progress.rows());
+        assertEquals(2, importedRows());
+        assertEquals(artifacts + 2, artifactRepository.count());
+        assertEquals(users + 2, userRepository.count());
+    }
+
+    @Test
+    @DisplayName("A bad item fails the import, keeping earlier chunks")
+    void shouldKeepCommittedChunksOnBadItem() throws Exception {
+        List<ImportItem> items = items(100, Artifact.builder().id(artifact.getId()).build());
+        items.get(45).imageFace().setFront(null);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> importService.importAll(ndjson(items)));
+
+        assertTrue(e.getMessage().startsWith("Item 45: front, back, left and right are required"), e.getMessage());
+        assertTrue(e.getMessage().contains("40 rows were committed"), e.getMessage());
+        assertEquals(40, importedRows());
+
+        IllegalArgumentException malformed = assertThrows(IllegalArgumentException.class,
+                () -> importService.importAll(new ByteArrayInputStream("{\"imageFace\": [".getBytes(StandardCharsets.UTF_8))));
+        assertTrue(malformed.getMessage().startsWith("Item 0:"), malformed.getMessage());
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private List<ImportItem> items(int count, Artifact artifact) {
+        List<ImportItem> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(new ImportItem(artifact, ImageFace.builder()
+                    .front(run + "-" + i + ".png").back("back.png").left("left.png").right("right.png")
+                    .build()));
+        }
+        return items;
+    }
+
+    private InputStream ndjson(List<ImportItem> items) throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (ImportItem item : items) {
+            body.append(objectMapper.writeValueAsString(item)).append('\n');
+        }
+        return new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long importedRows() {
+        return count("SELECT COUNT(*) FROM image_face WHERE front LIKE ?", run + "%");
+    }
+
+    private long count(String sql, Object... args) {
+        return jdbcTemplate.queryForObject(sql, Long.class, args);
+    }
+}
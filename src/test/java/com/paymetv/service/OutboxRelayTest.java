@@ -0,0 +1,186 @@
+package com.paymetv.service;
+
+import com.paymetv.app.AppApplication;
+import com.paymetv.app.domain.Artifact;
+import com.paymetv.app.domain.ImageFace;
+import com.paymetv.app.domain.Users;
+import com.paymetv.app.repository.ArtifactRepository;
+import com.paymetv.app.repository.OutboxEventRepository;
+import com.paymetv.app.repository.UserRepository;
+import com.paymetv.app.service.ImageFaceService;
+import com.paymetv.app.service.outbox.Outbox;
+import com.paymetv.app.service.outbox.OutboxRelay;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the transactional outbox behind ImageFaceService.
+ * ---
+ * Runs the outbox relay against an embedded broker with a short poll interval
+ * and reads image-face-events back with a plain consumer. Changes are really
+ * committed here, into a database of this class's own.
+ * ---
+ * Tests verify:
+ * - Committed changes reach Kafka in order, keyed by the ImageFace id, with the
+ *   event id and type in the headers, and leave the outbox empty
+ * - A rolled-back change never reaches Kafka
+ * - Events cannot be recorded outside a transaction
+ */
+@SpringBootTest(
+        classes = AppApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+                // Commits rows, so it keeps them out of the database the other contexts share
+                "spring.datasource.url=jdbc:h2:mem:outbox-test",
+                "app.outbox.relay.enabled=true",
+                "app.outbox.relay.poll-interval-ms=100"
+        })
+@EmbeddedKafka(partitions = 3, topics = {ImageFaceService.EVENTS_TOPIC}, kraft = false)
+@Tag("OutboxRelayTest")
+public class OutboxRelayTest {
+
+    @Autowired
+    private ImageFaceService imageFaceService;
+
+    @Autowired
+    private Outbox outbox;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ArtifactRepository artifactRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafka;
+
+    @Test
+    @DisplayName("Committed changes are published in order per ImageFace")
+    void shouldPublishCommittedChangesInOrder() throws InterruptedException {
+        ImageFace created = imageFaceService.createImageFace(face("front-1.png"), newArtifact());
+        String key = String.valueOf(created.getId());
+        imageFaceService.updateImageFace(created.getId(), face("front-2.png"));
+        imageFaceService.updateImageFace(created.getId(), face("front-3.png"));
+
+        List<ConsumerRecord<String, String>> events = awaitEvents(
+                received -> received.stream().filter(event -> key.equals(event.key())).count() == 3)
+                .stream().filter(event -> key.equals(event.key())).toList();
+
+        assertEquals(List.of("ImageFaceCreated", "ImageFaceUpdated", "ImageFaceUpdated"),
+                events.stream().map(event -> header(event, OutboxRelay.EVENT_TYPE_HEADER)).toList());
+        assertTrue(events.get(2).value().contains("\"front\":\"front-3.png\""), events.get(2).value());
+        assertEquals("ImageFace", header(events.get(0), OutboxRelay.AGGREGATE_TYPE_HEADER));
+        List<Long> eventIds = events.stream()
+                .map(event -> Long.parseLong(header(event, OutboxRelay.EVENT_ID_HEADER))).toList();
+        assertEquals(eventIds.stream().sorted().toList(), eventIds);
+        // The relay deletes a batch just after its acknowledgements arrive
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (hasOutboxRows(key) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertFalse(hasOutboxRows(key), "published events must be removed from the outbox");
+    }
+
+    @Test
+    @DisplayName("A rolled-back change publishes nothing")
+    void shouldNotPublishRolledBackChange() {
+        Artifact artifact = newArtifact();
+        Long rolledBack = new TransactionTemplate(transactionManager).execute(status -> {
+            ImageFace face = imageFaceService.createImageFace(face("rolled-back.png"), artifact);
+            assertTrue(hasOutboxRows(String.valueOf(face.getId())));
+            status.setRollbackOnly();
+            return face.getId();
+        });
+        // Events are published in commit order, so once a later change is out the rolled-back one would be too
+        String committed = String.valueOf(imageFaceService.createImageFace(face("committed.png"), artifact).getId());
+
+        List<ConsumerRecord<String, String>> events = awaitEvents(
+                received -> received.stream().anyMatch(event -> committed.equals(event.key())));
+
+        assertTrue(events.stream().noneMatch(event -> String.valueOf(rolledBack).equals(event.key())));
+    }
+
+    @Test
+    @DisplayName("Events are only recorded inside a transaction")
+    void shouldRequireTransaction() {
+        assertThrows(IllegalTransactionStateException.class,
+                () -> outbox.record(ImageFaceService.EVENTS_TOPIC, "ImageFace", 1L, "ImageFaceDeleted", Map.of("id", 1L)));
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private Artifact newArtifact() {
+        // The suite runs this class twice against one database, so names are unique per run
+        String run = UUID.randomUUID().toString();
+        Users user = userRepository.save(Users.builder()
+                .username("outbox " + run).password("password").email(run + "@test.com").build());
+        return artifactRepository.save(Artifact.builder()
+                .name("outbox artifact " + run).model("model").status(true).user(user).build());
+    }
+
+    private boolean hasOutboxRows(String aggregateId) {
+        return outboxEventRepository.findAll().stream().anyMatch(row -> aggregateId.equals(row.getAggregateId()));
+    }
+
+    private static ImageFace face(String front) {
+        return ImageFace.builder()
+                .front(front)
+                .back("back.png")
+                .left("left.png")
+                .right("right.png")
+                .build();
+    }
+
+    private List<ConsumerRecord<String, String>> awaitEvents(Predicate<List<ConsumerRecord<String, String>>> done) {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("outbox-reader-" + UUID.randomUUID(), "false", embeddedKafka);
+        List<ConsumerRecord<String, String>> received = new ArrayList<>();
+        try (Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(props,
+                new StringDeserializer(), new StringDeserializer()).createConsumer()) {
+            consumer.subscribe(List.of(ImageFaceService.EVENTS_TOPIC));
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (System.currentTimeMillis() < deadline) {
+                consumer.poll(Duration.ofMillis(500)).forEach(received::add);
+                if (done.test(received)) {
+                    return received;
+                }
+            }
+        }
+        return fail("Expected events never reached " + ImageFaceService.EVENTS_TOPIC + ", got " + received.size());
+    }
+
+    private static String header(ConsumerRecord<?, ?> record, String name) {
+        return new String(record.headers().lastHeader(name).value(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,241 @@
+package com.paymetv.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.paymetv.app.AppApplication;
+import com.paymetv.app.config.CacheConfig;
+import com.paymetv.app.domain.Artifact;
+import com.paymetv.app.domain.ImageFace;
+import com.paymetv.app.domain.Users;
+import com.paymetv.app.repository.ArtifactRepository;
+import com.paymetv.app.repository.ImageFaceRepository;
+import com.paymetv.app.repository.UserRepository;
+import com.paymetv.app.service.ArtifactService;
+import com.paymetv.app.service.ImageFaceCacheInvalidationListener;
+import com.paymetv.app.service.ImageFaceService;
+import com.paymetv.util.integration.SqlStatementCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the read-through caches of ImageFaceService and ArtifactService.
+ * ---
+ * Changes are really committed here, into a database of this class's own, so
+ * eviction on commit is exercised. Another pod's change is played by sending its
+ * event to image-face-events on an embedded broker, as that pod's outbox relay would.
+ * ---
+ * Tests verify:
+ * - A cached ImageFace or artifact is served without SQL, counted as a hit
+ * - Updates and deletes evict the ImageFace once committed
+ * - An event from another pod evicts the ImageFace, read outside any consumer group
+ * - The invalidation listener starts without waiting for an unreachable broker
+ * - Caches evict by size and report it
+ */
+@SpringBootTest(
+        classes = AppApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.autoconfigure.exclude=",
+                "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+                "spring.datasource.url=jdbc:h2:mem:cache-test"
+        })
+@EmbeddedKafka(partitions = 2, topics = {ImageFaceService.EVENTS_TOPIC}, kraft = false)
+@Tag("ReadThroughCacheTest")
+public class ReadThroughCacheTest {
+
+    @Autowired
+    private ImageFaceService imageFaceService;
+
+    @Autowired
+    private ArtifactService artifactService;
+
+    @Autowired
+    private ImageFaceRepository imageFaceRepository;
+
+    @Autowired
+    private ArtifactRepository artifactRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    @Qualifier("imageFaceCache")
+    private Cache<Long, ImageFace> imageFaceCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ImageFaceCacheInvalidationListener invalidationListener;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafka;
+
+    private String run;
+    private Artifact artifact;
+
+    @BeforeEach
+    void setup() {
+        run = UUID.randomUUID().toString();
+        Users user = userRepository.save(Users.builder()
+                .username("cache user " + run).password("password").email(run + "@test.com").build());
+        artifact = artifactRepository.save(Artifact.builder()
+                .name("cache artifact " + run).model("test model").status(true).user(user).build());
+    }
+
+    @Test
+    @DisplayName("Cached ImageFaces and artifacts are served without SQL")
+    void shouldServeHitsWithoutSql() {
+        Long id = saveImageFace("front.png");
+        double hits = gets("imageface", "hit");
+
+        SqlStatementCounter.reset();
+        assertEquals("front.png", imageFaceService.findById(id).getFront());
+        assertEquals(1, SqlStatementCounter.statements().size(), "the miss is loaded");
+        SqlStatementCounter.reset();
+        assertEquals("front.png", imageFaceService.findById(id).getFront());
+        assertEquals(0, SqlStatementCounter.statements().size(), "the hit is not");
+        assertEquals(hits + 1, gets("imageface", "hit"));
+
+        String name = "cache artifact " + run;
+        Artifact found = artifactService.findByName(name).orElseThrow();
+        SqlStatementCounter.reset();
+        assertSame(found, artifactService.findByName(name).orElseThrow());
+        assertEquals(0, SqlStatementCounter.statements().size());
+        assertTrue(Hibernate.isInitialized(found.getUser()), "the user is cached with the artifact");
+        assertTrue(artifactService.findByName("no such artifact " + run).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Updates and deletes evict the cached ImageFace")
+    void shouldEvictOnUpdateAndDelete() {
+        Long id = saveImageFace("before.png");
+        assertEquals("before.png", imageFaceService.findById(id).getFront());
+
+        imageFaceService.updateImageFace(id, ImageFace.builder()
+                .front("after.png").back("back.png").left("left.png").right("right.png").build());
+        assertNull(imageFaceCache.getIfPresent(id));
+        assertEquals("after.png", imageFaceService.findById(id).getFront());
+
+        imageFaceService.deleteImageFace(id);
+        assertNull(imageFaceCache.getIfPresent(id));
+        assertThrows(RuntimeException.class, () -> imageFaceService.findById(id));
+    }
+
+    @Test
+    @DisplayName("An event from another pod evicts the cached ImageFace")
+    void shouldEvictOnEventFromAnotherPod() throws Exception {
+        long assigned = System.currentTimeMillis() + 10_000;
+        while (invalidationListener.container().isEmpty() && System.currentTimeMillis() < assigned) {
+            Thread.sleep(50);
+        }
+        MessageListenerContainer container = invalidationListener.container().orElseThrow();
+        ContainerTestUtils.waitForAssignment(container, 2);
+        assertNull(container.getGroupId(), "every pod reads every partition, outside any group");
+        Long id = saveImageFace("remote.png");
+        imageFaceService.findById(id);
+        assertNotNull(imageFaceCache.getIfPresent(id));
+
+        try (KafkaProducer<String, String> producer = new KafkaProducer<>(
+                KafkaTestUtils.producerProps(embeddedKafka), new StringSerializer(), new StringSerializer())) {
+            producer.send(new ProducerRecord<>(ImageFaceService.EVENTS_TOPIC, String.valueOf(id),
+                    "{\"id\":" + id + ",\"front\":\"changed-elsewhere.png\"}")).get();
+        }
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (imageFaceCache.getIfPresent(id) != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertNull(imageFaceCache.getIfPresent(id), "the event must evict the ImageFace");
+        try (AdminClient admin = AdminClient.create(Map.of(
+                AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, embeddedKafka.getBrokersAsString()))) {
+            assertTrue(admin.listConsumerGroups().all().get(10, TimeUnit.SECONDS).stream()
+                            .noneMatch(group -> group.groupId().startsWith("image-face-cache")),
+                    "no consumer group is left on the broker");
+        }
+    }
+
+    @Test
+    @DisplayName("The invalidation listener does not hold up startup while Kafka is unreachable")
+    void shouldStartInvalidationListenerWithoutBroker() {
+        ConcurrentKafkaListenerContainerFactory<String, String> unreachable = new ConcurrentKafkaListenerContainerFactory<>();
+        unreachable.setConsumerFactory(new DefaultKafkaConsumerFactory<>(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:1",
+                ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class,
+                ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class)));
+        ImageFaceCacheInvalidationListener listener = new ImageFaceCacheInvalidationListener(imageFaceService,
+                unreachable, new StaticListableBeanFactory(Map.of("registry", new KafkaListenerEndpointRegistry()))
+                        .getBeanProvider(KafkaListenerEndpointRegistry.class), 100);
+
+        long start = System.nanoTime();
+        listener.start();
+        try {
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "start must not wait for the broker");
+            assertTrue(listener.isRunning());
+            assertTrue(listener.container().isEmpty());
+        } finally {
+            listener.stop();
+        }
+        assertFalse(listener.isRunning());
+    }
+
+    @Test
+    @DisplayName("Caches evict by size and report it")
+    void shouldEvictBySize() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        Cache<Integer, String> cache = CacheConfig.cache("small", 2, 60_000, registry);
+
+        for (int i = 0; i < 5; i++) {
+            cache.put(i, "value " + i);
+        }
+        cache.cleanUp();
+        cache.getIfPresent(4);
+
+        assertEquals(2, cache.estimatedSize());
+        assertEquals(3, registry.get("cache.evictions").tag("cache", "small").functionCounter().count());
+        assertEquals(2, registry.get("cache.size").tag("cache", "small").gauge().value());
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private Long saveImageFace(String front) {
+        return imageFaceRepository.save(ImageFace.builder()
+                .front(front).back("back.png").left("left.png").right("right.png")
+                .artifact(artifact).build()).getId();
+    }
+
+    private double gets(String cache, String result) {
+        return meterRegistry.get("cache.gets").tags("cache", cache, "result", result).functionCounter().count();
+    }
+}
@@ -0,0 +1,336 @@
+package com.paymetv.service;
+
+import com.paymetv.app.service.storage.LocalStorageBackend;
+import com.paymetv.app.service.storage.MeteredStorageBackend;
+import com.paymetv.app.service.storage.S3Client;
+import com.paymetv.app.service.storage.S3StorageBackend;
+import com.paymetv.app.service.storage.StorageBackend;
+import com.paymetv.app.service.storage.TieredStorageBackend;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the StorageBackend implementations.
+ * ---
+ * The S3 backend runs against an in-process, MinIO-style stand-in that
+ * implements the subset of the S3 REST API the backend uses (PutObject,
+ * GetObject, HeadObject, DeleteObject and the multipart upload calls).
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@Tag("StorageBackendTest")
+public class StorageBackendTest {
+
+    private static final long PART_SIZE = S3StorageBackend.MIN_PART_SIZE;
+
+    @TempDir
+    Path dir;
+
+    private S3StandIn s3;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        s3 = new S3StandIn();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        s3.stop();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("local backend moves the source into place and serves it back")
+    void testLocalBackend() throws Exception {
+        StorageBackend local = new LocalStorageBackend(dir.resolve("blobs"));
+        Path source = write("source", "hello world".getBytes(StandardCharsets.UTF_8));
+
+        local.put("ab/cd/key", source);
+
+        assertFalse(Files.exists(source), "put takes ownership of the source file");
+        assertTrue(local.exists("ab/cd/key"));
+        assertEquals(11, local.size("ab/cd/key"));
+        try (InputStream in = local.open("ab/cd/key")) {
+            assertEquals("hello world", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertTrue(local.localPath("ab/cd/key").isPresent());
+
+        local.delete("ab/cd/key");
+        assertFalse(local.exists("ab/cd/key"));
+        assertThrows(NoSuchFileException.class, () -> local.open("ab/cd/key"));
+        assertThrows(IllegalArgumentException.class, () -> local.exists("../escape"));
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("S3 backend stores small objects with a single signed PUT")
+    void testS3SinglePut() throws Exception {
+        StorageBackend backend = s3Backend();
+        byte[] content = "hello world".getBytes(StandardCharsets.UTF_8);
+
+        backend.put("ab/cd/small", write("small", content));
+
+        assertArrayEquals(content, s3.objects.get("/test-bucket/ab/cd/small"));
+        assertEquals(0, s3.multipartUploads.get());
+        assertTrue(backend.exists("ab/cd/small"));
+        assertEquals(content.length, backend.size("ab/cd/small"));
+        try (InputStream in = backend.open("ab/cd/small")) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+        assertTrue(s3.lastAuthorization.startsWith("AWS4-HMAC-SHA256 Credential=test-access/"));
+        assertEquals("s3://test-bucket/ab/cd/small", backend.location("ab/cd/small"));
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("S3 backend streams large objects as a multipart upload")
+    void testS3MultipartUpload() throws Exception {
+        StorageBackend backend = s3Backend();
+        byte[] content = randomBytes((int) (PART_SIZE * 2 + 12345));
+
+        backend.put("ab/cd/large", write("large", content));
+
+        assertEquals(1, s3.multipartUploads.get());
+        assertEquals(3, s3.partsReceived.get());
+        assertArrayEquals(content, s3.objects.get("/test-bucket/ab/cd/large"));
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("S3 backend reports missing objects and server errors")
+    void testS3MissingAndErrors() throws Exception {
+        StorageBackend backend = s3Backend();
+
+        assertFalse(backend.exists("ab/cd/missing"));
+        assertThrows(NoSuchFileException.class, () -> backend.open("ab/cd/missing"));
+        assertThrows(NoSuchFileException.class, () -> backend.size("ab/cd/missing"));
+        backend.delete("ab/cd/missing");
+
+        s3.failPuts = true;
+        Path source = write("failing", randomBytes((int) PART_SIZE + 1));
+        assertThrows(IOException.class, () -> backend.put("ab/cd/failing", source));
+        assertEquals(0, s3.openUploads.size(), "failed multipart uploads are aborted");
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("tiered backend writes locally and replicates to S3 in the background")
+    void testTieredBackend() throws Exception {
+        LocalStorageBackend local = new LocalStorageBackend(dir.resolve("local"));
+        TieredStorageBackend tiered = new TieredStorageBackend(local, s3Backend(), 2, meterRegistry);
+        byte[] content = "tiered content".getBytes(StandardCharsets.UTF_8);
+
+        try {
+            tiered.put("ab/cd/tiered", write("tiered", content));
+            assertTrue(local.exists("ab/cd/tiered"), "local tier is written before put returns");
+
+            tiered.replication("ab/cd/tiered").get(10, TimeUnit.SECONDS);
+            assertArrayEquals(content, s3.objects.get("/test-bucket/ab/cd/tiered"));
+
+            // A pod without the local copy falls back to the remote tier
+            local.delete("ab/cd/tiered");
+            try (InputStream in = tiered.open("ab/cd/tiered")) {
+                assertArrayEquals(content, in.readAllBytes());
+            }
+
+            tiered.delete("ab/cd/tiered");
+            assertFalse(tiered.exists("ab/cd/tiered"));
+        } finally {
+            tiered.close();
+        }
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("metered backend records latency and throughput per backend")
+    void testMeteredBackend() throws Exception {
+        StorageBackend metered = new MeteredStorageBackend(new LocalStorageBackend(dir.resolve("metered")),
+                meterRegistry);
+
+        metered.put("ab/cd/key", write("metered", new byte[1000]));
+        try (InputStream in = metered.open("ab/cd/key")) {
+            in.readAllBytes();
+        }
+        assertThrows(NoSuchFileException.class, () -> metered.size("ab/cd/missing"));
+
+        assertEquals(1000, meterRegistry.get("storage_backend_bytes_total")
+                .tags("backend", "local", "operation", "put").counter().count());
+        assertEquals(1000, meterRegistry.get("storage_backend_bytes_total")
+                .tags("backend", "local", "operation", "get").counter().count());
+        assertEquals(1, meterRegistry.get("storage_backend_duration_seconds")
+                .tags("backend", "local", "operation", "put", "outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("storage_backend_duration_seconds")
+                .tags("backend", "local", "operation", "size", "outcome", "error").timer().count());
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private S3StorageBackend s3Backend() {
+        S3Client client = new S3Client(s3.endpoint(), "us-east-1", "test-access", "test-secret");
+        return new S3StorageBackend(client, "test-bucket", PART_SIZE);
+    }
+
+    private Path write(String name, byte[] content) throws IOException {
+        return Files.write(dir.resolve(name + "-" + UUID.randomUUID()), content);
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * In-memory stand-in for an S3-compatible server (path-style addressing).
+     */
+    static class S3StandIn {
+        final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        final Map<String, SortedMap<Integer, byte[]>> openUploads = new ConcurrentHashMap<>();
+        final AtomicInteger multipartUploads = new AtomicInteger();
+        final AtomicInteger partsReceived = new AtomicInteger();
+        volatile String lastAuthorization = "";
+        volatile boolean failPuts;
+
+        private final HttpServer server;
+
+        S3StandIn() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", this::handle);
+            server.start();
+        }
+
+        URI endpoint() {
+            return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            lastAuthorization = String.valueOf(exchange.getRequestHeaders().getFirst("Authorization"));
+            byte[] body = exchange.getRequestBody().readAllBytes();
+
+            switch (exchange.getRequestMethod()) {
+                case "PUT" -> {
+                    if (failPuts && query.containsKey("partNumber")) {
+                        respond(exchange, 500, "<Error><Code>InternalError</Code></Error>");
+                    } else if (query.containsKey("partNumber")) {
+                        SortedMap<Integer, byte[]> parts = openUploads.get(query.get("uploadId"));
+                        parts.put(Integer.parseInt(query.get("partNumber")), body);
+                        partsReceived.incrementAndGet();
+                        exchange.getResponseHeaders().set("ETag", "\"etag-" + query.get("partNumber") + "\"");
+                        respond(exchange, 200, "");
+                    } else {
+                        objects.put(path, body);
+                        respond(exchange, 200, "");
+                    }
+                }
+                case "POST" -> {
+                    if (query.containsKey("uploads")) {
+                        String uploadId = UUID.randomUUID().toString();
+                        openUploads.put(uploadId, new TreeMap<>());
+                        multipartUploads.incrementAndGet();
+                        respond(exchange, 200, "<InitiateMultipartUploadResult><UploadId>" + uploadId
+                                + "</UploadId></InitiateMultipartUploadResult>");
+                    } else {
+                        SortedMap<Integer, byte[]> parts = openUploads.remove(query.get("uploadId"));
+                        int size = parts.values().stream().mapToInt(p -> p.length).sum();
+                        byte[] object = new byte[size];
+                        int offset = 0;
+                        for (byte[] part : parts.values()) {
+                            System.arraycopy(part, 0, object, offset, part.length);
+                            offset += part.length;
+                        }
+                        objects.put(path, object);
+                        respond(exchange, 200, "<CompleteMultipartUploadResult/>");
+                    }
+                }
+                case "GET" -> {
+                    byte[] object = objects.get(path);
+                    if (object == null) {
+                        respond(exchange, 404, "<Error><Code>NoSuchKey</Code></Error>");
+                    } else {
+                        exchange.sendResponseHeaders(200, object.length);
+                        try (OutputStream out = exchange.getResponseBody()) {
+                            out.write(object);
+                        }
+                    }
+                }
+                case "HEAD" -> {
+                    byte[] object = objects.get(path);
+                    if (object == null) {
+                        exchange.sendResponseHeaders(404, -1);
+                    } else {
+                        exchange.getResponseHeaders().set("Content-Length", Integer.toString(object.length));
+                        exchange.sendResponseHeaders(200, -1);
+                    }
+                    exchange.close();
+                }
+                case "DELETE" -> {
+                    if (query.containsKey("uploadId")) {
+                        openUploads.remove(query.get("uploadId"));
+                    } else {
+                        objects.remove(path);
+                    }
+                    exchange.sendResponseHeaders(204, -1);
+                    exchange.close();
+                }
+                default -> respond(exchange, 405, "");
+            }
+        }
+
+        private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length == 0) {
+                exchange.sendResponseHeaders(status, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        private static Map<String, String> parseQuery(String rawQuery) {
+            Map<String, String> query = new TreeMap<>();
+            if (rawQuery == null) {
+                return query;
+            }
+            for (String pair : rawQuery.split("&")) {
+                int eq = pair.indexOf('=');
+                query.put(eq < 0 ? pair : pair.substring(0, eq), eq < 0 ? "" : pair.substring(eq + 1));
+            }
+            return query;
+        }
+    }
+}
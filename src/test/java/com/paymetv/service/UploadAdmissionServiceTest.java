@@ -0,0 +1,253 @@
+package com.paymetv.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymetv.app.service.upload.TokenBucket;
+import com.paymetv.app.service.upload.UploadAdmissionInterceptor;
+import com.paymetv.app.service.upload.UploadAdmissionService;
+import com.paymetv.app.service.upload.UploadAdmissionService.Admission;
+import com.paymetv.app.service.upload.UploadAdmissionService.Reason;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for UploadAdmissionService, its TokenBucket and UploadAdmissionInterceptor.
+ * ---
+ * Limits are kept tiny so each test can reach them with a handful of uploads.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@Tag("UploadAdmissionServiceTest")
+public class UploadAdmissionServiceTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("a user over their in-flight or bytes limit gets 429 without affecting others")
+    void testPerUserLimits() {
+        UploadAdmissionService admission = service(10, 100 * MB, 1000, 2, 5 * MB);
+
+        Admission first = admission.tryAdmit("alice", MB);
+        Admission second = admission.tryAdmit("alice", MB);
+        Admission third = admission.tryAdmit("alice", MB);
+        assertTrue(first.isAdmitted());
+        assertTrue(second.isAdmitted());
+        assertEquals(Reason.USER_IN_FLIGHT, third.getReason());
+        assertEquals(429, third.getReason().getStatus().value());
+        assertTrue(admission.tryAdmit("bob", MB).isAdmitted());
+
+        first.release();
+        first.release(); // ignored
+        assertEquals(Reason.USER_BYTES, admission.tryAdmit("alice", 5 * MB).getReason());
+        assertTrue(admission.tryAdmit("alice", 4 * MB).isAdmitted());
+
+        assertEquals(1, rejected("user_in_flight"));
+        assertEquals(1, rejected("user_bytes"));
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("pod limits answer 503 and a single oversized upload is only admitted when idle")
+    void testPodLimits() {
+        UploadAdmissionService admission = service(2, 10 * MB, 1000, 10, 100 * MB);
+
+        Admission huge = admission.tryAdmit("alice", 50 * MB);
+        assertTrue(huge.isAdmitted(), "nothing else in flight");
+        assertEquals(Reason.BYTES, admission.tryAdmit("bob", MB).getReason());
+        huge.release();
+
+        Admission first = admission.tryAdmit("alice", MB);
+        Admission second = admission.tryAdmit("bob", -1);
+        Admission third = admission.tryAdmit(null, MB);
+        assertTrue(first.isAdmitted());
+        assertTrue(second.isAdmitted());
+        assertEquals(Reason.IN_FLIGHT, third.getReason());
+        assertEquals(503, third.getReason().getStatus().value());
+        assertEquals(1, third.getRetryAfterSeconds());
+
+        assertEquals(2.0, registry.get("upload_admission_in_flight").gauge().value());
+        first.release();
+        second.release();
+        assertEquals(0.0, registry.get("upload_admission_in_flight").gauge().value());
+        assertEquals(0.0, registry.get("upload_admission_in_flight_bytes").gauge().value());
+        assertEquals(3, registry.get("upload_admission_admitted_total").counter().count());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("the token bucket allows a burst, then refills at its rate")
+    void testTokenBucket() {
+        AtomicLong now = new AtomicLong(1_000_000_000L);
+        TokenBucket bucket = new TokenBucket(10, 3, now::get); // one token per 100 ms
+
+        assertEquals(0, bucket.tryAcquire(1));
+        assertEquals(0, bucket.tryAcquire(1));
+        assertEquals(0, bucket.tryAcquire(1));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), bucket.tryAcquire(1));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(0, bucket.tryAcquire(1));
+        assertTrue(bucket.tryAcquire(1) > 0);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10)); // idle time does not bank more than the capacity
+        assertEquals(0, bucket.tryAcquire(3));
+        assertTrue(bucket.tryAcquire(1) > 0);
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("starting uploads faster than the pod rate is answered with 503 and a Retry-After")
+    void testRateLimit() {
+        UploadAdmissionService admission = service(100, 100 * MB, 0.5, 10, 100 * MB);
+
+        for (int i = 0; i < 10; i++) {
+            admission.tryAdmit(null, 1).release();
+        }
+        Admission rejected = admission.tryAdmit(null, 1);
+
+        assertEquals(Reason.RATE, rejected.getReason());
+        assertEquals(2, rejected.getRetryAfterSeconds());
+        assertEquals(0.0, registry.get("upload_admission_in_flight").gauge().value());
+        assertEquals(1, rejected("rate"));
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("concurrent uploads never exceed the limits and release everything")
+    void testConcurrentAdmission() throws Exception {
+        UploadAdmissionService admission = service(8, 100 * MB, 1_000_000, 3, 100 * MB);
+        AtomicInteger current = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        AtomicInteger[] perUser = {new AtomicInteger(), new AtomicInteger(), new AtomicInteger(), new AtomicInteger()};
+        AtomicInteger userPeak = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            int user = t % perUser.length;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 2_000; i++) {
+                    Admission a = admission.tryAdmit("user-" + user, 1024);
+                    if (a.isAdmitted()) {
+                        peak.accumulateAndGet(current.incrementAndGet(), Math::max);
+                        userPeak.accumulateAndGet(perUser[user].incrementAndGet(), Math::max);
+                        perUser[user].decrementAndGet();
+                        current.decrementAndGet();
+                        a.release();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertTrue(peak.get() <= 8, "pod peak " + peak.get());
+        assertTrue(userPeak.get() <= 3, "user peak " + userPeak.get());
+        assertEquals(0.0, registry.get("upload_admission_in_flight").gauge().value());
+        assertEquals(0.0, registry.get("upload_admission_in_flight_bytes").gauge().value());
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("the interceptor rejects with status, Retry-After and a JSON error, and releases on completion")
+    void testInterceptor() throws Exception {
+        UploadAdmissionService admission = service(10, 100 * MB, 1000, 1, 100 * MB);
+        UploadAdmissionInterceptor interceptor = new UploadAdmissionInterceptor(admission, new ObjectMapper());
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "alice", "n/a", AuthorityUtils.createAuthorityList("ROLE_USER")));
+
+        MockHttpServletRequest first = upload();
+        MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+        assertTrue(interceptor.preHandle(first, firstResponse, null));
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(upload(), rejected, null));
+        assertEquals(429, rejected.getStatus());
+        assertEquals("1", rejected.getHeader("Retry-After"));
+        assertTrue(rejected.getContentAsString().contains("\"reason\":\"user_in_flight\""));
+
+        interceptor.afterCompletion(first, firstResponse, null, null);
+        assertTrue(interceptor.preHandle(upload(), new MockHttpServletResponse(), null));
+    }
+
+    @Test
+    @Order(7)
+    @DisplayName("the interceptor admits PUTs too, charging a body of unknown length as configured")
+    void testInterceptorChargesParts() throws Exception {
+        UploadAdmissionService admission = service(10, 100 * MB, 1000, 10, 10 * MB);
+        UploadAdmissionInterceptor interceptor = new UploadAdmissionInterceptor(admission, new ObjectMapper(), 8 * MB);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "alice", "n/a", AuthorityUtils.createAuthorityList("ROLE_USER")));
+        String path = "/api/files/upload/sessions/00000000-0000-0000-0000-000000000000/parts/1";
+
+        MockHttpServletRequest unknownLength = new MockHttpServletRequest("PUT", path);
+        assertTrue(interceptor.preHandle(unknownLength, new MockHttpServletResponse(), null));
+        assertEquals(8 * MB, registry.get("upload_admission_in_flight_bytes").gauge().value());
+
+        MockHttpServletRequest part = new MockHttpServletRequest("PUT", path);
+        part.setContent(new byte[(int) (3 * MB)]);
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(part, rejected, null));
+        assertEquals(429, rejected.getStatus());
+        assertTrue(rejected.getContentAsString().contains("\"reason\":\"user_bytes\""));
+
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest("GET", path), new MockHttpServletResponse(), null));
+        interceptor.afterCompletion(unknownLength, new MockHttpServletResponse(), null, null);
+        assertTrue(interceptor.preHandle(part, new MockHttpServletResponse(), null));
+        assertEquals(3 * MB, registry.get("upload_admission_in_flight_bytes").gauge().value());
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private UploadAdmissionService service(int maxInFlight, long maxBytes, double rate,
+                                           int userMaxInFlight, long userMaxBytes) {
+        return new UploadAdmissionService(registry, maxInFlight, maxBytes, rate, 10,
+                userMaxInFlight, userMaxBytes, 1);
+    }
+
+    private double rejected(String reason) {
+        return registry.get("upload_admission_rejected_total").tags("reason", reason).counter().count();
+    }
+
+    private static MockHttpServletRequest upload() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/files/upload/stream");
+        request.setContent(new byte[100]);
+        return request;
+    }
+}
@@ -0,0 +1,270 @@
+package com.paymetv.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymetv.app.service.FileUploadService;
+import com.paymetv.app.service.kafka.AvroSchemas;
+import com.paymetv.app.service.pipeline.FileUploadedEvent;
+import com.paymetv.app.service.pipeline.FileUploadedListener;
+import com.paymetv.app.service.pipeline.FileUploadedPublisher;
+import com.paymetv.app.service.pipeline.ImageDerivative;
+import com.paymetv.app.service.pipeline.ImageDerivativeGenerator;
+import com.paymetv.app.service.pipeline.MetadataStage;
+import com.paymetv.app.service.pipeline.PipelineStage;
+import com.paymetv.app.service.pipeline.ThumbnailStage;
+import com.paymetv.app.service.pipeline.UploadJob;
+import com.paymetv.app.service.pipeline.UploadPipeline;
+import com.paymetv.app.service.pipeline.ValidationStage;
+import com.paymetv.app.service.storage.BlobRef;
+import com.paymetv.app.service.storage.ContentAddressedStore;
+import com.paymetv.app.service.storage.LocalStorageBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.KafkaException;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for UploadPipeline and its stages.
+ * ---
+ * Covers the staged flow of an uploaded image, failure handling,
+ * stages working on different uploads at once, back-pressure, and the
+ * listener returning (so its offsets are committed) only once its uploads
+ * have left the pipeline.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@Tag("UploadPipelineTest")
+public class UploadPipelineTest {
+
+    @TempDir
+    Path root;
+
+    private SimpleMeterRegistry registry;
+    private UploadPipeline pipeline;
+    private ImageDerivativeGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+        if (generator != null) {
+            generator.shutdown();
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("an uploaded image is validated, thumbnailed and described")
+    void testImageFlowsThroughAllStages() throws Exception {
+        ContentAddressedStore store = new ContentAddressedStore(
+                root.resolve("blobs").toString(), new LocalStorageBackend(root.resolve("blobs")));
+        Path derived = root.resolve("derived");
+
+        BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        BlobRef blob = store.store(new ByteArrayInputStream(png.toByteArray()), Long.MAX_VALUE);
+
+        generator = new ImageDerivativeGenerator(store, registry, new int[]{200, 100}, 1, 4);
+        pipeline = new UploadPipeline(List.of(
+                new ValidationStage(store, new FileUploadService()),
+                new ThumbnailStage(generator),
+                new MetadataStage(store, new ObjectMapper(), derived.toString())
+        ), registry, 1, 10);
+
+        UploadJob job = pipeline.submit(event(blob.getHash(), blob.getSize(), "image/png"))
+                .get(10, TimeUnit.SECONDS);
+
+        List<ImageDerivative> thumbnails = job.<List<ImageDerivative>>get(ThumbnailStage.THUMBNAILS).orElseThrow();
+        assertEquals(List.of("thumb-100.jpg", "thumb-200.jpg"),
+                thumbnails.stream().map(ImageDerivative::getName).toList());
+        BufferedImage small = ImageIO.read(store.openDerivative(blob.getHash(), "thumb-200.jpg"));
+        assertEquals(200, small.getWidth());
+        assertEquals(150, small.getHeight());
+
+        Map<String, Object> metadata = job.<Map<String, Object>>get(MetadataStage.METADATA).orElseThrow();
+        assertEquals(800, metadata.get("width"));
+        assertEquals(600, metadata.get("height"));
+        assertEquals(List.of("thumb-100.jpg", "thumb-200.jpg"), metadata.get("thumbnails"));
+        assertTrue(Files.readString(derived.resolve(blob.getHash()).resolve("metadata.json")).contains("\"width\":800"));
+
+        assertEquals(1, registry.get("upload_pipeline_stage_duration_seconds")
+                .tags("stage", "thumbnail", "outcome", "success").timer().count());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("a failing stage stops the job and later stages never see it")
+    void testFailureStopsTheJob() {
+        List<String> seen = new CopyOnWriteArrayList<>();
+        pipeline = new UploadPipeline(List.of(
+                stage("first", job -> seen.add("first")),
+                stage("broken", job -> {
+                    throw new IllegalStateException("boom");
+                }),
+                stage("last", job -> seen.add("last"))
+        ), registry, 1, 10);
+
+        CompletableFuture<UploadJob> done = pipeline.submit(event("a".repeat(64), 1, "image/png"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> done.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals(List.of("first"), seen);
+        assertEquals(1, registry.get("upload_pipeline_stage_duration_seconds")
+                .tags("stage", "broken", "outcome", "failure").timer().count());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("stages work on different uploads at the same time")
+    void testStagesRunConcurrently() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch bothValidated = new CountDownLatch(2);
+        pipeline = new UploadPipeline(List.of(
+                stage("validate", job -> bothValidated.countDown()),
+                stage("slow", job -> release.await())
+        ), registry, 1, 10);
+
+        CompletableFuture<UploadJob> first = pipeline.submit(event("a".repeat(64), 1, "image/png"));
+        CompletableFuture<UploadJob> second = pipeline.submit(event("b".repeat(64), 1, "image/png"));
+
+        // The second upload is validated while the first is still held in the slow stage
+        assertTrue(bothValidated.await(10, TimeUnit.SECONDS));
+        assertFalse(first.isDone());
+
+        release.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("a full stage queue blocks the submitter and is reported as queue depth")
+    void testBackPressure() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        pipeline = new UploadPipeline(List.of(
+                stage("slow", job -> {
+                    started.countDown();
+                    release.await();
+                })
+        ), registry, 1, 1);
+
+        pipeline.submit(event("a".repeat(64), 1, "image/png")); // running
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        pipeline.submit(event("b".repeat(64), 1, "image/png")); // queued
+
+        CompletableFuture<Void> third = CompletableFuture.runAsync(
+                () -> pipeline.submit(event("c".repeat(64), 1, "image/png")));
+        Thread.sleep(200);
+        assertFalse(third.isDone(), "submit should block while the queue is full");
+        assertEquals(1.0, registry.get("upload_pipeline_queue_depth").tags("stage", "slow").gauge().value());
+
+        release.countDown();
+        third.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("the listener returns only once its uploads have left the pipeline")
+    void testListenerWaitsForThePipeline() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        pipeline = new UploadPipeline(List.of(
+                stage("slow", job -> release.await()),
+                stage("broken", job -> {
+                    if (job.getEvent().getSha256().startsWith("b")) {
+                        throw new IllegalStateException("boom");
+                    }
+                })
+        ), registry, 1, 10);
+        ObjectMapper objectMapper = new ObjectMapper();
+        FileUploadedListener listener = new FileUploadedListener(pipeline, objectMapper, new AvroSchemas(), 10_000);
+        List<ConsumerRecord<String, byte[]>> records = List.of(
+                record(objectMapper, 0, event("a".repeat(64), 1, "image/png")),
+                record(objectMapper, 1, event("b".repeat(64), 1, "image/png")));
+
+        CompletableFuture<Void> consumed = CompletableFuture.runAsync(() -> {
+            try {
+                listener.consume(records);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(200);
+        assertFalse(consumed.isDone(), "offsets must not be committed while the uploads are in the pipeline");
+
+        // A stage failure is logged and committed; it would fail again on redelivery
+        release.countDown();
+        consumed.get(10, TimeUnit.SECONDS);
+
+        // An upload the pipeline never took is delivered again
+        pipeline.shutdown();
+        assertThrows(KafkaException.class, () -> listener.consume(records));
+
+        // So is a poll the pipeline does not finish in time
+        CountDownLatch stuck = new CountDownLatch(1);
+        pipeline = new UploadPipeline(List.of(stage("stuck", job -> stuck.await())), registry, 1, 10);
+        FileUploadedListener impatient = new FileUploadedListener(pipeline, objectMapper, new AvroSchemas(), 100);
+        assertThrows(KafkaException.class, () -> impatient.consume(records));
+        stuck.countDown();
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private interface Step {
+        void run(UploadJob job) throws Exception;
+    }
+
+    private static PipelineStage stage(String name, Step step) {
+        return new PipelineStage() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public void process(UploadJob job) throws Exception {
+                step.run(job);
+            }
+        };
+    }
+
+    private static ConsumerRecord<String, byte[]> record(ObjectMapper objectMapper, long offset,
+                                                         FileUploadedEvent event) throws Exception {
+        return new ConsumerRecord<>(FileUploadedPublisher.TOPIC, 0, offset, event.getSha256(), objectMapper.writeValueAsBytes(event));
+    }
+
+    private static FileUploadedEvent event(String sha256, long size, String contentType) {
+        return FileUploadedEvent.builder()
+                .storedName(sha256)
+                .originalName("upload")
+                .sha256(sha256)
+                .size(size)
+                .contentType(contentType)
+                .uploadedAt(System.currentTimeMillis())
+                .build();
+    }
+}
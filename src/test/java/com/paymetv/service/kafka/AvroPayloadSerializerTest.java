@@ -0,0 +1,115 @@
+package com.paymetv.service.kafka;
+
+import com.paymetv.app.domain.Artifact;
+import com.paymetv.app.domain.ImageFace;
+import com.paymetv.app.domain.Users;
+import com.paymetv.app.service.kafka.AvroPayloadSerializer;
+import com.paymetv.app.service.kafka.AvroSchemas;
+import com.paymetv.app.service.pipeline.FileUploadedEvent;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Serializer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the per-topic Avro serialization of Kafka payloads.
+ * ---
+ * Serializes payloads through AvroPayloadSerializer#byTopic, as the producer
+ * factories in KafkaConfig do, and reads them back with AvroSchemas.
+ * ---
+ * Tests verify:
+ * - Topics listed as Avro get the binary form, which is smaller than the JSON
+ *   every other topic gets, and reads back to an equal payload
+ * - Nested records follow their schema, so fields outside it stay off the wire
+ * - A payload without a schema is rejected on an Avro topic
+ * - A message whose writer schema is unknown is reported as unreadable
+ */
+@Tag("AvroPayloadSerializerTest")
+public class AvroPayloadSerializerTest {
+
+    private static final String AVRO_TOPIC = "file-uploaded";
+    private static final String JSON_TOPIC = "topic-file-upload";
+
+    private final AvroSchemas schemas = new AvroSchemas();
+    private final Serializer<Object> serializer = AvroPayloadSerializer.byTopic(List.of(AVRO_TOPIC, "image-face"), schemas);
+
+    @Test
+    @DisplayName("Avro topics get a compact binary event that reads back intact")
+    void shouldWriteAvroToAvroTopicsOnly() throws IOException {
+        FileUploadedEvent event = FileUploadedEvent.builder()
+                .storedName("0b5e4c1e-6b4f-4bd4-9f1e-2f3c8a9d7e10.jpg")
+                .originalName("holiday-photo.jpg")
+                .sha256("9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08")
+                .size(2_048_576)
+                .contentType("image/jpeg")
+                .uploadedAt(1_760_000_000_000L)
+                .build();
+
+        byte[] avro = serialize(AVRO_TOPIC, event);
+        byte[] json = serialize(JSON_TOPIC, event);
+
+        assertTrue(AvroSchemas.isAvro(avro));
+        assertFalse(AvroSchemas.isAvro(json));
+        assertEquals('{', json[0]);
+        assertTrue(avro.length < json.length * 0.7, avro.length + " bytes of Avro vs " + json.length + " of JSON");
+
+        FileUploadedEvent read = schemas.decode(avro, FileUploadedEvent.class);
+        assertEquals(event.toString(), read.toString());
+    }
+
+    @Test
+    @DisplayName("Nested records carry only their schema's fields")
+    void shouldFollowSchemaForNestedRecords() throws IOException {
+        Users user = Users.builder().id(7L).username("alice").email("alice@paymetv.com").password("secret").build();
+        Artifact artifact = Artifact.builder().id(3L).name("sofa").model("model-v2").user(user).status(true).build();
+        ImageFace face = ImageFace.builder().id(11L).front("front.jpg").back("back.jpg").left("left.jpg")
+                .right("right.jpg").artifact(artifact).build();
+
+        byte[] artifactBytes = schemas.encode(artifact);
+        Artifact readArtifact = schemas.decode(artifactBytes, Artifact.class);
+        ImageFace readFace = schemas.decode(serialize("image-face", face), ImageFace.class);
+
+        assertFalse(new String(artifactBytes, StandardCharsets.ISO_8859_1).contains("secret"));
+        assertEquals("alice", readArtifact.getUser().getUsername());
+        assertNull(readArtifact.getUser().getPassword());
+        assertEquals(Boolean.TRUE, readArtifact.getStatus());
+        assertNull(readArtifact.getDescription());
+        assertEquals("right.jpg", readFace.getRight());
+        assertNull(readFace.getTop());
+        assertNull(readFace.getArtifact(), "the back-reference is left out, as in JSON");
+    }
+
+    @Test
+    @DisplayName("A payload without a schema is rejected on an Avro topic")
+    void shouldRejectPayloadWithoutSchema() {
+        assertThrows(SerializationException.class, () -> serialize(AVRO_TOPIC, Map.of("a", 1)));
+        assertNotNull(serialize(JSON_TOPIC, Map.of("a", 1)));
+    }
+
+    @Test
+    @DisplayName("A message from an unknown schema is unreadable")
+    void shouldReportUnknownWriterSchema() {
+        byte[] avro = schemas.encode(FileUploadedEvent.builder().sha256("abc").build());
+        avro[2] ^= 0x7F; // first byte of the writer schema's fingerprint
+
+        assertThrows(IOException.class, () -> schemas.decode(avro, FileUploadedEvent.class));
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    /** Serializes as KafkaProducer does; the topic-delegating serializer needs the headers. */
+    private byte[] serialize(String topic, Object payload) {
+        return serializer.serialize(topic, new RecordHeaders(), payload);
+    }
+}
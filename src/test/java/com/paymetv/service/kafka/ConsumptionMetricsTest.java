@@ -0,0 +1,147 @@
+package com.paymetv.service.kafka;
+
+import com.paymetv.app.service.kafka.ConsumptionMetrics;
+import com.paymetv.app.service.kafka.ConsumptionMetrics.ConsumedMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ConsumptionMetrics.
+ * ---
+ * Records messages directly, with every message sampled into a ring buffer of three,
+ * and reads the meters back from a SimpleMeterRegistry.
+ * ---
+ * Tests verify:
+ * - Messages are counted per topic and outcome, and timed per topic
+ * - The ring buffer keeps the latest samples, oldest first, with payloads cut short
+ * - Observers see every message until closed; next completes with the first match
+ * - Consumer lag is published per partition, until the partition is revoked or lost
+ */
+@Tag("ConsumptionMetricsTest")
+public class ConsumptionMetricsTest {
+
+    private MeterRegistry meterRegistry;
+    private ConsumptionMetrics metrics;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new ConsumptionMetrics(meterRegistry, 3, 1, 5);
+    }
+
+    @Test
+    @DisplayName("Messages are counted and timed per topic")
+    void shouldCountAndTimePerTopic() {
+        metrics.record("a", 0, 1, "one", 1_000_000, false);
+        metrics.record("a", 0, 2, "two", 3_000_000, false);
+        metrics.record("a", 0, 3, "three", 2_000_000, true);
+        metrics.record("b", 1, 7, "four", 1_000_000, false);
+
+        assertEquals(2, meterRegistry.get("kafka_consumer_messages_total")
+                .tags("topic", "a", "outcome", "processed").functionCounter().count());
+        assertEquals(1, meterRegistry.get("kafka_consumer_messages_total")
+                .tags("topic", "a", "outcome", "failed").functionCounter().count());
+        assertEquals(3, meterRegistry.get("kafka_consumer_processing_seconds").tag("topic", "a").timer().count());
+        assertEquals(3, meterRegistry.get("kafka_consumer_processing_seconds").tag("topic", "a").timer()
+                .max(TimeUnit.MILLISECONDS));
+        assertEquals(3, metrics.count("a"));
+        assertEquals(1, metrics.count("b"));
+        assertEquals(0, metrics.count("c"));
+    }
+
+    @Test
+    @DisplayName("The ring buffer keeps the latest samples with short payloads")
+    void shouldKeepLatestSamples() {
+        assertEquals(List.of(), metrics.recent());
+        metrics.record("a", 0, 1, "one", 1, false);
+        metrics.record("a", 0, 2, "two", 1, false);
+
+        assertEquals(List.of(1L, 2L), metrics.recent().stream().map(ConsumedMessage::offset).toList());
+
+        metrics.record("a", 0, 3, "three", 1, false);
+        metrics.record("a", 0, 4, "a much longer payload", 1, true);
+
+        List<ConsumedMessage> recent = metrics.recent();
+        assertEquals(List.of(2L, 3L, 4L), recent.stream().map(ConsumedMessage::offset).toList());
+        assertEquals("a muc...", recent.get(2).payload());
+        assertTrue(recent.get(2).failed());
+    }
+
+    @Test
+    @DisplayName("Observers see messages until closed")
+    void shouldNotifyObservers() throws Exception {
+        List<String> seen = new ArrayList<>();
+        CompletableFuture<ConsumedMessage> next = metrics.next(message -> message.payload().startsWith("t"));
+
+        try (ConsumptionMetrics.Observation observation = metrics.observe(message -> seen.add(message.payload()))) {
+            metrics.record("a", 0, 1, "one", 1, false);
+            metrics.record("a", 0, 2, "a much longer payload", 1, false);
+            metrics.record("a", 0, 3, "three", 1, false);
+        }
+        metrics.record("a", 0, 4, "four", 1, false);
+
+        assertEquals(List.of("one", "a much longer payload", "three"), seen, "observers get the whole payload");
+        assertEquals(3, next.get(1, TimeUnit.SECONDS).offset());
+    }
+
+    @Test
+    @DisplayName("Consumer lag is published per partition")
+    void shouldPublishLag() {
+        TopicPartition partition = new TopicPartition("a", 2);
+        MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.assign(List.of(partition));
+        consumer.updateBeginningOffsets(Map.of(partition, 0L));
+        consumer.updateEndOffsets(Map.of(partition, 100L));
+        consumer.seek(partition, 40);
+
+        metrics.recordLag(consumer);
+        assertEquals(60, meterRegistry.get("kafka_consumer_lag").tags("topic", "a", "partition", "2").gauge().value());
+
+        consumer.seek(partition, 90);
+        metrics.recordLag(consumer);
+        assertEquals(10, meterRegistry.get("kafka_consumer_lag").tags("topic", "a", "partition", "2").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Lag is no longer published for revoked or lost partitions")
+    void shouldRemoveLagOfRevokedPartitions() {
+        TopicPartition kept = new TopicPartition("a", 0);
+        TopicPartition revoked = new TopicPartition("a", 1);
+        MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.assign(List.of(kept, revoked));
+        consumer.updateBeginningOffsets(Map.of(kept, 0L, revoked, 0L));
+        consumer.updateEndOffsets(Map.of(kept, 10L, revoked, 20L));
+        consumer.seek(kept, 0);
+        consumer.seek(revoked, 0);
+        metrics.recordLag(consumer);
+        ConsumerRebalanceListener listener = metrics.lagRebalanceListener();
+
+        listener.onPartitionsRevoked(List.of(revoked));
+
+        assertNull(meterRegistry.find("kafka_consumer_lag").tags("topic", "a", "partition", "1").gauge());
+        assertEquals(10, meterRegistry.get("kafka_consumer_lag").tags("topic", "a", "partition", "0").gauge().value());
+
+        listener.onPartitionsLost(List.of(kept));
+        assertNull(meterRegistry.find("kafka_consumer_lag").gauge());
+
+        // Assigned again: published again on the next poll
+        metrics.recordLag(consumer);
+        assertEquals(20, meterRegistry.get("kafka_consumer_lag").tags("topic", "a", "partition", "1").gauge().value());
+    }
+}
@@ -0,0 +1,297 @@
+package com.paymetv.service.kafka;
+
+import com.paymetv.app.service.kafka.GenericConsumer;
+import com.paymetv.app.service.kafka.TopicHandler;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchMessageListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.support.TopicPartitionOffset;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the transactional (exactly-once) mode of GenericConsumer.
+ * ---
+ * Runs the topic handler containers in app.kafka.consumer.mode=transactional
+ * against an embedded broker. The crash and throughput tests start containers of
+ * their own from the listener container factories, positioned at the end of their
+ * input, and read topic-processed-results back with a plain consumer.
+ * ---
+ * Tests verify:
+ * - Results and input offsets are committed together through the configured endpoint
+ * - A batch that fails after its results were sent is handled again, and consumers
+ *   reading committed data still see every result exactly once
+ * - Throughput of the transactional mode next to the at-least-once batch mode
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.autoconfigure.exclude=",
+                "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+                "spring.kafka.consumer.auto-offset-reset=earliest",
+                "app.kafka.topics=" + ExactlyOnceConsumerTest.INPUT_TOPIC,
+                "app.kafka.consumer.mode=transactional"
+        })
+@EmbeddedKafka(partitions = 1, kraft = false, topics = {
+        ExactlyOnceConsumerTest.INPUT_TOPIC, ExactlyOnceConsumerTest.CRASH_TOPIC,
+        ExactlyOnceConsumerTest.EXACTLY_ONCE_TOPIC, ExactlyOnceConsumerTest.AT_LEAST_ONCE_TOPIC,
+        ExactlyOnceConsumerTest.RESULTS_TOPIC})
+@Tag("ExactlyOnceConsumerTest")
+public class ExactlyOnceConsumerTest {
+
+    static final String INPUT_TOPIC = "eos-input";
+    static final String CRASH_TOPIC = "eos-crash-input";
+    static final String EXACTLY_ONCE_TOPIC = "eos-throughput";
+    static final String AT_LEAST_ONCE_TOPIC = "alo-throughput";
+    static final String RESULTS_TOPIC = "topic-processed-results";
+
+    private static final Logger log = LoggerFactory.getLogger(ExactlyOnceConsumerTest.class);
+    private static final int THROUGHPUT_MESSAGES = 5_000;
+
+    @Autowired
+    private KafkaTemplate<String, String> retryKafkaTemplate;
+
+    @Autowired
+    private GenericConsumer genericConsumer;
+
+    @Autowired
+    @Qualifier("transactionalKafkaListenerContainerFactory")
+    private ConcurrentKafkaListenerContainerFactory<String, String> transactionalFactory;
+
+    @Autowired
+    @Qualifier("batchKafkaListenerContainerFactory")
+    private ConcurrentKafkaListenerContainerFactory<String, String> batchFactory;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafka;
+
+    @Autowired
+    private ExactlyOnceTopicHandler handler;
+
+    @Test
+    @DisplayName("The configured endpoint commits results and offsets together")
+    void shouldCommitResultsAndOffsetsTogether() throws Exception {
+        // The suite runs this class twice against one broker and context, so messages are unique per run
+        String run = UUID.randomUUID().toString();
+        long resultsStart = endOffset(RESULTS_TOPIC);
+        send(INPUT_TOPIC, run, 20);
+
+        List<String> results = awaitResults(resultsStart, "read_committed", run, 20, Duration.ofSeconds(30));
+
+        assertEquals(20, new HashSet<>(results).size(), "every message must have exactly one result");
+        assertTrue(results.contains("\"" + INPUT_TOPIC + ": " + run + "-7 -> EOS " + run + "-7\""), results.toString());
+        long inputEnd = endOffset(INPUT_TOPIC);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (committedOffset("ml-learning-group", INPUT_TOPIC) < inputEnd && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(inputEnd, committedOffset("ml-learning-group", INPUT_TOPIC));
+    }
+
+    @Test
+    @DisplayName("A failed batch is redelivered without duplicating committed results")
+    void shouldNotDuplicateResultsOfAbortedBatch() throws Exception {
+        String run = UUID.randomUUID().toString();
+        long inputStart = endOffset(CRASH_TOPIC);
+        long resultsStart = endOffset(RESULTS_TOPIC);
+        send(CRASH_TOPIC, run, 10);
+
+        AtomicBoolean crashed = new AtomicBoolean();
+        ConcurrentMessageListenerContainer<String, String> container = start(transactionalFactory, CRASH_TOPIC,
+                inputStart, (BatchMessageListener<String, String>) records -> {
+                    genericConsumer.consumeTransactional(records);
+                    // Fails after the results were sent, as a pod dying just before its commit would
+                    if (crashed.compareAndSet(false, true)) {
+                        throw new IllegalStateException("Simulated crash before commit");
+                    }
+                });
+        try {
+            awaitResults(resultsStart, "read_committed", run, 10, Duration.ofSeconds(30));
+            // Anything the aborted attempt left would show up by now
+            List<String> committed = awaitResults(resultsStart, "read_committed", run, 11, Duration.ofSeconds(2));
+
+            assertTrue(crashed.get());
+            assertEquals(20, handler.calls.stream().filter(call -> call.startsWith(run)).count(),
+                    "every message must be handled again after the failed attempt");
+            assertEquals(10, committed.size(), committed.toString());
+            assertEquals(10, new HashSet<>(committed).size());
+        } finally {
+            container.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Transactional and at-least-once throughput")
+    void shouldCompareThroughput() throws Exception {
+        String run = UUID.randomUUID().toString();
+        long exactlyOnceStart = endOffset(EXACTLY_ONCE_TOPIC);
+        long atLeastOnceStart = endOffset(AT_LEAST_ONCE_TOPIC);
+        send(EXACTLY_ONCE_TOPIC, run, THROUGHPUT_MESSAGES);
+        send(AT_LEAST_ONCE_TOPIC, run, THROUGHPUT_MESSAGES);
+
+        double atLeastOnce = throughput(batchFactory, AT_LEAST_ONCE_TOPIC, atLeastOnceStart, "read_uncommitted", run,
+                records -> {
+                    try {
+                        genericConsumer.consumeBatch(records);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+        double exactlyOnce = throughput(transactionalFactory, EXACTLY_ONCE_TOPIC, exactlyOnceStart, "read_committed",
+                run, genericConsumer::consumeTransactional);
+
+        log.info("Consume-transform-produce of {} messages: at-least-once {} msg/s, exactly-once {} msg/s ({}%)",
+                THROUGHPUT_MESSAGES, Math.round(atLeastOnce), Math.round(exactlyOnce),
+                Math.round(100 * exactlyOnce / atLeastOnce));
+        assertTrue(exactlyOnce > 0 && atLeastOnce > 0);
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private void send(String topic, String run, int count) throws Exception {
+        List<CompletableFuture<?>> sends = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sends.add(retryKafkaTemplate.send(topic, "key-" + (i % 8), run + "-" + i));
+        }
+        CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+    }
+
+    private ConcurrentMessageListenerContainer<String, String> start(
+            ConcurrentKafkaListenerContainerFactory<String, String> factory, String topic, long offset,
+            BatchMessageListener<String, String> listener) {
+        ConcurrentMessageListenerContainer<String, String> container =
+                factory.createContainer(new TopicPartitionOffset(topic, 0, offset));
+        container.getContainerProperties().setGroupId(topic + "-" + UUID.randomUUID());
+        container.setupMessageListener(listener);
+        container.start();
+        return container;
+    }
+
+    private double throughput(ConcurrentKafkaListenerContainerFactory<String, String> factory, String topic,
+                              long offset, String isolation, String run,
+                              BatchMessageListener<String, String> listener) throws Exception {
+        long resultsStart = endOffset(RESULTS_TOPIC);
+        long start = System.nanoTime();
+        ConcurrentMessageListenerContainer<String, String> container = start(factory, topic, offset, listener);
+        try {
+            List<String> results = awaitResults(resultsStart, isolation, topic + ": " + run, THROUGHPUT_MESSAGES,
+                    Duration.ofSeconds(120));
+            assertEquals(THROUGHPUT_MESSAGES, results.size());
+            return THROUGHPUT_MESSAGES / ((System.nanoTime() - start) / 1e9);
+        } finally {
+            container.stop();
+        }
+    }
+
+    /**
+     * Results containing {@code marker} from {@code offset} on, once {@code expected} of
+     * them are read or {@code timeout} has passed.
+     */
+    private List<String> awaitResults(long offset, String isolation, String marker, int expected, Duration timeout) {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("results-reader-" + UUID.randomUUID(), "false", embeddedKafka);
+        props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, isolation);
+        List<String> results = new ArrayList<>();
+        TopicPartition partition = new TopicPartition(RESULTS_TOPIC, 0);
+        try (Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(props,
+                new StringDeserializer(), new StringDeserializer()).createConsumer()) {
+            consumer.assign(List.of(partition));
+            consumer.seek(partition, offset);
+            long deadline = System.nanoTime() + timeout.toNanos();
+            while (results.size() < expected && System.nanoTime() < deadline) {
+                for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(100))) {
+                    if (record.value().contains(marker)) {
+                        results.add(record.value());
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private long endOffset(String topic) {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("offset-reader-" + UUID.randomUUID(), "false", embeddedKafka);
+        TopicPartition partition = new TopicPartition(topic, 0);
+        try (Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(props,
+                new StringDeserializer(), new StringDeserializer()).createConsumer()) {
+            return consumer.endOffsets(List.of(partition)).get(partition);
+        }
+    }
+
+    private long committedOffset(String group, String topic) throws Exception {
+        try (AdminClient admin = AdminClient.create(Map.of(
+                AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, embeddedKafka.getBrokersAsString()))) {
+            OffsetAndMetadata committed = admin.listConsumerGroupOffsets(group).partitionsToOffsetAndMetadata()
+                    .get(10, TimeUnit.SECONDS).get(new TopicPartition(topic, 0));
+            return committed != null ? committed.offset() : -1;
+        }
+    }
+
+    @TestConfiguration
+    static class ExactlyOnceHandlerConfig {
+
+        @Bean
+        ExactlyOnceTopicHandler exactlyOnceTopicHandler() {
+            return new ExactlyOnceTopicHandler();
+        }
+    }
+
+    static class ExactlyOnceTopicHandler implements TopicHandler {
+
+        private final List<String> calls = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String name() {
+            return "exactly-once";
+        }
+
+        @Override
+        public Set<String> topics() {
+            return Set.of(INPUT_TOPIC, CRASH_TOPIC, EXACTLY_ONCE_TOPIC, AT_LEAST_ONCE_TOPIC);
+        }
+
+        @Override
+        public String handle(String topic, String message) {
+            if (CRASH_TOPIC.equals(topic)) {
+                calls.add(message);
+            }
+            return "EOS " + message;
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.paymetv.service.kafka;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import com.paymetv.app.service.kafka.ConsumptionMetrics;
+import com.paymetv.app.service.kafka.ConsumptionMetrics.ConsumedMessage;
 import com.paymetv.app.service.kafka.GenericConsumer;
 import com.paymetv.app.service.kafka.GenericProducer;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,11 +18,12 @@ import ch.qos.logback.core.read.ListAppender;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.test.context.EmbeddedKafka;
 
-import java.util.concurrent.CountDownLatch;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Test class for GenericProducer.
@@ -32,6 +35,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
  * - Producer sends messages successfully
  * - Consumer receives messages
  * - Message format validation (counter and timestamp)
+ * - Batch mode handles a poll's records grouped by topic
  */
 
 @SpringBootTest(
@@ -51,6 +55,9 @@ public class GenericKafkaTest {
     @Autowired
     private GenericConsumer genericConsumer;
 
+    @Autowired
+    private ConsumptionMetrics consumptionMetrics;
+
     private static final String TOPIC = "generic-producer-test";
 
 //    private CountDownLatch latch = new CountDownLatch(1);
@@ -58,11 +65,6 @@ public class GenericKafkaTest {
     @Autowired
     private KafkaTemplate<String, Object> kafkaTemplate;
 
-    @BeforeEach
-    void setup() {
-        genericConsumer.resetLatch();
-    }
-
     @Test
     @DisplayName("Should publish and consume message")
     void shouldPublishAndConsumeMessage() throws Exception {
@@ -79,17 +81,14 @@ public class GenericKafkaTest {
                 genericProducer.send(TOPIC, key, payload)
                         .get(10, TimeUnit.SECONDS);
 
+        CompletableFuture<ConsumedMessage> next = consumptionMetrics.next(message -> TOPIC.equals(message.topic()));
         genericConsumer.consume(payload, TOPIC);
 
         assertEquals(TOPIC, result.getRecordMetadata().topic());
 
-        assertTrue(
-                genericConsumer.getLatch().await(10, TimeUnit.SECONDS),
-                "Consumer never received the message"
-        );
-
-        assertEquals(TOPIC, genericConsumer.getLastTopic());
-        assertEquals(payload, genericConsumer.getLastMessage());
+        ConsumedMessage consumed = next.get(10, TimeUnit.SECONDS);
+        assertEquals(TOPIC, consumed.topic());
+        assertEquals(payload, consumed.payload());
 
         assertEquals(1, listAppender.list.size());
 
@@ -118,17 +117,14 @@ public class GenericKafkaTest {
                 genericProducer.send(TEST_TOPIC, key, payload)
                         .get(10, TimeUnit.SECONDS);
 
+        CompletableFuture<ConsumedMessage> next = consumptionMetrics.next(message -> TEST_TOPIC.equals(message.topic()));
         genericConsumer.consume(payload, TEST_TOPIC);
 
         assertEquals(TEST_TOPIC, result.getRecordMetadata().topic());
 
-        assertTrue(
-                genericConsumer.getLatch().await(10, TimeUnit.SECONDS),
-                "Consumer never received the message"
-        );
-
-        assertEquals(TEST_TOPIC, genericConsumer.getLastTopic());
-        assertEquals(payload, genericConsumer.getLastMessage());
+        ConsumedMessage consumed = next.get(10, TimeUnit.SECONDS);
+        assertEquals(TEST_TOPIC, consumed.topic());
+        assertEquals(payload, consumed.payload());
 
         assertEquals(1, listAppender.list.size());
 
@@ -158,17 +154,14 @@ public class GenericKafkaTest {
                 genericProducer.send(TEST_TOPIC, key, payload)
                         .get(10, TimeUnit.SECONDS);
 
+        CompletableFuture<ConsumedMessage> next = consumptionMetrics.next(message -> TEST_TOPIC.equals(message.topic()));
         genericConsumer.consume(payload, TEST_TOPIC);
 
         assertEquals(TEST_TOPIC, result.getRecordMetadata().topic());
 
-        assertTrue(
-                genericConsumer.getLatch().await(10, TimeUnit.SECONDS),
-                "Consumer never received the message"
-        );
-
-        assertEquals(TEST_TOPIC, genericConsumer.getLastTopic());
-        assertEquals(payload, genericConsumer.getLastMessage());
+        ConsumedMessage consumed = next.get(10, TimeUnit.SECONDS);
+        assertEquals(TEST_TOPIC, consumed.topic());
+        assertEquals(payload, consumed.payload());
 
         assertEquals(1, listAppender.list.size());
 
@@ -197,17 +190,14 @@ public class GenericKafkaTest {
                 genericProducer.send(TEST_TOPIC, key, payload)
                         .get(10, TimeUnit.SECONDS);
 
+        CompletableFuture<ConsumedMessage> next = consumptionMetrics.next(message -> TEST_TOPIC.equals(message.topic()));
         genericConsumer.consume(payload, TEST_TOPIC);
 
         assertEquals(TEST_TOPIC, result.getRecordMetadata().topic());
 
-        assertTrue(
-                genericConsumer.getLatch().await(10, TimeUnit.SECONDS),
-                "Consumer never received the message"
-        );
-
-        assertEquals(TEST_TOPIC, genericConsumer.getLastTopic());
-        assertEquals(payload, genericConsumer.getLastMessage());
+        ConsumedMessage consumed = next.get(10, TimeUnit.SECONDS);
+        assertEquals(TEST_TOPIC, consumed.topic());
+        assertEquals(payload, consumed.payload());
 
         assertEquals(1, listAppender.list.size());
 
@@ -236,17 +226,14 @@ public class GenericKafkaTest {
                 genericProducer.send(TEST_TOPIC, key, payload)
                         .get(10, TimeUnit.SECONDS);
 
+        CompletableFuture<ConsumedMessage> next = consumptionMetrics.next(message -> TEST_TOPIC.equals(message.topic()));
         genericConsumer.consume(payload, TEST_TOPIC);
 
         assertEquals(TEST_TOPIC, result.getRecordMetadata().topic());
 
-        assertTrue(
-                genericConsumer.getLatch().await(10, TimeUnit.SECONDS),
-                "Consumer never received the message"
-        );
-
-        assertEquals(TEST_TOPIC, genericConsumer.getLastTopic());
-        assertEquals(payload, genericConsumer.getLastMessage());
+        ConsumedMessage consumed = next.get(10, TimeUnit.SECONDS);
+        assertEquals(TEST_TOPIC, consumed.topic());
+        assertEquals(payload, consumed.payload());
 
         assertEquals(1, listAppender.list.size());
 
@@ -258,6 +245,37 @@ public class GenericKafkaTest {
         );
     }
 
+    @Test
+    @DisplayName("Should consume a batch grouped by topic and publish all results")
+    void shouldConsumeBatchGroupedByTopic() throws Exception {
+
+        Logger logger = (Logger) LoggerFactory.getLogger(GenericConsumer.class);
+        ListAppender<ILoggingEvent> listAppender = new ListAppender<>();
+        listAppender.start();
+        logger.addAppender(listAppender);
+
+        List<ConsumerRecord<String, String>> records = List.of(
+                new ConsumerRecord<>("test-topic1", 0, 0, "k1", "first"),
+                new ConsumerRecord<>(TOPIC, 0, 0, "k2", "second"),
+                new ConsumerRecord<>("test-topic1", 0, 1, "k3", "third"),
+                new ConsumerRecord<>("test-topic1", 0, 2, "k4", "fourth")
+        );
+
+        List<ConsumedMessage> consumed = new CopyOnWriteArrayList<>();
+        try (ConsumptionMetrics.Observation observation = consumptionMetrics.observe(consumed::add)) {
+            genericConsumer.consumeBatch(records);
+        }
+
+        // Handled topic by topic, in the order the topics first appear
+        assertEquals(List.of("first", "third", "fourth", "second"),
+                consumed.stream().map(ConsumedMessage::payload).toList());
+
+        // One summary line per topic, in the order the topics first appear
+        assertEquals(2, listAppender.list.size());
+        assertEquals("Processed 3 messages from test-topic1", listAppender.list.get(0).getFormattedMessage());
+        assertEquals("Processed 1 messages from " + TOPIC, listAppender.list.get(1).getFormattedMessage());
+    }
+
 
 //    @Test
 //    @DisplayName("Should publish and consume from multiple topics")
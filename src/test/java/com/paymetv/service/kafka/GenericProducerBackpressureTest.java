@@ -0,0 +1,217 @@
+package com.paymetv.service.kafka;
+
+import com.paymetv.app.service.kafka.GenericProducer;
+import com.paymetv.app.service.kafka.GenericProducer.OverflowPolicy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for the in-flight limit of GenericProducer.
+ * ---
+ * Runs GenericProducer against a mocked template whose sends stay unacknowledged
+ * until the test acknowledges them, so the limit can be filled on purpose.
+ * ---
+ * Tests verify:
+ * - FAIL_FAST rejects sends beyond the limit until one is acknowledged
+ * - BLOCK holds the caller until a send is acknowledged, or rejects after the timeout
+ * - DROP_OLDEST queues sends, drops the oldest waiting one when the queue is full
+ *   and starts the rest as acknowledgements come in
+ * - sendAll returns the results in order and every send is timed
+ * - A tombstone (null payload) completes like any other send
+ * - Sends still queued at shutdown are rejected, not left pending
+ */
+@Tag("GenericProducerBackpressureTest")
+public class GenericProducerBackpressureTest {
+
+    private static final String TOPIC = "generic-producer-test";
+
+    private final Map<Object, CompletableFuture<SendResult<String, Object>>> unacknowledged = new ConcurrentHashMap<>();
+
+    private KafkaTemplate<String, Object> kafkaTemplate;
+    private MeterRegistry meterRegistry;
+    private GenericProducer producer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(anyString(), any(), any())).thenAnswer(invocation -> {
+            CompletableFuture<SendResult<String, Object>> send = new CompletableFuture<>();
+            unacknowledged.put(invocation.getArgument(2), send);
+            return send;
+        });
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        producer.shutdown();
+    }
+
+    @Test
+    @DisplayName("FAIL_FAST rejects sends beyond the limit")
+    void shouldFailFastWhenFull() throws Exception {
+        producer = producer(OverflowPolicy.FAIL_FAST, 2, 1);
+        producer.send(TOPIC, "k", "a");
+        producer.send(TOPIC, "k", "b");
+
+        CompletableFuture<SendResult<String, Object>> rejected = producer.send(TOPIC, "k", "c");
+
+        assertRejected(rejected);
+        assertEquals(2, meterRegistry.get("kafka_producer_in_flight").gauge().value());
+        acknowledge("a");
+        assertFalse(producer.send(TOPIC, "k", "d").isDone());
+        verify(kafkaTemplate, never()).send(anyString(), any(), eq("c"));
+    }
+
+    @Test
+    @DisplayName("BLOCK waits for a free slot, up to its timeout")
+    void shouldBlockUntilAcknowledged() throws Exception {
+        producer = producer(OverflowPolicy.BLOCK, 1, 1);
+        producer.send(TOPIC, "k", "a");
+
+        CompletableFuture<CompletableFuture<SendResult<String, Object>>> blocked =
+                CompletableFuture.supplyAsync(() -> producer.send(TOPIC, "k", "b"));
+        Thread.sleep(200);
+        assertFalse(blocked.isDone(), "the caller must wait while the limit is reached");
+
+        acknowledge("a");
+        blocked.get(5, TimeUnit.SECONDS);
+        verify(kafkaTemplate).send(TOPIC, "k", "b");
+
+        GenericProducer impatient = producer(OverflowPolicy.BLOCK, 1, 1, 100);
+        impatient.send(TOPIC, "k", "c");
+        long start = System.nanoTime();
+        assertRejected(impatient.send(TOPIC, "k", "d"));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        impatient.shutdown();
+    }
+
+    @Test
+    @DisplayName("DROP_OLDEST queues sends and drops the oldest waiting one")
+    void shouldDropOldestWaitingSend() throws Exception {
+        producer = producer(OverflowPolicy.DROP_OLDEST, 1, 2);
+        producer.send(TOPIC, "k", "a");
+        CompletableFuture<SendResult<String, Object>> b = producer.send(TOPIC, "k", "b");
+        CompletableFuture<SendResult<String, Object>> c = producer.send(TOPIC, "k", "c");
+        CompletableFuture<SendResult<String, Object>> d = producer.send(TOPIC, "k", "d");
+
+        assertRejected(b);
+        assertEquals(2, meterRegistry.get("kafka_producer_waiting").gauge().value());
+
+        acknowledge("a");
+        verify(kafkaTemplate, timeout(5000)).send(TOPIC, "k", "c");
+        acknowledge("c");
+        verify(kafkaTemplate, timeout(5000)).send(TOPIC, "k", "d");
+        acknowledge("d");
+
+        assertEquals("c", c.get(5, TimeUnit.SECONDS).getProducerRecord().value());
+        assertEquals("d", d.get(5, TimeUnit.SECONDS).getProducerRecord().value());
+        verify(kafkaTemplate, never()).send(anyString(), any(), eq("b"));
+        assertEquals(1, meterRegistry.get("kafka_producer_send_seconds").tag("outcome", "dropped").timer().count());
+    }
+
+    @Test
+    @DisplayName("sendAll returns the results in order")
+    void shouldSendAllInOrder() throws Exception {
+        producer = producer(OverflowPolicy.BLOCK, 10, 1);
+
+        CompletableFuture<List<SendResult<String, Object>>> all =
+                producer.sendAll(TOPIC, List.of("x", "y", "z"), payload -> "key-" + payload);
+        acknowledge("z");
+        acknowledge("x");
+        assertFalse(all.isDone());
+        acknowledge("y");
+
+        assertEquals(List.of("x", "y", "z"), all.get(5, TimeUnit.SECONDS).stream()
+                .map(result -> result.getProducerRecord().value()).toList());
+        verify(kafkaTemplate).send(TOPIC, "key-y", "y");
+        assertEquals(3, meterRegistry.get("kafka_producer_send_seconds").tag("outcome", "sent").timer().count());
+        assertEquals(0, meterRegistry.get("kafka_producer_in_flight").gauge().value());
+    }
+
+    @Test
+    @DisplayName("A tombstone send completes")
+    void shouldCompleteTombstone() throws Exception {
+        producer = producer(OverflowPolicy.BLOCK, 1, 1);
+        SendResult<String, Object> acknowledged = new SendResult<>(new ProducerRecord<>(TOPIC, "gone", null),
+                new RecordMetadata(new TopicPartition(TOPIC, 0), 0, 0, 0, 0, 0));
+        when(kafkaTemplate.send(eq(TOPIC), eq("gone"), isNull())).thenReturn(CompletableFuture.completedFuture(acknowledged));
+
+        // log-every is 1 here, so the send is logged
+        assertSame(acknowledged, producer.send(TOPIC, "gone", null).get(1, TimeUnit.SECONDS));
+        assertEquals(0, meterRegistry.get("kafka_producer_in_flight").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Sends queued at shutdown are rejected")
+    void shouldRejectQueuedSendsOnShutdown() throws Exception {
+        producer = producer(OverflowPolicy.DROP_OLDEST, 1, 2);
+        CompletableFuture<SendResult<String, Object>> a = producer.send(TOPIC, "k", "a");
+        CompletableFuture<SendResult<String, Object>> b = producer.send(TOPIC, "k", "b");
+
+        producer.shutdown();
+        assertRejected(b);
+
+        CompletableFuture<SendResult<String, Object>> c = producer.send(TOPIC, "k", "c");
+        acknowledge("a");
+        assertEquals("a", a.get(1, TimeUnit.SECONDS).getProducerRecord().value());
+        assertRejected(c);
+        assertEquals(0, meterRegistry.get("kafka_producer_in_flight").gauge().value());
+        verify(kafkaTemplate, never()).send(anyString(), any(), eq("c"));
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private GenericProducer producer(OverflowPolicy policy, int maxInFlight, int queueCapacity) {
+        return producer(policy, maxInFlight, queueCapacity, 10_000);
+    }
+
+    private GenericProducer producer(OverflowPolicy policy, int maxInFlight, int queueCapacity, long blockTimeoutMs) {
+        return new GenericProducer(kafkaTemplate, meterRegistry, maxInFlight, policy, blockTimeoutMs, queueCapacity, 1);
+    }
+
+    private void acknowledge(Object payload) throws InterruptedException {
+        // A send verified on the dispatcher thread may not have reached the template's answer yet
+        CompletableFuture<SendResult<String, Object>> send;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((send = unacknowledged.remove(payload)) == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNotNull(send, "no send of " + payload);
+        send.complete(new SendResult<>(new ProducerRecord<>(TOPIC, "k", payload),
+                new RecordMetadata(new TopicPartition(TOPIC, 0), 0, 0, 0, 0, 0)));
+    }
+
+    private static void assertRejected(CompletableFuture<?> send) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> send.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+    }
+}
@@ -0,0 +1,263 @@
+package com.paymetv.service.kafka;
+
+import com.paymetv.app.service.kafka.ConsumptionMetrics;
+import com.paymetv.app.service.kafka.GenericConsumer;
+import com.paymetv.app.service.kafka.KeyOrderedExecutor;
+import com.paymetv.app.service.kafka.PartitionOffsetTracker;
+import com.paymetv.app.service.kafka.TopicHandler;
+import com.paymetv.app.service.kafka.TopicHandlerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for the parallel and batch modes of GenericConsumer.
+ * ---
+ * Runs GenericConsumer#consumeParallel and #consumeBatch against a mocked consumer and template,
+ * so the commits and seeks it makes can be checked without a broker.
+ * ---
+ * Tests verify:
+ * - Records of one partition run on several threads, in order per key
+ * - The offset is committed up to the highest contiguously completed record
+ * - An unfinished record is redelivered by rewinding its partition
+ * - A failing message is moved to its retry tier and committed
+ * - Offset gaps within a partition are tracked by record, not by arithmetic
+ * - Once the executor is shut down, a batch is rewound at once instead of timing out
+ * - A batch result that cannot be published moves only its own record to the retry tier
+ */
+@Tag("ParallelConsumerTest")
+public class ParallelConsumerTest {
+
+    private static final String TOPIC = "test-topic1";
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+
+    private final Map<String, List<Long>> handledByKey = new ConcurrentHashMap<>();
+    private final Set<String> threads = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    private KeyOrderedExecutor executor;
+    private KafkaTemplate<String, Object> kafkaTemplate;
+    private Consumer<?, ?> consumer;
+    private ConsumerRecordRecoverer recoverer;
+    private GenericConsumer genericConsumer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        executor = new KeyOrderedExecutor(4, 100);
+        kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        consumer = mock(Consumer.class);
+        recoverer = mock(ConsumerRecordRecoverer.class);
+
+        TopicHandler handler = new TopicHandler() {
+            @Override
+            public String name() {
+                return "test";
+            }
+
+            @Override
+            public Set<String> topics() {
+                return Set.of(TOPIC);
+            }
+
+            @Override
+            public String handle(String topic, String message) {
+                if (message.startsWith("poison")) {
+                    attempts.incrementAndGet();
+                    throw new IllegalArgumentException("Cannot handle " + message);
+                }
+                String[] keyAndOffset = message.split("@");
+                threads.add(Thread.currentThread().getName());
+                sleep(2);
+                handledByKey.computeIfAbsent(keyAndOffset[0], key -> new ArrayList<>())
+                        .add(Long.parseLong(keyAndOffset[1]));
+                return "ok";
+            }
+        };
+        genericConsumer = new GenericConsumer(
+                new TopicHandlerRegistry(List.of(handler), new SimpleMeterRegistry()), kafkaTemplate, mock(KafkaTemplate.class),
+                executor, recoverer, new ConsumptionMetrics(new SimpleMeterRegistry(), 100, 100, 256));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Records of one partition run in parallel but in order per key")
+    void shouldKeepOrderPerKey() throws Exception {
+        List<ConsumerRecord<String, String>> records = new ArrayList<>();
+        for (int offset = 0; offset < 60; offset++) {
+            String key = "key-" + (offset % 4);
+            records.add(new ConsumerRecord<>(TOPIC, 0, offset, key, key + "@" + offset));
+        }
+
+        genericConsumer.consumeParallel(records, consumer);
+
+        assertEquals(4, handledByKey.size());
+        handledByKey.forEach((key, offsets) -> {
+            assertEquals(15, offsets.size());
+            assertEquals(offsets.stream().sorted().toList(), offsets, "Out of order for " + key);
+        });
+        assertTrue(threads.size() > 1, "Expected several workers, got " + threads);
+        verify(consumer).commitSync(Map.of(PARTITION, new OffsetAndMetadata(60)));
+        verify(consumer, never()).seek(any(TopicPartition.class), anyLong());
+    }
+
+    @Test
+    @DisplayName("Commits up to the first unfinished record and rewinds to it")
+    void shouldCommitContiguousOffsetsOnly() throws Exception {
+        when(kafkaTemplate.send(anyString(), contains("b@2")))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+        List<ConsumerRecord<String, String>> records = List.of(
+                new ConsumerRecord<>(TOPIC, 0, 0, "a", "a@0"),
+                new ConsumerRecord<>(TOPIC, 0, 1, "a", "a@1"),
+                new ConsumerRecord<>(TOPIC, 0, 2, "b", "b@2"),
+                new ConsumerRecord<>(TOPIC, 0, 3, "c", "c@3"),
+                new ConsumerRecord<>(TOPIC, 0, 4, "a", "a@4"));
+
+        genericConsumer.consumeParallel(records, consumer);
+
+        verify(consumer).commitSync(Map.of(PARTITION, new OffsetAndMetadata(2)));
+        verify(consumer).seek(PARTITION, 2);
+    }
+
+    @Test
+    @DisplayName("A failing message is moved to its retry tier and committed")
+    void shouldMovePoisonMessageToRetryTier() throws Exception {
+        ConsumerRecord<String, String> poison = new ConsumerRecord<>(TOPIC, 0, 0, "a", "poison@0");
+        List<ConsumerRecord<String, String>> records = List.of(poison, new ConsumerRecord<>(TOPIC, 0, 1, "a", "a@1"));
+
+        genericConsumer.consumeParallel(records, consumer);
+
+        assertEquals(1, attempts.get());
+        verify(recoverer).accept(eq(poison), any(IllegalArgumentException.class));
+        assertEquals(List.of(1L), handledByKey.get("a"));
+        verify(kafkaTemplate, times(1)).send(anyString(), any());
+        verify(consumer).commitSync(Map.of(PARTITION, new OffsetAndMetadata(2)));
+        verify(consumer, never()).seek(any(TopicPartition.class), anyLong());
+    }
+
+    @Test
+    @DisplayName("Offset gaps are tracked per record")
+    void shouldTrackOffsetGaps() {
+        ConsumerRecord<String, String> first = new ConsumerRecord<>(TOPIC, 0, 3, "a", "a@3");
+        ConsumerRecord<String, String> second = new ConsumerRecord<>(TOPIC, 0, 7, "a", "a@7");
+        ConsumerRecord<String, String> third = new ConsumerRecord<>(TOPIC, 0, 9, "a", "a@9");
+        ConsumerRecord<String, String> other = new ConsumerRecord<>(TOPIC, 1, 5, "b", "b@5");
+        PartitionOffsetTracker tracker = new PartitionOffsetTracker(List.of(first, second, third, other));
+
+        tracker.markDone(first);
+        tracker.markDone(third);
+
+        assertEquals(Map.of(PARTITION, new OffsetAndMetadata(7)), tracker.committable());
+        assertEquals(Map.of(PARTITION, 7L, new TopicPartition(TOPIC, 1), 5L), tracker.pending());
+
+        tracker.markDone(second);
+        tracker.markDone(other);
+
+        assertEquals(Map.of(PARTITION, new OffsetAndMetadata(10), new TopicPartition(TOPIC, 1), new OffsetAndMetadata(6)),
+                tracker.committable());
+        assertTrue(tracker.pending().isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> tracker.markDone(new ConsumerRecord<>(TOPIC, 0, 8, "a", "a@8")));
+    }
+
+    @Test
+    @DisplayName("A batch submitted after shutdown is rewound at once")
+    void shouldRewindAtOnceAfterShutdown() throws Exception {
+        executor.shutdown();
+        List<ConsumerRecord<String, String>> records = List.of(
+                new ConsumerRecord<>(TOPIC, 0, 0, "a", "a@0"),
+                new ConsumerRecord<>(TOPIC, 0, 1, "a", "a@1"),
+                new ConsumerRecord<>(TOPIC, 0, 2, null, "keyless@2"));
+
+        long start = System.nanoTime();
+        genericConsumer.consumeParallel(records, consumer);
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5),
+                "must not wait out the publish timeout");
+        assertTrue(handledByKey.isEmpty());
+        verify(consumer, never()).commitSync(anyMap());
+        verify(consumer).seek(PARTITION, 0);
+        assertInstanceOf(RejectedExecutionException.class, assertThrows(ExecutionException.class,
+                () -> executor.submit("a", () -> "late").get(1, TimeUnit.SECONDS)).getCause());
+    }
+
+    @Test
+    @DisplayName("A batch whose result send fails moves no record to the retry tier twice")
+    void shouldRetryOnlyTheUnpublishedRecordOfABatch() throws Exception {
+        when(kafkaTemplate.send(anyString(), contains("b@2")))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+        ConsumerRecord<String, String> poison = new ConsumerRecord<>(TOPIC, 0, 0, "a", "poison@0");
+        ConsumerRecord<String, String> unpublished = new ConsumerRecord<>(TOPIC, 0, 2, "b", "b@2");
+        List<ConsumerRecord<String, String>> records = List.of(poison,
+                new ConsumerRecord<>(TOPIC, 0, 1, "a", "a@1"), unpublished,
+                new ConsumerRecord<>(TOPIC, 0, 3, "c", "c@3"));
+
+        BatchListenerFailedException failure = assertThrows(BatchListenerFailedException.class,
+                () -> genericConsumer.consumeBatch(records));
+        assertSame(unpublished, failure.getRecord());
+
+        // As the batch container factory's error handler would handle it; it throws to stop the container committing
+        MessageListenerContainer container = mock(MessageListenerContainer.class);
+        when(container.getContainerProperties()).thenReturn(new ContainerProperties(TOPIC));
+        assertThrows(KafkaException.class, () -> new DefaultErrorHandler(recoverer, new FixedBackOff(0L, 0L))
+                .handleBatch(failure, new ConsumerRecords<>(Map.of(PARTITION, records)), consumer, container, () -> { }));
+
+        verify(recoverer).accept(eq(poison), any(IllegalArgumentException.class));
+        verify(recoverer).accept(eq(unpublished), any());
+        verify(recoverer, times(2)).accept(any(), any());
+        verify(consumer).commitSync(eq(Map.of(PARTITION, new OffsetAndMetadata(2))), any());
+        verify(consumer).seek(PARTITION, 3);
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.paymetv.service.kafka;
+
+import com.paymetv.app.service.kafka.RetryTopics;
+import com.paymetv.app.service.kafka.TopicHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the retry and dead-letter topics of GenericConsumer.
+ * ---
+ * Enables Kafka auto-configuration against an embedded broker and registers a
+ * handler that fails on "poison" messages, with two short retry tiers. The
+ * first tier waits long enough for the next message to be handled before it.
+ * ---
+ * Tests verify:
+ * - A failing message does not hold up the messages behind it
+ * - It is retried once per tier and then lands on the dead-letter topic with
+ *   its original topic, offset and exception in the headers
+ * - Retry and dead-letter volume is counted per topic and tier
+ * - Retry topic names map back to their main topic
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.autoconfigure.exclude=",
+                "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+                "spring.kafka.consumer.auto-offset-reset=earliest",
+                "app.kafka.topics=poison-topic",
+                "app.kafka.retry.delays-ms=2000,500"
+        })
+@EmbeddedKafka(partitions = 1, topics = {"poison-topic"}, kraft = false)
+@Tag("RetryTopicTest")
+public class RetryTopicTest {
+
+    private static final String TOPIC = "poison-topic";
+
+    @Autowired
+    private KafkaTemplate<String, String> retryKafkaTemplate;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafka;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RetryTopics retryTopics;
+
+    @Autowired
+    private PoisonTopicHandler handler;
+
+    @Test
+    @DisplayName("A failing message goes through every retry tier to the DLT without blocking its partition")
+    void shouldRetryThenDeadLetterWithoutBlocking() throws Exception {
+        // The suite runs this class twice against one broker and context, so messages are unique per run
+        String run = UUID.randomUUID().toString();
+        double retriedBefore = count("kafka_retry_published_total", "tier", "1");
+        double deadBefore = count("kafka_dlt_published_total");
+        double retriedTwiceBefore = count("kafka_retry_published_total", "tier", "2");
+        long poisonOffset = retryKafkaTemplate.send(TOPIC, "key", "poison " + run).get(10, TimeUnit.SECONDS)
+                .getRecordMetadata().offset();
+        retryKafkaTemplate.send(TOPIC, "key", "good " + run).get(10, TimeUnit.SECONDS);
+
+        ConsumerRecord<String, String> dead = awaitDeadLetter("poison " + run);
+
+        assertEquals(TOPIC, header(dead, KafkaHeaders.DLT_ORIGINAL_TOPIC));
+        assertEquals(poisonOffset,
+                ByteBuffer.wrap(dead.headers().lastHeader(KafkaHeaders.DLT_ORIGINAL_OFFSET).value()).getLong());
+        assertEquals(IllegalArgumentException.class.getName(), header(dead, KafkaHeaders.DLT_EXCEPTION_CAUSE_FQCN));
+        assertTrue(header(dead, KafkaHeaders.DLT_EXCEPTION_MESSAGE).contains("poison " + run));
+
+        assertEquals(List.of("poison " + run, "good " + run, "poison " + run, "poison " + run),
+                handler.calls.stream().filter(call -> call.endsWith(run)).toList(),
+                "good must be handled right after the first failure, before any retry");
+        assertEquals(retriedBefore + 1, count("kafka_retry_published_total", "tier", "1"));
+        assertEquals(retriedTwiceBefore + 1, count("kafka_retry_published_total", "tier", "2"));
+        assertEquals(deadBefore + 1, count("kafka_dlt_published_total"));
+    }
+
+    @Test
+    @DisplayName("Retry topic names map back to their main topic")
+    void shouldNameRetryTopics() {
+        assertEquals(List.of("t-retry-1", "t-retry-2", "t-dlt"), retryTopics.topicsFor("t"));
+        assertEquals("t-retry-1", retryTopics.nextTopic("t"));
+        assertEquals("t-retry-2", retryTopics.nextTopic("t-retry-1"));
+        assertEquals("t-dlt", retryTopics.nextTopic("t-retry-2"));
+        assertEquals("t", retryTopics.mainTopic("t-retry-2"));
+        assertEquals("t", retryTopics.mainTopic("t-dlt"));
+        assertEquals("topic-file-upload", retryTopics.mainTopic("topic-file-upload"));
+        assertEquals(0, retryTopics.tier("topic-file-upload"));
+        assertThrows(IllegalStateException.class, () -> new RetryTopics(new long[]{1000, 400_000}, 300_000));
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private ConsumerRecord<String, String> awaitDeadLetter(String value) {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("dlt-reader-" + UUID.randomUUID(), "false", embeddedKafka);
+        try (Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(props,
+                new StringDeserializer(), new StringDeserializer()).createConsumer()) {
+            consumer.subscribe(List.of(retryTopics.dltTopic(TOPIC)));
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (System.currentTimeMillis() < deadline) {
+                for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(500))) {
+                    if (value.equals(record.value())) {
+                        return record;
+                    }
+                }
+            }
+        }
+        return fail("'" + value + "' never reached " + retryTopics.dltTopic(TOPIC));
+    }
+
+    private double count(String name, String... tags) {
+        var search = meterRegistry.find(name).tag("topic", TOPIC).tags(tags).counter();
+        return search != null ? search.count() : 0;
+    }
+
+    private static String header(ConsumerRecord<?, ?> record, String name) {
+        return new String(record.headers().lastHeader(name).value(), StandardCharsets.UTF_8);
+    }
+
+    @TestConfiguration
+    static class PoisonHandlerConfig {
+
+        @Bean
+        PoisonTopicHandler poisonTopicHandler() {
+            return new PoisonTopicHandler();
+        }
+    }
+
+    static class PoisonTopicHandler implements TopicHandler {
+
+        private final List<String> calls = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String name() {
+            return "poison";
+        }
+
+        @Override
+        public Set<String> topics() {
+            return Set.of(TOPIC);
+        }
+
+        @Override
+        public String handle(String topic, String message) {
+            calls.add(message);
+            if (message.startsWith("poison")) {
+                throw new IllegalArgumentException("Cannot handle " + message);
+            }
+            return "ok";
+        }
+    }
+}
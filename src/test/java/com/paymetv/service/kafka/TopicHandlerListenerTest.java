@@ -0,0 +1,165 @@
+package com.paymetv.service.kafka;
+
+import com.paymetv.app.service.kafka.ConsumptionMetrics;
+import com.paymetv.app.service.kafka.ConsumptionMetrics.ConsumedMessage;
+import com.paymetv.app.service.kafka.GenericProducer;
+import com.paymetv.app.service.kafka.TopicHandler;
+import com.paymetv.app.service.kafka.TopicHandlerRegistry;
+import com.paymetv.app.service.kafka.handler.LocalTestTopicHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.CommonErrorHandler;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the per-handler listener containers of GenericConsumer.
+ * ---
+ * Unlike the other tests, this one enables Kafka auto-configuration so the
+ * containers built from the TopicHandler beans are actually started against
+ * an embedded broker.
+ * ---
+ * Tests verify:
+ * - Every handler with an enabled topic gets its own container and concurrency
+ * - Handlers whose topics are not enabled get no container
+ * - Messages reach the handler through its container and are timed per handler
+ * - Only topic handler containers move failed messages to retry topics
+ * - Their consumers get the max.poll.interval.ms the retry delays are checked against
+ * - A topic claimed by two handlers fails at startup
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.autoconfigure.exclude=",
+                "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+                "spring.kafka.consumer.auto-offset-reset=earliest",
+                "app.kafka.topics=test-topic1,test-topic2,topic-image-face",
+                "app.kafka.handlers.test-topics.concurrency=2",
+                "app.kafka.consumer.max-poll-interval-ms=120000"
+        })
+@EmbeddedKafka(partitions = 2, topics = {"test-topic1", "test-topic2", "topic-image-face"}, kraft = false)
+@Tag("TopicHandlerListenerTest")
+public class TopicHandlerListenerTest {
+
+    @Autowired
+    private KafkaListenerEndpointRegistry listenerRegistry;
+
+    @Autowired
+    private GenericProducer genericProducer;
+
+    @Autowired
+    private ConsumptionMetrics consumptionMetrics;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Test
+    @DisplayName("Every handler with an enabled topic runs in its own container")
+    void shouldStartOneContainerPerHandler() {
+        MessageListenerContainer testTopics = listenerRegistry.getListenerContainer("topic-handler-test-topics");
+        MessageListenerContainer imageFace = listenerRegistry.getListenerContainer("topic-handler-image-face");
+
+        assertNotNull(testTopics);
+        assertNotNull(imageFace);
+        assertEquals(2, ((ConcurrentMessageListenerContainer<?, ?>) testTopics).getConcurrency());
+        assertEquals(1, ((ConcurrentMessageListenerContainer<?, ?>) imageFace).getConcurrency());
+        assertArrayEquals(new String[]{"test-topic1", "test-topic2"},
+                testTopics.getContainerProperties().getTopics());
+        assertNull(listenerRegistry.getListenerContainer("topic-handler-file-upload"),
+                "topic-file-upload is not in app.kafka.topics");
+    }
+
+    @Test
+    @DisplayName("A message is consumed by its topic's handler container")
+    void shouldConsumeThroughHandlerContainer() throws Exception {
+        // The suite runs this class twice against one broker and context, so the payload is unique per run
+        String payload = "Hello handlers " + UUID.randomUUID();
+        CompletableFuture<ConsumedMessage> next = consumptionMetrics.next(message -> message.payload().contains(payload));
+        genericProducer.send("test-topic1", "key", payload).get(10, TimeUnit.SECONDS);
+
+        ConsumedMessage consumed = next.get(30, TimeUnit.SECONDS);
+        assertEquals("test-topic1", consumed.topic());
+        assertTrue(consumed.offset() >= 0);
+        assertTrue(meterRegistry.get("kafka_handler_duration_seconds")
+                .tags("handler", "test-topics", "outcome", "success").timer().count() >= 1);
+    }
+
+    @Test
+    @DisplayName("Only topic handler containers move failures to retry topics")
+    void shouldKeepRetryErrorHandlerToTopicHandlers() {
+        CommonErrorHandler retry = handlerOf(listenerRegistry.getListenerContainer("topic-handler-test-topics"));
+
+        assertInstanceOf(DefaultErrorHandler.class, retry);
+        assertSame(retry, handlerOf(listenerRegistry.getListenerContainer("topic-handler-test-topics-retry-1")));
+        MessageListenerContainer fileUploaded = listenerRegistry.getListenerContainers().stream()
+                .filter(container -> List.of(container.getContainerProperties().getTopics()).contains("file-uploaded"))
+                .findFirst().orElseThrow();
+        assertNull(handlerOf(fileUploaded), "other listeners keep Spring Boot's default error handler");
+    }
+
+    @Test
+    @DisplayName("Topic handler consumers use app.kafka.consumer.max-poll-interval-ms")
+    void shouldApplyMaxPollInterval() {
+        for (String factory : List.of("topicHandlerKafkaListenerContainerFactory", "batchKafkaListenerContainerFactory",
+                "parallelKafkaListenerContainerFactory", "transactionalKafkaListenerContainerFactory")) {
+            assertEquals(120_000, applicationContext.getBean(factory, ConcurrentKafkaListenerContainerFactory.class)
+                    .getConsumerFactory().getConfigurationProperties().get(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG),
+                    factory);
+        }
+    }
+
+    @Test
+    @DisplayName("Two handlers claiming the same topic are rejected")
+    void shouldRejectTopicClaimedTwice() {
+        TopicHandler other = new TopicHandler() {
+            @Override
+            public String name() {
+                return "other";
+            }
+
+            @Override
+            public Set<String> topics() {
+                return Set.of("test-topic2");
+            }
+
+            @Override
+            public String handle(String topic, String message) {
+                return "other";
+            }
+        };
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> new TopicHandlerRegistry(
+                List.of(new LocalTestTopicHandler(1, 10), other), new SimpleMeterRegistry()));
+        assertTrue(e.getMessage().contains("test-topic2"));
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private static CommonErrorHandler handlerOf(MessageListenerContainer container) {
+        return ((ConcurrentMessageListenerContainer<?, ?>) container).getCommonErrorHandler();
+    }
+}
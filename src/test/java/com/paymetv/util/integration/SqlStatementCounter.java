@@ -0,0 +1,36 @@
+package com.paymetv.util.integration;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the SQL statements Hibernate prepares, per thread.
+ * ---
+ * Registered for every test context through
+ * {@code spring.jpa.properties.hibernate.session_factory.statement_inspector}.
+ * MockMvc handles a request on the test's own thread, so the statements recorded
+ * between {@link #reset()} and {@link #statements()} are exactly the ones the
+ * request issued, whatever listeners or relays run alongside it.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<List<String>> STATEMENTS = ThreadLocal.withInitial(ArrayList::new);
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.get().add(sql);
+        return sql;
+    }
+
+    /** Forgets the statements recorded so far on this thread. */
+    public static void reset() {
+        STATEMENTS.get().clear();
+    }
+
+    /** The statements recorded on this thread since the last {@link #reset()}, in order. */
+    public static List<String> statements() {
+        return List.copyOf(STATEMENTS.get());
+    }
+}
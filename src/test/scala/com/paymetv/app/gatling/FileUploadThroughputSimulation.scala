@@ -0,0 +1,80 @@
+package com.paymetv.app.gatling
+
+import io.gatling.core.Predef._
+import io.gatling.http.Predef._
+import scala.concurrent.duration._
+
+/**
+ * Gatling simulation comparing upload throughput of the multipart path
+ * (POST /api/files/upload) with the raw-body streaming path
+ * (POST /api/files/upload/stream).
+ *
+ * Both scenarios send the same payload at the same rate, so the Gatling report
+ * shows the difference in response time and throughput side by side. The
+ * upload API requires an authenticated session: log in through the browser
+ * and pass the JSESSIONID cookie value with -DsessionCookie.
+ */
+class FileUploadThroughputSimulation extends Simulation {
+
+  // Configuration - can be overridden via system properties
+  val baseUrl = System.getProperty("baseUrl", "http://localhost")
+  val sessionCookie = System.getProperty("sessionCookie", "")
+  val payloadKb = System.getProperty("payloadKb", "1024").toInt // must stay under the 2 MB limit
+  val usersPerSec = System.getProperty("usersPerSec", "20").toInt
+  val testDuration = System.getProperty("testDuration", "2").toInt // minutes
+
+  // JPEG header followed by filler, so both paths accept the payload
+  val payload: Array[Byte] = {
+    val bytes = new Array[Byte](payloadKb * 1024)
+    bytes(0) = 0xFF.toByte
+    bytes(1) = 0xD8.toByte
+    bytes(2) = 0xFF.toByte
+    bytes(3) = 0xE0.toByte
+    bytes
+  }
+
+  // HTTP protocol configuration
+  val httpProtocol = http
+    .baseUrl(baseUrl)
+    .acceptHeader("application/json")
+    .userAgentHeader("Gatling-Upload-Throughput-Test")
+    .header("Cookie", s"JSESSIONID=$sessionCookie")
+    .shareConnections
+
+  // Scenario 1: Multipart upload (container buffers the part before the service runs)
+  val multipartScenario = scenario("Upload - Multipart")
+    .exec(
+      http("Multipart Upload")
+        .post("/api/files/upload")
+        .bodyPart(ByteArrayBodyPart("file", payload)
+          .fileName("photo.jpg")
+          .contentType("image/jpeg"))
+        .asMultipartForm
+        .check(status.is(200))
+        .check(jsonPath("$.storedName").exists)
+    )
+
+  // Scenario 2: Raw-body streaming upload (single pass to disk)
+  val streamingScenario = scenario("Upload - Streaming")
+    .exec(
+      http("Streaming Upload")
+        .post("/api/files/upload/stream")
+        .header("Content-Type", "image/jpeg")
+        .header("Content-Disposition", "attachment; filename=\"photo.jpg\"")
+        .body(ByteArrayBody(payload))
+        .check(status.is(200))
+        .check(jsonPath("$.storedName").exists)
+    )
+
+  setUp(
+    multipartScenario.inject(
+      constantUsersPerSec(usersPerSec).during(testDuration.minutes)
+    ),
+    streamingScenario.inject(
+      constantUsersPerSec(usersPerSec).during(testDuration.minutes)
+    )
+  ).protocols(httpProtocol)
+    .assertions(
+      global.successfulRequests.percent.gt(95) // 95% success rate
+    )
+}